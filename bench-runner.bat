@@ -0,0 +1,32 @@
+@echo off
+echo ========================================
+echo Running DevOps Panic Ribbon Benchmarks
+echo ========================================
+echo.
+
+if "%~1"=="" (
+    echo Usage: bench-runner.bat ^<BenchmarkClass^> [args...]
+    echo Example: bench-runner.bat ProbeEngineBenchmark 3
+    exit /b 1
+)
+
+set BENCHMARK=%1
+shift
+
+REM Compile benchmark class
+echo Compiling %BENCHMARK%...
+javac -d build\classes -sourcepath src\main\java;src\test\java -cp build\classes src\test\java\com\devops\panicribbon\%BENCHMARK%.java
+
+if %ERRORLEVEL% NEQ 0 (
+    echo Compilation failed!
+    pause
+    exit /b 1
+)
+
+echo.
+echo Running %BENCHMARK%...
+echo.
+java -cp build\classes com.devops.panicribbon.%BENCHMARK% %1 %2 %3 %4 %5 %6 %7 %8 %9
+
+echo.
+pause
@@ -0,0 +1,29 @@
+#!/bin/bash
+
+echo "========================================"
+echo "Running DevOps Panic Ribbon Benchmarks"
+echo "========================================"
+echo
+
+if [ -z "$1" ]; then
+    echo "Usage: ./bench-runner.sh <BenchmarkClass> [args...]"
+    echo "Example: ./bench-runner.sh ProbeEngineBenchmark 3"
+    exit 1
+fi
+
+BENCHMARK=$1
+shift
+
+# Compile benchmark class
+echo "Compiling $BENCHMARK..."
+javac -d build/classes -sourcepath "src/main/java:src/test/java" -cp build/classes src/test/java/com/devops/panicribbon/$BENCHMARK.java
+
+if [ $? -ne 0 ]; then
+    echo "Compilation failed!"
+    exit 1
+fi
+
+echo
+echo "Running $BENCHMARK..."
+echo
+java -cp build/classes com.devops.panicribbon.$BENCHMARK "$@"
@@ -0,0 +1,54 @@
+package com.devops.panicribbon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code SimpleJsonParser.parseServices} over an in-memory services.json,
+ * so only tokenizing and building the configs is measured, not disk I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonParserBench {
+    @Param({"100", "10000"})
+    public int services;
+    
+    private String json;
+    
+    @Setup
+    public void generate() {
+        StringBuilder out = new StringBuilder("{\n  \"services\": [\n");
+        for (int i = 0; i < services; i++) {
+            out.append("    {\n")
+               .append("      \"name\": \"inventory-service-").append(i).append("\",\n")
+               .append("      \"healthCheckUrl\": \"http://host-").append(i % 997).append(".prod.internal:")
+               .append(8000 + i % 100).append("/health\",\n")
+               .append("      \"restartScriptPath\": \"/opt/restart/service-").append(i).append(".sh\",\n")
+               .append("      \"intervalSeconds\": ").append(5 + i % 20).append(",\n")
+               .append("      \"labels\": {\"team\": \"ops\", \"tier\": [1, 2]}\n")
+               .append(i == services - 1 ? "    }\n" : "    },\n");
+        }
+        json = out.append("  ]\n}\n").toString();
+    }
+    
+    @Benchmark
+    public Object parseServices() {
+        return new Main.SimpleJsonParser(new StringReader(json)).parseServices();
+    }
+}
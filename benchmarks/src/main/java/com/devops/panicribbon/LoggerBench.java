@@ -0,0 +1,69 @@
+package com.devops.panicribbon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caller-side cost of {@code Main.log}, which hands the line to the
+ * {@link AsyncLogger} ring. With {@code BLOCK} every line reaches the file,
+ * so the score includes waiting for the writer when the ring is full; with
+ * {@code DROP} callers never wait and lines past capacity are counted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBench {
+    @Param({"BLOCK", "DROP"})
+    public String overflow;
+    
+    private Path dir;
+    private AsyncLogger logger;
+    
+    @Setup
+    public void open() throws IOException {
+        dir = Files.createTempDirectory("panic-log-bench");
+        logger = new AsyncLogger(dir.resolve("panic.log"), AsyncLogger.DEFAULT_CAPACITY,
+            AsyncLogger.OverflowPolicy.valueOf(overflow), AsyncLogger.FsyncPolicy.NEVER, 0, null);
+    }
+    
+    @TearDown
+    public void close() throws IOException {
+        logger.close();
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+    
+    @Benchmark
+    public boolean log() {
+        return logger.log("Health check: inventory-service-42 - HEALTHY (200) - 12ms");
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public boolean logContended() {
+        return logger.log("Health check: inventory-service-42 - HEALTHY (200) - 12ms");
+    }
+}
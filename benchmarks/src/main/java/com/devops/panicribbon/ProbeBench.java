@@ -0,0 +1,73 @@
+package com.devops.panicribbon;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One health check against a local stub server: the HTTP probe plus
+ * publishing its result, i.e. what {@code checkServiceHealth} does minus the
+ * log line and repaint request, which need the running UI.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Without nodelay the stub's split header/body writes hit delayed ACKs and every probe takes ~40ms
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class ProbeBench {
+    private static final byte[] BODY = "{\"status\":\"UP\"}".getBytes();
+    
+    private HttpServer server;
+    private ProbeEngine engine;
+    private Main.ServiceStatus status;
+    
+    @Setup
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.createContext("/health", exchange -> {
+            exchange.sendResponseHeaders(200, BODY.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(BODY);
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        
+        engine = new ProbeEngine();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/health";
+        status = new Main.ServiceStatus(new Main.Service("stub", url, ""));
+    }
+    
+    @TearDown
+    public void stop() {
+        engine.shutdown();
+        server.stop(0);
+    }
+    
+    @Benchmark
+    public boolean checkServiceHealth() {
+        return engine.probe(status.getService()).thenApply(result -> {
+            status.recordLatency(result.getLatencyNanos());
+            return status.update(result.isHealthy() ? StatusTable.State.UP : StatusTable.State.DOWN,
+                result.getStatusCode(), result.getLatencyNanos() / 1_000L);
+        }).join();
+    }
+}
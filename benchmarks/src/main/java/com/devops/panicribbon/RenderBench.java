@@ -0,0 +1,102 @@
+package com.devops.panicribbon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.Panel;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ribbon's paint path into an off-screen image, headless. {@code expose}
+ * is a window expose served from the cached image, {@code frameOneChange} a
+ * frame after a single state change, and {@code frameAllChanged} a frame that
+ * falls back to redrawing every bucket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBench {
+    private static final int WIDTH = 50;
+    private static final int HEIGHT = 1080;
+    
+    @Param({"100", "100000"})
+    public int services;
+    
+    private List<Main.ServiceStatus> statuses;
+    private RibbonModel ribbon;
+    private RibbonRenderer renderer;
+    private BufferedImage screen;
+    private int next;
+    
+    @Setup
+    public void create() {
+        StatusTable table = new StatusTable(services);
+        statuses = new ArrayList<>(services);
+        for (int i = 0; i < services; i++) {
+            Main.ServiceStatus status = new Main.ServiceStatus(
+                new Main.Service("service-" + i, "http://localhost/" + i, ""), table, i);
+            status.update(StatusTable.State.UP, 200, 1_000);
+            statuses.add(status);
+        }
+        ribbon = new RibbonModel();
+        ribbon.setStatuses(statuses, HEIGHT);
+        renderer = new RibbonRenderer(ribbon, new Panel(), WIDTH);
+        screen = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        renderer.renderFrame();
+    }
+    
+    @TearDown
+    public void close() {
+        renderer.close();
+    }
+    
+    @Benchmark
+    public BufferedImage expose() {
+        Graphics2D g = screen.createGraphics();
+        try {
+            renderer.paintTo(g);
+        } finally {
+            g.dispose();
+        }
+        return screen;
+    }
+    
+    @Benchmark
+    public int frameOneChange() {
+        Main.ServiceStatus status = statuses.get(next);
+        next = (next + 7919) % services;
+        toggle(status);
+        return renderer.renderFrame();
+    }
+    
+    @Benchmark
+    public int frameAllChanged() {
+        for (Main.ServiceStatus status : statuses) {
+            toggle(status);
+        }
+        return renderer.renderFrame();
+    }
+    
+    private void toggle(Main.ServiceStatus status) {
+        StatusTable.State state = status.isHealthy() ? StatusTable.State.DOWN : StatusTable.State.UP;
+        status.update(state, state == StatusTable.State.UP ? 200 : 503, 1_000);
+        ribbon.markChanged(status.getIndex());
+    }
+}
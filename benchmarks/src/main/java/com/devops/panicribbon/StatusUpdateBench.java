@@ -0,0 +1,79 @@
+package com.devops.panicribbon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ServiceStatus} writes and reads over a shared {@link StatusTable}.
+ * "uncontended" is a single writer; "contended" runs three probe-style
+ * writers against one reader that scans every status the way a repaint does.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusUpdateBench {
+    private static final int SERVICES = 1024;
+    
+    private Main.ServiceStatus[] statuses;
+    
+    @Setup
+    public void create() {
+        StatusTable table = new StatusTable(SERVICES);
+        statuses = new Main.ServiceStatus[SERVICES];
+        for (int i = 0; i < SERVICES; i++) {
+            statuses[i] = new Main.ServiceStatus(new Main.Service("service-" + i, "http://localhost/" + i, ""),
+                table, i);
+        }
+    }
+    
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(1)
+    public boolean update() {
+        return publish();
+    }
+    
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public boolean writer() {
+        return publish();
+    }
+    
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public int reader() {
+        int healthy = 0;
+        for (Main.ServiceStatus status : statuses) {
+            if (status.isHealthy()) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+    
+    private boolean publish() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Main.ServiceStatus status = statuses[random.nextInt(SERVICES)];
+        boolean up = random.nextInt(8) != 0;
+        return status.update(up ? StatusTable.State.UP : StatusTable.State.DOWN, up ? 200 : 503,
+            random.nextInt(100_000));
+    }
+}
@@ -7,7 +7,7 @@ if not exist "build\classes" mkdir build\classes
 
 REM Compile Java source
 echo Compiling Java source...
-javac -d build\classes -sourcepath src\main\java src\main\java\com\devops\panicribbon\Main.java
+javac -d build\classes -sourcepath src\main\java src\main\java\com\devops\panicribbon\Main.java src\main\java\com\devops\panicribbon\Daemon.java
 
 if %ERRORLEVEL% NEQ 0 (
     echo Compilation failed!
@@ -26,5 +26,6 @@ if %ERRORLEVEL% NEQ 0 (
 echo.
 echo Build successful! JAR file created: panic-ribbon.jar
 echo Run with: java -jar panic-ribbon.jar
+echo Headless daemon: java -cp panic-ribbon.jar com.devops.panicribbon.Daemon
 pause
 
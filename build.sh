@@ -8,7 +8,7 @@ mkdir -p build/classes
 
 # Compile Java source
 echo "Compiling Java source..."
-javac -d build/classes -sourcepath src/main/java src/main/java/com/devops/panicribbon/Main.java
+javac -d build/classes -sourcepath src/main/java src/main/java/com/devops/panicribbon/Main.java src/main/java/com/devops/panicribbon/Daemon.java
 
 if [ $? -ne 0 ]; then
     echo "Compilation failed!"
@@ -27,4 +27,5 @@ fi
 echo
 echo "Build successful! JAR file created: panic-ribbon.jar"
 echo "Run with: java -jar panic-ribbon.jar"
+echo "Headless daemon: java -cp panic-ribbon.jar com.devops.panicribbon.Daemon"
 
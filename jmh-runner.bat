@@ -0,0 +1,22 @@
+@echo off
+echo ========================================
+echo Running DevOps Panic Ribbon JMH Benchmarks
+echo ========================================
+echo.
+
+REM Build the benchmark jar (compiles src\main\java together with benchmarks\)
+echo Building benchmarks\target\benchmarks.jar...
+call mvn -q -f benchmarks\pom.xml package
+
+if %ERRORLEVEL% NEQ 0 (
+    echo Build failed!
+    pause
+    exit /b 1
+)
+
+echo.
+REM Any arguments go to JMH, e.g. a benchmark regex or "-p services=100"
+java -jar benchmarks\target\benchmarks.jar -prof gc %*
+
+echo.
+pause
@@ -0,0 +1,19 @@
+#!/bin/bash
+
+echo "========================================"
+echo "Running DevOps Panic Ribbon JMH Benchmarks"
+echo "========================================"
+echo
+
+# Build the benchmark jar (compiles src/main/java together with benchmarks/)
+echo "Building benchmarks/target/benchmarks.jar..."
+mvn -q -f benchmarks/pom.xml package
+
+if [ $? -ne 0 ]; then
+    echo "Build failed!"
+    exit 1
+fi
+
+echo
+# Any arguments go to JMH, e.g. a benchmark regex or "-p services=100"
+java -jar benchmarks/target/benchmarks.jar -prof gc "$@"
@@ -0,0 +1,413 @@
+package com.devops.panicribbon;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous group-commit logger.
+ * <p>
+ * Callers enqueue lines into a bounded lock-free ring buffer and return
+ * immediately. A single writer thread drains the ring in batches, formats the
+ * timestamps, and appends each batch to one long-lived {@link FileChannel}
+ * with a single write (and optional fsync) per batch. When a {@link LogRotator}
+ * is configured the writer also rolls the file between batches.
+ */
+class AsyncLogger {
+    enum OverflowPolicy {
+        /** Discard the line and count it; callers never wait. */
+        DROP,
+        /** Wait for the writer to free a slot. */
+        BLOCK
+    }
+    
+    enum FsyncPolicy {
+        /** Leave flushing to the operating system. */
+        NEVER,
+        /** Force every batch to disk before the next one is written. */
+        BATCH,
+        /** Force at most once per configured interval. */
+        INTERVAL
+    }
+    
+    static final int DEFAULT_CAPACITY = Integer.getInteger("panicribbon.log.queueCapacity", 8192);
+    static final OverflowPolicy DEFAULT_OVERFLOW =
+        parsePolicy("panicribbon.log.overflow", System.getProperty("panicribbon.log.overflow"), OverflowPolicy.DROP);
+    static final FsyncPolicy DEFAULT_FSYNC =
+        parsePolicy("panicribbon.log.fsync", System.getProperty("panicribbon.log.fsync"), FsyncPolicy.INTERVAL);
+    static final long DEFAULT_FSYNC_INTERVAL_MS = Long.getLong("panicribbon.log.fsyncIntervalMs", 1000L);
+    
+    private static final int BATCH_BYTES = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    
+    private final RingBuffer ring;
+    private final OverflowPolicy overflowPolicy;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final PrintStream console;
+    private final Path file;
+    private final LogRotator rotator;
+    private FileChannel channel;
+    private final Thread writer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private volatile boolean writerWaiting = false;
+    private volatile boolean closed = false;
+    
+    // Writer-thread state, reused across batches
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(256);
+    private final String lineSeparator = System.lineSeparator();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long lastForceNanos = System.nanoTime();
+    private boolean unforced = false;
+    private long reportedDrops = 0;
+    private long segmentBytes;
+    private long segmentStartMillis;
+    
+    /** A policy setting, ignoring case; the fallback (with a warning) if it names no policy. */
+    static <E extends Enum<E>> E parsePolicy(String property, String value, E fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        for (E policy : fallback.getDeclaringClass().getEnumConstants()) {
+            if (policy.name().equalsIgnoreCase(value.trim())) {
+                return policy;
+            }
+        }
+        System.err.println("Unknown " + property + " value \"" + value + "\" (expected one of " +
+                           Arrays.toString(fallback.getDeclaringClass().getEnumConstants()) + "); using " + fallback);
+        return fallback;
+    }
+    
+    AsyncLogger(Path file) throws IOException {
+        this(file, DEFAULT_CAPACITY, DEFAULT_OVERFLOW, DEFAULT_FSYNC, DEFAULT_FSYNC_INTERVAL_MS, System.out,
+            new LogRotator(file));
+    }
+    
+    AsyncLogger(Path file, int capacity, OverflowPolicy overflowPolicy, FsyncPolicy fsyncPolicy,
+                long fsyncIntervalMillis, PrintStream console) throws IOException {
+        this(file, capacity, overflowPolicy, fsyncPolicy, fsyncIntervalMillis, console, null);
+    }
+    
+    AsyncLogger(Path file, int capacity, OverflowPolicy overflowPolicy, FsyncPolicy fsyncPolicy,
+                long fsyncIntervalMillis, PrintStream console, LogRotator rotator) throws IOException {
+        this.ring = new RingBuffer(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.console = console;
+        this.file = file;
+        this.rotator = rotator;
+        this.segmentStartMillis = rotator != null ? rotator.segmentStartMillis() : System.currentTimeMillis();
+        this.channel = openChannel();
+        this.segmentBytes = channel.size();
+        this.writer = Thread.ofPlatform()
+            .name("panic-log-writer")
+            .daemon()
+            .start(this::runWriter);
+    }
+    
+    /**
+     * Enqueues a message stamped with the current time. Returns false if the
+     * line was dropped because the queue was full or the logger is closed.
+     */
+    boolean log(String message) {
+        if (closed) {
+            return false;
+        }
+        long timestamp = System.currentTimeMillis();
+        while (!ring.offer(message, timestamp)) {
+            if (overflowPolicy == OverflowPolicy.DROP || closed) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            wakeWriter();
+            LockSupport.parkNanos(50_000);
+        }
+        if (writerWaiting) {
+            wakeWriter();
+        }
+        return true;
+    }
+    
+    long getDropped() {
+        return dropped.get();
+    }
+    
+    int getQueueDepth() {
+        return ring.size();
+    }
+    
+    int getCapacity() {
+        return ring.capacity();
+    }
+    
+    /**
+     * Blocks until every line enqueued before this call has been handed to the
+     * file channel. Durability still follows the fsync policy.
+     */
+    void flush() {
+        long target = ring.producedCount();
+        while (written.get() < target && writer.isAlive()) {
+            wakeWriter();
+            LockSupport.parkNanos(100_000);
+        }
+    }
+    
+    /** Drains the queue, forces it to disk and closes the file. */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        wakeWriter();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private FileChannel openChannel() throws IOException {
+        return FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    
+    private void wakeWriter() {
+        LockSupport.unpark(writer);
+    }
+    
+    private void runWriter() {
+        while (true) {
+            try {
+                int count = drainBatch();
+                if (count > 0) {
+                    commit();
+                    continue;
+                }
+                if (closed && ring.isEmpty()) {
+                    commit();
+                    break;
+                }
+                writerWaiting = true;
+                if (ring.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerWaiting = false;
+                commit();
+            } catch (IOException e) {
+                // Lose this batch rather than the writer; later lines may still succeed
+                System.err.println("Error writing to log file: " + e.getMessage());
+                batch.clear();
+                written.set(ring.consumedCount());
+                if (closed) {
+                    break;
+                }
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing log file: " + e.getMessage());
+        }
+        if (rotator != null) {
+            rotator.close();
+        }
+    }
+    
+    /** Moves queued lines into the batch buffer, spilling to the channel when full. */
+    private int drainBatch() throws IOException {
+        int count = 0;
+        long drops = dropped.get();
+        if (drops != reportedDrops) {
+            append(System.currentTimeMillis(), "Log queue overflow: dropped " + (drops - reportedDrops) + " line(s)");
+            reportedDrops = drops;
+        }
+        while (ring.poll(this)) {
+            count++;
+            if (count >= ring.capacity()) {
+                break; // give the commit a chance under sustained load
+            }
+            if (rotator != null && rotator.shouldRotate(segmentBytes + batch.position(), segmentStartMillis,
+                    System.currentTimeMillis())) {
+                break; // commit now so the segment rolls close to its limit
+            }
+        }
+        return count;
+    }
+    
+    /** Called by the ring for each drained entry. */
+    private void append(long timestamp, String message) throws IOException {
+        line.setLength(0);
+        line.append('[');
+        TIMESTAMP.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), zone), line);
+        line.append("] ").append(message);
+        if (console != null) {
+            console.println(line);
+        }
+        line.append(lineSeparator);
+        
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (true) {
+            CoderResult result = encoder.encode(chars, batch, true);
+            if (result.isOverflow()) {
+                writeBatch();
+                continue;
+            }
+            break;
+        }
+        encoder.reset();
+    }
+    
+    private void writeBatch() throws IOException {
+        batch.flip();
+        while (batch.hasRemaining()) {
+            segmentBytes += channel.write(batch);
+        }
+        batch.clear();
+        unforced = true;
+    }
+    
+    private void commit() throws IOException {
+        if (batch.position() > 0) {
+            writeBatch();
+        }
+        long now = System.nanoTime();
+        boolean force = switch (fsyncPolicy) {
+            case NEVER -> false;
+            case BATCH -> true;
+            case INTERVAL -> closed || now - lastForceNanos >= fsyncIntervalNanos;
+        };
+        if (force && unforced) {
+            channel.force(false);
+            lastForceNanos = now;
+            unforced = false;
+        }
+        written.set(ring.consumedCount());
+        if (rotator != null && rotator.shouldRotate(segmentBytes, segmentStartMillis, System.currentTimeMillis())) {
+            rotate();
+        }
+    }
+    
+    /** Closes the current segment, hands it to the rotator and starts a fresh file. */
+    private void rotate() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            channel.force(false);
+            unforced = false;
+        }
+        channel.close();
+        try {
+            rotator.rotate();
+        } finally {
+            // Reopen even if the rename failed so logging continues
+            channel = openChannel();
+            segmentBytes = channel.size();
+            segmentStartMillis = System.currentTimeMillis();
+        }
+    }
+    
+    /**
+     * Bounded multi-producer, single-consumer ring buffer. Each slot carries a
+     * sequence number so producers claim slots with one CAS and the consumer
+     * detects published entries without locks.
+     */
+    static final class RingBuffer {
+        private final int mask;
+        private final AtomicLongArray sequences;
+        private final AtomicReferenceArray<String> messages;
+        private final long[] timestamps;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head = 0;
+        
+        RingBuffer(int requestedCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+            this.mask = capacity - 1;
+            this.sequences = new AtomicLongArray(capacity);
+            this.messages = new AtomicReferenceArray<>(capacity);
+            this.timestamps = new long[capacity];
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+        
+        int capacity() {
+            return mask + 1;
+        }
+        
+        boolean offer(String message, long timestamp) {
+            while (true) {
+                long position = tail.get();
+                int index = (int) (position & mask);
+                long sequence = sequences.get(index);
+                if (sequence == position) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        timestamps[index] = timestamp;
+                        messages.lazySet(index, message);
+                        sequences.set(index, position + 1); // publish
+                        return true;
+                    }
+                } else if (sequence < position) {
+                    return false; // full
+                }
+                // Another producer claimed this slot; retry with the new tail
+            }
+        }
+        
+        /** Hands the next published entry to the logger. Single consumer only. */
+        boolean poll(AsyncLogger sink) throws IOException {
+            long position = head;
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                return false;
+            }
+            String message = messages.get(index);
+            long timestamp = timestamps[index];
+            messages.lazySet(index, null);
+            sequences.set(index, position + mask + 1); // release slot for the next lap
+            head = position + 1;
+            if (sink != null) {
+                sink.append(timestamp, message);
+            }
+            return true;
+        }
+        
+        boolean isEmpty() {
+            return sequences.get((int) (head & mask)) != head + 1;
+        }
+        
+        int size() {
+            return (int) Math.max(0, tail.get() - head);
+        }
+        
+        long producedCount() {
+            return tail.get();
+        }
+        
+        long consumedCount() {
+            return head;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.devops.panicribbon;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Calls back when a file changes, using a {@link WatchService} on its
+ * directory.
+ * <p>
+ * The directory rather than the file is watched so that editors which save
+ * by writing a temporary file and renaming it over the original are seen too.
+ * Events are debounced: the callback runs once the file has been quiet for
+ * the debounce period, so a save that arrives as several writes triggers a
+ * single reload. Changes to other files in the directory are ignored. The
+ * callback runs on the watcher's daemon thread; an exception it throws is
+ * logged and watching carries on.
+ */
+class ConfigWatcher implements AutoCloseable {
+    static final long DEFAULT_DEBOUNCE_MILLIS = Long.getLong("panicribbon.config.debounceMillis", 250L);
+    
+    private final Path file;
+    private final long debounceMillis;
+    private final Runnable onChange;
+    private final Consumer<String> log;
+    private final WatchService watchService;
+    private volatile boolean closed = false;
+    
+    ConfigWatcher(Path file, Runnable onChange, Consumer<String> log) throws IOException {
+        this(file, DEFAULT_DEBOUNCE_MILLIS, onChange, log);
+    }
+    
+    ConfigWatcher(Path file, long debounceMillis, Runnable onChange, Consumer<String> log) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.debounceMillis = debounceMillis;
+        this.onChange = onChange;
+        this.log = log;
+        Path directory = this.file.getParent();
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread.ofPlatform().daemon().name("panic-config-watch").start(this::run);
+    }
+    
+    private void run() {
+        try {
+            while (!closed) {
+                if (!drain(watchService.take())) {
+                    continue;
+                }
+                // Wait for writes to the file to settle before reloading; other files in the directory
+                // (the log, snapshots) change all the time and must not hold the reload back
+                long quietUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                for (long remaining; (remaining = quietUntil - System.nanoTime()) > 0; ) {
+                    WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (key != null && drain(key)) {
+                        quietUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                    }
+                }
+                if (!closed) {
+                    try {
+                        onChange.run();
+                    } catch (RuntimeException e) {
+                        // A failed reload must not stop watching
+                        log.accept("Error applying a change to " + file.getFileName() + ": " + e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+    
+    /** Consumes a key's events; true if any of them concern the watched file (or events were lost). */
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // already closing
+        }
+    }
+}
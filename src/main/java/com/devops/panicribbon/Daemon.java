@@ -0,0 +1,53 @@
+package com.devops.panicribbon;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Headless entry point: loads services.json, probes, logs, records history,
+ * serves metrics and runs restart scripts exactly as the ribbon does, but
+ * without a window, and publishes the states to ribbons started with
+ * {@code -Dpanicribbon.daemon.connect}. No AWT class is loaded, so it runs
+ * on servers without a display, close to the services it checks. Several
+ * daemons given {@code -Dpanicribbon.shard.peers} split the services between
+ * them and each serves the merged states (see {@link ShardCoordinator}).
+ * <p>
+ * Run with: {@code java -cp panic-ribbon.jar com.devops.panicribbon.Daemon}
+ */
+public class Daemon {
+    public static void main(String[] args) throws InterruptedException {
+        Monitor monitor = new Monitor();
+        StatusServer server;
+        try {
+            server = new StatusServer(StatusProtocol.parseAddress(StatusServer.DEFAULT_ADDRESS), monitor, monitor.getTable());
+        } catch (IOException | IllegalArgumentException e) {
+            monitor.log("Error opening status socket " + StatusServer.DEFAULT_ADDRESS + ": " + e.getMessage());
+            monitor.shutdown();
+            System.exit(1);
+            return;
+        }
+        monitor.log("Serving status to ribbons on " + server.getAddress());
+        
+        // Peers are named by their status addresses, so this one goes by its own
+        if (ShardCoordinator.DEFAULT_PEERS != null) {
+            try {
+                monitor.shard(StatusServer.DEFAULT_ADDRESS, ShardCoordinator.parsePeers(ShardCoordinator.DEFAULT_PEERS));
+            } catch (IllegalArgumentException e) {
+                monitor.log("Invalid panicribbon.shard.peers: " + e.getMessage() + " (probing every service)");
+            }
+        }
+        
+        // Probing starts here; the server is told about every load and reload of services.json
+        monitor.start(server);
+        
+        // Runs until killed; SIGTERM and Ctrl+C shut down as cleanly as the ribbon's Exit
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            monitor.log("Shutting down daemon");
+            server.close();
+            monitor.shutdown();
+            stopped.countDown();
+        }, "panic-daemon-shutdown"));
+        stopped.await();
+    }
+}
@@ -0,0 +1,116 @@
+package com.devops.panicribbon;
+
+import java.time.Duration;
+
+/**
+ * Per-service probe deadline and slowness check derived from recent latency,
+ * in constant memory.
+ * <p>
+ * Latency is smoothed the way TCP estimates its retransmission timeout
+ * (RFC 6298): {@code srtt += (sample - srtt) / 8} and
+ * {@code rttvar += (|sample - srtt| - rttvar) / 4}, so {@code srtt + 4 * rttvar}
+ * tracks a high percentile of recent latency. The next probe's deadline is
+ * that times a factor, at least a floor and at most the service's configured
+ * timeout, and it doubles after each consecutive timeout so a service that
+ * merely got slower is not cut off forever. Until a few samples have been
+ * seen the configured timeout applies.
+ * <p>
+ * Slowness is judged against a separate, slow-moving baseline (a running mean
+ * that settles into a 1/64 moving average), so a sudden slowdown shows as slow
+ * until it has lasted long enough to become the new normal.
+ * <p>
+ * Probes of one service never overlap, so each estimator has a single writer
+ * at a time and volatile fields suffice.
+ */
+final class DeadlineEstimator {
+    static final double DEFAULT_FACTOR =
+        PollScheduler.parseDouble("panicribbon.deadline.factor", System.getProperty("panicribbon.deadline.factor"), 4);
+    static final long DEFAULT_MIN_MILLIS = Long.getLong("panicribbon.deadline.minMillis", 500L);
+    static final double DEFAULT_SLOW_FACTOR =
+        PollScheduler.parseDouble("panicribbon.slow.factor", System.getProperty("panicribbon.slow.factor"), 5);
+    static final long DEFAULT_SLOW_MIN_MILLIS = Long.getLong("panicribbon.slow.minMillis", 200L);
+    static final int WARMUP_SAMPLES = 5;
+    
+    private static final int BASELINE_WEIGHT = 64;
+    private static final int MAX_BACKOFF_SHIFT = 16;
+    
+    private final double factor;
+    private final double minMicros;
+    private final double slowFactor;
+    private final double slowMinMicros;
+    private volatile double smoothedMicros;
+    private volatile double deviationMicros;
+    private volatile double baselineMicros;
+    private volatile int samples;
+    private volatile int timeouts;
+    
+    DeadlineEstimator() {
+        this(DEFAULT_FACTOR, DEFAULT_MIN_MILLIS, DEFAULT_SLOW_FACTOR, DEFAULT_SLOW_MIN_MILLIS);
+    }
+    
+    DeadlineEstimator(double factor, long minMillis, double slowFactor, long slowMinMillis) {
+        this.factor = factor;
+        this.minMicros = minMillis * 1_000.0;
+        this.slowFactor = slowFactor;
+        this.slowMinMicros = slowMinMillis * 1_000.0;
+    }
+    
+    /** Deadline for the next probe, never longer than {@code configured}. */
+    Duration deadline(Duration configured) {
+        if (samples < WARMUP_SAMPLES) {
+            return configured;
+        }
+        double micros = Math.max(minMicros, factor * (smoothedMicros + 4 * deviationMicros));
+        micros *= 1L << Math.min(timeouts, MAX_BACKOFF_SHIFT);
+        long configuredMicros = configured.toNanos() / 1_000L;
+        return micros >= configuredMicros ? configured : Duration.ofNanos((long) micros * 1_000L);
+    }
+    
+    /**
+     * Records the latency of a probe that got an answer. Returns true if it was
+     * slow compared with the baseline before this sample.
+     */
+    boolean record(long latencyMicros) {
+        if (latencyMicros < 0) {
+            return false;
+        }
+        boolean slow = isSlow(latencyMicros);
+        int seen = samples;
+        if (seen == 0) {
+            smoothedMicros = latencyMicros;
+            deviationMicros = latencyMicros / 2.0;
+            baselineMicros = latencyMicros;
+        } else {
+            double smoothed = smoothedMicros;
+            deviationMicros += (Math.abs(latencyMicros - smoothed) - deviationMicros) / 4;
+            smoothedMicros = smoothed + (latencyMicros - smoothed) / 8;
+            baselineMicros += (latencyMicros - baselineMicros) / Math.min(seen + 1, BASELINE_WEIGHT);
+        }
+        samples = seen == Integer.MAX_VALUE ? seen : seen + 1;
+        timeouts = 0;
+        return slow;
+    }
+    
+    /** Records a probe that hit its deadline; the next deadline doubles. */
+    void recordTimeout() {
+        timeouts++;
+    }
+    
+    boolean isSlow(long latencyMicros) {
+        return samples >= WARMUP_SAMPLES && latencyMicros > Math.max(slowMinMicros, slowFactor * baselineMicros);
+    }
+    
+    /** Smoothed latency in microseconds, or -1 before the first sample. */
+    long getSmoothedMicros() {
+        return samples == 0 ? -1 : (long) smoothedMicros;
+    }
+    
+    /** Latency slowness is judged against, in microseconds, or -1 before the first sample. */
+    long getBaselineMicros() {
+        return samples == 0 ? -1 : (long) baselineMicros;
+    }
+    
+    int getConsecutiveTimeouts() {
+        return timeouts;
+    }
+}
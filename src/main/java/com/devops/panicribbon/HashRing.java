@@ -0,0 +1,76 @@
+package com.devops.panicribbon;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consistent hashing of service keys onto members.
+ * <p>
+ * Each member is placed at {@code virtualNodes} points on a 64-bit ring, and
+ * a key belongs to the member at the first point at or after the key's hash,
+ * wrapping around. Adding or removing a member only moves the keys on the
+ * arcs that member gains or loses, about {@code 1/n} of them, and every
+ * member that builds a ring from the same member set agrees on every owner
+ * without talking to the others.
+ */
+final class HashRing {
+    private final List<String> members;
+    private final long[] points;
+    private final String[] owners;
+    
+    HashRing(Collection<String> members, int virtualNodes) {
+        if (members.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one member and one point per member");
+        }
+        this.members = List.copyOf(new TreeSet<>(members));
+        int count = this.members.size() * virtualNodes;
+        long[] hashes = new long[count];
+        Integer[] order = new Integer[count];
+        for (int m = 0; m < this.members.size(); m++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                int i = m * virtualNodes + v;
+                hashes[i] = hash(this.members.get(m) + "#" + v);
+                order[i] = i;
+            }
+        }
+        // Ties are broken by member so that every member builds the same ring
+        Arrays.sort(order, (a, b) -> hashes[a] != hashes[b] ? Long.compare(hashes[a], hashes[b]) : Integer.compare(a, b));
+        points = new long[count];
+        owners = new String[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = this.members.get(order[i] / virtualNodes);
+        }
+    }
+    
+    /** Members in sorted order. */
+    List<String> members() {
+        return members;
+    }
+    
+    String owner(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+    
+    /** 64-bit FNV-1a of the UTF-8 bytes, finished with the MurmurHash3 mixer so similar names spread out. */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
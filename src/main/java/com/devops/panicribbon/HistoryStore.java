@@ -0,0 +1,302 @@
+package com.devops.panicribbon;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Append-only, memory-mapped store of probe results.
+ * <p>
+ * The file is a fixed-capacity ring of 32-byte records behind a small header:
+ * <pre>
+ *   0  long  commit      sequence + 1 once the record is published, 0 while empty or being written
+ *   8  long  timestamp   epoch millis
+ *  16  long  service     {@link #serviceId} of the service's registry key
+ *  24  int   latency     microseconds, -1 if unknown
+ *  28  short status      HTTP status code, -1 if none
+ *  30  byte  outcome     {@link Outcome} ordinal
+ * </pre>
+ * Services are identified by their {@link ServiceRegistry#keysOf registry key}
+ * rather than their slot, because the file outlives the process and slots are
+ * handed out afresh, in services.json order, on every start.
+ * Writers claim a sequence with one atomic increment and publish by storing
+ * the commit word last, so appends neither lock nor allocate. Readers validate
+ * the commit word before and after copying a record (seqlock style) and skip
+ * anything overwritten underneath them. The newest sequence is recovered by
+ * scanning the commit words when the file is reopened.
+ * <p>
+ * So that {@link #scanRecent} does not walk the whole ring, an in-memory
+ * index (rebuilt on open, 4 bytes per record) chains every record to the
+ * previous one in the same hash bucket of service ids, and each bucket keeps
+ * its newest sequence. A recent scan follows its bucket's chain and costs
+ * time proportional to the records of the services sharing that bucket.
+ */
+class HistoryStore {
+    enum Outcome { UP, DOWN, TIMEOUT, ERROR }
+    
+    /** Receives records from a scan; primitives only so scans do not allocate per record. */
+    interface RecordVisitor {
+        void visit(long timestampMillis, long service, int statusCode, long latencyMicros, Outcome outcome);
+    }
+    
+    static final int DEFAULT_CAPACITY = Integer.getInteger("panicribbon.history.capacity", 1 << 18);
+    static final int MAX_CAPACITY = 1 << 25; // keeps the mapping under 2 GB
+    /** Pass to the scans to visit every service. */
+    static final long ALL_SERVICES = Long.MIN_VALUE;
+    
+    private static final int MAGIC = 0x50524853; // "PRHS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    static final int RECORD_BYTES = 32;
+    
+    private static final int OFF_COMMIT = 0;
+    private static final int OFF_TIMESTAMP = 8;
+    private static final int OFF_SERVICE = 16;
+    private static final int OFF_LATENCY = 24;
+    private static final int OFF_STATUS = 28;
+    private static final int OFF_OUTCOME = 30;
+    
+    private static final int BUCKETS = 1 << 12;
+    
+    private static final VarHandle LONGS =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final long mask;
+    private final AtomicLong next;
+    /** Per bucket, the sequence + 1 of its newest record; 0 if it has none. */
+    private final AtomicLongArray newest = new AtomicLongArray(BUCKETS);
+    /** Per slot, the low 32 bits of the sequence chained before the record in its bucket; see {@link #link}. */
+    private final AtomicIntegerArray previous;
+    
+    private HistoryStore(FileChannel channel, MappedByteBuffer buffer, int capacity, long next) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.next = new AtomicLong(next);
+        this.previous = new AtomicIntegerArray(capacity);
+        for (long sequence = Math.max(0, next - capacity); sequence < next; sequence++) {
+            int base = offset(sequence & mask);
+            if ((long) LONGS.getVolatile(buffer, base + OFF_COMMIT) == sequence + 1) {
+                index(sequence, buffer.getLong(base + OFF_SERVICE));
+            }
+        }
+    }
+    
+    static HistoryStore open(Path file) throws IOException {
+        return open(file, DEFAULT_CAPACITY);
+    }
+    
+    /** Identity of a service in the store, stable across runs: a 64-bit hash of its registry key. */
+    static long serviceId(String registryKey) {
+        return HashRing.hash(registryKey);
+    }
+    
+    /**
+     * Opens or creates the store. An existing file keeps its own capacity; a
+     * file with a foreign header or version is rejected rather than overwritten.
+     */
+    static HistoryStore open(Path file, int requestedCapacity) throws IOException {
+        boolean exists = Files.exists(file) && Files.size(file) >= HEADER_BYTES;
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            int capacity;
+            if (exists) {
+                channel.read(header, 0);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != RECORD_BYTES) {
+                    throw new IOException("Not a history store: " + file);
+                }
+                capacity = header.getInt(12);
+                if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY) {
+                    throw new IOException("Corrupt history store header: " + file);
+                }
+            } else {
+                int bounded = Math.min(MAX_CAPACITY, Math.max(2, requestedCapacity));
+                capacity = Integer.highestOneBit(bounded - 1) << 1;
+            }
+            
+            long size = HEADER_BYTES + (long) capacity * RECORD_BYTES;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (!exists) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, RECORD_BYTES);
+                buffer.putInt(12, capacity);
+            }
+            return new HistoryStore(channel, buffer, capacity, recoverNext(buffer, capacity));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    private static long recoverNext(MappedByteBuffer buffer, int capacity) {
+        long max = 0;
+        for (int i = 0; i < capacity; i++) {
+            long commit = (long) LONGS.getVolatile(buffer, offset(i));
+            if (commit > max) {
+                max = commit;
+            }
+        }
+        return max;
+    }
+    
+    private static int offset(long slot) {
+        return HEADER_BYTES + (int) slot * RECORD_BYTES;
+    }
+    
+    private static int bucket(long service) {
+        return (int) service & (BUCKETS - 1);
+    }
+    
+    /** Chains a record into its bucket; called before the record is published. */
+    private void index(long sequence, long service) {
+        long before = newest.getAndSet(bucket(service), sequence + 1) - 1;
+        // Anything a lap or more back is gone; storing it as exactly one lap back lets readers stop there
+        previous.set((int) (sequence & mask), (int) Math.max(before, sequence - capacity));
+    }
+    
+    /**
+     * The sequence chained before a record in its bucket, recovered from the
+     * stored low bits and the record's own sequence. That is at most a lap
+     * back, or a few ahead when appends to one bucket raced and were chained
+     * out of order, so the difference always fits in an int.
+     */
+    private static long link(long sequence, int stored) {
+        return sequence + (stored - (int) sequence);
+    }
+    
+    int getCapacity() {
+        return capacity;
+    }
+    
+    /** Total number of records ever appended, including overwritten ones. */
+    long getAppendedCount() {
+        return next.get();
+    }
+    
+    void append(long timestampMillis, long service, int statusCode, long latencyMicros, Outcome outcome) {
+        long sequence = next.getAndIncrement();
+        int base = offset(sequence & mask);
+        LONGS.setVolatile(buffer, base + OFF_COMMIT, 0L); // invalidate for concurrent readers
+        buffer.putLong(base + OFF_TIMESTAMP, timestampMillis);
+        buffer.putLong(base + OFF_SERVICE, service);
+        buffer.putInt(base + OFF_LATENCY, (int) Math.min(Integer.MAX_VALUE, latencyMicros));
+        buffer.putShort(base + OFF_STATUS, (short) statusCode);
+        buffer.put(base + OFF_OUTCOME, (byte) outcome.ordinal());
+        index(sequence, service);
+        LONGS.setRelease(buffer, base + OFF_COMMIT, sequence + 1);
+    }
+    
+    /**
+     * Visits records for one service ({@link #ALL_SERVICES} for all) whose
+     * timestamp lies in {@code [fromMillis, toMillis]}, oldest first.
+     */
+    void scan(long service, long fromMillis, long toMillis, RecordVisitor visitor) {
+        long end = next.get();
+        long start = Math.max(0, end - capacity);
+        for (long sequence = start; sequence < end; sequence++) {
+            readRecord(sequence, service, fromMillis, toMillis, visitor);
+        }
+    }
+    
+    /**
+     * Visits up to {@code limit} of the newest records for one service, newest
+     * first (two appends for one service that race may come out swapped).
+     * Returns the number of records visited.
+     */
+    int scanRecent(long service, int limit, RecordVisitor visitor) {
+        long end = next.get();
+        long start = Math.max(0, end - capacity);
+        if (service == ALL_SERVICES) {
+            return scanBack(service, end - 1, start, limit, visitor);
+        }
+        int visited = 0;
+        long lowest = Long.MAX_VALUE;
+        long sequence = newest.get(bucket(service)) - 1;
+        while (sequence >= start && visited < limit) {
+            int base = offset(sequence & mask);
+            long commit = (long) LONGS.getAcquire(buffer, base + OFF_COMMIT);
+            if (commit != sequence + 1) {
+                if (commit > sequence + 1) {
+                    break; // overwritten, and everything older with it
+                }
+                // Still being appended, so its link may not be set yet: look at the rest the slow way
+                return visited + scanBack(service, Math.min(sequence, lowest) - 1, start, limit - visited, visitor);
+            }
+            lowest = Math.min(lowest, sequence);
+            int stored = previous.get((int) (sequence & mask));
+            if (readRecord(sequence, service, Long.MIN_VALUE, Long.MAX_VALUE, visitor)) {
+                visited++;
+            }
+            if ((long) LONGS.getVolatile(buffer, base + OFF_COMMIT) != commit) {
+                break; // overwritten while we read its link
+            }
+            sequence = link(sequence, stored);
+        }
+        return visited;
+    }
+    
+    /** Walks the ring backwards from {@code sequence}; used where the index cannot be followed. */
+    private int scanBack(long service, long sequence, long start, int limit, RecordVisitor visitor) {
+        int visited = 0;
+        for (; sequence >= start && visited < limit; sequence--) {
+            if (readRecord(sequence, service, Long.MIN_VALUE, Long.MAX_VALUE, visitor)) {
+                visited++;
+            }
+        }
+        return visited;
+    }
+    
+    private boolean readRecord(long sequence, long service, long fromMillis, long toMillis, RecordVisitor visitor) {
+        int base = offset(sequence & mask);
+        long commit = (long) LONGS.getAcquire(buffer, base + OFF_COMMIT);
+        if (commit != sequence + 1) {
+            return false; // not yet published, or already overwritten
+        }
+        long recordService = buffer.getLong(base + OFF_SERVICE);
+        if (service != ALL_SERVICES && recordService != service) {
+            return false;
+        }
+        long timestamp = buffer.getLong(base + OFF_TIMESTAMP);
+        int latency = buffer.getInt(base + OFF_LATENCY);
+        short status = buffer.getShort(base + OFF_STATUS);
+        byte outcome = buffer.get(base + OFF_OUTCOME);
+        VarHandle.loadLoadFence();
+        if ((long) LONGS.getVolatile(buffer, base + OFF_COMMIT) != commit) {
+            return false; // overwritten while we were reading it
+        }
+        if (timestamp < fromMillis || timestamp > toMillis || outcome < 0 || outcome >= OUTCOMES.length) {
+            return false;
+        }
+        visitor.visit(timestamp, recordService, status, latency, OUTCOMES[outcome]);
+        return true;
+    }
+    
+    /** Forces mapped records to disk and releases the file handle. */
+    void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing history store: " + e.getMessage());
+        }
+    }
+}
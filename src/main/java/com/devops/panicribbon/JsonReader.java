@@ -0,0 +1,443 @@
+package com.devops.panicribbon;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Single-pass pull tokenizer for JSON read from a {@link Reader}.
+ * <p>
+ * Characters are decoded into one reusable buffer and every token is scanned
+ * in place: strings are unescaped inside the buffer and only become a
+ * {@code String} when the caller asks for the value, object keys go through a
+ * small symbol table so a repeated key costs no allocation, and values the
+ * caller does not want are skipped without being materialised. The buffer
+ * only grows when a single token is longer than it, so memory stays flat
+ * however large the document is.
+ * <p>
+ * Numbers, booleans and {@code null} are returned as their literal text and
+ * validated by the caller. A trailing comma before a closing bracket or
+ * brace is allowed, as the services.json parser always has. Errors are {@code RuntimeException}s naming the
+ * line and column of the offending character.
+ */
+final class JsonReader implements Closeable {
+    /** Kind of the next value. */
+    enum Kind { OBJECT, ARRAY, STRING, LITERAL }
+    
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_DEPTH = 256;
+    private static final int SYMBOL_TABLE_SIZE = 256;
+    private static final int SYMBOL_PROBES = 8;
+    
+    // Scope states: nothing read yet, a ',' was just consumed, an element was read
+    private static final byte EMPTY = 0;
+    private static final byte AFTER_COMMA = 1;
+    private static final byte NONEMPTY = 2;
+    
+    private final Reader in;
+    private char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    /** Start of the token being scanned; kept in the buffer across refills. */
+    private int tokenStart;
+    /** Write index while unescaping a string in place. */
+    private int write;
+    private long bufferOffset;
+    private int line = 1;
+    private long lineStart;
+    
+    private long valueOffset;
+    private int valueLine;
+    private long valueLineStart;
+    
+    private final boolean[] objectScope = new boolean[MAX_DEPTH];
+    private final byte[] scopeState = new byte[MAX_DEPTH];
+    private int depth;
+    
+    private final String[] symbols = new String[SYMBOL_TABLE_SIZE];
+    
+    JsonReader(Reader in) {
+        this.in = in;
+    }
+    
+    void beginObject() {
+        expect('{', "Expected '{'");
+        push(true);
+    }
+    
+    void endObject() {
+        expect('}', "Expected '}'");
+        depth--;
+    }
+    
+    void beginArray() {
+        expect('[', "Expected '['");
+        push(false);
+    }
+    
+    void endArray() {
+        expect(']', "Expected ']'");
+        depth--;
+    }
+    
+    /** True if the current object or array has another element; consumes the separating comma. */
+    boolean hasNext() {
+        if (depth == 0) {
+            throw error("Not inside an object or array");
+        }
+        char close = objectScope[depth - 1] ? '}' : ']';
+        int c = peekChar();
+        byte state = scopeState[depth - 1];
+        if (state == NONEMPTY) {
+            if (c == close) {
+                return false;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or '" + close + "'");
+            }
+            pos++;
+            scopeState[depth - 1] = AFTER_COMMA;
+            c = peekChar();
+            state = AFTER_COMMA;
+        }
+        if (c == close) {
+            return false; // after a ',' too: older configs rely on trailing commas
+        }
+        if (c == -1) {
+            throw error("Unexpected end of input");
+        }
+        return true;
+    }
+    
+    /** Reads the next key of the current object, including its ':'. */
+    String nextName() {
+        if (depth == 0 || !objectScope[depth - 1]) {
+            throw error("Not inside an object");
+        }
+        if (peekChar() != '"') {
+            throw error("Expected a field name");
+        }
+        int length = scanString();
+        String name = symbol(tokenStart, length);
+        if (peekChar() != ':') {
+            throw error("Expected ':' after \"" + name + "\"");
+        }
+        pos++;
+        scopeState[depth - 1] = NONEMPTY;
+        return name;
+    }
+    
+    Kind peek() {
+        int c = peekChar();
+        switch (c) {
+            case '{':
+                return Kind.OBJECT;
+            case '[':
+                return Kind.ARRAY;
+            case '"':
+                return Kind.STRING;
+            case -1:
+                throw error("Unexpected end of input");
+            default:
+                if (isDelimiter((char) c)) {
+                    throw error("Unexpected '" + (char) c + "'");
+                }
+                return Kind.LITERAL;
+        }
+    }
+    
+    /**
+     * Reads a string (unescaped) or the text of a number or boolean;
+     * {@code null} for a JSON {@code null}. Objects and arrays are an error.
+     */
+    String nextString() {
+        Kind kind = peek();
+        markValue();
+        if (kind == Kind.STRING) {
+            afterValue();
+            int length = scanString(); // moves tokenStart and may replace buf
+            return new String(buf, tokenStart, length);
+        }
+        if (kind == Kind.LITERAL) {
+            afterValue();
+            int length = scanLiteral();
+            if (length == 4 && buf[tokenStart] == 'n' && buf[tokenStart + 1] == 'u' &&
+                buf[tokenStart + 2] == 'l' && buf[tokenStart + 3] == 'l') {
+                return null;
+            }
+            return new String(buf, tokenStart, length);
+        }
+        throw error("Expected a string, number, boolean or null");
+    }
+    
+    /** Skips the next value of any type, including nested objects and arrays. */
+    void skipValue() {
+        switch (peek()) {
+            case OBJECT:
+                beginObject();
+                while (hasNext()) {
+                    if (peekChar() != '"') {
+                        throw error("Expected a field name");
+                    }
+                    scanString();
+                    if (peekChar() != ':') {
+                        throw error("Expected ':'");
+                    }
+                    pos++;
+                    scopeState[depth - 1] = NONEMPTY;
+                    skipValue();
+                }
+                endObject();
+                break;
+            case ARRAY:
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+                break;
+            case STRING:
+                afterValue();
+                scanString();
+                break;
+            default:
+                afterValue();
+                scanLiteral();
+                break;
+        }
+    }
+    
+    /** Fails unless only whitespace is left. */
+    void endDocument() {
+        if (peekChar() != -1) {
+            throw error("Unexpected data after the end of the document");
+        }
+    }
+    
+    /** An error pointing at the current position. */
+    RuntimeException error(String message) {
+        return new RuntimeException(message + " at line " + line + ", column " + (bufferOffset + pos - lineStart + 1));
+    }
+    
+    /** An error pointing at the start of the last value read by {@link #nextString()}. */
+    RuntimeException valueError(String message) {
+        return new RuntimeException(message + " at line " + valueLine + ", column " + (valueOffset - valueLineStart + 1));
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+    
+    private void push(boolean object) {
+        afterValue();
+        if (depth == MAX_DEPTH) {
+            throw error("Nesting deeper than " + MAX_DEPTH);
+        }
+        objectScope[depth] = object;
+        scopeState[depth] = EMPTY;
+        depth++;
+    }
+    
+    /** Array elements count as read when they start; object values were accounted for by their key. */
+    private void afterValue() {
+        if (depth > 0 && !objectScope[depth - 1]) {
+            scopeState[depth - 1] = NONEMPTY;
+        }
+    }
+    
+    private void markValue() {
+        valueOffset = bufferOffset + pos;
+        valueLine = line;
+        valueLineStart = lineStart;
+    }
+    
+    private void expect(char c, String message) {
+        if (peekChar() != c) {
+            throw error(message);
+        }
+        pos++;
+    }
+    
+    /** Skips whitespace and returns the next character without consuming it, or -1 at the end. */
+    private int peekChar() {
+        while (true) {
+            if (pos == limit) {
+                tokenStart = pos;
+                refill();
+                if (pos == limit) {
+                    return -1;
+                }
+            }
+            char c = buf[pos];
+            if (c == '\n') {
+                line++;
+                lineStart = bufferOffset + pos + 1;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                return c;
+            }
+            pos++;
+        }
+    }
+    
+    /**
+     * Scans the string at {@code pos}, unescaping it in place. On return the
+     * contents are at {@code buf[tokenStart..tokenStart + length)}.
+     */
+    private int scanString() {
+        pos++; // opening quote
+        tokenStart = pos;
+        write = pos;
+        while (true) {
+            if (pos == limit && !refill()) {
+                throw error("Unterminated string");
+            }
+            char c = buf[pos++];
+            if (c == '"') {
+                return write - tokenStart;
+            }
+            if (c == '\\') {
+                c = unescape();
+            } else if (c == '\n') {
+                line++;
+                lineStart = bufferOffset + pos;
+            }
+            buf[write++] = c;
+        }
+    }
+    
+    private char unescape() {
+        if (pos == limit && !refill()) {
+            throw error("Unterminated string");
+        }
+        char c = buf[pos++];
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                while (limit - pos < 4) {
+                    if (!refill()) {
+                        throw error("Unterminated string");
+                    }
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(buf[pos], 16);
+                    if (digit < 0) {
+                        throw error("Invalid \\u escape");
+                    }
+                    value = (value << 4) | digit;
+                    pos++;
+                }
+                return (char) value;
+            default:
+                pos -= 2; // point at the backslash
+                throw error("Invalid escape '\\" + c + "'");
+        }
+    }
+    
+    /** Scans an unquoted literal at {@code pos}; its text is at {@code buf[tokenStart..)}. */
+    private int scanLiteral() {
+        tokenStart = pos;
+        while ((pos < limit || refill()) && !isDelimiter(buf[pos])) {
+            pos++;
+        }
+        return pos - tokenStart;
+    }
+    
+    private static boolean isDelimiter(char c) {
+        switch (c) {
+            case ',':
+            case ':':
+            case '{':
+            case '}':
+            case '[':
+            case ']':
+            case '"':
+            case ' ':
+            case '\t':
+            case '\r':
+            case '\n':
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Reads more input, first moving the current token to the front of the
+     * buffer (or growing it if the token already fills it). Returns false at
+     * the end of input.
+     */
+    private boolean refill() {
+        int keep = tokenStart;
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, limit - keep);
+            limit -= keep;
+            pos -= keep;
+            write -= keep;
+            tokenStart = 0;
+            bufferOffset += keep;
+        } else if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        try {
+            int read = in.read(buf, limit, buf.length - limit);
+            if (read <= 0) {
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /** Returns a shared String for the given key, creating it the first time it is seen. */
+    private String symbol(int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buf[offset + i];
+        }
+        for (int probe = 0; probe < SYMBOL_PROBES; probe++) {
+            int slot = (hash + probe) & (SYMBOL_TABLE_SIZE - 1);
+            String existing = symbols[slot];
+            if (existing == null) {
+                String created = new String(buf, offset, length);
+                symbols[slot] = created;
+                return created;
+            }
+            if (existing.hashCode() == hash && matches(existing, offset, length)) {
+                return existing;
+            }
+        }
+        // Table crowded (many distinct keys); fall back to a plain String
+        return new String(buf, offset, length);
+    }
+    
+    private boolean matches(String symbol, int offset, int length) {
+        if (symbol.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (symbol.charAt(i) != buf[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,217 @@
+package com.devops.panicribbon;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory, log-bucketed latency histogram over a rolling time window.
+ * <p>
+ * Latencies are recorded in microseconds into buckets of eight linear
+ * sub-buckets per power of two (about 12% relative error) up to
+ * {@value #MAX_TRACKABLE_MICROS} us; larger values land in the last bucket.
+ * The window is split into {@code slotCount} time slots that are reused
+ * round-robin, so memory never grows. By default counts are 16 bits, two to
+ * an int, and stop at {@value #MAX_COUNT} per bucket and slot, which keeps a
+ * service's two windows near 4 KB. A histogram fed by many services at once
+ * (the scheduler's drift) is created with {@link #wide} 32-bit counts
+ * instead.
+ * <p>
+ * {@link #record} takes no locks and does not allocate. The first recorder to
+ * enter a new time slot claims it with a CAS and clears it; increments racing
+ * with that clear at the slot boundary may be lost, which is acceptable for
+ * percentile readouts.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 25;
+    static final long MAX_TRACKABLE_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    static final int MAX_COUNT = 0xFFFF;
+    static final int MAX_WIDE_COUNT = Integer.MAX_VALUE;
+    
+    private final int slotCount;
+    private final long slotMillis;
+    /** log2 of the counts per element: 1 packs two 16-bit counts (even indexes low), 0 holds one. */
+    private final int packing;
+    private final int countBits;
+    private final int maxCount;
+    private final AtomicIntegerArray counts;
+    private final AtomicLongArray slotEpochs;
+    private final AtomicLongArray slotMax;
+    
+    LatencyHistogram(long window, TimeUnit unit, int slotCount) {
+        this(window, unit, slotCount, false);
+    }
+    
+    private LatencyHistogram(long window, TimeUnit unit, int slotCount, boolean wideCounts) {
+        this.slotCount = slotCount;
+        this.slotMillis = Math.max(1, unit.toMillis(window) / slotCount);
+        this.packing = wideCounts ? 0 : 1;
+        this.countBits = Integer.SIZE >> packing;
+        this.maxCount = wideCounts ? MAX_WIDE_COUNT : MAX_COUNT;
+        this.counts = new AtomicIntegerArray(slotCount * BUCKETS >> packing);
+        this.slotEpochs = new AtomicLongArray(slotCount);
+        this.slotMax = new AtomicLongArray(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slotEpochs.set(i, -1);
+        }
+    }
+    
+    static LatencyHistogram lastFiveMinutes() {
+        return new LatencyHistogram(5, TimeUnit.MINUTES, 5);
+    }
+    
+    static LatencyHistogram lastHour() {
+        return new LatencyHistogram(1, TimeUnit.HOURS, 6);
+    }
+    
+    /** Like the given window, but with 32-bit counts, for more samples per slot than a single service makes. */
+    static LatencyHistogram wide(long window, TimeUnit unit, int slotCount) {
+        return new LatencyHistogram(window, unit, slotCount, true);
+    }
+    
+    long getWindowMillis() {
+        return slotMillis * slotCount;
+    }
+    
+    void record(long latencyMicros, long nowMillis) {
+        if (latencyMicros < 0) {
+            return;
+        }
+        long epoch = nowMillis / slotMillis;
+        int slot = (int) (epoch % slotCount);
+        long current = slotEpochs.get(slot);
+        if (current != epoch) {
+            if (current > epoch) {
+                return; // sample from a slot that has already been recycled
+            }
+            if (slotEpochs.compareAndSet(slot, current, epoch)) {
+                int base = slot * BUCKETS >> packing;
+                for (int i = 0; i < BUCKETS >> packing; i++) {
+                    counts.set(base + i, 0);
+                }
+                slotMax.set(slot, 0);
+            }
+        }
+        increment(slot * BUCKETS + bucketIndex(latencyMicros));
+        slotMax.accumulateAndGet(slot, latencyMicros, Math::max);
+    }
+    
+    private void increment(int index) {
+        int element = index >> packing;
+        int shift = (index & packing) * countBits;
+        int packed;
+        do {
+            packed = counts.get(element);
+            if ((packed >>> shift & maxCount) == maxCount) {
+                return;
+            }
+        } while (!counts.compareAndSet(element, packed, packed + (1 << shift)));
+    }
+    
+    private int count(int index) {
+        return counts.get(index >> packing) >>> (index & packing) * countBits & maxCount;
+    }
+    
+    static int bucketIndex(long micros) {
+        long value = Math.min(micros, MAX_TRACKABLE_MICROS);
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+    
+    /** Largest value that maps to the given bucket. */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + sub) << shift) + (1L << shift) - 1;
+    }
+    
+    /** Merges the live slots of the window ending at {@code nowMillis}. */
+    Snapshot snapshot(long nowMillis) {
+        long epoch = nowMillis / slotMillis;
+        long[] merged = new long[BUCKETS];
+        long total = 0;
+        long max = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            long slotEpoch = slotEpochs.get(slot);
+            if (slotEpoch < 0 || slotEpoch > epoch || epoch - slotEpoch >= slotCount) {
+                continue;
+            }
+            int base = slot * BUCKETS;
+            for (int i = 0; i < BUCKETS; i++) {
+                int count = count(base + i);
+                merged[i] += count;
+                total += count;
+            }
+            max = Math.max(max, slotMax.get(slot));
+        }
+        return new Snapshot(merged, total, max);
+    }
+    
+    Snapshot snapshot() {
+        return snapshot(System.currentTimeMillis());
+    }
+    
+    /** Point-in-time view of a window; all values in microseconds. */
+    static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+        private final long max;
+        
+        Snapshot(long[] counts, long total, long max) {
+            this.counts = counts;
+            this.total = total;
+            this.max = max;
+        }
+        
+        long getCount() { return total; }
+        long getMax() { return max; }
+        
+        /** Number of samples in the given bucket. */
+        long getBucketCount(int index) { return counts[index]; }
+        
+        /** Upper bound of the bucket holding the given percentile, capped at the observed max. */
+        long percentile(double percentile) {
+            if (total == 0) {
+                return -1;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+        
+        /** "p50 .. p95 .. p99 .. max ..", or "N/A" with no samples. */
+        String formatPercentiles() {
+            if (total == 0) {
+                return "N/A";
+            }
+            return "p50 " + formatMicros(percentile(50)) +
+                   " p95 " + formatMicros(percentile(95)) +
+                   " p99 " + formatMicros(percentile(99)) +
+                   " max " + formatMicros(max);
+        }
+        
+        private static String formatMicros(long micros) {
+            if (micros < 10_000) {
+                return String.format("%.1fms", micros / 1000.0);
+            }
+            return (micros / 1000) + "ms";
+        }
+    }
+}
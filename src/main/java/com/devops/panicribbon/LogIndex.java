@@ -0,0 +1,323 @@
+package com.devops.panicribbon;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line index over the active log segment, read through memory mappings so
+ * that neither indexing nor searching copies the file onto the heap.
+ * <p>
+ * {@link #refresh} maps only the bytes appended since the last call and
+ * records where each complete line starts; a partial last line waits for its
+ * newline. Lines of one service are found by scanning for its name, delimited
+ * by spaces or punctuation, once per service asked for and then only over new
+ * lines, so opening a service again or following it costs only what was
+ * appended. Queries walk backwards from the newest line and decode only the
+ * lines they return, which makes the most recent page cheap however long the
+ * file is. A rotated (or truncated) segment starts a new index.
+ * <p>
+ * The file is mapped in overlapping windows of {@code 2 * windowBytes}, each
+ * starting at a multiple of {@code windowBytes}, so any line up to
+ * {@code windowBytes} long lies entirely in one window; longer lines are cut.
+ */
+class LogIndex {
+    static final int DEFAULT_WINDOW_BYTES = 256 << 20;
+    
+    /** One line of the log and its position in the segment, counting from 0. */
+    static final class Line {
+        final int number;
+        final String text;
+        
+        Line(int number, String text) {
+            this.number = number;
+            this.text = text;
+        }
+        
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+    
+    /** Lines of one query, oldest first. */
+    static final class Page {
+        final List<Line> lines;
+        /** True if older matching lines exist before the first one returned. */
+        final boolean more;
+        
+        Page(List<Line> lines, boolean more) {
+            this.lines = lines;
+            this.more = more;
+        }
+    }
+    
+    private final Path file;
+    private final long windowBytes;
+    private final Map<Long, MappedByteBuffer> windows = new HashMap<>();
+    private final Map<String, IntList> byService = new HashMap<>();
+    private Object fileKey;
+    private long indexedBytes;
+    private long[] lineStarts = new long[1024];
+    private int lineCount;
+    private int segment;
+    
+    LogIndex(Path file) {
+        this(file, DEFAULT_WINDOW_BYTES);
+    }
+    
+    LogIndex(Path file, int windowBytes) {
+        this.file = file;
+        this.windowBytes = windowBytes;
+    }
+    
+    Path getFile() {
+        return file;
+    }
+    
+    /** Complete lines indexed so far. */
+    synchronized int lineCount() {
+        return lineCount;
+    }
+    
+    /** Changes whenever the index starts over on a new (or vanished) file, which renumbers the lines. */
+    synchronized int getSegment() {
+        return segment;
+    }
+    
+    /**
+     * Indexes lines appended since the last call. Returns false (and an
+     * empty index) if the file does not exist.
+     */
+    synchronized boolean refresh() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            reset(null);
+            return false;
+        }
+        long size = attributes.size();
+        Object key = attributes.fileKey();
+        if (size < indexedBytes || (key != null && fileKey != null && !key.equals(fileKey))) {
+            // A new segment: the old lines are in an archive now
+            reset(key);
+        }
+        fileKey = key;
+        if (size == indexedBytes) {
+            return true;
+        }
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = indexedBytes;
+            long lineStart = indexedBytes;
+            while (position < size) {
+                long base = windowBase(position);
+                MappedByteBuffer window = map(channel, base, size);
+                // Scan this window up to where the next one starts, or to the end of the file
+                int limit = (int) Math.min(windowBytes, size - base);
+                for (int i = (int) (position - base); i < limit; i++) {
+                    if (window.get(i) == '\n') {
+                        addLine(lineStart);
+                        lineStart = base + i + 1;
+                    }
+                }
+                position = base + limit;
+            }
+            indexedBytes = lineStart;
+        }
+        return true;
+    }
+    
+    /**
+     * The newest {@code max} lines numbered between {@code after} and
+     * {@code before} (both exclusive) that belong to {@code service} (any
+     * line if null) and contain {@code filter} (ignoring ASCII case; any line
+     * if null or empty), oldest first.
+     */
+    synchronized Page lines(String service, String filter, int after, int before, int max) throws IOException {
+        IntList candidates = service == null ? null : serviceLines(service);
+        byte[] pattern = filter == null || filter.isEmpty() ? null : lowerAscii(filter.getBytes(StandardCharsets.UTF_8));
+        List<Line> found = new ArrayList<>();
+        boolean more = false;
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int i = candidates == null ? Math.min(before, lineCount) - 1 : candidates.lowerBound(before) - 1;
+            for (; i >= 0; i--) {
+                int number = candidates == null ? i : candidates.get(i);
+                if (number <= after) {
+                    break;
+                }
+                long start = lineStarts[number];
+                long end = lineEnd(number);
+                MappedByteBuffer window = map(channel, windowBase(start), indexedBytes);
+                int from = (int) (start - windowBase(start));
+                int to = (int) Math.min(window.capacity(), from + (end - start));
+                if (pattern != null && indexOf(window, from, to, pattern) < 0) {
+                    continue;
+                }
+                if (found.size() == max) {
+                    more = true;
+                    break;
+                }
+                found.add(new Line(number, decode(window, from, to)));
+            }
+        }
+        Collections.reverse(found);
+        return new Page(found, more);
+    }
+    
+    /** Line numbers mentioning the service, extended over lines indexed since it was last asked for. */
+    private IntList serviceLines(String service) throws IOException {
+        IntList lines = byService.computeIfAbsent(service, s -> new IntList());
+        if (lines.scanned == lineCount) {
+            return lines;
+        }
+        byte[] name = service.getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int number = lines.scanned; number < lineCount; number++) {
+                long start = lineStarts[number];
+                MappedByteBuffer window = map(channel, windowBase(start), indexedBytes);
+                int from = (int) (start - windowBase(start));
+                int to = (int) Math.min(window.capacity(), from + (lineEnd(number) - start));
+                if (mentions(window, from, to, name)) {
+                    lines.add(number);
+                }
+            }
+        }
+        lines.scanned = lineCount;
+        return lines;
+    }
+    
+    /** True if {@code name} occurs in the line with a non-name character (or the line's edge) on both sides. */
+    private static boolean mentions(MappedByteBuffer window, int from, int to, byte[] name) {
+        for (int i = from; i + name.length <= to; i++) {
+            if (window.get(i) != name[0] || !regionMatches(window, i, name, false)) {
+                continue;
+            }
+            int after = i + name.length;
+            if ((i == from || isDelimiter(window.get(i - 1))) && (after == to || isDelimiter(window.get(after)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean isDelimiter(byte b) {
+        return b == ' ' || b == ':' || b == '(' || b == ')' || b == '[' || b == ']' || b == ',' || b == '\r' || b == '\t';
+    }
+    
+    private static int indexOf(MappedByteBuffer window, int from, int to, byte[] lowerPattern) {
+        for (int i = from; i + lowerPattern.length <= to; i++) {
+            if (regionMatches(window, i, lowerPattern, true)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean regionMatches(MappedByteBuffer window, int at, byte[] pattern, boolean ignoreCase) {
+        for (int j = 0; j < pattern.length; j++) {
+            byte b = window.get(at + j);
+            if ((ignoreCase ? lowerAscii(b) : b) != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static byte lowerAscii(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+    
+    private static byte[] lowerAscii(byte[] bytes) {
+        byte[] lower = bytes.clone();
+        for (int i = 0; i < lower.length; i++) {
+            lower[i] = lowerAscii(lower[i]);
+        }
+        return lower;
+    }
+    
+    private static String decode(MappedByteBuffer window, int from, int to) {
+        if (to > from && window.get(to - 1) == '\r') {
+            to--;
+        }
+        byte[] bytes = new byte[to - from];
+        window.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /** End of a line, excluding its newline. */
+    private long lineEnd(int number) {
+        return (number + 1 < lineCount ? lineStarts[number + 1] : indexedBytes) - 1;
+    }
+    
+    private long windowBase(long position) {
+        return position / windowBytes * windowBytes;
+    }
+    
+    /** The window starting at {@code base}, mapped up to {@code size} (or its full length). */
+    private MappedByteBuffer map(FileChannel channel, long base, long size) throws IOException {
+        long length = Math.min(2 * windowBytes, size - base);
+        MappedByteBuffer window = windows.get(base);
+        if (window == null || window.capacity() < length) {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+            windows.put(base, window);
+        }
+        return window;
+    }
+    
+    private void addLine(long start) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = start;
+    }
+    
+    private void reset(Object key) {
+        if (indexedBytes > 0 || fileKey != null) {
+            segment++;
+        }
+        fileKey = key;
+        indexedBytes = 0;
+        lineCount = 0;
+        windows.clear();
+        byService.clear();
+    }
+    
+    /** Sorted, growable line numbers; {@code scanned} is how many lines of the index have been looked at. */
+    private static final class IntList {
+        int[] values = new int[64];
+        int size;
+        int scanned;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        int get(int i) {
+            return values[i];
+        }
+        
+        /** Index of the first value not less than {@code value}. */
+        int lowerBound(int value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            return index < 0 ? -index - 1 : index;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.devops.panicribbon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Size- and time-based rotation policy for the active log file.
+ * <p>
+ * The log writer asks {@link #shouldRotate} after each commit. Rotation itself
+ * is a rename on the writer thread; gzip compression of the closed segment and
+ * pruning of old archives run on a background thread so neither the writer nor
+ * the threads logging into it wait on them.
+ */
+class LogRotator {
+    static final long DEFAULT_MAX_BYTES = Long.getLong("panicribbon.log.maxBytes", 10L * 1024 * 1024);
+    static final long DEFAULT_MAX_AGE_MINUTES = Long.getLong("panicribbon.log.maxAgeMinutes", 24 * 60);
+    static final int DEFAULT_RETENTION = Integer.getInteger("panicribbon.log.retention", 10);
+    
+    static final String ARCHIVE_SUFFIX = ".gz";
+    private static final DateTimeFormatter SEGMENT_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmssSSS");
+    
+    private final Path activeFile;
+    private final String baseName;
+    private final String extension;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final int retention;
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "panic-log-compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    LogRotator(Path activeFile) {
+        this(activeFile, DEFAULT_MAX_BYTES, TimeUnit.MINUTES.toMillis(DEFAULT_MAX_AGE_MINUTES), DEFAULT_RETENTION);
+    }
+    
+    LogRotator(Path activeFile, long maxBytes, long maxAgeMillis, int retention) {
+        this.activeFile = activeFile.toAbsolutePath();
+        String fileName = this.activeFile.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        this.baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        this.extension = dot > 0 ? fileName.substring(dot) : "";
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.retention = retention;
+        
+        // Finish any segment left uncompressed by a previous run
+        for (Path segment : listSegments(false)) {
+            compressor.execute(() -> compress(segment));
+        }
+        compressor.execute(this::prune);
+    }
+    
+    Path getActiveFile() {
+        return activeFile;
+    }
+    
+    /** Creation time of the active file, or now if it is new or unreadable. */
+    long segmentStartMillis() {
+        try {
+            if (Files.exists(activeFile)) {
+                return Files.readAttributes(activeFile, BasicFileAttributes.class).creationTime().toMillis();
+            }
+        } catch (IOException e) {
+            // fall through
+        }
+        return System.currentTimeMillis();
+    }
+    
+    boolean shouldRotate(long segmentBytes, long segmentStartMillis, long nowMillis) {
+        if (segmentBytes <= 0) {
+            return false;
+        }
+        return (maxBytes > 0 && segmentBytes >= maxBytes)
+            || (maxAgeMillis > 0 && nowMillis - segmentStartMillis >= maxAgeMillis);
+    }
+    
+    /**
+     * Renames the closed active file to a timestamped segment and schedules it
+     * for compression. The caller must have closed its channel first.
+     */
+    void rotate() throws IOException {
+        String stamp = LocalDateTime.now().format(SEGMENT_TIME);
+        Path segment = activeFile.resolveSibling(baseName + "-" + stamp + extension);
+        for (int n = 1; Files.exists(segment) || Files.exists(archiveOf(segment)); n++) {
+            segment = activeFile.resolveSibling(baseName + "-" + stamp + "-" + n + extension);
+        }
+        Files.move(activeFile, segment, StandardCopyOption.ATOMIC_MOVE);
+        Path closed = segment;
+        compressor.execute(() -> {
+            compress(closed);
+            prune();
+        });
+    }
+    
+    /** Uncompressed closed segments ({@code false}) or compressed archives ({@code true}), oldest first. */
+    List<Path> listSegments(boolean compressed) {
+        List<Path> result = new ArrayList<>();
+        String glob = baseName + "-*" + extension + (compressed ? ARCHIVE_SUFFIX : "");
+        Path dir = activeFile.getParent();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)) {
+            for (Path path : stream) {
+                result.add(path);
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing log segments: " + e.getMessage());
+        }
+        // Timestamped names sort chronologically
+        Collections.sort(result);
+        return result;
+    }
+    
+    private Path archiveOf(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + ARCHIVE_SUFFIX);
+    }
+    
+    private void compress(Path segment) {
+        Path archive = archiveOf(segment);
+        Path temp = segment.resolveSibling(archive.getFileName() + ".tmp");
+        try {
+            try (InputStream in = Files.newInputStream(segment);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+                in.transferTo(out);
+            }
+            Files.move(temp, archive, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(segment);
+        } catch (IOException e) {
+            System.err.println("Error compressing log segment " + segment.getFileName() + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // best effort
+            }
+        }
+    }
+    
+    private void prune() {
+        if (retention < 0) {
+            return;
+        }
+        List<Path> archives = listSegments(true);
+        for (int i = 0; i < archives.size() - retention; i++) {
+            try {
+                Files.deleteIfExists(archives.get(i));
+            } catch (IOException e) {
+                System.err.println("Error pruning log archive " + archives.get(i).getFileName() + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /** Waits for pending compression and pruning to finish. */
+    void close() {
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.devops.panicribbon;
+
+import java.awt.BorderLayout;
+import java.awt.Button;
+import java.awt.EventQueue;
+import java.awt.Font;
+import java.awt.Frame;
+import java.awt.Label;
+import java.awt.Panel;
+import java.awt.TextArea;
+import java.awt.TextField;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Window showing one service's lines of the log, newest at the bottom.
+ * <p>
+ * Opens on the last page of the service's lines, loads older pages on
+ * request and follows the file while visible. Typing in the filter shows
+ * only lines containing the text. Everything that touches the file runs on one
+ * worker thread, against a {@link LogIndex} shared across services, so the
+ * event thread only ever receives finished text. Only the active segment is
+ * shown; rotated segments are compressed archives.
+ */
+class LogViewer {
+    static final int PAGE_LINES = Integer.getInteger("panicribbon.logs.pageLines", 200);
+    static final long FOLLOW_MILLIS = Long.getLong("panicribbon.logs.followMillis", 1_000L);
+    /** Following trims the view back to one page once it holds this many. */
+    private static final int MAX_SHOWN_PAGES = 10;
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    
+    private final LogIndex index;
+    private final Frame frame = new Frame();
+    private final TextField filterField = new TextField();
+    private final Button olderButton = new Button("Older");
+    private final Label statusLabel = new Label();
+    private final TextArea text = new TextArea("", 0, 0, TextArea.SCROLLBARS_BOTH);
+    private final ScheduledExecutorService worker;
+    private volatile boolean open;
+    private volatile String latestFilter = "";
+    
+    // Worker thread only
+    private String service;
+    private String filter = "";
+    private int segment;
+    private int oldest;
+    private int seen;
+    private int shown;
+    
+    LogViewer(Path file) {
+        index = new LogIndex(file);
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "panic-logs");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        text.setEditable(false);
+        text.setFont(FONT);
+        olderButton.setEnabled(false);
+        olderButton.addActionListener(e -> submit(this::older));
+        filterField.addTextListener(e -> {
+            String typed = filterField.getText();
+            latestFilter = typed;
+            submit(() -> {
+                // A later keystroke supersedes this one
+                if (typed.equals(latestFilter)) {
+                    open(service, typed);
+                }
+            });
+        });
+        
+        Panel bar = new Panel(new BorderLayout(4, 0));
+        bar.add(new Label("Filter:"), BorderLayout.WEST);
+        bar.add(filterField, BorderLayout.CENTER);
+        bar.add(olderButton, BorderLayout.EAST);
+        frame.add(bar, BorderLayout.NORTH);
+        frame.add(text, BorderLayout.CENTER);
+        frame.add(statusLabel, BorderLayout.SOUTH);
+        frame.setSize(900, 500);
+        frame.setLocationRelativeTo(null);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                open = false;
+                frame.setVisible(false);
+            }
+        });
+        worker.scheduleWithFixedDelay(this::follow, FOLLOW_MILLIS, FOLLOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    /** Shows the newest lines of a service, keeping the current filter. Event thread only. */
+    void show(String serviceName) {
+        frame.setTitle(index.getFile() + " - " + serviceName);
+        String typed = filterField.getText();
+        submit(() -> open(serviceName, typed));
+        open = true;
+        frame.setVisible(true);
+        frame.toFront();
+    }
+    
+    void dispose() {
+        open = false;
+        worker.shutdownNow();
+        frame.dispose();
+    }
+    
+    private void open(String serviceName, String filterText) {
+        service = serviceName;
+        filter = filterText;
+        try {
+            if (!index.refresh()) {
+                segment = index.getSegment();
+                seen = 0;
+                shown = 0;
+                post(() -> {
+                    text.setText("");
+                    olderButton.setEnabled(false);
+                    statusLabel.setText(index.getFile() + " not found (a subscribed ribbon logs on its daemon's host)");
+                });
+                return;
+            }
+            segment = index.getSegment();
+            seen = index.lineCount();
+            LogIndex.Page page = index.lines(service, filter, -1, seen, PAGE_LINES);
+            oldest = page.lines.isEmpty() ? seen : page.lines.get(0).number;
+            shown = page.lines.size();
+            String joined = join(page);
+            boolean more = page.more;
+            post(() -> {
+                text.setText(joined);
+                text.setCaretPosition(joined.length());
+                olderButton.setEnabled(more);
+            });
+            postStatus();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+    
+    private void older() {
+        try {
+            LogIndex.Page page = index.lines(service, filter, -1, oldest, PAGE_LINES);
+            if (page.lines.isEmpty()) {
+                post(() -> olderButton.setEnabled(false));
+                return;
+            }
+            oldest = page.lines.get(0).number;
+            shown += page.lines.size();
+            String joined = join(page);
+            boolean more = page.more;
+            post(() -> {
+                text.insert(joined, 0);
+                text.setCaretPosition(joined.length());
+                olderButton.setEnabled(more);
+            });
+            postStatus();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+    
+    /** Appends lines written since the last look, or starts over after a rotation. */
+    private void follow() {
+        if (!open || service == null) {
+            return;
+        }
+        try {
+            boolean found = index.refresh();
+            if (!found || index.getSegment() != segment) {
+                // Rotated or gone: line numbers start over
+                if (found || seen > 0) {
+                    open(service, filter);
+                }
+                return;
+            }
+            int count = index.lineCount();
+            if (count == seen) {
+                return;
+            }
+            LogIndex.Page page = index.lines(service, filter, seen - 1, count, PAGE_LINES);
+            seen = count;
+            if (page.lines.isEmpty()) {
+                postStatus();
+                return;
+            }
+            if (page.more || shown + page.lines.size() > PAGE_LINES * MAX_SHOWN_PAGES) {
+                open(service, filter);
+                return;
+            }
+            shown += page.lines.size();
+            String joined = join(page);
+            post(() -> text.append(joined));
+            postStatus();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+    
+    private void postStatus() {
+        String status = shown + " line(s) of " + service + (filter.isEmpty() ? "" : " matching \"" + filter + "\"") +
+                        ", " + seen + " line(s) in " + index.getFile();
+        post(() -> statusLabel.setText(status));
+    }
+    
+    private void fail(IOException e) {
+        String message = "Error reading " + index.getFile() + ": " + e.getMessage();
+        post(() -> statusLabel.setText(message));
+    }
+    
+    private static String join(LogIndex.Page page) {
+        StringBuilder joined = new StringBuilder();
+        for (LogIndex.Line line : page.lines) {
+            joined.append(line.text).append('\n');
+        }
+        return joined.toString();
+    }
+    
+    private void submit(Runnable task) {
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException e) {
+            // disposed
+        }
+    }
+    
+    private static void post(Runnable update) {
+        EventQueue.invokeLater(update);
+    }
+}
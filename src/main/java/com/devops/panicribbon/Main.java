@@ -3,133 +3,86 @@ package com.devops.panicribbon;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 // Simple JSON parser to avoid external dependencies
 
 public class Main {
     private static final int RIBBON_WIDTH = 12;
-    private static final int POLL_INTERVAL_SECONDS = 10;
     private static final float OPACITY = 0.8f;
-    private static final String SERVICES_JSON = "services.json";
-    private static final String LOG_FILE = "panic.log";
+    private static final int TOOLTIP_HISTORY = 10;
+    private static final long STARTED_MILLIS = System.currentTimeMillis();
     
     private Frame frame;
-    private List<Service> services = new ArrayList<>();
-    private List<ServiceStatus> serviceStatuses = new ArrayList<>();
-    private ScheduledExecutorService scheduler;
-    private HttpClient httpClient;
+    private StatusSource source;
     private GraphicsEnvironment ge;
     private GraphicsDevice gd;
     private Rectangle screenBounds;
-    private int segmentHeight;
-    private ServiceStatus hoveredService = null;
-    private Frame tooltipFrame = null;
+    private final RibbonModel ribbon = new RibbonModel();
+    private RibbonRenderer renderer;
+    private TooltipWindow tooltip;
+    private LogViewer logViewer;
+    private final CompletableFuture<Void> windowReady = new CompletableFuture<>();
+    private boolean meaningfulPaintLogged = false;
     
     public static void main(String[] args) {
         new Main().start();
     }
     
     public void start() {
+        // Probe in-process, or only render what a headless daemon publishes
+        source = StatusClient.DEFAULT_ADDRESS != null
+            ? new StatusClient(StatusProtocol.parseAddress(StatusClient.DEFAULT_ADDRESS))
+            : new Monitor();
+        
+        // Load services and start publishing their states while the window is built
+        Thread.ofPlatform().name("panic-startup").start(() -> {
+            try {
+                source.start(new StatusSource.Listener() {
+                    @Override
+                    public void servicesChanged() {
+                        // Layout and painting are event-thread state; the order may have changed even with no other changes
+                        windowReady.thenRun(() -> EventQueue.invokeLater(() -> {
+                            ribbon.setStatuses(source.getStatuses(), screenBounds.height);
+                            hideTooltip();
+                            renderer.invalidate();
+                        }));
+                    }
+                    
+                    @Override
+                    public void stateChanged(ServiceStatus status) {
+                        // Before the window exists there is nothing to repaint; setStatuses reads every state
+                        if (windowReady.isDone()) {
+                            // The renderer coalesces frames across services
+                            ribbon.markChanged(status.getIndex());
+                            renderer.requestFrame();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                log("Error starting: " + e);
+            }
+        });
+        
         // Initialize graphics environment
         ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
         gd = ge.getDefaultScreenDevice();
         screenBounds = gd.getDefaultConfiguration().getBounds();
         
-        // Load services configuration
-        loadServices();
-        
-        // Initialize HTTP client
-        httpClient = HttpClient.newHttpClient();
-        
         // Create and configure the main window
         createWindow();
-        
-        // Start health check polling
-        startHealthChecks();
+        windowReady.complete(null);
         
         // Keep the application running
         frame.setVisible(true);
     }
     
-    private void loadServices() {
-        Path servicesPath = Paths.get(SERVICES_JSON);
-        
-        if (!Files.exists(servicesPath)) {
-            log("services.json not found, creating default configuration");
-            createDefaultServicesJson();
-        }
-        
-        try {
-            String content = Files.readString(servicesPath);
-            SimpleJsonParser parser = new SimpleJsonParser(content);
-            List<ServiceConfig> serviceConfigs = parser.parseServices();
-            
-            services.clear();
-            serviceStatuses.clear();
-            
-            for (ServiceConfig config : serviceConfigs) {
-                Service service = new Service(
-                    config.name,
-                    config.healthCheckUrl,
-                    config.restartScriptPath
-                );
-                services.add(service);
-                serviceStatuses.add(new ServiceStatus(service));
-            }
-            
-            log("Loaded " + services.size() + " service(s)");
-        } catch (Exception e) {
-            log("Error loading services.json: " + e.getMessage());
-            e.printStackTrace();
-        }
-        
-        if (services.isEmpty()) {
-            // Fallback: create a dummy service
-            Service dummy = new Service("Localhost", "http://localhost:8080/health", "echo 'No restart script'");
-            services.add(dummy);
-            serviceStatuses.add(new ServiceStatus(dummy));
-        }
-        
-        // Calculate segment height
-        segmentHeight = screenBounds.height / services.size();
-    }
-    
-    private void createDefaultServicesJson() {
-        try {
-            String defaultJson = "{\n" +
-                "  \"services\": [\n" +
-                "    {\n" +
-                "      \"name\": \"Localhost\",\n" +
-                "      \"healthCheckUrl\": \"http://localhost:8080/health\",\n" +
-                "      \"restartScriptPath\": \"echo 'No restart script configured'\"\n" +
-                "    }\n" +
-                "  ]\n" +
-                "}";
-            
-            Files.writeString(Paths.get(SERVICES_JSON), defaultJson);
-            log("Created default services.json");
-        } catch (Exception e) {
-            log("Error creating default services.json: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-    
     private void createWindow() {
         frame = new Frame();
         frame.setUndecorated(true);
@@ -154,7 +107,15 @@ public class Main {
                 super.paint(g);
                 drawRibbon(g);
             }
+            
+            @Override
+            public void update(Graphics g) {
+                // The cached image covers every pixel; skip the background clear to avoid flicker
+                paint(g);
+            }
         };
+        renderer = new RibbonRenderer(ribbon, panel, RIBBON_WIDTH);
+        tooltip = new TooltipWindow(frame);
         
         panel.setBackground(Color.BLACK);
         panel.addMouseListener(new MouseAdapter() {
@@ -176,6 +137,8 @@ public class Main {
             }
         });
         
+        panel.addMouseWheelListener(e -> handleMouseWheel(e));
+        
         frame.add(panel);
         frame.addWindowListener(new WindowAdapter() {
             @Override
@@ -186,83 +149,167 @@ public class Main {
     }
     
     private void drawRibbon(Graphics g) {
-        int y = 0;
-        for (int i = 0; i < serviceStatuses.size(); i++) {
-            ServiceStatus status = serviceStatuses.get(i);
-            Color color = status.isHealthy() ? Color.GREEN : Color.RED;
-            
-            g.setColor(color);
-            g.fillRect(0, y, RIBBON_WIDTH, segmentHeight);
-            
-            // Draw border between segments
-            if (i < serviceStatuses.size() - 1) {
-                g.setColor(Color.BLACK);
-                g.drawLine(0, y + segmentHeight - 1, RIBBON_WIDTH, y + segmentHeight - 1);
+        renderer.paintTo(g);
+        if (!meaningfulPaintLogged) {
+            logFirstMeaningfulPaint();
+        }
+    }
+    
+    /** Logs, once, how long after launch the ribbon first showed a known or last-known state for every service. */
+    private void logFirstMeaningfulPaint() {
+        List<ServiceStatus> shown = ribbon.getStatuses();
+        if (shown.isEmpty()) {
+            return;
+        }
+        int stale = 0;
+        for (ServiceStatus status : shown) {
+            long packed = status.snapshot();
+            if (StatusTable.state(packed) == StatusTable.State.UNKNOWN) {
+                return;
+            }
+            if (StatusTable.isStale(packed)) {
+                stale++;
             }
-            
-            y += segmentHeight;
         }
+        meaningfulPaintLogged = true;
+        long launched = ProcessHandle.current().info().startInstant().map(Instant::toEpochMilli).orElse(STARTED_MILLIS);
+        log("First meaningful paint " + (System.currentTimeMillis() - launched) + "ms after launch (" +
+            stale + " of " + shown.size() + " service(s) showing last-known state)");
     }
     
     private void handleMouseMove(MouseEvent e) {
-        int y = e.getY();
-        int segmentIndex = y / segmentHeight;
+        // O(1) row lookup; the tooltip text is only rebuilt when the bucket changes
+        int bucket = ribbon.bucketAt(e.getY());
         
-        if (segmentIndex >= 0 && segmentIndex < serviceStatuses.size()) {
-            ServiceStatus status = serviceStatuses.get(segmentIndex);
-            hoveredService = status;
-            showTooltip(e.getXOnScreen(), e.getYOnScreen(), status);
+        if (bucket >= 0) {
+            tooltip.show(bucket, () -> tooltipText(bucket), e.getXOnScreen(), e.getYOnScreen());
         } else {
             hideTooltip();
         }
     }
     
-    private void showTooltip(int x, int y) {
-        if (hoveredService == null) return;
-        showTooltip(x, y, hoveredService);
+    private void handleMouseWheel(MouseWheelEvent e) {
+        // Wheel up drills into the bucket under the cursor, wheel down zooms back out
+        boolean changed = e.getWheelRotation() < 0
+            ? ribbon.zoomInto(ribbon.bucketAt(e.getY()))
+            : ribbon.zoomOut();
+        if (changed) {
+            hideTooltip();
+            renderer.invalidate();
+        }
+    }
+    
+    private String tooltipText(int bucket) {
+        List<ServiceStatus> bucketServices = ribbon.servicesIn(bucket);
+        return bucketServices.size() == 1 ? serviceTooltipText(bucketServices.get(0)) : bucketTooltipText(bucketServices);
+    }
+    
+    private String serviceTooltipText(ServiceStatus status) {
+        return status.getService().getName() + 
+               stateSuffix(status.snapshot()) +
+               "\nLatency (5m): " + status.getRecentLatency().snapshot().formatPercentiles() +
+               "\nLatency (1h): " + status.getHourlyLatency().snapshot().formatPercentiles() +
+               deadline(status) +
+               recentHistory(status);
+    }
+    
+    /** Only known where the probing happens, not when subscribed to a daemon. */
+    private static String deadline(ServiceStatus status) {
+        DeadlineEstimator deadlines = status.getDeadlines();
+        if (deadlines.getSmoothedMicros() < 0) {
+            return "";
+        }
+        return "\nDeadline: " + deadlines.deadline(status.getService().getTimeout()).toMillis() + "ms";
+    }
+    
+    private static String stateSuffix(long packed) {
+        if (StatusTable.isStale(packed)) {
+            return " (" + StatusTable.state(packed).name().toLowerCase() + " at last run, not yet probed)";
+        }
+        switch (StatusTable.state(packed)) {
+            case SLOW: return " (slow)";
+            case RESTARTING: return " (restarting)";
+            default: return "";
+        }
+    }
+    
+    static String bucketTooltipText(List<ServiceStatus> bucketServices) {
+        int up = 0;
+        int down = 0;
+        int unknown = 0;
+        int restarting = 0;
+        int slow = 0;
+        int stale = 0;
+        ServiceStatus worst = bucketServices.get(0);
+        for (ServiceStatus status : bucketServices) {
+            long packed = status.snapshot();
+            StatusTable.State state = StatusTable.state(packed);
+            if (StatusTable.isStale(packed)) {
+                stale++;
+            }
+            switch (state) {
+                case UP: up++; break;
+                case DOWN: down++; break;
+                case RESTARTING: restarting++; break;
+                case SLOW: slow++; up++; break;
+                default: unknown++; break;
+            }
+            if (RibbonModel.severity(state) > RibbonModel.severity(StatusTable.state(worst.snapshot()))) {
+                worst = status;
+            }
+        }
+        return bucketServices.size() + " services (" + bucketServices.get(0).getService().getName() +
+               " .. " + bucketServices.get(bucketServices.size() - 1).getService().getName() + ")" +
+               "\nUp: " + up + (slow > 0 ? " (slow: " + slow + ")" : "") + " Down: " + down + " Unknown: " + unknown +
+               (restarting > 0 ? " Restarting: " + restarting : "") +
+               (stale > 0 ? "\nNot yet probed (last run's state shown): " + stale : "") +
+               (down + unknown + restarting + slow > 0 ? "\nWorst: " + worst.getService().getName() : "") +
+               "\nScroll or click to zoom in";
     }
     
-    private void showTooltip(int x, int y, ServiceStatus status) {
-        hideTooltip();
-        
-        String text = status.getService().getName() + 
-                     "\nLatency: " + (status.getLatency() >= 0 ? status.getLatency() + "ms" : "N/A");
-        
-        tooltipFrame = new Frame();
-        tooltipFrame.setUndecorated(true);
-        tooltipFrame.setAlwaysOnTop(true);
-        tooltipFrame.setFocusable(false);
-        
-        Label label = new Label(text);
-        label.setBackground(new Color(255, 255, 200));
-        label.setForeground(Color.BLACK);
-        label.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 11));
-        
-        tooltipFrame.add(label);
-        tooltipFrame.pack();
-        tooltipFrame.setLocation(x + 15, y - 10);
-        tooltipFrame.setVisible(true);
+    private String recentHistory(ServiceStatus status) {
+        HistoryStore history = source.getHistory();
+        if (history == null) {
+            return "";
+        }
+        // Newest first: '+' for a healthy probe, '-' for anything else
+        StringBuilder marks = new StringBuilder();
+        history.scanRecent(status.getHistoryId(), TOOLTIP_HISTORY, (timestamp, service, code, latency, outcome) ->
+            marks.append(outcome == HistoryStore.Outcome.UP ? '+' : '-'));
+        return marks.length() == 0 ? "" : "\nRecent: " + marks;
     }
     
     private void hideTooltip() {
-        if (tooltipFrame != null) {
-            tooltipFrame.dispose();
-            tooltipFrame = null;
+        if (tooltip != null) {
+            tooltip.hide();
         }
-        hoveredService = null;
     }
     
     private void handleMouseClick(MouseEvent e) {
-        int y = e.getY();
-        int segmentIndex = y / segmentHeight;
+        int bucket = ribbon.bucketAt(e.getY());
         
-        if (segmentIndex >= 0 && segmentIndex < serviceStatuses.size()) {
-            ServiceStatus status = serviceStatuses.get(segmentIndex);
+        if (bucket >= 0) {
+            List<ServiceStatus> bucketServices = ribbon.servicesIn(bucket);
+            
+            if (bucketServices.size() > 1) {
+                if (e.getButton() == MouseEvent.BUTTON1) {
+                    // Left click on an aggregated row - drill into it
+                    if (ribbon.zoomInto(bucket)) {
+                        hideTooltip();
+                        renderer.invalidate();
+                    }
+                } else if (e.getButton() == MouseEvent.BUTTON3) {
+                    showBucketPopupMenu(e.getXOnScreen(), e.getYOnScreen(), bucket, bucketServices);
+                }
+                return;
+            }
+            
+            ServiceStatus status = bucketServices.get(0);
             
             if (e.getButton() == MouseEvent.BUTTON1) {
                 // Left click - execute restart script if unhealthy
                 if (!status.isHealthy()) {
-                    executeRestartScript(status.getService());
+                    requestRestart(status);
                 }
             } else if (e.getButton() == MouseEvent.BUTTON3) {
                 // Right click - show popup menu
@@ -271,24 +318,69 @@ public class Main {
         }
     }
     
+    private void showBucketPopupMenu(int x, int y, int bucket, List<ServiceStatus> bucketServices) {
+        PopupMenu popup = new PopupMenu();
+        
+        MenuItem zoomItem = new MenuItem("Zoom In (" + bucketServices.size() + " services)");
+        zoomItem.addActionListener(ae -> {
+            if (ribbon.zoomInto(bucket)) {
+                renderer.invalidate();
+            }
+        });
+        popup.add(zoomItem);
+        
+        MenuItem refreshItem = new MenuItem("Refresh All");
+        refreshItem.addActionListener(ae -> {
+            log("Manual refresh requested for " + bucketServices.size() + " service(s)");
+            refreshNow(bucketServices);
+        });
+        popup.add(refreshItem);
+        
+        addZoomOutItems(popup);
+        
+        MenuItem exitItem = new MenuItem("Exit");
+        exitItem.addActionListener(ae -> shutdown());
+        popup.add(exitItem);
+        
+        frame.add(popup);
+        popup.show(frame, x - frame.getX(), y - frame.getY());
+    }
+    
+    private void addZoomOutItems(PopupMenu popup) {
+        if (!ribbon.isZoomed()) {
+            return;
+        }
+        MenuItem zoomOutItem = new MenuItem("Zoom Out");
+        zoomOutItem.addActionListener(ae -> {
+            ribbon.zoomOut();
+            renderer.invalidate();
+        });
+        popup.add(zoomOutItem);
+        
+        MenuItem resetItem = new MenuItem("Show All Services");
+        resetItem.addActionListener(ae -> {
+            ribbon.resetZoom();
+            renderer.invalidate();
+        });
+        popup.add(resetItem);
+    }
+    
     private void showPopupMenu(int x, int y, ServiceStatus status) {
         PopupMenu popup = new PopupMenu();
         
         MenuItem refreshItem = new MenuItem("Refresh Now");
         refreshItem.addActionListener(ae -> {
             log("Manual refresh requested for: " + status.getService().getName());
-            checkServiceHealth(status);
+            refreshNow(List.of(status));
         });
         popup.add(refreshItem);
         
         MenuItem logsItem = new MenuItem("View Logs");
-        logsItem.addActionListener(ae -> {
-            log("View logs requested for: " + status.getService().getName());
-            // In a real implementation, you might open a log viewer
-            // For now, just log the action
-        });
+        logsItem.addActionListener(ae -> showLogs(status));
         popup.add(logsItem);
         
+        addZoomOutItems(popup);
+        
         MenuItem exitItem = new MenuItem("Exit");
         exitItem.addActionListener(ae -> shutdown());
         popup.add(exitItem);
@@ -297,93 +389,36 @@ public class Main {
         popup.show(frame, x - frame.getX(), y - frame.getY());
     }
     
-    private void executeRestartScript(Service service) {
-        log("Executing restart script for: " + service.getName() + " (" + service.getRestartScriptPath() + ")");
-        
-        try {
-            String os = System.getProperty("os.name").toLowerCase();
-            ProcessBuilder pb;
-            
-            if (os.contains("win")) {
-                // Windows
-                pb = new ProcessBuilder("cmd.exe", "/c", service.getRestartScriptPath());
-            } else {
-                // Unix/Linux/Mac
-                pb = new ProcessBuilder("sh", "-c", service.getRestartScriptPath());
-            }
-            
-            pb.directory(new File(System.getProperty("user.dir")));
-            Process process = pb.start();
-            
-            // Don't wait for the process to complete (fire and forget)
-            Executors.newVirtualThreadPerTaskExecutor().submit(() -> {
-                try {
-                    int exitCode = process.waitFor();
-                    log("Restart script completed for " + service.getName() + " with exit code: " + exitCode);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log("Restart script interrupted for: " + service.getName());
-                }
-            });
-            
-        } catch (Exception e) {
-            log("Error executing restart script for " + service.getName() + ": " + e.getMessage());
-            e.printStackTrace();
+    
+    private void showLogs(ServiceStatus status) {
+        // Created on first use; the window and its index are kept for later services
+        if (logViewer == null) {
+            logViewer = new LogViewer(Paths.get(Monitor.LOG_FILE));
         }
+        logViewer.show(status.getService().getName());
     }
     
-    private void startHealthChecks() {
-        scheduler = Executors.newScheduledThreadPool(1);
-        
-        scheduler.scheduleAtFixedRate(() -> {
-            for (ServiceStatus status : serviceStatuses) {
-                Executors.newVirtualThreadPerTaskExecutor().submit(() -> {
-                    checkServiceHealth(status);
-                });
-            }
-        }, 0, POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    private void requestRestart(ServiceStatus status) {
+        source.restart(status);
     }
     
-    private void checkServiceHealth(ServiceStatus status) {
-        long startTime = System.currentTimeMillis();
-        
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(status.getService().getHealthCheckUrl()))
-                .timeout(java.time.Duration.ofSeconds(5))
-                .GET()
-                .build();
-            
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            long latency = System.currentTimeMillis() - startTime;
-            
-            boolean healthy = response.statusCode() == 200;
-            status.update(healthy, latency);
-            
-            log("Health check: " + status.getService().getName() + 
-                " - " + (healthy ? "HEALTHY" : "UNHEALTHY") + 
-                " (" + response.statusCode() + ") - " + latency + "ms");
-            
-        } catch (java.net.http.HttpTimeoutException e) {
-            status.update(false, -1);
-            log("Health check timeout: " + status.getService().getName());
-        } catch (Exception e) {
-            status.update(false, -1);
-            log("Health check error: " + status.getService().getName() + " - " + e.getMessage());
-        }
-        
-        // Repaint on AWT Event Dispatch Thread
-        EventQueue.invokeLater(() -> {
-            frame.repaint();
-        });
+    /** Probes the given services right away, off the event thread. */
+    private void refreshNow(List<ServiceStatus> statuses) {
+        source.refresh(statuses);
     }
     
     private void shutdown() {
         log("Shutting down application");
-        if (scheduler != null) {
-            scheduler.shutdown();
+        source.shutdown();
+        if (tooltip != null) {
+            tooltip.dispose();
+        }
+        if (logViewer != null) {
+            logViewer.dispose();
+        }
+        if (renderer != null) {
+            renderer.close();
         }
-        hideTooltip();
         if (frame != null) {
             frame.dispose();
         }
@@ -391,21 +426,7 @@ public class Main {
     }
     
     private void log(String message) {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-        String logMessage = "[" + timestamp + "] " + message;
-        
-        System.out.println(logMessage);
-        
-        try {
-            Files.writeString(
-                Paths.get(LOG_FILE),
-                logMessage + System.lineSeparator(),
-                StandardOpenOption.CREATE,
-                StandardOpenOption.APPEND
-            );
-        } catch (Exception e) {
-            System.err.println("Error writing to log file: " + e.getMessage());
-        }
+        source.log(message);
     }
     
     // Inner classes (package-private for testing)
@@ -413,175 +434,310 @@ public class Main {
         String name;
         String healthCheckUrl;
         String restartScriptPath;
+        double intervalSeconds;
+        String method;
+        String httpVersion;
+        double connectTimeoutSeconds;
+        double timeoutSeconds;
+        String type;
+        String host;
+        int port;
     }
     
+    /**
+     * Reads the service list in one streaming pass over a {@link JsonReader}:
+     * known fields become {@link ServiceConfig} values, anything else (of any
+     * type) is skipped, and errors give the line and column.
+     */
     static class SimpleJsonParser {
-        private String json;
-        private int pos = 0;
+        private final Reader reader;
         
         public SimpleJsonParser(String json) {
-            this.json = json;
+            this(new StringReader(json));
+        }
+        
+        public SimpleJsonParser(Reader reader) {
+            this.reader = reader;
         }
         
         public List<ServiceConfig> parseServices() {
-            List<ServiceConfig> services = new ArrayList<>();
-            skipWhitespace();
-            
-            if (pos >= json.length() || json.charAt(pos) != '{') {
-                throw new RuntimeException("Expected '{' at start of JSON");
+            JsonReader json = new JsonReader(reader);
+            List<ServiceConfig> services = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.nextName().equals("services")) {
+                    services = parseServiceArray(json);
+                } else {
+                    json.skipValue();
+                }
             }
-            pos++;
-            
-            skipWhitespace();
-            if (!consume("\"services\"")) {
+            json.endObject();
+            json.endDocument();
+            if (services == null) {
                 throw new RuntimeException("Expected 'services' key");
             }
-            skipWhitespace();
-            if (pos >= json.length() || json.charAt(pos) != ':') {
-                throw new RuntimeException("Expected ':' after 'services'");
-            }
-            pos++;
-            skipWhitespace();
-            
-            if (pos >= json.length() || json.charAt(pos) != '[') {
-                throw new RuntimeException("Expected '[' for services array");
-            }
-            pos++;
-            skipWhitespace();
-            
-            while (pos < json.length() && json.charAt(pos) != ']') {
-                if (json.charAt(pos) == '{') {
-                    ServiceConfig config = parseServiceObject();
-                    services.add(config);
-                }
-                skipWhitespace();
-                if (pos < json.length() && json.charAt(pos) == ',') {
-                    pos++;
-                    skipWhitespace();
-                }
+            return services;
+        }
+        
+        private static List<ServiceConfig> parseServiceArray(JsonReader json) {
+            List<ServiceConfig> services = new ArrayList<>();
+            json.beginArray();
+            while (json.hasNext()) {
+                services.add(parseServiceObject(json));
             }
-            
+            json.endArray();
             return services;
         }
         
-        private ServiceConfig parseServiceObject() {
+        private static ServiceConfig parseServiceObject(JsonReader json) {
             ServiceConfig config = new ServiceConfig();
-            pos++; // skip '{'
-            skipWhitespace();
-            
-            while (pos < json.length() && json.charAt(pos) != '}') {
-                String key = parseString();
-                skipWhitespace();
-                if (pos >= json.length() || json.charAt(pos) != ':') {
-                    throw new RuntimeException("Expected ':' after key");
-                }
-                pos++;
-                skipWhitespace();
-                String value = parseString();
-                
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
                 switch (key) {
                     case "name":
-                        config.name = value;
+                        config.name = json.nextString();
                         break;
                     case "healthCheckUrl":
-                        config.healthCheckUrl = value;
+                        config.healthCheckUrl = json.nextString();
                         break;
                     case "restartScriptPath":
-                        config.restartScriptPath = value;
+                        config.restartScriptPath = json.nextString();
+                        break;
+                    case "intervalSeconds":
+                        config.intervalSeconds = parseNumber(json, key);
+                        break;
+                    case "method":
+                        config.method = json.nextString();
+                        break;
+                    case "httpVersion":
+                        config.httpVersion = json.nextString();
+                        break;
+                    case "connectTimeoutSeconds":
+                        config.connectTimeoutSeconds = parseNumber(json, key);
+                        break;
+                    case "timeoutSeconds":
+                        config.timeoutSeconds = parseNumber(json, key);
+                        break;
+                    case "type":
+                        config.type = json.nextString();
+                        break;
+                    case "host":
+                        config.host = json.nextString();
+                        break;
+                    case "port":
+                        config.port = (int) Math.min(Integer.MAX_VALUE, parseNumber(json, key));
+                        break;
+                    default:
+                        json.skipValue();
                         break;
                 }
-                
-                skipWhitespace();
-                if (pos < json.length() && json.charAt(pos) == ',') {
-                    pos++;
-                    skipWhitespace();
-                }
-            }
-            if (pos < json.length()) {
-                pos++; // skip '}'
             }
-            skipWhitespace();
-            
+            json.endObject();
             return config;
         }
         
-        private String parseString() {
-            if (pos >= json.length() || json.charAt(pos) != '"') {
-                throw new RuntimeException("Expected '\"' at start of string");
+        /** A non-negative number, given as a JSON number or a numeric string. */
+        private static double parseNumber(JsonReader json, String key) {
+            String value = json.nextString();
+            if (value == null) {
+                throw json.valueError("Expected a number for '" + key + "': null");
             }
-            pos++;
-            int start = pos;
-            while (pos < json.length() && json.charAt(pos) != '"') {
-                if (json.charAt(pos) == '\\' && pos + 1 < json.length()) {
-                    pos++; // skip escaped character
+            try {
+                double number = Double.parseDouble(value);
+                if (number < 0 || Double.isNaN(number) || Double.isInfinite(number)) {
+                    throw json.valueError("Invalid value for '" + key + "': " + value);
                 }
-                pos++;
-            }
-            if (pos >= json.length()) {
-                throw new RuntimeException("Unterminated string");
-            }
-            String value = json.substring(start, pos);
-            pos++; // skip closing '"'
-            skipWhitespace();
-            return value;
-        }
-        
-        private boolean consume(String str) {
-            if (pos + str.length() <= json.length() && 
-                json.substring(pos, pos + str.length()).equals(str)) {
-                pos += str.length();
-                return true;
-            }
-            return false;
-        }
-        
-        private void skipWhitespace() {
-            while (pos < json.length() && 
-                   (json.charAt(pos) == ' ' || json.charAt(pos) == '\n' || 
-                    json.charAt(pos) == '\r' || json.charAt(pos) == '\t')) {
-                pos++;
+                return number;
+            } catch (NumberFormatException e) {
+                throw json.valueError("Expected a number for '" + key + "': " + value);
             }
         }
     }
     
     static class Service {
+        /** How a service is probed: an HTTP request, or a plain TCP connect to host and port. */
+        enum Type { HTTP, TCP }
+        
         private final String name;
         private final String healthCheckUrl;
         private final String restartScriptPath;
+        private final long intervalMillis;
+        private final ProbeOptions probeOptions;
+        private final Type type;
+        private final String host;
+        private final int port;
         
         public Service(String name, String healthCheckUrl, String restartScriptPath) {
+            this(name, healthCheckUrl, restartScriptPath, 0);
+        }
+        
+        public Service(String name, String healthCheckUrl, String restartScriptPath, long intervalMillis) {
+            this(name, healthCheckUrl, restartScriptPath, intervalMillis, ProbeOptions.DEFAULT);
+        }
+        
+        public Service(String name, String healthCheckUrl, String restartScriptPath, long intervalMillis,
+                       ProbeOptions probeOptions) {
+            this(name, healthCheckUrl, restartScriptPath, intervalMillis, probeOptions, Type.HTTP, null, -1);
+        }
+        
+        private Service(String name, String healthCheckUrl, String restartScriptPath, long intervalMillis,
+                        ProbeOptions probeOptions, Type type, String host, int port) {
             this.name = name;
             this.healthCheckUrl = healthCheckUrl;
             this.restartScriptPath = restartScriptPath;
+            this.intervalMillis = intervalMillis;
+            this.probeOptions = probeOptions != null ? probeOptions : ProbeOptions.DEFAULT;
+            this.type = type;
+            this.host = host;
+            this.port = port;
+        }
+        
+        /** A service checked by connecting to host:port; the URL is only for display. */
+        public static Service tcp(String name, String host, int port, String restartScriptPath, long intervalMillis,
+                                  ProbeOptions probeOptions) {
+            String display = "tcp://" + (host.indexOf(':') >= 0 ? "[" + host + "]" : host) + ":" + port;
+            return new Service(name, display, restartScriptPath, intervalMillis, probeOptions, Type.TCP, host, port);
         }
         
         public String getName() { return name; }
         public String getHealthCheckUrl() { return healthCheckUrl; }
         public String getRestartScriptPath() { return restartScriptPath; }
+        
+        /** Poll interval for this service, or 0 to use the default. */
+        public long getIntervalMillis() { return intervalMillis; }
+        public ProbeOptions getProbeOptions() { return probeOptions; }
+        public Type getType() { return type; }
+        
+        /** Longest a probe may take: the connect timeout for TCP services (if set), else the request timeout. */
+        public Duration getTimeout() {
+            if (type == Type.TCP && probeOptions.getConnectTimeout() != null) {
+                return probeOptions.getConnectTimeout();
+            }
+            return probeOptions.getTimeout();
+        }
+        
+        /** Target of a TCP probe; {@code null} and -1 for HTTP services. */
+        public String getHost() { return host; }
+        public int getPort() { return port; }
+        
+        /** True if every configured field matches; used to diff a reloaded config. */
+        public boolean hasSameDefinition(Service other) {
+            return Objects.equals(name, other.name) &&
+                   Objects.equals(healthCheckUrl, other.healthCheckUrl) &&
+                   Objects.equals(restartScriptPath, other.restartScriptPath) &&
+                   intervalMillis == other.intervalMillis &&
+                   probeOptions.equals(other.probeOptions) &&
+                   type == other.type &&
+                   Objects.equals(host, other.host) &&
+                   port == other.port;
+        }
     }
     
     static class ServiceStatus {
         private final Service service;
-        private final AtomicReference<Boolean> healthy = new AtomicReference<>(false);
-        private final AtomicReference<Long> latency = new AtomicReference<>(-1L);
+        private final StatusTable table;
+        private final int index;
+        private final long historyId;
+        private final LatencyHistogram recentLatency;
+        private final LatencyHistogram hourlyLatency;
+        private final ServiceMetrics metrics;
+        private final DeadlineEstimator deadlines = new DeadlineEstimator();
+        private volatile boolean retired;
         
         public ServiceStatus(Service service) {
+            this(service, new StatusTable(1), 0);
+        }
+        
+        public ServiceStatus(Service service, StatusTable table, int index) {
+            this(service, table, index, String.valueOf(service.getName()));
+        }
+        
+        /** {@code key} is the service's {@link ServiceRegistry#keysOf registry key}, which names it in the history. */
+        public ServiceStatus(Service service, StatusTable table, int index, String key) {
+            this.service = service;
+            this.table = table;
+            this.index = index;
+            this.historyId = HistoryStore.serviceId(key);
+            this.recentLatency = LatencyHistogram.lastFiveMinutes();
+            this.hourlyLatency = LatencyHistogram.lastHour();
+            this.metrics = new ServiceMetrics();
+        }
+        
+        /**
+         * Status for a redefined service: keeps the slot, current state, latency history and metrics of
+         * {@code previous}. Probe deadlines are learned afresh, since the new definition may behave differently.
+         */
+        public ServiceStatus(Service service, ServiceStatus previous) {
             this.service = service;
+            this.table = previous.table;
+            this.index = previous.index;
+            this.historyId = previous.historyId;
+            this.recentLatency = previous.recentLatency;
+            this.hourlyLatency = previous.hourlyLatency;
+            this.metrics = previous.metrics;
         }
         
         public Service getService() { return service; }
+        public int getIndex() { return index; }
+        
+        /** Identifies the service's records in the {@link HistoryStore}, across restarts. */
+        public long getHistoryId() { return historyId; }
+        
+        /** Set once the service was removed or redefined by a reload; late probe results are dropped. */
+        public boolean isRetired() { return retired; }
+        void retire() { retired = true; }
+        
+        /** Packed slot value; decode with the {@link StatusTable} helpers. */
+        public long snapshot() {
+            return table.get(index);
+        }
         
         public boolean isHealthy() {
-            return healthy.get();
+            return StatusTable.isHealthy(table.get(index));
         }
         
         public long getLatency() {
-            return latency.get();
+            long micros = StatusTable.latencyMicros(table.get(index));
+            return micros < 0 ? -1 : micros / 1_000L;
+        }
+        
+        public LatencyHistogram getRecentLatency() { return recentLatency; }
+        public LatencyHistogram getHourlyLatency() { return hourlyLatency; }
+        public ServiceMetrics getMetrics() { return metrics; }
+        public DeadlineEstimator getDeadlines() { return deadlines; }
+        
+        /** Records one probe latency into the rolling histograms and metrics; lock- and allocation-free. */
+        public void recordLatency(long latencyNanos) {
+            long micros = latencyNanos / 1_000L;
+            long now = System.currentTimeMillis();
+            recentLatency.record(micros, now);
+            hourlyLatency.record(micros, now);
+            metrics.recordLatency(micros);
         }
         
         public void update(boolean healthy, long latency) {
-            this.healthy.set(healthy);
-            this.latency.set(latency);
+            update(healthy ? StatusTable.State.UP : StatusTable.State.DOWN, 0, latency < 0 ? -1 : latency * 1_000L);
+        }
+        
+        /** Publishes a probe result; returns true if the state changed or a stale state was confirmed. */
+        public boolean update(StatusTable.State state, int statusCode, long latencyMicros) {
+            return update(state, statusCode, latencyMicros, null, null);
+        }
+        
+        /**
+         * Publishes a probe result and, if it changed the state, a {@link Transition} to {@code transitions}
+         * (when not null). {@code cause} is the probe's failure, if any. Returns as the three-argument form.
+         */
+        public boolean update(StatusTable.State state, int statusCode, long latencyMicros, Throwable cause,
+                              TransitionStream transitions) {
+            long previous = table.update(index, state, statusCode, latencyMicros);
+            if (transitions != null && StatusTable.state(previous) != state) {
+                transitions.publish(new Transition(this, StatusTable.state(previous), state, statusCode, latencyMicros,
+                                                   cause, System.currentTimeMillis()));
+            }
+            // A probe result is never stale, so its appearance is just its state
+            return StatusTable.appearance(previous) != state.ordinal();
         }
     }
 }
@@ -0,0 +1,167 @@
+package com.devops.panicribbon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves {@code /metrics} in the Prometheus text exposition format (0.0.4)
+ * from the JDK's built-in HTTP server.
+ * <p>
+ * Scrapes run one at a time on the server's dispatcher thread and nothing is
+ * computed between them. The {@link Source} only reads state the probe path
+ * already keeps in atomics, so a scrape never blocks a probe. Responses are
+ * gzipped when the scraper accepts it, as Prometheus does by default.
+ */
+class MetricsServer implements AutoCloseable {
+    /** Port to serve on; negative (the default) disables the endpoint. */
+    static final int DEFAULT_PORT = Integer.getInteger("panicribbon.metrics.port", -1);
+    static final String DEFAULT_BIND_ADDRESS = System.getProperty("panicribbon.metrics.bindAddress", "0.0.0.0");
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    /** Writes the current metrics; called once per scrape. */
+    interface Source {
+        void writeTo(Writer out);
+    }
+    
+    private final HttpServer server;
+    private final Source source;
+    private int lastLength = 4096;
+    
+    MetricsServer(InetSocketAddress address, Source source) throws IOException {
+        this.source = source;
+        this.server = HttpServer.create(address, 16);
+        server.createContext("/metrics", this::handle);
+        server.start();
+    }
+    
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body;
+            try {
+                Writer writer = new Writer(new StringBuilder(lastLength + lastLength / 8));
+                source.writeTo(writer);
+                lastLength = writer.length();
+                body = writer.toString().getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException e) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody(), 8192)) {
+                    out.write(body);
+                }
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+    
+    /**
+     * Appends exposition lines without intermediate objects:
+     * {@code out.sample("name").label("k", "v").value(1)}.
+     */
+    static final class Writer {
+        private final StringBuilder out;
+        private int labels;
+        
+        Writer(StringBuilder out) {
+            this.out = out;
+        }
+        
+        /** HELP and TYPE lines; all samples of a family must follow it directly. */
+        void family(String name, String type, String help) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+        
+        Writer sample(String name) {
+            out.append(name);
+            labels = 0;
+            return this;
+        }
+        
+        Writer label(String name, String value) {
+            out.append(labels++ == 0 ? '{' : ',').append(name).append("=\"");
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> out.append("\\\\");
+                    case '"' -> out.append("\\\"");
+                    case '\n' -> out.append("\\n");
+                    default -> out.append(c);
+                }
+            }
+            out.append('"');
+            return this;
+        }
+        
+        void value(long value) {
+            endLabels();
+            out.append(value).append('\n');
+        }
+        
+        void value(double value) {
+            endLabels();
+            if (Double.isNaN(value)) {
+                out.append("NaN");
+            } else if (Double.isInfinite(value)) {
+                out.append(value > 0 ? "+Inf" : "-Inf");
+            } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                out.append((long) value);
+            } else {
+                out.append(value);
+            }
+            out.append('\n');
+        }
+        
+        int length() {
+            return out.length();
+        }
+        
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+        
+        private void endLabels() {
+            if (labels > 0) {
+                out.append('}');
+            }
+            out.append(' ');
+        }
+    }
+}
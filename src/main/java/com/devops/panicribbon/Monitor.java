@@ -0,0 +1,716 @@
+package com.devops.panicribbon;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything except the window: loads services.json and applies later edits,
+ * schedules and runs probes, publishes their results to the status table,
+ * runs restart scripts, and writes the log, probe history and metrics.
+ * <p>
+ * The desktop ribbon runs one in-process; the headless {@link Daemon} runs one
+ * and serves its states to subscribed ribbons. Nothing here touches AWT, so
+ * the daemon never loads it. Daemons can split the probing of one
+ * services.json between them with {@link #shard}.
+ */
+class Monitor implements StatusSource {
+    private static final int POLL_INTERVAL_SECONDS = 10;
+    private static final String SERVICES_JSON = "services.json";
+    static final String LOG_FILE = "panic.log";
+    private static final String HISTORY_FILE = "history.dat";
+    private static final String STATUS_FILE = "status.dat";
+    static final long SNAPSHOT_INTERVAL_MILLIS = Long.getLong("panicribbon.snapshot.intervalMillis", 1_000L);
+    static final long METRICS_LOG_SECONDS = Long.getLong("panicribbon.log.metricsSeconds", 60L);
+    
+    /** Which probe results reach the log. */
+    enum ProbeLogging {
+        /** A line for every probe. */
+        ALL,
+        /** A line per state transition, and a summary every {@link #SUMMARY_MINUTES}. */
+        TRANSITIONS
+    }
+    
+    static final ProbeLogging PROBE_LOGGING = parseProbeLogging(System.getProperty("panicribbon.log.probes"));
+    static final long SUMMARY_MINUTES = Long.getLong("panicribbon.log.summaryMinutes", 10L);
+    
+    /** The {@code panicribbon.log.probes} setting, ignoring case; ALL (with a warning) if it is not one. */
+    static ProbeLogging parseProbeLogging(String value) {
+        if (value == null || value.isBlank()) {
+            return ProbeLogging.ALL;
+        }
+        for (ProbeLogging mode : ProbeLogging.values()) {
+            if (mode.name().equalsIgnoreCase(value.trim())) {
+                return mode;
+            }
+        }
+        System.err.println("Unknown panicribbon.log.probes value \"" + value + "\" (expected ALL or TRANSITIONS); logging all probes");
+        return ProbeLogging.ALL;
+    }
+    
+    private final ServiceRegistry registry = new ServiceRegistry(new StatusTable(1));
+    private final SingleFlight<Main.ServiceStatus, Void> probes = new SingleFlight<>();
+    private final TransitionStream transitions = new TransitionStream(TransitionStream.DEFAULT_CAPACITY, this::log);
+    private Listener listener;
+    private ConfigWatcher configWatcher;
+    private ScheduledExecutorService scheduler;
+    private TimingWheel pollTimer;
+    private PollScheduler pollScheduler;
+    private ProbeEngine probeEngine;
+    private TcpProbeEngine tcpProbeEngine;
+    private RestartOrchestrator restarts;
+    private AsyncLogger logger;
+    private HistoryStore history;
+    private MetricsServer metricsServer;
+    private ShardCoordinator shard;
+    private long savedVersion = -1;
+    private long summarizedTransitions;
+    private long summarizedProbes;
+    
+    /** Opens the log and the probe history; {@link #start} does the rest. */
+    Monitor() {
+        // Start the logger first so every later step can log without blocking
+        openLogger();
+        
+        // Open the probe history store
+        openHistory();
+    }
+    
+    /**
+     * Probes only this daemon's share of the services and takes the rest from
+     * the {@code peers}, the other daemons' status addresses. {@code self} is
+     * this daemon's status address as the peers list it. Call before {@link #start}.
+     */
+    void shard(String self, List<String> peers) {
+        shard = new ShardCoordinator(self, peers, registry::getStatuses, new ShardCoordinator.Listener() {
+            @Override
+            public void acquired(List<Main.ServiceStatus> statuses) {
+                Monitor.this.refresh(statuses);
+            }
+            
+            @Override
+            public void peerUpdated(Main.ServiceStatus status, long packed) {
+                applyPeerState(status, packed);
+            }
+        }, this::log, ShardCoordinator.DEFAULT_CHECK_MILLIS);
+        log("Sharding probes as " + self + " with " + peers);
+    }
+    
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        
+        // The HTTP client is built while services.json is parsed
+        CompletableFuture<ProbeEngine> engine =
+            CompletableFuture.supplyAsync(ProbeEngine::new, task -> Thread.ofVirtual().name("panic-init").start(task));
+        
+        // Load services configuration, showing each service's last-known state until it is probed
+        loadServices();
+        restoreSnapshot();
+        
+        // Initialize the shared probe engines
+        probeEngine = engine.join();
+        openTcpProbeEngine();
+        
+        // Restart scripts: one per service at a time, capped, with a cooldown and a timeout
+        restarts = new RestartOrchestrator(Paths.get(System.getProperty("user.dir")), this::log,
+            new RestartOrchestrator.Listener() {
+                @Override
+                public void restartStarted(Main.ServiceStatus status) {
+                    Monitor.this.restartStarted(status);
+                }
+                
+                @Override
+                public void restartFinished(Main.ServiceStatus status, int exitCode) {
+                    Monitor.this.restartFinished(status, exitCode);
+                }
+            });
+        
+        // Log transitions instead of every probe if configured; must subscribe before the first probe
+        if (PROBE_LOGGING == ProbeLogging.TRANSITIONS) {
+            startTransitionLog();
+        }
+        
+        // Start health check polling
+        startHealthChecks();
+        
+        // Keep the last-known states for the next start
+        scheduler.scheduleWithFixedDelay(this::saveSnapshot, SNAPSHOT_INTERVAL_MILLIS, SNAPSHOT_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS);
+        
+        // Apply later edits of services.json without a restart
+        startConfigWatcher();
+        
+        // Serve /metrics if a port is configured
+        startMetricsServer();
+        
+        // Meet the other shards; until then this daemon probes everything
+        if (shard != null) {
+            shard.start();
+        }
+    }
+    
+    @Override
+    public List<Main.ServiceStatus> getStatuses() {
+        return registry.getStatuses();
+    }
+    
+    /** State transitions of the services this monitor probes, for subscribers that react to them. */
+    TransitionStream getTransitions() {
+        return transitions;
+    }
+    
+    StatusTable getTable() {
+        return registry.getTable();
+    }
+    
+    @Override
+    public HistoryStore getHistory() {
+        return history;
+    }
+    
+    private void loadServices() {
+        Path servicesPath = Paths.get(SERVICES_JSON);
+        
+        if (!Files.exists(servicesPath)) {
+            log("services.json not found, creating default configuration");
+            createDefaultServicesJson();
+        }
+        
+        List<Main.Service> loaded;
+        try {
+            loaded = readServices(servicesPath);
+            log("Loaded " + loaded.size() + " service(s)");
+        } catch (Exception e) {
+            log("Error loading services.json: " + e.getMessage());
+            e.printStackTrace();
+            loaded = new ArrayList<>();
+        }
+        registry.update(withFallback(loaded));
+        if (shard != null) {
+            shard.servicesChanged();
+        }
+        listener.servicesChanged();
+    }
+    
+    /**
+     * Applies an edited services.json while running. Only services that were
+     * added, removed or changed are touched; everything else keeps its state
+     * and polling schedule. A file that fails to parse leaves the running set
+     * as it is.
+     */
+    private void reloadServices() {
+        List<Main.Service> loaded;
+        try {
+            loaded = readServices(Paths.get(SERVICES_JSON));
+        } catch (Exception e) {
+            log("Error reloading services.json: " + e.getMessage() + " (keeping current services)");
+            return;
+        }
+        List<Main.Service> services = withFallback(loaded);
+        ServiceRegistry.Changes changes = registry.update(services);
+        if (shard != null) {
+            shard.servicesChanged();
+        }
+        probeEngine.retainClients(services);
+        
+        for (Main.ServiceStatus status : changes.removed) {
+            pollScheduler.remove(status);
+        }
+        for (Main.ServiceStatus status : changes.replaced) {
+            pollScheduler.remove(status);
+        }
+        List<Main.ServiceStatus> started = new ArrayList<>(changes.added);
+        started.addAll(changes.updated);
+        for (int i = 0; i < started.size(); i++) {
+            Main.ServiceStatus status = started.get(i);
+            pollScheduler.add(status, PollScheduler.phaseMillis(i, started.size(), pollScheduler.intervalOf(status)));
+        }
+        
+        // The order may have changed even with no other changes
+        listener.servicesChanged();
+        log("Reloaded services.json: " + changes);
+    }
+    
+    /** Parses services.json, skipping (and logging) entries that are invalid. */
+    private List<Main.Service> readServices(Path servicesPath) throws IOException {
+        List<Main.ServiceConfig> serviceConfigs;
+        try (Reader reader = new InputStreamReader(Files.newInputStream(servicesPath), StandardCharsets.UTF_8)) {
+            // Streamed: generated inventories can be tens of megabytes
+            serviceConfigs = new Main.SimpleJsonParser(reader).parseServices();
+        }
+        List<Main.Service> loaded = new ArrayList<>(serviceConfigs.size());
+        for (Main.ServiceConfig config : serviceConfigs) {
+            Main.Service service = createService(config);
+            if (service != null) {
+                loaded.add(service);
+            }
+        }
+        return loaded;
+    }
+    
+    private static List<Main.Service> withFallback(List<Main.Service> loaded) {
+        if (loaded.isEmpty()) {
+            // Fallback: create a dummy service
+            return List.of(new Main.Service("Localhost", "http://localhost:8080/health", "echo 'No restart script'"));
+        }
+        return loaded;
+    }
+    
+    private void startConfigWatcher() {
+        try {
+            configWatcher = new ConfigWatcher(Paths.get(SERVICES_JSON), this::reloadServices, this::log);
+        } catch (IOException e) {
+            log("Error watching services.json: " + e.getMessage() + " (restart to apply changes)");
+        }
+    }
+    
+    private Main.Service createService(Main.ServiceConfig config) {
+        long intervalMillis = Math.round(config.intervalSeconds * 1000);
+        if (config.type == null || config.type.equalsIgnoreCase("http")) {
+            return new Main.Service(config.name, config.healthCheckUrl, config.restartScriptPath, intervalMillis,
+                probeOptions(config));
+        }
+        if (config.type.equalsIgnoreCase("tcp")) {
+            if (config.host == null || config.host.isBlank() || config.port < 1 || config.port > 65535) {
+                log("Skipping TCP service " + config.name + ": needs \"host\" and a \"port\" between 1 and 65535");
+                return null;
+            }
+            return Main.Service.tcp(config.name, config.host, config.port, config.restartScriptPath, intervalMillis,
+                probeOptions(config));
+        }
+        log("Skipping service " + config.name + ": unknown probe type \"" + config.type + "\" (expected http or tcp)");
+        return null;
+    }
+    
+    private ProbeOptions probeOptions(Main.ServiceConfig config) {
+        try {
+            return ProbeOptions.of(config.method, config.httpVersion, config.connectTimeoutSeconds, config.timeoutSeconds);
+        } catch (IllegalArgumentException e) {
+            log("Invalid probe options for " + config.name + ": " + e.getMessage() + " (using defaults)");
+            return ProbeOptions.DEFAULT;
+        }
+    }
+    
+    private void createDefaultServicesJson() {
+        try {
+            String defaultJson = "{\n" +
+                "  \"services\": [\n" +
+                "    {\n" +
+                "      \"name\": \"Localhost\",\n" +
+                "      \"healthCheckUrl\": \"http://localhost:8080/health\",\n" +
+                "      \"restartScriptPath\": \"echo 'No restart script configured'\"\n" +
+                "    }\n" +
+                "  ]\n" +
+                "}";
+            
+            Files.writeString(Paths.get(SERVICES_JSON), defaultJson);
+            log("Created default services.json");
+        } catch (Exception e) {
+            log("Error creating default services.json: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    @Override
+    public void restart(Main.ServiceStatus status) {
+        String name = status.getService().getName();
+        switch (restarts.restart(status)) {
+            case ALREADY_RUNNING -> log("Restart already in progress for: " + name);
+            case COOLING_DOWN -> log("Restart of " + name + " skipped: cooling down for another " +
+                                     (restarts.cooldownRemainingMillis(status) + 999) / 1000 + "s");
+            default -> { }
+        }
+    }
+    
+    private void restartStarted(Main.ServiceStatus status) {
+        status.getMetrics().recordRestart();
+        publishState(status, StatusTable.State.RESTARTING, -1, -1, null);
+    }
+    
+    private void restartFinished(Main.ServiceStatus status, int exitCode) {
+        status.getMetrics().recordRestartExit(exitCode);
+        // Show the outcome as soon as the service answers rather than at its next poll
+        checkServiceHealth(status);
+    }
+    
+    private void startHealthChecks() {
+        scheduler = Executors.newScheduledThreadPool(1);
+        
+        // Each service polls on its own interval, backing off while it stays down.
+        // One wheel thread tracks every deadline and hands due probes to the probe executor.
+        pollTimer = new TimingWheel(probeEngine.executor(), "panic-poll-timer");
+        pollScheduler = new PollScheduler(pollTimer,
+            status -> owns(status)
+                ? checkServiceHealth(status).thenApply(v -> status.isHealthy())
+                : CompletableFuture.completedFuture(status.isHealthy()),
+            TimeUnit.SECONDS.toMillis(POLL_INTERVAL_SECONDS));
+        pollScheduler.start(registry.getStatuses());
+        
+        scheduler.scheduleAtFixedRate(() -> log("Scheduler: " + pollScheduler.describeMetrics()),
+            METRICS_LOG_SECONDS, METRICS_LOG_SECONDS, TimeUnit.SECONDS);
+        if (PROBE_LOGGING == ProbeLogging.TRANSITIONS) {
+            scheduler.scheduleAtFixedRate(this::logSummary, SUMMARY_MINUTES, SUMMARY_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+    
+    /** Writes one line per transition, batched off the probe threads. */
+    private void startTransitionLog() {
+        transitions.subscribe("log", new TransitionStream.Listener() {
+            @Override
+            public void transitions(List<Transition> batch) {
+                for (Transition transition : batch) {
+                    log("Transition: " + transition);
+                }
+            }
+            
+            @Override
+            public void missed(long count) {
+                log("Transition log fell behind: " + count + " transition(s) not logged");
+            }
+        });
+    }
+    
+    /** Counts services by state, with the transitions and probes since the last summary. */
+    private void logSummary() {
+        List<Main.ServiceStatus> statuses = registry.getStatuses();
+        int[] counts = new int[StatusTable.State.values().length];
+        for (Main.ServiceStatus status : statuses) {
+            counts[StatusTable.state(status.snapshot()).ordinal()]++;
+        }
+        StringBuilder summary = new StringBuilder("Summary: ").append(statuses.size()).append(" service(s)");
+        String separator = ": ";
+        for (StatusTable.State state : new StatusTable.State[] {
+                StatusTable.State.UP, StatusTable.State.SLOW, StatusTable.State.DOWN,
+                StatusTable.State.RESTARTING, StatusTable.State.UNKNOWN}) {
+            if (counts[state.ordinal()] > 0) {
+                summary.append(separator).append(counts[state.ordinal()]).append(' ').append(state.name().toLowerCase());
+                separator = ", ";
+            }
+        }
+        long published = transitions.getPublished();
+        long started = pollScheduler.getProbesStarted();
+        summary.append("; ").append(published - summarizedTransitions).append(" transition(s) in ")
+               .append(started - summarizedProbes).append(" probe(s) over the last ").append(SUMMARY_MINUTES).append(" min");
+        summarizedTransitions = published;
+        summarizedProbes = started;
+        log(summary.toString());
+    }
+    
+    /** Probes the given services right away, off the caller's thread; another shard's services are asked of it. */
+    @Override
+    public void refresh(List<Main.ServiceStatus> statuses) {
+        List<Main.ServiceStatus> local = shard == null ? statuses : shard.forwardRefresh(statuses);
+        probeEngine.executor().execute(() -> {
+            for (Main.ServiceStatus status : local) {
+                checkServiceHealth(status);
+            }
+        });
+    }
+    
+    /**
+     * Probes a service and publishes the result. Requests for a service whose
+     * probe is still in flight (a manual refresh during a scheduled probe, or a
+     * restart finishing) share that probe, so a slow backend never has more
+     * than one probe outstanding.
+     */
+    private CompletableFuture<Void> checkServiceHealth(Main.ServiceStatus status) {
+        return probes.run(status, () -> probe(status));
+    }
+    
+    private CompletableFuture<Void> probe(Main.ServiceStatus status) {
+        Main.Service service = status.getService();
+        // Cut a hung service off soon after it is clearly slower than usual, not at the configured timeout
+        Duration deadline = status.getDeadlines().deadline(service.getTimeout());
+        CompletableFuture<ProbeEngine.ProbeResult> probe = service.getType() == Main.Service.Type.TCP
+            ? probeTcp(service, deadline)
+            : probeEngine.probe(service, deadline);
+        return probe
+            .thenAccept(result -> applyProbeResult(status, result, deadline))
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (!(cause instanceof CancellationException)) { // cancelled on shutdown
+                    log("Error applying probe result for " + service.getName() + ": " + cause);
+                }
+                return null;
+            });
+    }
+    
+    private void applyProbeResult(Main.ServiceStatus status, ProbeEngine.ProbeResult result, Duration deadline) {
+        if (status.isRetired()) {
+            return; // removed or redefined by a reload while the probe was in flight
+        }
+        recordHistory(status, result);
+        
+        if (result.getError() == null) {
+            status.recordLatency(result.getLatencyNanos());
+            long latency = result.getLatencyMillis();
+            boolean healthy = result.isHealthy();
+            boolean slow = status.getDeadlines().record(result.getLatencyNanos() / 1_000L);
+            StatusTable.State state = !healthy ? StatusTable.State.DOWN
+                : slow ? StatusTable.State.SLOW : StatusTable.State.UP;
+            publishState(status, state, result.getStatusCode(), result.getLatencyNanos() / 1_000L, null);
+            
+            if (PROBE_LOGGING == ProbeLogging.ALL) {
+                log("Health check: " + status.getService().getName() +
+                    " - " + (!healthy ? "UNHEALTHY" : slow ? "SLOW" : "HEALTHY") +
+                    " (" + (result.getStatusCode() == 0 ? "connected" : result.getStatusCode()) + ") - " + latency + "ms");
+            }
+        } else if (result.isTimeout()) {
+            status.getMetrics().recordError(result.getError());
+            status.getDeadlines().recordTimeout();
+            publishState(status, StatusTable.State.DOWN, -1, -1, result.getError());
+            if (PROBE_LOGGING == ProbeLogging.ALL) {
+                log("Health check timeout: " + status.getService().getName() + " (after " + deadline.toMillis() + "ms)");
+            }
+        } else {
+            status.getMetrics().recordError(result.getError());
+            publishState(status, StatusTable.State.DOWN, -1, -1, result.getError());
+            if (PROBE_LOGGING == ProbeLogging.ALL) {
+                log("Health check error: " + status.getService().getName() + " - " + result.getError().getMessage());
+            }
+        }
+    }
+    
+    private void publishState(Main.ServiceStatus status, StatusTable.State state, int statusCode, long latencyMicros,
+                              Throwable cause) {
+        // A restarting segment stays so until the restart finishes; in ALL mode the results are still logged
+        if (state != StatusTable.State.RESTARTING && restarts != null && restarts.isRestarting(status)) {
+            return;
+        }
+        // Only a change of state is visible; the renderer coalesces frames across services
+        if (status.update(state, statusCode, latencyMicros, cause, transitions)) {
+            listener.stateChanged(status);
+        }
+    }
+    
+    /** True unless another shard probes the service. */
+    private boolean owns(Main.ServiceStatus status) {
+        return shard == null || shard.owns(status);
+    }
+    
+    /** Copies the state another shard published for a service it owns. */
+    private void applyPeerState(Main.ServiceStatus status, long packed) {
+        if (status.isRetired() || (restarts != null && restarts.isRestarting(status))) {
+            return;
+        }
+        long previous = registry.getTable().set(status.getIndex(), packed);
+        if (StatusTable.appearance(previous) != StatusTable.appearance(packed) && listener != null) {
+            listener.stateChanged(status);
+        }
+    }
+    
+    private void restoreSnapshot() {
+        try {
+            StatusSnapshot snapshot = StatusSnapshot.read(Paths.get(STATUS_FILE));
+            if (snapshot == null) {
+                return;
+            }
+            List<Main.ServiceStatus> restored = snapshot.restore(registry.getStatuses(), registry.getTable());
+            for (Main.ServiceStatus status : restored) {
+                listener.stateChanged(status);
+            }
+            log("Restored last-known state of " + restored.size() + " of " + registry.getStatuses().size() +
+                " service(s) from " + STATUS_FILE + ", saved " +
+                Duration.ofMillis(System.currentTimeMillis() - snapshot.savedAtMillis).toSeconds() + "s ago");
+        } catch (IOException | RuntimeException e) {
+            log("Error reading " + STATUS_FILE + ": " + e.getMessage() + " (starting without last-known states)");
+        }
+    }
+    
+    /** Rewrites status.dat if any service changed state since the last save. */
+    private synchronized void saveSnapshot() {
+        long version = registry.getTable().version();
+        if (version == savedVersion) {
+            return;
+        }
+        try {
+            StatusSnapshot.save(Paths.get(STATUS_FILE), registry.getStatuses(), System.currentTimeMillis());
+            savedVersion = version;
+        } catch (IOException | RuntimeException e) {
+            log("Error saving " + STATUS_FILE + ": " + e.getMessage());
+        }
+    }
+    
+    private void recordHistory(Main.ServiceStatus status, ProbeEngine.ProbeResult result) {
+        if (history == null) {
+            return;
+        }
+        HistoryStore.Outcome outcome;
+        if (result.getError() == null) {
+            outcome = result.isHealthy() ? HistoryStore.Outcome.UP : HistoryStore.Outcome.DOWN;
+        } else {
+            outcome = result.isTimeout() ? HistoryStore.Outcome.TIMEOUT : HistoryStore.Outcome.ERROR;
+        }
+        long latencyMicros = result.getError() == null ? result.getLatencyNanos() / 1_000L : -1;
+        history.append(System.currentTimeMillis(), status.getHistoryId(), result.getStatusCode(), latencyMicros, outcome);
+    }
+    
+    /** Stops polling and closes everything this opened; the log is closed last. */
+    @Override
+    public void shutdown() {
+        log("Shutting down monitor");
+        if (shard != null) {
+            shard.close();
+        }
+        if (metricsServer != null) {
+            metricsServer.close();
+        }
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
+        if (restarts != null) {
+            restarts.shutdown();
+        }
+        if (pollScheduler != null) {
+            pollScheduler.shutdown();
+        }
+        if (pollTimer != null) {
+            pollTimer.shutdown();
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        if (tcpProbeEngine != null) {
+            tcpProbeEngine.shutdown();
+        }
+        if (probeEngine != null) {
+            probeEngine.shutdown();
+        }
+        transitions.close();
+        if (listener != null) {
+            saveSnapshot();
+        }
+        if (history != null) {
+            history.close();
+        }
+        if (logger != null) {
+            logger.close();
+        }
+    }
+    
+    private void openLogger() {
+        try {
+            logger = new AsyncLogger(Paths.get(LOG_FILE));
+        } catch (IOException e) {
+            System.err.println("Error opening log file: " + e.getMessage() + " (logging to console only)");
+        }
+    }
+    
+    private void openTcpProbeEngine() {
+        try {
+            tcpProbeEngine = new TcpProbeEngine(probeEngine.executor(), this::log);
+        } catch (IOException e) {
+            log("Error opening TCP probe selector: " + e.getMessage() + " (TCP services will report errors)");
+        }
+    }
+    
+    private CompletableFuture<ProbeEngine.ProbeResult> probeTcp(Main.Service service, Duration deadline) {
+        if (tcpProbeEngine == null) {
+            return CompletableFuture.completedFuture(
+                ProbeEngine.ProbeResult.failure(new IOException("TCP probing unavailable"), 0));
+        }
+        return tcpProbeEngine.probe(service, deadline);
+    }
+    
+    private void openHistory() {
+        try {
+            history = HistoryStore.open(Paths.get(HISTORY_FILE));
+        } catch (IOException e) {
+            log("Error opening history store: " + e.getMessage() + " (continuing without history)");
+        }
+    }
+    
+    private void startMetricsServer() {
+        if (MetricsServer.DEFAULT_PORT < 0) {
+            return;
+        }
+        try {
+            metricsServer = new MetricsServer(
+                new InetSocketAddress(MetricsServer.DEFAULT_BIND_ADDRESS, MetricsServer.DEFAULT_PORT), this::writeMetrics);
+            log("Serving metrics on port " + metricsServer.getPort() + " at /metrics");
+        } catch (IOException e) {
+            log("Error starting metrics endpoint: " + e.getMessage() + " (continuing without metrics)");
+        }
+    }
+    
+    private void writeMetrics(MetricsServer.Writer out) {
+        ServiceMetrics.writeTo(out, registry.getStatuses());
+        
+        out.family("panicribbon_probes_started_total", "counter", "Probes started by the poll scheduler");
+        out.sample("panicribbon_probes_started_total").value(pollScheduler.getProbesStarted());
+        
+        LatencyHistogram.Snapshot drift = pollScheduler.getDrift();
+        out.family("panicribbon_scheduler_lag_seconds", "gauge",
+            "How late probes started compared to when they were due, over the last five minutes");
+        for (double quantile : new double[] {50, 90, 99, 100}) {
+            long micros = quantile == 100 ? drift.getMax() : drift.percentile(quantile);
+            out.sample("panicribbon_scheduler_lag_seconds").label("quantile", Double.toString(quantile / 100))
+               .value(drift.getCount() == 0 ? Double.NaN : micros / 1e6);
+        }
+        
+        if (shard != null) {
+            out.family("panicribbon_shard_members", "gauge", "Daemons sharing the probing, this one included");
+            out.sample("panicribbon_shard_members").value(shard.getMembers().size());
+            out.family("panicribbon_shard_owned_services", "gauge", "Services this daemon probes itself");
+            out.sample("panicribbon_shard_owned_services").value(shard.getOwned());
+        }
+        
+        out.family("panicribbon_probes_in_flight", "gauge", "Probes currently outstanding");
+        out.sample("panicribbon_probes_in_flight").label("engine", "http").value(probeEngine.getInFlight());
+        if (tcpProbeEngine != null) {
+            out.sample("panicribbon_probes_in_flight").label("engine", "tcp").value(tcpProbeEngine.getInFlight());
+        }
+        out.family("panicribbon_restarts_in_flight", "gauge", "Restarts queued or running");
+        out.sample("panicribbon_restarts_in_flight").value(restarts.getInFlight());
+        out.family("panicribbon_probes_coalesced_total", "counter",
+            "Probe requests that joined a probe of the same service already in flight");
+        out.sample("panicribbon_probes_coalesced_total").value(probes.getJoined());
+        out.family("panicribbon_probes_queued", "gauge", "HTTP probes waiting for an in-flight slot");
+        out.sample("panicribbon_probes_queued").value(probeEngine.getQueued());
+        
+        out.family("panicribbon_transitions_total", "counter", "State transitions of the services probed here");
+        out.sample("panicribbon_transitions_total").value(transitions.getPublished());
+        out.family("panicribbon_transition_listener_missed_total", "counter",
+            "Transitions a subscriber lost by falling a whole ring behind");
+        for (TransitionStream.Subscription subscription : transitions.getSubscriptions()) {
+            out.sample("panicribbon_transition_listener_missed_total").label("listener", subscription.name)
+               .value(subscription.getMissed());
+        }
+        
+        if (logger != null) {
+            out.family("panicribbon_log_queue_depth", "gauge", "Lines waiting to be written to panic.log");
+            out.sample("panicribbon_log_queue_depth").value(logger.getQueueDepth());
+            out.family("panicribbon_log_queue_capacity", "gauge", "Size of the log queue");
+            out.sample("panicribbon_log_queue_capacity").value(logger.getCapacity());
+            out.family("panicribbon_log_dropped_total", "counter", "Log lines dropped because the queue was full");
+            out.sample("panicribbon_log_dropped_total").value(logger.getDropped());
+        }
+    }
+    
+    @Override
+    public void log(String message) {
+        if (logger != null) {
+            logger.log(message);
+            return;
+        }
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        System.out.println("[" + timestamp + "] " + message);
+    }
+}
@@ -0,0 +1,254 @@
+package com.devops.panicribbon;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-service probe scheduling.
+ * <p>
+ * Every service runs its own self-rescheduling loop: the next probe is
+ * planned only once the previous one completed, so a service is never probed
+ * twice at the same time. The delay depends on the outcome:
+ * <ul>
+ *   <li>healthy: the service's interval</li>
+ *   <li>first failure: a quick confirmation recheck</li>
+ *   <li>repeated failures: exponential backoff from the interval, capped</li>
+ * </ul>
+ * Every delay is jittered, and start times are phased evenly across each
+ * interval so services sharing a gateway are not probed in bursts.
+ * <p>
+ * Timers live in a {@link TimingWheel}, so adding, rescheduling and removing
+ * a service are O(1) however many services there are. Drift (how late a probe
+ * fires compared to when it was due) and probe rate are tracked over a
+ * rolling five-minute window.
+ */
+class PollScheduler {
+    static final long DEFAULT_RECHECK_MILLIS = Long.getLong("panicribbon.poll.recheckMillis", 2000L);
+    static final long DEFAULT_MAX_BACKOFF_MILLIS =
+        TimeUnit.SECONDS.toMillis(Long.getLong("panicribbon.poll.maxBackoffSeconds", 300L));
+    static final double DEFAULT_JITTER =
+        parseDouble("panicribbon.poll.jitter", System.getProperty("panicribbon.poll.jitter"), 0.1);
+    
+    /** A numeric setting; the fallback (with a warning) if it is not a number. */
+    static double parseDouble(String property, String value, double fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            double number = Double.parseDouble(value.trim());
+            if (Double.isFinite(number)) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.err.println("Unknown " + property + " value \"" + value + "\" (expected a number); using " + fallback);
+        return fallback;
+    }
+    
+    /** Starts one probe and completes with whether the service was healthy. */
+    interface Prober {
+        CompletableFuture<Boolean> probe(Main.ServiceStatus status);
+    }
+    
+    private final TimingWheel timer;
+    private final Prober prober;
+    private final long defaultIntervalMillis;
+    private final long recheckMillis;
+    private final long maxBackoffMillis;
+    private final double jitter;
+    private final Map<Main.ServiceStatus, Target> targets = new ConcurrentHashMap<>();
+    // Every service records here, so a slot can see far more than 16-bit counts hold
+    private final LatencyHistogram drift = LatencyHistogram.wide(5, TimeUnit.MINUTES, 5);
+    private final LongAdder probesStarted = new LongAdder();
+    // Reference points for the probe rate; see getProbeRate
+    private long rateFromNanos = System.nanoTime();
+    private long rateFromCount;
+    private long rateNextNanos = rateFromNanos;
+    private long rateNextCount;
+    private volatile boolean running = true;
+    
+    PollScheduler(TimingWheel timer, Prober prober, long defaultIntervalMillis) {
+        this(timer, prober, defaultIntervalMillis, DEFAULT_RECHECK_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS, DEFAULT_JITTER);
+    }
+    
+    PollScheduler(TimingWheel timer, Prober prober, long defaultIntervalMillis,
+                  long recheckMillis, long maxBackoffMillis, double jitter) {
+        this.timer = timer;
+        this.prober = prober;
+        this.defaultIntervalMillis = defaultIntervalMillis;
+        this.recheckMillis = recheckMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.jitter = Math.max(0, Math.min(0.5, jitter));
+    }
+    
+    /** Schedules all services, phased evenly across their intervals. */
+    void start(List<Main.ServiceStatus> statuses) {
+        int count = statuses.size();
+        for (int i = 0; i < count; i++) {
+            Main.ServiceStatus status = statuses.get(i);
+            add(status, phaseMillis(i, count, intervalOf(status)));
+        }
+    }
+    
+    /** Starts polling one service after the given delay. Returns false if it is already scheduled. */
+    boolean add(Main.ServiceStatus status, long initialDelayMillis) {
+        Target target = new Target(status, intervalOf(status));
+        if (targets.putIfAbsent(status, target) != null) {
+            return false;
+        }
+        schedule(target, initialDelayMillis);
+        return true;
+    }
+    
+    /** Stops polling a service; an in-flight probe is allowed to finish. */
+    boolean remove(Main.ServiceStatus status) {
+        Target target = targets.remove(status);
+        if (target == null) {
+            return false;
+        }
+        target.cancelled = true;
+        TimingWheel.Timeout timeout = target.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        return true;
+    }
+    
+    void shutdown() {
+        running = false;
+        for (Target target : targets.values()) {
+            TimingWheel.Timeout timeout = target.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+        targets.clear();
+    }
+    
+    int getTargetCount() {
+        return targets.size();
+    }
+    
+    long getProbesStarted() {
+        return probesStarted.sum();
+    }
+    
+    /** How late probes fired relative to their due time, in microseconds. */
+    LatencyHistogram.Snapshot getDrift() {
+        return drift.snapshot();
+    }
+    
+    /**
+     * Probes started per second, measured over the last one to two drift
+     * windows (or since start): a reference point is moved up at most once a
+     * window, however often this is called.
+     */
+    synchronized double getProbeRate() {
+        long now = System.nanoTime();
+        long count = probesStarted.sum();
+        if (now - rateNextNanos >= TimeUnit.MILLISECONDS.toNanos(drift.getWindowMillis())) {
+            rateFromNanos = rateNextNanos;
+            rateFromCount = rateNextCount;
+            rateNextNanos = now;
+            rateNextCount = count;
+        }
+        long elapsed = now - rateFromNanos;
+        return elapsed <= 0 ? 0 : (count - rateFromCount) * 1e9 / elapsed;
+    }
+    
+    String describeMetrics() {
+        return targets.size() + " service(s), " + String.format("%.2f", getProbeRate()) +
+               " probes/s, drift " + getDrift().formatPercentiles();
+    }
+    
+    long intervalOf(Main.ServiceStatus status) {
+        long interval = status.getService().getIntervalMillis();
+        return interval > 0 ? interval : defaultIntervalMillis;
+    }
+    
+    /** Start offset of the {@code index}-th of {@code count} services. */
+    static long phaseMillis(int index, int count, long intervalMillis) {
+        return count <= 0 ? 0 : intervalMillis * index / count;
+    }
+    
+    /**
+     * Delay before the next probe, before jitter. {@code failures} counts
+     * consecutive failed probes including the one just completed.
+     */
+    static long backoffMillis(long intervalMillis, int failures, long recheckMillis, long maxBackoffMillis) {
+        if (failures <= 0) {
+            return intervalMillis;
+        }
+        if (failures == 1) {
+            return Math.min(intervalMillis, recheckMillis);
+        }
+        long cap = Math.max(intervalMillis, maxBackoffMillis);
+        int shift = Math.min(failures - 2, 30);
+        long delay = intervalMillis << shift;
+        return delay <= 0 || delay > cap ? cap : delay;
+    }
+    
+    long jittered(long delayMillis) {
+        if (jitter == 0 || delayMillis <= 0) {
+            return delayMillis;
+        }
+        double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.round(delayMillis * factor);
+    }
+    
+    private void schedule(Target target, long delayMillis) {
+        if (!running || target.cancelled) {
+            return;
+        }
+        target.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        try {
+            target.timeout = timer.schedule(() -> fire(target), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // timer shut down
+        }
+    }
+    
+    private void fire(Target target) {
+        if (!running || target.cancelled) {
+            return;
+        }
+        long lateMicros = (System.nanoTime() - target.dueNanos) / 1_000L;
+        drift.record(Math.max(0, lateMicros), System.currentTimeMillis());
+        probesStarted.increment();
+        
+        CompletableFuture<Boolean> probe;
+        try {
+            probe = prober.probe(target.status);
+        } catch (RuntimeException e) {
+            probe = CompletableFuture.completedFuture(false);
+        }
+        probe.whenComplete((healthy, error) -> schedule(target, nextDelay(target, error == null && Boolean.TRUE.equals(healthy))));
+    }
+    
+    private long nextDelay(Target target, boolean healthy) {
+        // Probes of one target never overlap, so its counter has a single writer at a time
+        target.failures = healthy ? 0 : target.failures + 1;
+        return jittered(backoffMillis(target.intervalMillis, target.failures, recheckMillis, maxBackoffMillis));
+    }
+    
+    private static final class Target {
+        final Main.ServiceStatus status;
+        final long intervalMillis;
+        volatile boolean cancelled;
+        volatile long dueNanos;
+        volatile int failures;
+        volatile TimingWheel.Timeout timeout;
+        
+        Target(Main.ServiceStatus status, long intervalMillis) {
+            this.status = status;
+            this.intervalMillis = intervalMillis;
+        }
+    }
+}
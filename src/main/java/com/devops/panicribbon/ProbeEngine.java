@@ -0,0 +1,288 @@
+package com.devops.panicribbon;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking health probe engine built on {@link HttpClient#sendAsync}.
+ * <p>
+ * All probes share one executor and one {@link HttpClient}. A global in-flight
+ * limit caps the number of outstanding requests; probes submitted beyond the
+ * limit wait in a queue and are started as earlier probes complete, so the
+ * caller never blocks.
+ * <p>
+ * Probes only look at the status code: bodies are discarded as they arrive,
+ * never buffered. Idle connections are kept in the client's pool for longer
+ * than the poll interval so steady-state probes reuse them instead of
+ * reconnecting. Services with their own connect timeout get a client of their
+ * own (one per distinct timeout) that shares the same executor; clients for
+ * timeouts no service uses any more are closed by {@link #retainClients}.
+ */
+class ProbeEngine {
+    static final int DEFAULT_MAX_IN_FLIGHT = Integer.getInteger("panicribbon.probe.maxInFlight", 256);
+    static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+    static final long KEEP_ALIVE_SECONDS = Long.getLong("panicribbon.probe.keepAliveSeconds", 120L);
+    
+    static {
+        // Read once by the JDK client's connection pool; must be set before the first client exists
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(KEEP_ALIVE_SECONDS));
+        }
+    }
+    
+    private final int maxInFlight;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final Map<Duration, HttpClient> clientsByConnectTimeout = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<PendingProbe> pending = new ConcurrentLinkedQueue<>();
+    private final Set<CompletableFuture<?>> active = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+    
+    ProbeEngine() {
+        this(DEFAULT_MAX_IN_FLIGHT);
+    }
+    
+    ProbeEngine(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.maxInFlight = maxInFlight;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.httpClient = newClient(null);
+    }
+    
+    private HttpClient newClient(Duration connectTimeout) {
+        HttpClient.Builder builder = HttpClient.newBuilder().executor(executor);
+        if (connectTimeout != null) {
+            builder.connectTimeout(connectTimeout);
+        }
+        return builder.build();
+    }
+    
+    /** Client for the given options; connect timeouts are client-wide in the JDK client. */
+    HttpClient clientFor(ProbeOptions options) {
+        Duration connectTimeout = options.getConnectTimeout();
+        if (connectTimeout == null) {
+            return httpClient;
+        }
+        return clientsByConnectTimeout.computeIfAbsent(connectTimeout, this::newClient);
+    }
+    
+    /**
+     * Closes the clients of connect timeouts none of the given services uses,
+     * after a reload. Requests already sent on them are allowed to finish.
+     */
+    void retainClients(Collection<Main.Service> services) {
+        Set<Duration> inUse = new HashSet<>();
+        for (Main.Service service : services) {
+            inUse.add(service.getProbeOptions().getConnectTimeout());
+        }
+        Iterator<Map.Entry<Duration, HttpClient>> clients = clientsByConnectTimeout.entrySet().iterator();
+        while (clients.hasNext()) {
+            Map.Entry<Duration, HttpClient> entry = clients.next();
+            if (!inUse.contains(entry.getKey())) {
+                clients.remove();
+                entry.getValue().shutdown();
+            }
+        }
+    }
+    
+    int getClientCount() {
+        return 1 + clientsByConnectTimeout.size();
+    }
+    
+    /** Shared executor for work that accompanies probing (callbacks, helpers). */
+    ExecutorService executor() {
+        return executor;
+    }
+    
+    int getInFlight() {
+        return inFlight.get();
+    }
+    
+    int getQueued() {
+        return pending.size();
+    }
+    
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+    
+    /**
+     * Queues a probe of the given service. The returned future always completes
+     * normally unless the engine is shut down; failures are reported through
+     * {@link ProbeResult#getError()}.
+     */
+    CompletableFuture<ProbeResult> probe(Main.Service service) {
+        return probe(service, service.getTimeout());
+    }
+    
+    /** Probes with the given deadline for the whole request instead of the configured timeout. */
+    CompletableFuture<ProbeResult> probe(Main.Service service, Duration timeout) {
+        CompletableFuture<ProbeResult> result = new CompletableFuture<>();
+        if (closed) {
+            result.cancel(false);
+            return result;
+        }
+        pending.add(new PendingProbe(service, timeout, result));
+        drain();
+        return result;
+    }
+    
+    private void drain() {
+        while (!pending.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            PendingProbe next = pending.poll();
+            if (next == null) {
+                // Lost the race for the last queued probe; hand the permit back
+                // and re-check in case something was queued meanwhile.
+                inFlight.decrementAndGet();
+                continue;
+            }
+            launch(next);
+        }
+    }
+    
+    private void launch(PendingProbe probe) {
+        if (closed) {
+            probe.result.cancel(false);
+            inFlight.decrementAndGet();
+            return;
+        }
+        
+        long startNanos = System.nanoTime();
+        CompletableFuture<HttpResponse<Void>> exchange;
+        try {
+            ProbeOptions options = probe.service.getProbeOptions();
+            HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(probe.service.getHealthCheckUrl()))
+                .timeout(probe.timeout)
+                .method(options.getMethod(), HttpRequest.BodyPublishers.noBody());
+            if (options.getVersion() != null) {
+                request.version(options.getVersion());
+            }
+            exchange = clientFor(options).sendAsync(request.build(), HttpResponse.BodyHandlers.discarding());
+        } catch (Exception e) {
+            // Fail on the executor rather than inline so a burst of malformed
+            // URLs cannot recurse through drain() on the caller's stack.
+            exchange = CompletableFuture.supplyAsync(() -> {
+                throw new CompletionException(e);
+            }, executor);
+        }
+        
+        active.add(exchange);
+        CompletableFuture<HttpResponse<Void>> tracked = exchange;
+        exchange.whenComplete((response, error) -> {
+            active.remove(tracked);
+            long latencyNanos = System.nanoTime() - startNanos;
+            inFlight.decrementAndGet();
+            if (error instanceof CancellationException || closed) {
+                probe.result.cancel(false);
+            } else if (error != null) {
+                probe.result.complete(ProbeResult.failure(unwrap(error), latencyNanos));
+            } else {
+                probe.result.complete(ProbeResult.success(response.statusCode(), latencyNanos));
+            }
+            drain();
+        });
+    }
+    
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+    
+    /**
+     * Cancels queued and in-flight probes and releases the executor and client.
+     */
+    void shutdown() {
+        closed = true;
+        PendingProbe queued;
+        while ((queued = pending.poll()) != null) {
+            queued.result.cancel(false);
+        }
+        for (CompletableFuture<?> exchange : active) {
+            exchange.cancel(true);
+        }
+        httpClient.shutdownNow();
+        for (HttpClient client : clientsByConnectTimeout.values()) {
+            client.shutdownNow();
+        }
+        executor.shutdownNow();
+    }
+    
+    private static final class PendingProbe {
+        final Main.Service service;
+        final Duration timeout;
+        final CompletableFuture<ProbeResult> result;
+        
+        PendingProbe(Main.Service service, Duration timeout, CompletableFuture<ProbeResult> result) {
+            this.service = service;
+            this.timeout = timeout;
+            this.result = result;
+        }
+    }
+    
+    /** Outcome of a single probe (HTTP, or a TCP connect from {@link TcpProbeEngine}). */
+    static final class ProbeResult {
+        private final int statusCode;
+        private final long latencyNanos;
+        private final Throwable error;
+        private final boolean healthy;
+        
+        private ProbeResult(int statusCode, long latencyNanos, Throwable error, boolean healthy) {
+            this.statusCode = statusCode;
+            this.latencyNanos = latencyNanos;
+            this.error = error;
+            this.healthy = healthy;
+        }
+        
+        static ProbeResult success(int statusCode, long latencyNanos) {
+            return new ProbeResult(statusCode, latencyNanos, null, statusCode == 200);
+        }
+        
+        /** A TCP connect that was accepted; there is no status code. */
+        static ProbeResult connected(long latencyNanos) {
+            return new ProbeResult(0, latencyNanos, null, true);
+        }
+        
+        static ProbeResult failure(Throwable error, long latencyNanos) {
+            return new ProbeResult(-1, latencyNanos, error, false);
+        }
+        
+        int getStatusCode() { return statusCode; }
+        long getLatencyNanos() { return latencyNanos; }
+        long getLatencyMillis() { return latencyNanos / 1_000_000L; }
+        Throwable getError() { return error; }
+        boolean isHealthy() { return healthy; }
+        boolean isTimeout() {
+            return error instanceof java.net.http.HttpTimeoutException || error instanceof java.net.SocketTimeoutException;
+        }
+    }
+}
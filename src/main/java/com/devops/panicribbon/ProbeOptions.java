@@ -0,0 +1,108 @@
+package com.devops.panicribbon;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Per-service transport settings for HTTP probes.
+ * <p>
+ * Only the status code of a probe matters, so {@code HEAD} is the cheapest
+ * method where the endpoint supports it; with {@code GET} the body is still
+ * discarded unread. A {@code null} version or connect timeout means the
+ * client default.
+ */
+final class ProbeOptions {
+    static final ProbeOptions DEFAULT = new ProbeOptions("GET", null, null, ProbeEngine.DEFAULT_TIMEOUT);
+    
+    private final String method;
+    private final HttpClient.Version version;
+    private final Duration connectTimeout;
+    private final Duration timeout;
+    
+    ProbeOptions(String method, HttpClient.Version version, Duration connectTimeout, Duration timeout) {
+        this.method = parseMethod(method);
+        this.version = version;
+        this.connectTimeout = connectTimeout;
+        this.timeout = timeout != null ? timeout : ProbeEngine.DEFAULT_TIMEOUT;
+        if (connectTimeout != null && (connectTimeout.isNegative() || connectTimeout.isZero())) {
+            throw new IllegalArgumentException("connect timeout must be positive");
+        }
+        if (this.timeout.isNegative() || this.timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+    }
+    
+    /**
+     * Builds options from {@code services.json} values; {@code null} strings and
+     * non-positive seconds mean "not set".
+     */
+    static ProbeOptions of(String method, String httpVersion, double connectTimeoutSeconds, double timeoutSeconds) {
+        if (method == null && httpVersion == null && connectTimeoutSeconds <= 0 && timeoutSeconds <= 0) {
+            return DEFAULT;
+        }
+        return new ProbeOptions(
+            method == null ? "GET" : method,
+            parseVersion(httpVersion),
+            connectTimeoutSeconds > 0 ? Duration.ofMillis(Math.round(connectTimeoutSeconds * 1000)) : null,
+            timeoutSeconds > 0 ? Duration.ofMillis(Math.round(timeoutSeconds * 1000)) : null);
+    }
+    
+    static String parseMethod(String method) {
+        String upper = method == null ? "GET" : method.trim().toUpperCase(Locale.ROOT);
+        if (!upper.equals("GET") && !upper.equals("HEAD")) {
+            throw new IllegalArgumentException("Unsupported probe method: " + method + " (expected GET or HEAD)");
+        }
+        return upper;
+    }
+    
+    /** Accepts {@code HTTP/1.1}, {@code 1.1}, {@code HTTP/2} or {@code 2}; {@code null} for the default. */
+    static HttpClient.Version parseVersion(String version) {
+        if (version == null || version.isBlank()) {
+            return null;
+        }
+        switch (version.trim().toUpperCase(Locale.ROOT)) {
+            case "HTTP/1.1":
+            case "HTTP_1_1":
+            case "1.1":
+                return HttpClient.Version.HTTP_1_1;
+            case "HTTP/2":
+            case "HTTP_2":
+            case "2":
+                return HttpClient.Version.HTTP_2;
+            default:
+                throw new IllegalArgumentException("Unsupported HTTP version: " + version + " (expected HTTP/1.1 or HTTP/2)");
+        }
+    }
+    
+    String getMethod() { return method; }
+    HttpClient.Version getVersion() { return version; }
+    Duration getConnectTimeout() { return connectTimeout; }
+    Duration getTimeout() { return timeout; }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ProbeOptions)) {
+            return false;
+        }
+        ProbeOptions other = (ProbeOptions) o;
+        return method.equals(other.method) && version == other.version &&
+               Objects.equals(connectTimeout, other.connectTimeout) && timeout.equals(other.timeout);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(method, version, connectTimeout, timeout);
+    }
+    
+    @Override
+    public String toString() {
+        return method + (version == null ? "" : " " + version) +
+               (connectTimeout == null ? "" : " connect " + connectTimeout.toMillis() + "ms") +
+               " timeout " + timeout.toMillis() + "ms";
+    }
+}
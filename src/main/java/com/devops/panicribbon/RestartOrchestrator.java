@@ -0,0 +1,266 @@
+package com.devops.panicribbon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs restart scripts.
+ * <p>
+ * A service has at most one restart in flight: further requests for it are
+ * refused, as are requests within the cooldown after its last restart
+ * finished. Services are identified by their status slot, so this holds across
+ * a config reload. At most {@code maxConcurrent} scripts run at once; later
+ * requests wait for a slot. A script that outlives its timeout has its whole
+ * process tree terminated, gracefully first and then forcibly. stdout and
+ * stderr are read line by line on virtual threads and passed to the log, so a
+ * chatty script never stalls on a full pipe; lines past a per-restart limit
+ * are read and counted but not logged, and characters past a per-line limit
+ * are skipped without being buffered.
+ */
+class RestartOrchestrator {
+    static final int DEFAULT_MAX_CONCURRENT = Integer.getInteger("panicribbon.restart.maxConcurrent", 2);
+    static final long DEFAULT_COOLDOWN_MILLIS =
+        TimeUnit.SECONDS.toMillis(Long.getLong("panicribbon.restart.cooldownSeconds", 30L));
+    static final long DEFAULT_TIMEOUT_MILLIS =
+        TimeUnit.SECONDS.toMillis(Long.getLong("panicribbon.restart.timeoutSeconds", 120L));
+    
+    private static final long KILL_GRACE_MILLIS = 5_000;
+    private static final int MAX_LOGGED_LINES = 200;
+    static final int MAX_LINE_CHARS = 1_000;
+    private static final Charset CONSOLE_CHARSET =
+        Charset.forName(System.getProperty("native.encoding", ""), Charset.defaultCharset());
+    
+    enum Request {
+        STARTED,
+        /** A restart of this service is queued or running. */
+        ALREADY_RUNNING,
+        /** The last restart of this service finished less than the cooldown ago. */
+        COOLING_DOWN,
+        SHUT_DOWN
+    }
+    
+    interface Listener {
+        /**
+         * Called on the thread that requested the restart, before {@link #restart}
+         * returns. That may be the event thread, so implementations must not block.
+         */
+        void restartStarted(Main.ServiceStatus status);
+        
+        /**
+         * Called on the restart's own thread. {@code exitCode} is the script's exit code, {@link ServiceMetrics#EXIT_NOT_STARTED} or
+         * {@link ServiceMetrics#EXIT_TIMED_OUT}.
+         */
+        void restartFinished(Main.ServiceStatus status, int exitCode);
+    }
+    
+    private final int maxConcurrent;
+    private final long cooldownMillis;
+    private final long timeoutMillis;
+    private final Path workingDirectory;
+    private final Consumer<String> log;
+    private final Listener listener;
+    private final Semaphore slots;
+    private final Map<Integer, Main.ServiceStatus> inFlight = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> finishedAt = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+    
+    RestartOrchestrator(Path workingDirectory, Consumer<String> log, Listener listener) {
+        this(DEFAULT_MAX_CONCURRENT, DEFAULT_COOLDOWN_MILLIS, DEFAULT_TIMEOUT_MILLIS, workingDirectory, log, listener);
+    }
+    
+    RestartOrchestrator(int maxConcurrent, long cooldownMillis, long timeoutMillis, Path workingDirectory,
+                        Consumer<String> log, Listener listener) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.cooldownMillis = cooldownMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.workingDirectory = workingDirectory;
+        this.log = log;
+        this.listener = listener;
+        this.slots = new Semaphore(this.maxConcurrent, true);
+    }
+    
+    /** Starts (or queues) a restart of the given service unless one is in flight or cooling down. */
+    Request restart(Main.ServiceStatus status) {
+        if (closed) {
+            return Request.SHUT_DOWN;
+        }
+        int slot = status.getIndex();
+        if (inFlight.putIfAbsent(slot, status) != null) {
+            return Request.ALREADY_RUNNING;
+        }
+        if (cooldownRemainingMillis(status) > 0) {
+            inFlight.remove(slot);
+            return Request.COOLING_DOWN;
+        }
+        listener.restartStarted(status);
+        Thread.ofVirtual().name("panic-restart-" + slot).start(() -> run(status));
+        return Request.STARTED;
+    }
+    
+    boolean isRestarting(Main.ServiceStatus status) {
+        return inFlight.containsKey(status.getIndex());
+    }
+    
+    long cooldownRemainingMillis(Main.ServiceStatus status) {
+        Long finished = finishedAt.get(status.getIndex());
+        return finished == null ? 0 : Math.max(0, finished + cooldownMillis - System.currentTimeMillis());
+    }
+    
+    /** Restarts queued or running. */
+    int getInFlight() {
+        return inFlight.size();
+    }
+    
+    /** Scripts currently running. */
+    int getRunning() {
+        return maxConcurrent - slots.availablePermits();
+    }
+    
+    /** Refuses further restarts; scripts already running are left to finish. */
+    void shutdown() {
+        closed = true;
+    }
+    
+    private void run(Main.ServiceStatus status) {
+        int exitCode = ServiceMetrics.EXIT_NOT_STARTED;
+        try {
+            slots.acquire();
+            try {
+                exitCode = execute(status.getService());
+            } finally {
+                slots.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Start the cooldown before releasing the service so a request in between is refused
+            finishedAt.put(status.getIndex(), System.currentTimeMillis());
+            inFlight.remove(status.getIndex());
+            listener.restartFinished(status, exitCode);
+        }
+    }
+    
+    private int execute(Main.Service service) throws InterruptedException {
+        String name = service.getName();
+        log.accept("Executing restart script for: " + name + " (" + service.getRestartScriptPath() + ")");
+        Process process;
+        try {
+            process = new ProcessBuilder(command(service.getRestartScriptPath()))
+                .directory(workingDirectory.toFile())
+                .start();
+            process.getOutputStream().close();
+        } catch (IOException e) {
+            log.accept("Error executing restart script for " + name + ": " + e.getMessage());
+            return ServiceMetrics.EXIT_NOT_STARTED;
+        }
+        
+        Thread stdout = pump(process.getInputStream(), name, "out");
+        Thread stderr = pump(process.getErrorStream(), name, "err");
+        int exitCode;
+        if (process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            exitCode = process.exitValue();
+            log.accept("Restart script completed for " + name + " with exit code: " + exitCode);
+        } else {
+            log.accept("Restart script for " + name + " timed out after " + timeoutMillis + "ms; terminating it");
+            destroyTree(process, KILL_GRACE_MILLIS);
+            exitCode = ServiceMetrics.EXIT_TIMED_OUT;
+        }
+        // A background child may still hold the pipes; don't wait on it forever
+        stdout.join(KILL_GRACE_MILLIS);
+        stderr.join(KILL_GRACE_MILLIS);
+        return exitCode;
+    }
+    
+    static List<String> command(String script) {
+        if (System.getProperty("os.name").toLowerCase().contains("win")) {
+            return List.of("cmd.exe", "/c", script);
+        }
+        return List.of("sh", "-c", script);
+    }
+    
+    /**
+     * Terminates a process and everything it started: all of them are asked to
+     * exit, and whatever is still alive after {@code graceMillis} is killed.
+     */
+    static void destroyTree(Process process, long graceMillis) throws InterruptedException {
+        // Collect descendants first; once the parent dies they are no longer reachable from it
+        List<ProcessHandle> tree = new ArrayList<>(process.descendants().toList());
+        tree.add(process.toHandle());
+        for (ProcessHandle handle : tree) {
+            handle.destroy();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(graceMillis);
+        for (ProcessHandle handle : tree) {
+            while (handle.isAlive() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            if (handle.isAlive()) {
+                handle.destroyForcibly();
+            }
+        }
+    }
+    
+    private Thread pump(InputStream stream, String name, String label) {
+        return Thread.ofVirtual().start(() -> {
+            int lines = 0;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, CONSOLE_CHARSET))) {
+                StringBuilder line = new StringBuilder();
+                while (readLine(reader, line)) {
+                    if (++lines <= MAX_LOGGED_LINES) {
+                        log.accept("Restart " + name + " [" + label + "]: " + line);
+                    }
+                }
+            } catch (IOException e) {
+                // pipe closed when the process was killed
+            }
+            if (lines > MAX_LOGGED_LINES) {
+                log.accept("Restart " + name + " [" + label + "]: " + (lines - MAX_LOGGED_LINES) +
+                           " more line(s) not logged");
+            }
+        });
+    }
+    
+    /**
+     * Reads the next line into {@code line} like {@link BufferedReader#readLine}, keeping at most
+     * {@link #MAX_LINE_CHARS} of it (marked with "..." if cut), so a script that never writes a
+     * newline cannot grow the buffer. Returns false at the end of the stream.
+     */
+    static boolean readLine(BufferedReader reader, StringBuilder line) throws IOException {
+        line.setLength(0);
+        boolean cut = false;
+        int c = reader.read();
+        if (c < 0) {
+            return false;
+        }
+        while (c >= 0 && c != '\n') {
+            if (c == '\r') {
+                reader.mark(1);
+                if (reader.read() != '\n') {
+                    reader.reset();
+                }
+                break;
+            }
+            if (line.length() < MAX_LINE_CHARS) {
+                line.append((char) c);
+            } else {
+                cut = true;
+            }
+            c = reader.read();
+        }
+        if (cut) {
+            line.append("...");
+        }
+        return true;
+    }
+}
@@ -0,0 +1,334 @@
+package com.devops.panicribbon;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Maps services onto the ribbon's pixel rows.
+ * <p>
+ * The visible range of services is split into {@code min(services, height)}
+ * buckets. With fewer services than pixels every bucket is one service and
+ * segment heights differ by at most one pixel; with more services than pixels
+ * every bucket is one pixel row covering several services, painted in the
+ * worst state of its members. Services never probed are gray; last-known
+ * states restored from a snapshot are drawn dimmed until a probe confirms them.
+ * <p>
+ * Bucket states are precomputed: probe threads call {@link #markChanged} after
+ * a state change, which only flags the bucket, and {@link #refresh} recomputes
+ * the flagged buckets on the event thread. Painting is therefore proportional
+ * to the pixel height, not the number of services. Zooming narrows the visible
+ * range so a crowded bucket can be drilled into.
+ */
+class RibbonModel {
+    static final int ZOOM_FACTOR = 8;
+    static final Color RESTARTING_COLOR = new Color(64, 128, 255);
+    static final Color UNKNOWN_COLOR = new Color(96, 96, 96);
+    private static final StatusTable.State[] STATES = StatusTable.State.values();
+    private static final Color[] STALE_COLORS = new Color[STATES.length];
+    
+    static {
+        for (StatusTable.State state : STATES) {
+            // Halfway to the unknown gray: recognisably the old color, clearly not a live one
+            Color color = colorOf(state);
+            STALE_COLORS[state.ordinal()] = new Color((color.getRed() + UNKNOWN_COLOR.getRed()) / 2,
+                (color.getGreen() + UNKNOWN_COLOR.getGreen()) / 2, (color.getBlue() + UNKNOWN_COLOR.getBlue()) / 2);
+        }
+    }
+    
+    private final Deque<int[]> zoomStack = new ArrayDeque<>();
+    private List<Main.ServiceStatus> statuses = List.of();
+    private int height;
+    private volatile View view = new View(new Layout(0, 0, 0), new int[0]);
+    /** {@link StatusTable#appearance} of each bucket's worst member. */
+    private byte[] bucketStates = new byte[0];
+    
+    /** Replaces the service list (display order) and resets the zoom. */
+    void setStatuses(List<Main.ServiceStatus> statuses, int height) {
+        this.statuses = List.copyOf(statuses);
+        this.height = height;
+        zoomStack.clear();
+        rebuild(0, this.statuses.size());
+    }
+    
+    /** Services in display order. Event thread only. */
+    List<Main.ServiceStatus> getStatuses() {
+        return statuses;
+    }
+    
+    Layout getLayout() {
+        return view.layout;
+    }
+    
+    boolean isZoomed() {
+        return !zoomStack.isEmpty();
+    }
+    
+    /**
+     * Flags the bucket holding the given status slot for recomputation. Safe
+     * to call from any thread; does not allocate.
+     */
+    void markChanged(int slot) {
+        View current = view;
+        if (slot < 0 || slot >= current.slotToPosition.length) {
+            return;
+        }
+        int bucket = current.layout.bucketOfPosition(current.slotToPosition[slot]);
+        if (bucket >= 0) {
+            current.markDirty(bucket);
+        }
+    }
+    
+    /**
+     * Recomputes flagged buckets. Event thread only. Returns the number of
+     * buckets whose painted state changed; their indexes are written to
+     * {@code changed} when it is large enough.
+     */
+    int refresh(int[] changed) {
+        View current = view;
+        if (!current.anyDirty) {
+            return 0;
+        }
+        current.anyDirty = false;
+        int count = 0;
+        for (int word = 0; word < current.dirty.length(); word++) {
+            long bits = current.dirty.getAndSet(word, 0L);
+            while (bits != 0) {
+                int bucket = word * 64 + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                byte state = (byte) worstAppearance(bucket);
+                if (bucketStates[bucket] != state) {
+                    bucketStates[bucket] = state;
+                    if (changed != null && count < changed.length) {
+                        changed[count] = bucket;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    /** Paints every bucket; cost is proportional to the number of buckets (at most the height). */
+    void paint(Graphics g, int width) {
+        Layout layout = view.layout;
+        for (int bucket = 0; bucket < layout.buckets; bucket++) {
+            paintBucket(g, width, bucket);
+        }
+    }
+    
+    void paintBucket(Graphics g, int width, int bucket) {
+        Layout layout = view.layout;
+        int top = layout.bucketTop(bucket);
+        int rows = layout.bucketBottom(bucket) - top;
+        g.setColor(colorOf(bucketStates[bucket]));
+        g.fillRect(0, top, width, rows);
+        
+        // Border between individually drawn segments
+        if (layout.size(bucket) == 1 && rows >= 3 && bucket < layout.buckets - 1) {
+            g.setColor(Color.BLACK);
+            g.drawLine(0, top + rows - 1, width, top + rows - 1);
+        }
+    }
+    
+    static Color colorOf(StatusTable.State state) {
+        switch (state) {
+            case UP:
+                return Color.GREEN;
+            case SLOW:
+                return Color.YELLOW;
+            case RESTARTING:
+                return RESTARTING_COLOR;
+            case UNKNOWN:
+                return UNKNOWN_COLOR;
+            case DOWN:
+            default:
+                return Color.RED;
+        }
+    }
+    
+    /** Color for a {@link StatusTable#appearance}. */
+    static Color colorOf(int appearance) {
+        StatusTable.State state = STATES[appearance & ~StatusTable.STALE_APPEARANCE];
+        return (appearance & StatusTable.STALE_APPEARANCE) != 0 ? STALE_COLORS[state.ordinal()] : colorOf(state);
+    }
+    
+    /** Higher is worse; the worst member decides an aggregated bucket's color. */
+    static int severity(StatusTable.State state) {
+        switch (state) {
+            case UP:
+                return 0;
+            case UNKNOWN:
+                return 1;
+            case SLOW:
+                return 2;
+            case RESTARTING:
+                return 3;
+            case DOWN:
+            default:
+                return 4;
+        }
+    }
+    
+    /** Appearance of the worst member; stale if any member in the worst state is. */
+    private int worstAppearance(int bucket) {
+        Layout layout = view.layout;
+        StatusTable.State worst = StatusTable.State.UP;
+        boolean stale = false;
+        for (int p = layout.first(bucket); p < layout.end(bucket); p++) {
+            long packed = statuses.get(p).snapshot();
+            StatusTable.State state = StatusTable.state(packed);
+            if (severity(state) > severity(worst)) {
+                worst = state;
+                stale = StatusTable.isStale(packed);
+            } else if (state == worst) {
+                stale |= StatusTable.isStale(packed);
+            }
+        }
+        return worst.ordinal() | (stale ? StatusTable.STALE_APPEARANCE : 0);
+    }
+    
+    /** Bucket under the given y coordinate, or -1. O(1). */
+    int bucketAt(int y) {
+        return view.layout.bucketAtRow(y);
+    }
+    
+    /** Services in a bucket, in display order. */
+    List<Main.ServiceStatus> servicesIn(int bucket) {
+        Layout layout = view.layout;
+        return statuses.subList(layout.first(bucket), layout.end(bucket));
+    }
+    
+    /** Narrows the view around the given bucket. Returns false if already at a single service. */
+    boolean zoomInto(int bucket) {
+        Layout layout = view.layout;
+        if (bucket < 0 || bucket >= layout.buckets || layout.count <= 1) {
+            return false;
+        }
+        int newCount = Math.max(1, Math.max(layout.size(bucket), layout.count / ZOOM_FACTOR));
+        int center = (layout.first(bucket) + layout.end(bucket)) / 2;
+        int newFrom = Math.max(layout.from, Math.min(center - newCount / 2, layout.from + layout.count - newCount));
+        zoomStack.push(new int[] {layout.from, layout.count});
+        rebuild(newFrom, newCount);
+        return true;
+    }
+    
+    boolean zoomOut() {
+        if (zoomStack.isEmpty()) {
+            return false;
+        }
+        int[] previous = zoomStack.pop();
+        rebuild(previous[0], previous[1]);
+        return true;
+    }
+    
+    void resetZoom() {
+        zoomStack.clear();
+        rebuild(0, statuses.size());
+    }
+    
+    private void rebuild(int from, int count) {
+        Layout layout = new Layout(from, count, height);
+        int maxSlot = -1;
+        for (Main.ServiceStatus status : statuses) {
+            maxSlot = Math.max(maxSlot, status.getIndex());
+        }
+        int[] slotToPosition = new int[maxSlot + 1];
+        Arrays.fill(slotToPosition, -1);
+        for (int p = 0; p < statuses.size(); p++) {
+            slotToPosition[statuses.get(p).getIndex()] = p;
+        }
+        View next = new View(layout, slotToPosition);
+        bucketStates = new byte[layout.buckets];
+        // Install before computing so a concurrent markChanged lands in the new view
+        view = next;
+        for (int bucket = 0; bucket < layout.buckets; bucket++) {
+            bucketStates[bucket] = (byte) worstAppearance(bucket);
+        }
+    }
+    
+    /** Layout plus the dirty flags that belong to it, swapped as one unit. */
+    private static final class View {
+        final Layout layout;
+        final int[] slotToPosition;
+        final AtomicLongArray dirty;
+        volatile boolean anyDirty;
+        
+        View(Layout layout, int[] slotToPosition) {
+            this.layout = layout;
+            this.slotToPosition = slotToPosition;
+            this.dirty = new AtomicLongArray((layout.buckets + 63) / 64);
+        }
+        
+        void markDirty(int bucket) {
+            dirty.accumulateAndGet(bucket >>> 6, 1L << (bucket & 63), (a, b) -> a | b);
+            anyDirty = true;
+        }
+    }
+    
+    /**
+     * Immutable mapping between a range of service positions and pixel rows.
+     * Bucket {@code b} covers positions {@code [from + b*count/B, from + (b+1)*count/B)}
+     * and rows {@code [b*height/B, (b+1)*height/B)}.
+     */
+    static final class Layout {
+        final int from;
+        final int count;
+        final int height;
+        final int buckets;
+        private final int[] rowToBucket;
+        
+        Layout(int from, int count, int height) {
+            this.from = from;
+            this.count = count;
+            this.height = height;
+            this.buckets = Math.min(count, height);
+            this.rowToBucket = new int[Math.max(0, height)];
+            Arrays.fill(rowToBucket, -1);
+            for (int b = 0; b < buckets; b++) {
+                for (int row = bucketTop(b); row < bucketBottom(b); row++) {
+                    rowToBucket[row] = b;
+                }
+            }
+        }
+        
+        int bucketTop(int bucket) {
+            return (int) ((long) bucket * height / buckets);
+        }
+        
+        int bucketBottom(int bucket) {
+            return (int) ((long) (bucket + 1) * height / buckets);
+        }
+        
+        /** First position (inclusive) of a bucket. */
+        int first(int bucket) {
+            return from + (int) ((long) bucket * count / buckets);
+        }
+        
+        /** Last position (exclusive) of a bucket. */
+        int end(int bucket) {
+            return from + (int) ((long) (bucket + 1) * count / buckets);
+        }
+        
+        int size(int bucket) {
+            return end(bucket) - first(bucket);
+        }
+        
+        int bucketAtRow(int row) {
+            return row >= 0 && row < rowToBucket.length ? rowToBucket[row] : -1;
+        }
+        
+        /** Bucket holding a position, or -1 if the position is outside the visible range. */
+        int bucketOfPosition(int position) {
+            int relative = position - from;
+            if (position < 0 || relative < 0 || relative >= count) {
+                return -1;
+            }
+            return (int) (((long) (relative + 1) * buckets - 1) / count);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.devops.panicribbon;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalescing, double-buffered painter for the ribbon.
+ * <p>
+ * Probe threads call {@link #requestFrame} after flagging a change in the
+ * {@link RibbonModel}. Requests arriving while a frame is already pending are
+ * absorbed, and frames are spaced at least {@code 1 / maxFps} apart, so any
+ * number of status changes costs at most one frame per interval. A frame
+ * repaints only the buckets whose color changed into a cached image and asks
+ * the component to repaint just those rows; window exposes are served by
+ * copying the cached image.
+ */
+class RibbonRenderer {
+    static final int DEFAULT_MAX_FPS = Integer.getInteger("panicribbon.render.maxFps", 30);
+    
+    private final RibbonModel ribbon;
+    private final Component target;
+    private final int width;
+    private final long frameIntervalNanos;
+    private final int[] changed = new int[256];
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "panic-ribbon-frames");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private volatile long lastFrameNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+    private volatile boolean fullRedraw = true;
+    private volatile long framesRendered;
+    private BufferedImage image;
+    
+    RibbonRenderer(RibbonModel ribbon, Component target, int width) {
+        this(ribbon, target, width, DEFAULT_MAX_FPS);
+    }
+    
+    RibbonRenderer(RibbonModel ribbon, Component target, int width, int maxFps) {
+        this.ribbon = ribbon;
+        this.target = target;
+        this.width = width;
+        this.frameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, maxFps);
+    }
+    
+    /**
+     * Schedules a frame on the event thread unless one is already pending.
+     * Safe to call from any thread.
+     */
+    void requestFrame() {
+        if (!pending.compareAndSet(false, true)) {
+            return;
+        }
+        long wait = lastFrameNanos + frameIntervalNanos - System.nanoTime();
+        if (wait <= 0) {
+            EventQueue.invokeLater(this::renderFrame);
+        } else {
+            try {
+                timer.schedule(() -> EventQueue.invokeLater(this::renderFrame), wait, TimeUnit.NANOSECONDS);
+            } catch (RuntimeException e) {
+                pending.set(false); // shut down
+            }
+        }
+    }
+    
+    /** Forces the next frame to redraw every bucket, e.g. after the layout changed. */
+    void invalidate() {
+        fullRedraw = true;
+        requestFrame();
+    }
+    
+    /**
+     * Brings the cached image up to date and repaints the rows that changed.
+     * Event thread only. Returns the number of buckets redrawn.
+     */
+    int renderFrame() {
+        // Clear first so a change flagged while we render schedules another frame
+        pending.set(false);
+        lastFrameNanos = System.nanoTime();
+        framesRendered++;
+        
+        int count = ribbon.refresh(changed);
+        RibbonModel.Layout layout = ribbon.getLayout();
+        if (fullRedraw || count > changed.length || !imageMatches(layout)) {
+            renderAll(layout);
+            target.repaint();
+            return layout.buckets;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        
+        Graphics2D g = image.createGraphics();
+        try {
+            for (int i = 0; i < count; i++) {
+                ribbon.paintBucket(g, width, changed[i]);
+            }
+        } finally {
+            g.dispose();
+        }
+        for (int i = 0; i < count; i++) {
+            int top = layout.bucketTop(changed[i]);
+            target.repaint(0, top, width, layout.bucketBottom(changed[i]) - top);
+        }
+        return count;
+    }
+    
+    /** Copies the cached image; used for exposes as well as frames. Event thread only. */
+    void paintTo(Graphics g) {
+        RibbonModel.Layout layout = ribbon.getLayout();
+        if (fullRedraw || !imageMatches(layout)) {
+            ribbon.refresh(null);
+            renderAll(layout);
+        }
+        g.drawImage(image, 0, 0, null);
+    }
+    
+    BufferedImage getImage() {
+        return image;
+    }
+    
+    long getFramesRendered() {
+        return framesRendered;
+    }
+    
+    void close() {
+        timer.shutdownNow();
+    }
+    
+    private boolean imageMatches(RibbonModel.Layout layout) {
+        return image != null && image.getHeight() == Math.max(1, layout.height);
+    }
+    
+    private void renderAll(RibbonModel.Layout layout) {
+        fullRedraw = false;
+        if (!imageMatches(layout)) {
+            image = new BufferedImage(width, Math.max(1, layout.height), BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, width, image.getHeight());
+            ribbon.paint(g, width);
+        } finally {
+            g.dispose();
+        }
+    }
+}
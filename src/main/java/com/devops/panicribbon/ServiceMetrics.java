@@ -0,0 +1,201 @@
+package com.devops.panicribbon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cumulative per-service counters exported by the {@link MetricsServer}.
+ * <p>
+ * Unlike {@link LatencyHistogram}, which keeps a rolling window for the
+ * tooltip, everything here only grows, as Prometheus counters and histograms
+ * must. Recording takes no locks: latency goes into a fixed array of atomic
+ * bucket counts, and errors and restart exit codes into adders that are
+ * created once per distinct exception type or exit code.
+ */
+class ServiceMetrics {
+    /** Upper bounds of the latency buckets in microseconds; a final +Inf bucket follows. */
+    static final long[] LATENCY_BOUNDS_MICROS = {
+        1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+        1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+    /** Exit code recorded when a restart script could not be started at all. */
+    static final int EXIT_NOT_STARTED = -1;
+    /** Exit code recorded when a restart script was killed after its timeout. */
+    static final int EXIT_TIMED_OUT = -2;
+    
+    private static final String[] LATENCY_BOUNDS_LABELS = new String[LATENCY_BOUNDS_MICROS.length];
+    private static final StatusTable.State[] STATES = StatusTable.State.values();
+    
+    static {
+        for (int i = 0; i < LATENCY_BOUNDS_MICROS.length; i++) {
+            LATENCY_BOUNDS_LABELS[i] = Double.toString(LATENCY_BOUNDS_MICROS[i] / 1e6);
+        }
+    }
+    
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BOUNDS_MICROS.length + 1);
+    private final LongAdder latencySumMicros = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder restarts = new LongAdder();
+    private final Map<Integer, LongAdder> restartExits = new ConcurrentHashMap<>();
+    
+    void recordLatency(long latencyMicros) {
+        if (latencyMicros < 0) {
+            return;
+        }
+        int bucket = 0;
+        while (bucket < LATENCY_BOUNDS_MICROS.length && latencyMicros > LATENCY_BOUNDS_MICROS[bucket]) {
+            bucket++;
+        }
+        latencyBuckets.getAndIncrement(bucket);
+        latencySumMicros.add(latencyMicros);
+    }
+    
+    /** Counts a failed probe under the simple name of its exception type. */
+    void recordError(Throwable error) {
+        String type = error.getClass().getSimpleName();
+        counter(errors, type.isEmpty() ? error.getClass().getName() : type).increment();
+    }
+    
+    void recordRestart() {
+        restarts.increment();
+    }
+    
+    void recordRestartExit(int exitCode) {
+        counter(restartExits, exitCode).increment();
+    }
+    
+    /** Probes recorded in the given bucket alone (not cumulative). */
+    long getLatencyBucket(int bucket) {
+        return latencyBuckets.get(bucket);
+    }
+    
+    long getLatencyCount() {
+        long count = 0;
+        for (int i = 0; i < latencyBuckets.length(); i++) {
+            count += latencyBuckets.get(i);
+        }
+        return count;
+    }
+    
+    long getLatencySumMicros() {
+        return latencySumMicros.sum();
+    }
+    
+    /** Error counts by exception type, sorted by type. */
+    Map<String, Long> getErrors() {
+        return snapshot(errors);
+    }
+    
+    long getRestarts() {
+        return restarts.sum();
+    }
+    
+    /** Completed restarts by exit code, sorted by code. */
+    Map<Integer, Long> getRestartExits() {
+        return snapshot(restartExits);
+    }
+    
+    private static <K> LongAdder counter(Map<K, LongAdder> counters, K key) {
+        // get() first: after the first occurrence of a key this never locks a bin
+        LongAdder counter = counters.get(key);
+        return counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+    
+    private static <K extends Comparable<K>> Map<K, Long> snapshot(Map<K, LongAdder> counters) {
+        if (counters.isEmpty()) {
+            return Map.of();
+        }
+        Map<K, Long> sorted = new TreeMap<>();
+        counters.forEach((key, counter) -> sorted.put(key, counter.sum()));
+        return sorted;
+    }
+    
+    /**
+     * Writes the per-service families for {@code statuses}. Every family is one
+     * pass over the list, so the cost is linear in the number of services.
+     */
+    static void writeTo(MetricsServer.Writer out, List<Main.ServiceStatus> statuses) {
+        int count = statuses.size();
+        List<Main.Service> services = new ArrayList<>(count);
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            services.add(statuses.get(i).getService());
+            packed[i] = statuses.get(i).snapshot();
+        }
+        // Names may repeat; the registry keys keep every series unique
+        List<String> keys = ServiceRegistry.keysOf(services);
+        
+        out.family("panicribbon_services", "gauge", "Services being monitored");
+        out.sample("panicribbon_services").value(count);
+        
+        out.family("panicribbon_service_up", "gauge",
+            "1 if the last probe of the service succeeded (slow or not), 0 if it failed, NaN before the first probe");
+        for (int i = 0; i < count; i++) {
+            StatusTable.State state = StatusTable.state(packed[i]);
+            out.sample("panicribbon_service_up").label("service", keys.get(i))
+               .value(state == StatusTable.State.UNKNOWN ? Double.NaN : StatusTable.isHealthy(packed[i]) ? 1 : 0);
+        }
+        
+        out.family("panicribbon_service_state", "gauge", "1 for the current state of the service, 0 for the others");
+        for (int i = 0; i < count; i++) {
+            StatusTable.State current = StatusTable.state(packed[i]);
+            for (StatusTable.State state : STATES) {
+                out.sample("panicribbon_service_state").label("service", keys.get(i)).label("state", state.name())
+                   .value(state == current ? 1 : 0);
+            }
+        }
+        
+        out.family("panicribbon_probe_deadline_seconds", "gauge", "Deadline of the next probe, from recent latency");
+        for (int i = 0; i < count; i++) {
+            Main.ServiceStatus status = statuses.get(i);
+            out.sample("panicribbon_probe_deadline_seconds").label("service", keys.get(i))
+               .value(status.getDeadlines().deadline(status.getService().getTimeout()).toNanos() / 1e9);
+        }
+        
+        out.family("panicribbon_probe_duration_seconds", "histogram", "Latency of probes that got a response");
+        for (int i = 0; i < count; i++) {
+            ServiceMetrics metrics = statuses.get(i).getMetrics();
+            String key = keys.get(i);
+            long cumulative = 0;
+            for (int b = 0; b < LATENCY_BOUNDS_MICROS.length; b++) {
+                cumulative += metrics.getLatencyBucket(b);
+                out.sample("panicribbon_probe_duration_seconds_bucket").label("service", key)
+                   .label("le", LATENCY_BOUNDS_LABELS[b]).value(cumulative);
+            }
+            cumulative += metrics.getLatencyBucket(LATENCY_BOUNDS_MICROS.length);
+            out.sample("panicribbon_probe_duration_seconds_bucket").label("service", key).label("le", "+Inf")
+               .value(cumulative);
+            out.sample("panicribbon_probe_duration_seconds_sum").label("service", key)
+               .value(metrics.getLatencySumMicros() / 1e6);
+            out.sample("panicribbon_probe_duration_seconds_count").label("service", key).value(cumulative);
+        }
+        
+        out.family("panicribbon_probe_errors_total", "counter", "Probes that failed without a response, by exception type");
+        for (int i = 0; i < count; i++) {
+            for (Map.Entry<String, Long> error : statuses.get(i).getMetrics().getErrors().entrySet()) {
+                out.sample("panicribbon_probe_errors_total").label("service", keys.get(i))
+                   .label("type", error.getKey()).value(error.getValue());
+            }
+        }
+        
+        out.family("panicribbon_restarts_total", "counter", "Restart scripts started");
+        for (int i = 0; i < count; i++) {
+            out.sample("panicribbon_restarts_total").label("service", keys.get(i))
+               .value(statuses.get(i).getMetrics().getRestarts());
+        }
+        
+        out.family("panicribbon_restart_exits_total", "counter",
+            "Restart scripts finished, by exit code (-1: could not be started, -2: killed after the timeout)");
+        for (int i = 0; i < count; i++) {
+            for (Map.Entry<Integer, Long> exit : statuses.get(i).getMetrics().getRestartExits().entrySet()) {
+                out.sample("panicribbon_restart_exits_total").label("service", keys.get(i))
+                   .label("code", Integer.toString(exit.getKey())).value(exit.getValue());
+            }
+        }
+    }
+}
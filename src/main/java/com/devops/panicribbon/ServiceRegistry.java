@@ -0,0 +1,134 @@
+package com.devops.panicribbon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The running set of services, replaced as a whole on every config load.
+ * <p>
+ * {@link #update} diffs a newly parsed service list against the current one
+ * by identity (the service name; repeated names are told apart by their
+ * order). Unchanged services keep their {@link Main.ServiceStatus}, so their
+ * state, latency histograms and polling carry on untouched. A service whose
+ * definition changed gets a new status on the same slot that inherits the
+ * old state and histograms; removed services are retired and their slot is
+ * cleared. The new list is published with one volatile write, so readers
+ * always see either the old or the new set, never a mix.
+ * <p>
+ * Within one process a slot is never handed to a different service: a
+ * service that is removed and later re-added gets its old slot back. Slots
+ * are assigned afresh, in services.json order, on every start, so anything
+ * that outlives the process (the probe history, the status snapshot) keys
+ * services by their {@link #keysOf key} instead.
+ */
+class ServiceRegistry {
+    private final StatusTable table;
+    private final Map<String, Integer> slotsByKey = new HashMap<>();
+    private volatile List<Main.ServiceStatus> statuses = List.of();
+    private volatile Map<String, Main.ServiceStatus> byKey = Map.of();
+    private int nextSlot;
+    
+    ServiceRegistry(StatusTable table) {
+        this.table = table;
+    }
+    
+    StatusTable getTable() {
+        return table;
+    }
+    
+    /** Current services in display order; an immutable snapshot. */
+    List<Main.ServiceStatus> getStatuses() {
+        return statuses;
+    }
+    
+    /** Replaces the running set with {@code services} and returns what changed. */
+    synchronized Changes update(List<Main.Service> services) {
+        Map<String, Main.ServiceStatus> previous = byKey;
+        Map<String, Main.ServiceStatus> next = new HashMap<>();
+        List<Main.ServiceStatus> ordered = new ArrayList<>(services.size());
+        Changes changes = new Changes();
+        
+        List<String> keys = keysOf(services);
+        for (int i = 0; i < services.size(); i++) {
+            Main.Service service = services.get(i);
+            String key = keys.get(i);
+            Main.ServiceStatus current = previous.get(key);
+            Main.ServiceStatus status;
+            if (current == null) {
+                status = new Main.ServiceStatus(service, table, slotFor(key), key);
+                changes.added.add(status);
+            } else if (current.getService().hasSameDefinition(service)) {
+                status = current;
+                changes.unchanged++;
+            } else {
+                status = new Main.ServiceStatus(service, current);
+                changes.replaced.add(current);
+                changes.updated.add(status);
+            }
+            next.put(key, status);
+            ordered.add(status);
+        }
+        for (Map.Entry<String, Main.ServiceStatus> entry : previous.entrySet()) {
+            if (!next.containsKey(entry.getKey())) {
+                changes.removed.add(entry.getValue());
+            }
+        }
+        
+        statuses = List.copyOf(ordered);
+        byKey = next;
+        
+        // Retire after publishing so nothing sees a retired status in the current list
+        for (Main.ServiceStatus status : changes.replaced) {
+            status.retire();
+        }
+        for (Main.ServiceStatus status : changes.removed) {
+            status.retire();
+            table.reset(status.getIndex());
+        }
+        return changes;
+    }
+    
+    private int slotFor(String key) {
+        Integer slot = slotsByKey.get(key);
+        if (slot == null) {
+            slot = nextSlot++;
+            slotsByKey.put(key, slot);
+            table.ensureCapacity(nextSlot);
+        }
+        return slot;
+    }
+    
+    /** Identity of each service: its name, with "#n" appended to the n-th repeat of a name. */
+    static List<String> keysOf(List<Main.Service> services) {
+        Map<String, Integer> seen = new HashMap<>();
+        List<String> keys = new ArrayList<>(services.size());
+        for (Main.Service service : services) {
+            String name = String.valueOf(service.getName());
+            int repeat = seen.merge(name, 1, Integer::sum) - 1;
+            keys.add(repeat == 0 ? name : name + "#" + repeat);
+        }
+        return keys;
+    }
+    
+    /** Outcome of one {@link #update}. */
+    static final class Changes {
+        final List<Main.ServiceStatus> added = new ArrayList<>();
+        final List<Main.ServiceStatus> removed = new ArrayList<>();
+        /** New statuses of changed services, and the statuses they replace. */
+        final List<Main.ServiceStatus> updated = new ArrayList<>();
+        final List<Main.ServiceStatus> replaced = new ArrayList<>();
+        int unchanged;
+        
+        boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+        }
+        
+        @Override
+        public String toString() {
+            return added.size() + " added, " + removed.size() + " removed, " + updated.size() + " changed, " +
+                   unchanged + " unchanged";
+        }
+    }
+}
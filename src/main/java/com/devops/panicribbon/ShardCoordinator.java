@@ -0,0 +1,314 @@
+package com.devops.panicribbon;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Splits probing between several daemons that load the same services.json.
+ * <p>
+ * Members are named by their status address ({@code panicribbon.daemon.listen}),
+ * and each service belongs to one member of a {@link HashRing} over its
+ * registry key. A daemon probes only the services it owns and subscribes to
+ * every peer's {@link StatusServer} like a ribbon does, copying from each peer
+ * the states of the services that peer owns into its own table, so every
+ * member (and every ribbon subscribed to any member) sees the whole fleet.
+ * <p>
+ * A peer counts as a member while this daemon is subscribed to it. When one
+ * joins or leaves, the ring is rebuilt and only the services whose owner
+ * changed move: services taken over are probed right away, services handed
+ * off take the new owner's state. Until the first peer is reached a daemon
+ * owns everything, so a lone daemon keeps probing the whole fleet.
+ */
+class ShardCoordinator {
+    /** Status addresses of the other daemons, comma separated; this daemon's own address may be listed too. */
+    static final String DEFAULT_PEERS = System.getProperty("panicribbon.shard.peers");
+    static final long DEFAULT_CHECK_MILLIS = Long.getLong("panicribbon.shard.checkMillis", 1_000L);
+    static final int VIRTUAL_NODES = 128;
+    
+    interface Listener {
+        /** This member now owns services that another member probed until now. */
+        void acquired(List<Main.ServiceStatus> statuses);
+        
+        /** The owner of a service reported a new packed status for it. */
+        void peerUpdated(Main.ServiceStatus status, long packed);
+    }
+    
+    private final String self;
+    private final List<Peer> peers = new ArrayList<>();
+    private final Supplier<List<Main.ServiceStatus>> statuses;
+    private final Listener listener;
+    private final Consumer<String> log;
+    private final long checkMillis;
+    private final ScheduledExecutorService checker;
+    private volatile Assignment assignment;
+    
+    /**
+     * @param self this daemon's status address, written exactly as its peers list it
+     * @param peers the other daemons' status addresses
+     * @param statuses the local services, in registry order
+     */
+    ShardCoordinator(String self, List<String> peers, Supplier<List<Main.ServiceStatus>> statuses, Listener listener,
+                     Consumer<String> log, long checkMillis) {
+        this.self = self;
+        this.statuses = statuses;
+        this.listener = listener;
+        this.log = log;
+        this.checkMillis = Math.max(1, checkMillis);
+        for (String peer : new TreeSet<>(peers)) {
+            if (!peer.equals(self)) {
+                this.peers.add(new Peer(peer));
+            }
+        }
+        this.checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "panic-shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebalance(Set.of(self));
+    }
+    
+    /** Splits a comma separated address list, ignoring blanks. */
+    static List<String> parsePeers(String peers) {
+        List<String> parsed = new ArrayList<>();
+        for (String peer : peers.split(",")) {
+            if (!peer.isBlank()) {
+                StatusProtocol.parseAddress(peer.strip());
+                parsed.add(peer.strip());
+            }
+        }
+        return parsed;
+    }
+    
+    /** Subscribes to the peers and starts watching membership. */
+    void start() {
+        for (Peer peer : peers) {
+            peer.client.start(peer);
+        }
+        checker.scheduleWithFixedDelay(this::check, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /** True if this member should probe the service. */
+    boolean owns(Main.ServiceStatus status) {
+        return self.equals(assignment.ownerOf(status));
+    }
+    
+    /** Current members, this one included, in sorted order. */
+    List<String> getMembers() {
+        return assignment.ring.members();
+    }
+    
+    /** Services this member probes. */
+    int getOwned() {
+        return assignment.owned;
+    }
+    
+    /** The local service list changed; owners are recomputed on the caller's thread. */
+    void servicesChanged() {
+        rebalance(assignment.ring.members());
+    }
+    
+    /**
+     * Sends refresh requests for services other members own to their owners
+     * and returns the ones to probe here.
+     */
+    List<Main.ServiceStatus> forwardRefresh(List<Main.ServiceStatus> requested) {
+        Assignment current = assignment;
+        List<Main.ServiceStatus> local = new ArrayList<>();
+        Map<Peer, List<Main.ServiceStatus>> remote = new LinkedHashMap<>();
+        for (Main.ServiceStatus status : requested) {
+            Peer owner = peer(current.ownerOf(status));
+            Main.ServiceStatus theirs = owner == null ? null : owner.byKey.get(current.keyOf(status));
+            if (theirs == null) {
+                local.add(status);
+            } else {
+                remote.computeIfAbsent(owner, p -> new ArrayList<>()).add(theirs);
+            }
+        }
+        remote.forEach((peer, theirs) -> peer.client.refresh(theirs));
+        return local;
+    }
+    
+    void close() {
+        checker.shutdownNow();
+        for (Peer peer : peers) {
+            peer.client.shutdown();
+        }
+    }
+    
+    private void check() {
+        try {
+            Set<String> members = new TreeSet<>();
+            members.add(self);
+            for (Peer peer : peers) {
+                if (peer.client.isConnected() && !peer.byKey.isEmpty()) {
+                    members.add(peer.id);
+                }
+            }
+            if (!List.copyOf(members).equals(assignment.ring.members())) {
+                rebalance(members);
+            }
+        } catch (RuntimeException e) {
+            log.accept("Error checking shard membership: " + e);
+        }
+    }
+    
+    private synchronized void rebalance(Collection<String> members) {
+        Assignment previous = assignment;
+        HashRing ring = previous != null && previous.ring.members().equals(List.copyOf(new TreeSet<>(members)))
+            ? previous.ring
+            : new HashRing(members, VIRTUAL_NODES);
+        List<Main.ServiceStatus> list = statuses.get();
+        Assignment next = new Assignment(ring, list);
+        
+        List<Main.ServiceStatus> acquired = new ArrayList<>();
+        int handedOff = 0;
+        for (Main.ServiceStatus status : list) {
+            String owner = next.ownerOf(status);
+            String before = previous == null ? null : previous.ownerOf(status);
+            if (self.equals(owner)) {
+                if (before != null && !before.equals(self)) {
+                    acquired.add(status);
+                }
+                continue;
+            }
+            if (self.equals(before)) {
+                handedOff++;
+            }
+            // Take the owner's current state rather than waiting for its next change
+            Peer peer = peer(owner);
+            Main.ServiceStatus theirs = peer == null ? null : peer.byKey.get(next.keyOf(status));
+            if (theirs != null && peer.client.isConnected()) {
+                listener.peerUpdated(status, theirs.snapshot());
+            }
+        }
+        assignment = next;
+        
+        if (previous != null && previous.ring != ring) {
+            log.accept("Shard members " + ring.members() + ": probing " + next.owned + " of " + list.size() +
+                       " service(s), took over " + acquired.size() + ", handed off " + handedOff);
+        }
+        if (!acquired.isEmpty()) {
+            listener.acquired(acquired);
+        }
+    }
+    
+    private Peer peer(String id) {
+        for (Peer peer : peers) {
+            if (peer.id.equals(id)) {
+                return peer;
+            }
+        }
+        return null;
+    }
+    
+    /** Owner of every local service under one ring, indexed by slot. */
+    private final class Assignment {
+        final HashRing ring;
+        final Map<String, Main.ServiceStatus> byKey;
+        final Main.ServiceStatus[] statusBySlot;
+        final String[] keyBySlot;
+        final String[] ownerBySlot;
+        final int owned;
+        
+        Assignment(HashRing ring, List<Main.ServiceStatus> statuses) {
+            this.ring = ring;
+            List<String> keys = ServiceRegistry.keysOf(statuses.stream().map(Main.ServiceStatus::getService).toList());
+            int slots = 0;
+            for (Main.ServiceStatus status : statuses) {
+                slots = Math.max(slots, status.getIndex() + 1);
+            }
+            byKey = new HashMap<>(statuses.size() * 2);
+            statusBySlot = new Main.ServiceStatus[slots];
+            keyBySlot = new String[slots];
+            ownerBySlot = new String[slots];
+            int mine = 0;
+            for (int i = 0; i < statuses.size(); i++) {
+                Main.ServiceStatus status = statuses.get(i);
+                String key = keys.get(i);
+                String owner = ring.owner(key);
+                byKey.put(key, status);
+                statusBySlot[status.getIndex()] = status;
+                keyBySlot[status.getIndex()] = key;
+                ownerBySlot[status.getIndex()] = owner;
+                if (owner.equals(self)) {
+                    mine++;
+                }
+            }
+            owned = mine;
+        }
+        
+        /** Null for a status this assignment does not know, such as one added by a reload still in progress. */
+        String ownerOf(Main.ServiceStatus status) {
+            int slot = status.getIndex();
+            return slot < statusBySlot.length && statusBySlot[slot] == status ? ownerBySlot[slot] : null;
+        }
+        
+        String keyOf(Main.ServiceStatus status) {
+            int slot = status.getIndex();
+            return slot < statusBySlot.length && statusBySlot[slot] == status ? keyBySlot[slot] : null;
+        }
+    }
+    
+    /** Another daemon, followed through a {@link StatusClient}. */
+    private final class Peer implements StatusSource.Listener {
+        final String id;
+        final StatusClient client;
+        volatile Map<String, Main.ServiceStatus> byKey = Map.of();
+        volatile Map<Main.ServiceStatus, String> keys = Map.of();
+        
+        Peer(String id) {
+            this.id = id;
+            this.client = new StatusClient(StatusProtocol.parseAddress(id), log, Math.max(checkMillis, 1_000L));
+        }
+        
+        @Override
+        public void servicesChanged() {
+            List<Main.ServiceStatus> theirs = client.getStatuses();
+            List<String> theirKeys = ServiceRegistry.keysOf(theirs.stream().map(Main.ServiceStatus::getService).toList());
+            Map<String, Main.ServiceStatus> nextByKey = new HashMap<>(theirs.size() * 2);
+            Map<Main.ServiceStatus, String> nextKeys = new IdentityHashMap<>(theirs.size() * 2);
+            for (int i = 0; i < theirs.size(); i++) {
+                nextByKey.put(theirKeys.get(i), theirs.get(i));
+                nextKeys.put(theirs.get(i), theirKeys.get(i));
+            }
+            keys = nextKeys;
+            byKey = nextByKey;
+            try {
+                // A join is noticed as soon as the peer's service list arrives
+                checker.execute(ShardCoordinator.this::check);
+            } catch (RejectedExecutionException e) {
+                // closing
+            }
+        }
+        
+        @Override
+        public void stateChanged(Main.ServiceStatus status) {
+            // Every change, state or not, already arrived through statusUpdated
+        }
+        
+        @Override
+        public void statusUpdated(Main.ServiceStatus theirs) {
+            if (!client.isConnected()) {
+                return; // shown as unknown because the peer is gone, not because it said so
+            }
+            Assignment current = assignment;
+            Main.ServiceStatus status = current.byKey.get(keys.get(theirs));
+            if (status != null && id.equals(current.ownerOf(status))) {
+                listener.peerUpdated(status, theirs.snapshot());
+            }
+        }
+    }
+}
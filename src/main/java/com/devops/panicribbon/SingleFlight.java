@@ -0,0 +1,65 @@
+package com.devops.panicribbon;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent asynchronous calls per key.
+ * <p>
+ * While a call for a key is in flight, further requests for that key start
+ * nothing and complete with the same result. The key is released before the
+ * result is delivered, so a request made from a completion callback starts a
+ * fresh call. Every caller gets its own copy of the shared future, so one
+ * caller cancelling or completing it cannot affect the others.
+ */
+class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+    
+    CompletableFuture<V> run(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> shared = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            joined.increment();
+            return existing.copy();
+        }
+        started.increment();
+        CompletableFuture<V> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            inFlight.remove(key, shared);
+            if (error != null) {
+                shared.completeExceptionally(error);
+            } else {
+                shared.complete(value);
+            }
+        });
+        return shared.copy();
+    }
+    
+    boolean isInFlight(K key) {
+        return inFlight.containsKey(key);
+    }
+    
+    int getInFlight() {
+        return inFlight.size();
+    }
+    
+    /** Calls actually started. */
+    long getStarted() {
+        return started.sum();
+    }
+    
+    /** Requests that joined a call already in flight instead of starting one. */
+    long getJoined() {
+        return joined.sum();
+    }
+}
@@ -0,0 +1,266 @@
+package com.devops.panicribbon;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Ribbon side of a {@link StatusServer}: a local copy of a daemon's services
+ * and states, kept current from its frames, so the ribbon renders a daemon
+ * exactly as it renders an in-process {@link Monitor}.
+ * <p>
+ * Received states go straight into a local {@link StatusTable} at the
+ * daemon's slot numbers. A new probe result (the slot's update counter moved)
+ * also feeds the status's latency histograms, so tooltips still show
+ * percentiles. While the daemon is unreachable every service shows as
+ * unknown, and the client reconnects with a backoff; each connection starts
+ * with a full snapshot, so nothing is lost in between.
+ */
+class StatusClient implements StatusSource {
+    /** Daemon to subscribe to instead of probing in-process; unset by default. */
+    static final String DEFAULT_ADDRESS = System.getProperty("panicribbon.daemon.connect");
+    
+    private static final long MIN_RECONNECT_MILLIS = 500;
+    private static final long MAX_RECONNECT_MILLIS = 30_000;
+    
+    private final SocketAddress address;
+    private final Consumer<String> logger;
+    private final long maxReconnectMillis;
+    private final StatusTable table = new StatusTable(1);
+    private final Object writeLock = new Object();
+    private volatile List<Main.ServiceStatus> statuses = List.of();
+    private volatile SocketChannel channel;
+    private volatile boolean closed = false;
+    private Listener listener;
+    private Thread reader;
+    // Reader thread only
+    private Main.ServiceStatus[] bySlot = new Main.ServiceStatus[0];
+    
+    StatusClient(SocketAddress address) {
+        this(address, null, MAX_RECONNECT_MILLIS);
+    }
+    
+    /**
+     * A client that logs through {@code logger} (the console if null) and
+     * retries at least every {@code maxReconnectMillis} while disconnected.
+     */
+    StatusClient(SocketAddress address, Consumer<String> logger, long maxReconnectMillis) {
+        this.address = address;
+        this.logger = logger;
+        this.maxReconnectMillis = maxReconnectMillis;
+    }
+    
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        this.reader = Thread.ofPlatform().daemon().name("panic-daemon-client").start(this::run);
+    }
+    
+    @Override
+    public List<Main.ServiceStatus> getStatuses() {
+        return statuses;
+    }
+    
+    /** True while subscribed to the daemon. */
+    boolean isConnected() {
+        return channel != null;
+    }
+    
+    @Override
+    public void refresh(List<Main.ServiceStatus> statuses) {
+        send(StatusProtocol.refresh(statuses), "refresh");
+    }
+    
+    @Override
+    public void restart(Main.ServiceStatus status) {
+        send(StatusProtocol.restart(status), "restart");
+    }
+    
+    /** The daemon keeps the history; tooltips go without it. */
+    @Override
+    public HistoryStore getHistory() {
+        return null;
+    }
+    
+    @Override
+    public void log(String message) {
+        if (logger != null) {
+            logger.accept(message);
+            return;
+        }
+        // The daemon owns panic.log; a second writer would fight it over rotation
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        System.out.println("[" + timestamp + "] " + message);
+    }
+    
+    @Override
+    public void shutdown() {
+        closed = true;
+        closeChannel();
+        if (reader != null) {
+            reader.interrupt();
+            try {
+                reader.join(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void send(ByteBuffer frame, String what) {
+        SocketChannel current = channel;
+        if (current == null) {
+            log("Not connected to the daemon at " + address + "; " + what + " not sent");
+            return;
+        }
+        try {
+            synchronized (writeLock) {
+                StatusProtocol.write(current, frame);
+            }
+        } catch (IOException e) {
+            log("Error sending " + what + " to the daemon: " + e.getMessage());
+        }
+    }
+    
+    private void run() {
+        long backoff = Math.min(MIN_RECONNECT_MILLIS, maxReconnectMillis);
+        boolean reported = false;
+        while (!closed) {
+            try (SocketChannel connected = SocketChannel.open(address)) {
+                if (address instanceof InetSocketAddress) {
+                    connected.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                }
+                handshake(connected);
+                channel = connected;
+                log("Subscribed to the daemon at " + address);
+                backoff = Math.min(MIN_RECONNECT_MILLIS, maxReconnectMillis);
+                reported = false;
+                receive(connected);
+            } catch (IOException | RuntimeException e) {
+                // Report once per outage rather than on every retry
+                if (!closed && !reported) {
+                    log("Daemon at " + address + " unavailable: " + e.getMessage() + " (retrying)");
+                    reported = true;
+                }
+            } finally {
+                channel = null;
+                markUnknown();
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, maxReconnectMillis);
+        }
+    }
+    
+    private static void handshake(SocketChannel channel) throws IOException {
+        ByteBuffer hello = StatusProtocol.read(channel);
+        if (hello.get() != StatusProtocol.HELLO || hello.remaining() < 8 || hello.getInt() != StatusProtocol.MAGIC) {
+            throw new IOException("not a panic ribbon daemon");
+        }
+        int version = hello.getInt();
+        if (version != StatusProtocol.VERSION) {
+            throw new IOException("daemon speaks protocol version " + version + ", expected " + StatusProtocol.VERSION);
+        }
+    }
+    
+    private void receive(SocketChannel channel) throws IOException {
+        while (!closed) {
+            ByteBuffer frame = StatusProtocol.read(channel);
+            switch (frame.get()) {
+                case StatusProtocol.SERVICES -> applyServices(frame);
+                case StatusProtocol.STATES -> applyStates(frame);
+                default -> { } // from a newer daemon
+            }
+        }
+    }
+    
+    /** Replaces the service list; a service keeps its status (and histograms) if its slot and identity are unchanged. */
+    private void applyServices(ByteBuffer frame) throws IOException {
+        int count = frame.getInt();
+        List<Main.ServiceStatus> received = new ArrayList<>(Math.min(count, frame.remaining() / 12));
+        int maxSlot = -1;
+        for (int i = 0; i < count; i++) {
+            int slot = frame.getInt();
+            String name = StatusProtocol.getString(frame);
+            String url = StatusProtocol.getString(frame);
+            if (slot < 0) {
+                throw new IOException("Invalid slot " + slot);
+            }
+            Main.Service service = new Main.Service(name, url, "");
+            Main.ServiceStatus previous = slot < bySlot.length ? bySlot[slot] : null;
+            received.add(previous != null && previous.getService().hasSameDefinition(service)
+                ? previous
+                : new Main.ServiceStatus(service, table, slot));
+            maxSlot = Math.max(maxSlot, slot);
+        }
+        table.ensureCapacity(maxSlot + 1);
+        Main.ServiceStatus[] slots = new Main.ServiceStatus[maxSlot + 1];
+        for (Main.ServiceStatus status : received) {
+            slots[status.getIndex()] = status;
+        }
+        bySlot = slots;
+        statuses = List.copyOf(received);
+        listener.servicesChanged();
+    }
+    
+    private void applyStates(ByteBuffer frame) {
+        int count = frame.getInt();
+        int capacity = table.capacity();
+        for (int i = 0; i < count; i++) {
+            int slot = frame.getInt();
+            long packed = frame.getLong();
+            if (slot < 0 || slot >= capacity) {
+                continue; // a slot no listed service uses
+            }
+            long previous = table.set(slot, packed);
+            Main.ServiceStatus status = slot < bySlot.length ? bySlot[slot] : null;
+            if (status == null) {
+                continue;
+            }
+            long latencyMicros = StatusTable.latencyMicros(packed);
+            // A new probe result moves the counter; a restored last-known value is not one
+            if (StatusTable.counter(packed) != StatusTable.counter(previous) && latencyMicros >= 0 &&
+                !StatusTable.isStale(packed)) {
+                status.recordLatency(latencyMicros * 1_000L);
+            }
+            if (packed != previous) {
+                listener.statusUpdated(status);
+            }
+            if (StatusTable.appearance(packed) != StatusTable.appearance(previous)) {
+                listener.stateChanged(status);
+            }
+        }
+    }
+    
+    /** Shows every service as unknown while there is no daemon to vouch for it. */
+    private void markUnknown() {
+        for (Main.ServiceStatus status : bySlot) {
+            if (status != null &&
+                StatusTable.state(table.set(status.getIndex(), StatusTable.INITIAL)) != StatusTable.State.UNKNOWN) {
+                listener.stateChanged(status);
+            }
+        }
+    }
+    
+    private void closeChannel() {
+        SocketChannel current = channel;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.devops.panicribbon;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Wire format between a {@link Daemon} and the ribbons subscribed to it.
+ * <p>
+ * Every frame is a big-endian {@code int} length of the rest of the frame, a
+ * one-byte type and a payload:
+ * <pre>
+ *  HELLO     daemon to ribbon   int magic, int version
+ *  SERVICES  daemon to ribbon   int count, count x (int slot, string name, string url)
+ *  STATES    daemon to ribbon   int count, count x (int slot, long packed status)
+ *  REFRESH   ribbon to daemon   int count, count x int slot
+ *  RESTART   ribbon to daemon   int slot
+ * </pre>
+ * Strings are an {@code int} byte count followed by UTF-8. A status is the
+ * {@link StatusTable} packed {@code long} of its slot, so a state change costs
+ * 12 bytes on the wire and is applied without decoding. The daemon sends
+ * {@code SERVICES} and a {@code STATES} frame with every slot when a ribbon
+ * connects and whenever the service list changes; after that {@code STATES}
+ * frames carry only the slots that changed.
+ */
+final class StatusProtocol {
+    static final int MAGIC = 0x50524942; // "PRIB"
+    static final int VERSION = 1;
+    
+    static final byte HELLO = 0;
+    static final byte SERVICES = 1;
+    static final byte STATES = 2;
+    static final byte REFRESH = 3;
+    static final byte RESTART = 4;
+    
+    /** Frames larger than this are treated as a corrupt stream. */
+    static final int MAX_FRAME_BYTES = 64 << 20;
+    
+    private StatusProtocol() {
+    }
+    
+    /** {@code host:port} (IPv6 hosts in brackets) or {@code unix:/path/to/socket}. */
+    static SocketAddress parseAddress(String address) {
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        }
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Expected host:port or unix:/path, got \"" + address + "\"");
+        }
+        String host = address.substring(0, colon);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        try {
+            return new InetSocketAddress(host, Integer.parseInt(address.substring(colon + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid port in \"" + address + "\"");
+        }
+    }
+    
+    static ByteBuffer hello() {
+        return new FrameBuilder(HELLO, 8).putInt(MAGIC).putInt(VERSION).finish();
+    }
+    
+    static ByteBuffer services(List<Main.ServiceStatus> statuses) {
+        FrameBuilder frame = new FrameBuilder(SERVICES, 4 + statuses.size() * 64).putInt(statuses.size());
+        for (Main.ServiceStatus status : statuses) {
+            frame.putInt(status.getIndex())
+                 .putString(status.getService().getName())
+                 .putString(status.getService().getHealthCheckUrl());
+        }
+        return frame.finish();
+    }
+    
+    /** Every slot in {@code packed[0, length)}. */
+    static ByteBuffer states(long[] packed, int length) {
+        FrameBuilder frame = new FrameBuilder(STATES, 4 + length * 12).putInt(length);
+        for (int slot = 0; slot < length; slot++) {
+            frame.putInt(slot).putLong(packed[slot]);
+        }
+        return frame.finish();
+    }
+    
+    /**
+     * The slots of {@code current[0, length)} that differ from
+     * {@code previous[0, previousLength)}, or null if none do. Slots beyond
+     * {@code previousLength} are new and always included.
+     */
+    static ByteBuffer delta(long[] previous, int previousLength, long[] current, int length) {
+        FrameBuilder frame = null;
+        int count = 0;
+        for (int slot = 0; slot < length; slot++) {
+            if (slot < previousLength && previous[slot] == current[slot]) {
+                continue;
+            }
+            if (frame == null) {
+                frame = new FrameBuilder(STATES, 4 + 64 * 12).putInt(0);
+            }
+            frame.putInt(slot).putLong(current[slot]);
+            count++;
+        }
+        return frame == null ? null : frame.putInt(FrameBuilder.PAYLOAD, count).finish();
+    }
+    
+    static ByteBuffer refresh(List<Main.ServiceStatus> statuses) {
+        FrameBuilder frame = new FrameBuilder(REFRESH, 4 + statuses.size() * 4).putInt(statuses.size());
+        for (Main.ServiceStatus status : statuses) {
+            frame.putInt(status.getIndex());
+        }
+        return frame.finish();
+    }
+    
+    static ByteBuffer restart(Main.ServiceStatus status) {
+        return new FrameBuilder(RESTART, 4).putInt(status.getIndex()).finish();
+    }
+    
+    /**
+     * Blocks until a whole frame has been read. The returned buffer starts at
+     * the type byte; {@link EOFException} means the peer closed the connection.
+     */
+    static ByteBuffer read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(channel, header);
+        int length = header.getInt(0);
+        if (length < 1 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        readFully(channel, frame);
+        return frame.flip();
+    }
+    
+    /** Writes a whole frame; {@code frame} is consumed, so pass a duplicate of a shared one. */
+    static void write(WritableByteChannel channel, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+    
+    static String getString(ByteBuffer frame) throws IOException {
+        int length = frame.getInt();
+        if (length < 0 || length > frame.remaining()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        String value = new String(frame.array(), frame.arrayOffset() + frame.position(), length, StandardCharsets.UTF_8);
+        frame.position(frame.position() + length);
+        return value;
+    }
+    
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed");
+            }
+        }
+    }
+    
+    /** Growable frame under construction; the length prefix is filled in by {@link #finish}. */
+    private static final class FrameBuilder {
+        /** Offset of the first payload byte, after the length and type. */
+        static final int PAYLOAD = 5;
+        
+        private ByteBuffer buffer;
+        
+        FrameBuilder(byte type, int payloadHint) {
+            buffer = ByteBuffer.allocate(PAYLOAD + payloadHint);
+            buffer.position(4);
+            buffer.put(type);
+        }
+        
+        FrameBuilder putInt(int value) {
+            ensure(4).putInt(value);
+            return this;
+        }
+        
+        FrameBuilder putInt(int offset, int value) {
+            buffer.putInt(offset, value);
+            return this;
+        }
+        
+        FrameBuilder putLong(long value) {
+            ensure(8).putLong(value);
+            return this;
+        }
+        
+        FrameBuilder putString(String value) {
+            byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length).putInt(bytes.length).put(bytes);
+            return this;
+        }
+        
+        ByteBuffer finish() {
+            buffer.putInt(0, buffer.position() - 4);
+            return buffer.flip();
+        }
+        
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            return buffer;
+        }
+    }
+}
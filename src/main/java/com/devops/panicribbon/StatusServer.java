@@ -0,0 +1,335 @@
+package com.devops.panicribbon;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves a {@link StatusSource}'s states to subscribed ribbons in
+ * {@link StatusProtocol} frames, over TCP or a Unix domain socket.
+ * <p>
+ * One publisher thread copies the status table every {@code publishMillis},
+ * compares it with the copy it sent last and broadcasts the slots that
+ * differ as one delta frame, so a tick costs a scan of a primitive array and
+ * subscribers receive only what changed. New subscribers are added by the
+ * publisher between ticks and get the service list and a full snapshot of
+ * the same copy the next delta is computed against, so they never miss a
+ * change. Each subscriber has its own writer thread and a bounded queue; one
+ * that falls too far behind is disconnected rather than slowing the others,
+ * and gets a fresh snapshot when it reconnects.
+ * <p>
+ * Subscribers can also ask for services to be refreshed or restarted; those
+ * go through the source's usual limits. Such requests are only taken from
+ * subscribers on the same host (loopback or a Unix domain socket) unless
+ * {@code remoteControl} is set; others still receive states.
+ */
+class StatusServer implements StatusSource.Listener {
+    static final String DEFAULT_ADDRESS = System.getProperty("panicribbon.daemon.listen", "127.0.0.1:9465");
+    static final long DEFAULT_PUBLISH_MILLIS = Long.getLong("panicribbon.daemon.publishMillis", 100L);
+    static final boolean DEFAULT_REMOTE_CONTROL = Boolean.getBoolean("panicribbon.daemon.remoteControl");
+    
+    private static final int QUEUE_FRAMES = 256;
+    
+    private final StatusSource source;
+    private final StatusTable table;
+    private final boolean remoteControl;
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final Thread acceptor;
+    private final ScheduledExecutorService publisher;
+    private final Queue<Subscriber> joining = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean servicesChanged = new AtomicBoolean(true);
+    private volatile int subscriberCount;
+    private volatile boolean closed = false;
+    // Publisher thread only
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private ByteBuffer servicesFrame;
+    private long[] sent = new long[0];
+    private int sentLength;
+    private long[] spare;
+    
+    StatusServer(SocketAddress address, StatusSource source, StatusTable table) throws IOException {
+        this(address, source, table, DEFAULT_PUBLISH_MILLIS);
+    }
+    
+    StatusServer(SocketAddress address, StatusSource source, StatusTable table, long publishMillis) throws IOException {
+        this(address, source, table, publishMillis, DEFAULT_REMOTE_CONTROL);
+    }
+    
+    StatusServer(SocketAddress address, StatusSource source, StatusTable table, long publishMillis,
+                 boolean remoteControl) throws IOException {
+        this.source = source;
+        this.table = table;
+        this.remoteControl = remoteControl;
+        if (address instanceof UnixDomainSocketAddress unix) {
+            // A socket file left behind by a daemon that was killed would make the bind fail
+            Files.deleteIfExists(unix.getPath());
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+            // A restarted daemon gets its port back while old connections linger in TIME_WAIT
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        }
+        server.bind(address);
+        this.address = server.getLocalAddress();
+        this.acceptor = Thread.ofPlatform().daemon().name("panic-status-accept").start(this::accept);
+        this.publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "panic-status-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher.scheduleWithFixedDelay(this::publish, 0, Math.max(1, publishMillis), TimeUnit.MILLISECONDS);
+    }
+    
+    /** The bound address, with the actual port if port 0 was requested. */
+    SocketAddress getAddress() {
+        return address;
+    }
+    
+    /** Subscribers connected as of the last tick. */
+    int getSubscribers() {
+        return subscriberCount;
+    }
+    
+    @Override
+    public void servicesChanged() {
+        servicesChanged.set(true);
+    }
+    
+    @Override
+    public void stateChanged(Main.ServiceStatus status) {
+        // Picked up by the next tick along with latency-only changes
+    }
+    
+    private void accept() {
+        while (!closed) {
+            try {
+                SocketChannel channel = server.accept();
+                if (address instanceof InetSocketAddress) {
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                }
+                joining.add(new Subscriber(channel));
+            } catch (IOException e) {
+                if (!closed) {
+                    source.log("Error accepting status subscriber: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    private void publish() {
+        try {
+            boolean servicesDirty = servicesChanged.getAndSet(false);
+            List<Main.ServiceStatus> statuses = source.getStatuses();
+            // Capacity first: the table only grows, so the copy covers at least this many slots
+            int length = table.capacity();
+            long[] current = table.snapshot(spare);
+            ByteBuffer full = null;
+            
+            subscribers.removeIf(subscriber -> subscriber.closed);
+            if (servicesDirty || servicesFrame == null) {
+                servicesFrame = StatusProtocol.services(statuses);
+                full = StatusProtocol.states(current, length);
+                broadcast(servicesFrame);
+                broadcast(full);
+            } else {
+                ByteBuffer delta = StatusProtocol.delta(sent, sentLength, current, length);
+                if (delta != null) {
+                    broadcast(delta);
+                }
+            }
+            
+            Subscriber joined;
+            while ((joined = joining.poll()) != null) {
+                if (full == null) {
+                    full = StatusProtocol.states(current, length);
+                }
+                if (joined.send(StatusProtocol.hello()) && joined.send(servicesFrame) && joined.send(full)) {
+                    subscribers.add(joined);
+                }
+            }
+            
+            subscriberCount = subscribers.size();
+            spare = sent;
+            sent = current;
+            sentLength = length;
+        } catch (RuntimeException e) {
+            // Keep publishing; a failed tick is resent as part of the next delta
+            source.log("Error publishing status: " + e);
+        }
+    }
+    
+    private void broadcast(ByteBuffer frame) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.send(frame);
+        }
+    }
+    
+    /** True if a subscriber at {@code remote} may refresh and restart services. */
+    static boolean allowsControl(SocketAddress remote, boolean remoteControl) {
+        if (remoteControl || !(remote instanceof InetSocketAddress inet)) {
+            return true; // opted in, or a Unix domain socket, which its file permissions guard
+        }
+        return inet.getAddress() != null && inet.getAddress().isLoopbackAddress();
+    }
+    
+    private void handle(Subscriber subscriber, ByteBuffer frame) {
+        byte type = frame.get();
+        if ((type == StatusProtocol.REFRESH || type == StatusProtocol.RESTART) && !subscriber.control) {
+            if (!subscriber.refused) {
+                subscriber.refused = true;
+                source.log("Ignoring refresh and restart requests from remote subscriber " + subscriber.remote() +
+                           " (set panicribbon.daemon.remoteControl=true to allow them)");
+            }
+            return;
+        }
+        if (type == StatusProtocol.REFRESH) {
+            int count = frame.getInt();
+            Map<Integer, Main.ServiceStatus> bySlot = bySlot();
+            List<Main.ServiceStatus> requested = new ArrayList<>(Math.min(count, bySlot.size()));
+            for (int i = 0; i < count; i++) {
+                Main.ServiceStatus status = bySlot.get(frame.getInt());
+                if (status != null) {
+                    requested.add(status);
+                }
+            }
+            source.log("Refresh requested by a subscriber for " + requested.size() + " service(s)");
+            source.refresh(requested);
+        } else if (type == StatusProtocol.RESTART) {
+            Main.ServiceStatus status = bySlot().get(frame.getInt());
+            if (status != null) {
+                source.log("Restart requested by a subscriber for: " + status.getService().getName());
+                source.restart(status);
+            }
+        }
+        // Anything else is from a newer ribbon; ignore it
+    }
+    
+    private Map<Integer, Main.ServiceStatus> bySlot() {
+        List<Main.ServiceStatus> statuses = source.getStatuses();
+        Map<Integer, Main.ServiceStatus> bySlot = new HashMap<>(statuses.size() * 2);
+        for (Main.ServiceStatus status : statuses) {
+            bySlot.put(status.getIndex(), status);
+        }
+        return bySlot;
+    }
+    
+    /** Stops accepting and publishing and disconnects every subscriber. */
+    void close() {
+        closed = true;
+        publisher.shutdownNow();
+        try {
+            server.close();
+        } catch (IOException e) {
+            // shutting down
+        }
+        try {
+            acceptor.join(TimeUnit.SECONDS.toMillis(5));
+            publisher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        Subscriber late;
+        while ((late = joining.poll()) != null) {
+            late.close();
+        }
+        if (address instanceof UnixDomainSocketAddress unix) {
+            try {
+                Files.deleteIfExists(unix.getPath());
+            } catch (IOException e) {
+                // left for the next daemon to clear
+            }
+        }
+    }
+    
+    private final class Subscriber {
+        final SocketChannel channel;
+        final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(QUEUE_FRAMES);
+        final Thread writer;
+        final boolean control;
+        volatile boolean closed;
+        // Reader thread only
+        boolean refused;
+        
+        Subscriber(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.control = allowsControl(channel.getRemoteAddress(), remoteControl);
+            this.writer = Thread.ofVirtual().name("panic-status-writer").start(this::write);
+            Thread.ofVirtual().name("panic-status-reader").start(this::read);
+        }
+        
+        /** Queues a frame; false if the subscriber is gone or too far behind (and now disconnected). */
+        boolean send(ByteBuffer frame) {
+            if (closed) {
+                return false;
+            }
+            if (!queue.offer(frame.duplicate())) {
+                source.log("Disconnecting status subscriber " + remote() + ": " + QUEUE_FRAMES + " frames behind");
+                close();
+                return false;
+            }
+            return true;
+        }
+        
+        private void write() {
+            try {
+                while (!closed) {
+                    StatusProtocol.write(channel, queue.take());
+                }
+            } catch (IOException | InterruptedException e) {
+                close();
+            }
+        }
+        
+        private void read() {
+            try {
+                while (!closed) {
+                    handle(this, StatusProtocol.read(channel));
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+            }
+        }
+        
+        private String remote() {
+            try {
+                SocketAddress remote = channel.getRemoteAddress();
+                return remote instanceof InetSocketAddress ? remote.toString() : "(local)";
+            } catch (IOException e) {
+                return "(closed)";
+            }
+        }
+        
+        void close() {
+            closed = true;
+            writer.interrupt();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // already gone
+            }
+        }
+    }
+}
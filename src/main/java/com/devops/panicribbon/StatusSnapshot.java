@@ -0,0 +1,121 @@
+package com.devops.panicribbon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Last-known state of every service, saved so that the next start can show
+ * it (as {@linkplain StatusTable#isStale stale}) instead of a ribbon of
+ * unknowns while the first probes run.
+ * <p>
+ * The file is small and rewritten whole:
+ * <pre>
+ *  int   magic
+ *  int   version
+ *  long  saved at, epoch millis
+ *  int   count
+ *  count x (UTF service key, long packed status)
+ * </pre>
+ * Entries are keyed by {@link ServiceRegistry#keysOf registry key}, so
+ * services that were reordered, added or removed in services.json between
+ * runs still find their own state. A new file is written next to the old one
+ * and moved over it, so a crash mid-save leaves the previous snapshot intact.
+ */
+final class StatusSnapshot {
+    private static final int MAGIC = 0x50525354; // "PRST"
+    private static final int VERSION = 1;
+    
+    final long savedAtMillis;
+    private final Map<String, Long> packedByKey;
+    
+    private StatusSnapshot(long savedAtMillis, Map<String, Long> packedByKey) {
+        this.savedAtMillis = savedAtMillis;
+        this.packedByKey = packedByKey;
+    }
+    
+    /** Saves every service with a known state. */
+    static void save(Path file, List<Main.ServiceStatus> statuses, long nowMillis) throws IOException {
+        List<String> keys = ServiceRegistry.keysOf(statuses.stream().map(Main.ServiceStatus::getService).toList());
+        long[] packed = new long[statuses.size()];
+        int count = 0;
+        for (int i = 0; i < statuses.size(); i++) {
+            packed[i] = statuses.get(i).snapshot();
+            if (StatusTable.state(packed[i]) != StatusTable.State.UNKNOWN) {
+                count++;
+            }
+        }
+        
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(nowMillis);
+            out.writeInt(count);
+            for (int i = 0; i < statuses.size(); i++) {
+                if (StatusTable.state(packed[i]) != StatusTable.State.UNKNOWN) {
+                    out.writeUTF(keys.get(i));
+                    out.writeLong(packed[i]);
+                }
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /** Reads a snapshot; null if there is none yet. */
+    static StatusSnapshot read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a status snapshot: " + file);
+            }
+            long savedAtMillis = in.readLong();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt status snapshot: " + file);
+            }
+            Map<String, Long> packedByKey = new HashMap<>(Math.min(count, 1 << 20) * 2);
+            for (int i = 0; i < count; i++) {
+                packedByKey.put(in.readUTF(), in.readLong());
+            }
+            return new StatusSnapshot(savedAtMillis, packedByKey);
+        }
+    }
+    
+    /**
+     * Gives each service that has a saved state that state, marked stale.
+     * Services that were restarting are left unknown, since the restart is
+     * over. Call before probing starts. Returns the statuses restored.
+     */
+    List<Main.ServiceStatus> restore(List<Main.ServiceStatus> statuses, StatusTable table) {
+        List<String> keys = ServiceRegistry.keysOf(statuses.stream().map(Main.ServiceStatus::getService).toList());
+        List<Main.ServiceStatus> restored = new ArrayList<>();
+        for (int i = 0; i < statuses.size(); i++) {
+            Main.ServiceStatus status = statuses.get(i);
+            Long packed = packedByKey.get(keys.get(i));
+            if (packed == null || StatusTable.state(packed) == StatusTable.State.RESTARTING ||
+                StatusTable.state(packed) == StatusTable.State.UNKNOWN) {
+                continue;
+            }
+            table.set(status.getIndex(), StatusTable.stale(packed));
+            restored.add(status);
+        }
+        return restored;
+    }
+}
@@ -0,0 +1,47 @@
+package com.devops.panicribbon;
+
+import java.util.List;
+
+/**
+ * Where the ribbon gets its services and states from: a {@link Monitor}
+ * probing in-process, or a {@link StatusClient} subscribed to a headless
+ * {@link Daemon}. Either way the ribbon reads states from the statuses'
+ * {@link StatusTable} and only hears about changes through the listener.
+ */
+interface StatusSource {
+    /** Called on the source's own threads, never on the event thread. */
+    interface Listener {
+        /** The service list was loaded or replaced; fetch it again with {@link #getStatuses}. */
+        void servicesChanged();
+        
+        /** A service changed state, or a stale state was confirmed (its {@link StatusTable#appearance} changed). */
+        void stateChanged(Main.ServiceStatus status);
+        
+        /**
+         * A service's packed status changed in any way, latency included.
+         * Only a {@link StatusClient} reports these, before the matching
+         * {@link #stateChanged}.
+         */
+        default void statusUpdated(Main.ServiceStatus status) {
+        }
+    }
+    
+    /** Starts loading services and publishing their states to {@code listener}. */
+    void start(Listener listener);
+    
+    /** Current services in display order. */
+    List<Main.ServiceStatus> getStatuses();
+    
+    /** Probes the given services right away. */
+    void refresh(List<Main.ServiceStatus> statuses);
+    
+    /** Runs the restart script of the given service, subject to the restart limits. */
+    void restart(Main.ServiceStatus status);
+    
+    /** Probe history for tooltips, or null if none is available. */
+    HistoryStore getHistory();
+    
+    void log(String message);
+    
+    void shutdown();
+}
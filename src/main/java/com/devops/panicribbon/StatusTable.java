@@ -0,0 +1,208 @@
+package com.devops.panicribbon;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Primitive status table: one packed {@code long} per service.
+ * <p>
+ * Each slot holds everything the renderer needs about a service, so an update
+ * is a single CAS and a read can never see a torn health/latency pair:
+ * <pre>
+ *  bits  0-31  latency in microseconds (unsigned, all ones = unknown)
+ *  bits 32-41  HTTP status code (0 = none)
+ *  bits 42-45  {@link State} ordinal
+ *  bits 46-63  per-slot update counter (wraps, skipping 0)
+ * </pre>
+ * A counter of 0 on a slot with a known state marks it {@linkplain #isStale
+ * stale}: a last-known value restored from a snapshot that no probe has
+ * confirmed yet. A table-wide version is bumped whenever any slot changes
+ * {@linkplain #appearance appearance}, so readers can cheaply tell whether
+ * anything visible changed since their last look.
+ * 100k services cost 800 KB.
+ * <p>
+ * Slots live in fixed-size pages that never move, so the table can grow (when
+ * services are added by a config reload) while probe threads keep updating
+ * existing slots; growing only publishes a longer page directory.
+ */
+class StatusTable {
+    /**
+     * {@code SLOW} is a healthy answer that took much longer than usual.
+     * {@code RESTARTING} is set while a restart script runs and holds until it finishes.
+     */
+    enum State { UNKNOWN, UP, DOWN, RESTARTING, SLOW }
+    
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final State[] STATES = State.values();
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    
+    private static final long LATENCY_MASK = 0xFFFF_FFFFL;
+    private static final int CODE_SHIFT = 32;
+    private static final long CODE_MASK = 0x3FF;
+    private static final int STATE_SHIFT = 42;
+    private static final long STATE_MASK = 0xF;
+    private static final int COUNTER_SHIFT = 46;
+    private static final long COUNTER_MASK = (1L << 18) - 1;
+    
+    /** Added to a {@link State} ordinal by {@link #appearance} for a stale slot. */
+    static final int STALE_APPEARANCE = 0x10;
+    
+    static final long UNKNOWN_LATENCY = LATENCY_MASK;
+    static final long INITIAL = pack(State.UNKNOWN, 0, -1, 0);
+    
+    private volatile long[][] pages = new long[0][];
+    private volatile int capacity;
+    private final AtomicLong version = new AtomicLong();
+    
+    StatusTable(int capacity) {
+        ensureCapacity(capacity);
+    }
+    
+    int capacity() {
+        return capacity;
+    }
+    
+    /** Grows the table to at least {@code capacity} slots; new slots start as {@link #INITIAL}. */
+    synchronized void ensureCapacity(int capacity) {
+        if (capacity <= this.capacity) {
+            return;
+        }
+        int pageCount = (capacity + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+        if (pageCount > pages.length) {
+            long[][] grown = Arrays.copyOf(pages, pageCount);
+            for (int i = pages.length; i < pageCount; i++) {
+                grown[i] = new long[PAGE_SIZE];
+                Arrays.fill(grown[i], INITIAL);
+            }
+            pages = grown;
+        }
+        this.capacity = capacity;
+    }
+    
+    /** Bumped whenever a slot changes appearance; never decreases. */
+    long version() {
+        return version.get();
+    }
+    
+    long get(int slot) {
+        return (long) SLOTS.getAcquire(pages[slot >>> PAGE_SHIFT], slot & PAGE_MASK);
+    }
+    
+    /**
+     * Publishes a new probe result for the slot with a single CAS. Returns the
+     * previous packed value.
+     */
+    long update(int slot, State state, int statusCode, long latencyMicros) {
+        long[] page = pages[slot >>> PAGE_SHIFT];
+        int offset = slot & PAGE_MASK;
+        while (true) {
+            long previous = (long) SLOTS.getVolatile(page, offset);
+            long next = pack(state, statusCode, latencyMicros, counter(previous) % COUNTER_MASK + 1);
+            if (SLOTS.compareAndSet(page, offset, previous, next)) {
+                if (appearance(previous) != appearance(next)) {
+                    version.incrementAndGet();
+                }
+                return previous;
+            }
+        }
+    }
+    
+    /**
+     * Overwrites a slot with a packed value produced elsewhere, such as one
+     * received from a daemon. Returns the previous packed value.
+     */
+    long set(int slot, long packed) {
+        long previous = (long) SLOTS.getAndSet(pages[slot >>> PAGE_SHIFT], slot & PAGE_MASK, packed);
+        if (appearance(previous) != appearance(packed)) {
+            version.incrementAndGet();
+        }
+        return previous;
+    }
+    
+    /** Clears a slot back to its initial value, e.g. when a service is removed. */
+    void reset(int slot) {
+        long previous = (long) SLOTS.getAndSet(pages[slot >>> PAGE_SHIFT], slot & PAGE_MASK, INITIAL);
+        if (appearance(previous) != appearance(INITIAL)) {
+            version.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Copies all slots into {@code into} (allocated if null or too small).
+     * Retries a few times so the copy reflects a single table version when
+     * writers are active; every slot is always internally consistent.
+     */
+    long[] snapshot(long[] into) {
+        int length = capacity;
+        long[][] directory = pages;
+        long[] copy = into != null && into.length >= length ? into : new long[length];
+        for (int attempt = 0; attempt < 3; attempt++) {
+            long before = version.get();
+            for (int i = 0; i < length; i++) {
+                copy[i] = (long) SLOTS.getAcquire(directory[i >>> PAGE_SHIFT], i & PAGE_MASK);
+            }
+            if (version.get() == before) {
+                break;
+            }
+        }
+        return copy;
+    }
+    
+    static long pack(State state, int statusCode, long latencyMicros, long counter) {
+        long latency = latencyMicros < 0 ? UNKNOWN_LATENCY : Math.min(latencyMicros, UNKNOWN_LATENCY - 1);
+        long code = statusCode < 0 || statusCode > CODE_MASK ? 0 : statusCode;
+        return latency
+            | (code << CODE_SHIFT)
+            | ((long) state.ordinal() << STATE_SHIFT)
+            | ((counter & COUNTER_MASK) << COUNTER_SHIFT);
+    }
+    
+    static State state(long packed) {
+        return STATES[(int) ((packed >>> STATE_SHIFT) & STATE_MASK)];
+    }
+    
+    static int statusCode(long packed) {
+        return (int) ((packed >>> CODE_SHIFT) & CODE_MASK);
+    }
+    
+    /** Latency in microseconds, or -1 if unknown. */
+    static long latencyMicros(long packed) {
+        long latency = packed & LATENCY_MASK;
+        return latency == UNKNOWN_LATENCY ? -1 : latency;
+    }
+    
+    static long counter(long packed) {
+        return (packed >>> COUNTER_SHIFT) & COUNTER_MASK;
+    }
+    
+    /**
+     * The same status marked as not yet confirmed, for restoring a value
+     * saved by an earlier run. The next {@link #update} of the slot clears it.
+     */
+    static long stale(long packed) {
+        return packed & ~(COUNTER_MASK << COUNTER_SHIFT);
+    }
+    
+    static boolean isStale(long packed) {
+        return counter(packed) == 0 && state(packed) != State.UNKNOWN;
+    }
+    
+    /**
+     * What the ribbon shows for a slot: the {@link State} ordinal, plus
+     * {@link #STALE_APPEARANCE} while the slot is stale. Listeners hear about
+     * a slot when this changes.
+     */
+    static int appearance(long packed) {
+        return state(packed).ordinal() | (isStale(packed) ? STALE_APPEARANCE : 0);
+    }
+    
+    /** Up, or slow but answering. */
+    static boolean isHealthy(long packed) {
+        State state = state(packed);
+        return state == State.UP || state == State.SLOW;
+    }
+}
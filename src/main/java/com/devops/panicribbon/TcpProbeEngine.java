@@ -0,0 +1,319 @@
+package com.devops.panicribbon;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * TCP connect probes multiplexed on one {@link Selector}.
+ * <p>
+ * A probe opens a non-blocking {@link SocketChannel}, starts the connect and
+ * registers for {@code OP_CONNECT}; a single daemon thread completes every
+ * connect, so thousands of checks can be outstanding at once without a
+ * thread each. A service is healthy if the connection is accepted within its
+ * deadline; the socket is closed straight away and the connect time is the
+ * probe latency.
+ * <p>
+ * Deadlines are kept in a min-heap and bound the selector's wait, so an
+ * unanswered SYN fails at its own deadline rather than at the next poll.
+ * Like {@link ProbeEngine}, a global in-flight limit (bounded by file
+ * descriptors) queues probes beyond it, and results are handed to the
+ * callback executor so listeners never run on the selector thread.
+ * <p>
+ * An error in one connect fails that probe only. If the selector itself
+ * breaks, the error is logged and every outstanding and later probe fails
+ * with it, rather than being cancelled, so TCP services show as down.
+ */
+class TcpProbeEngine {
+    static final int DEFAULT_MAX_IN_FLIGHT = Integer.getInteger("panicribbon.tcp.maxInFlight", 4096);
+    
+    private final int maxInFlight;
+    private final Executor callbacks;
+    private final Consumer<String> log;
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Connect> submitted = new ConcurrentLinkedQueue<>();
+    // Selector thread only
+    private final Queue<Connect> waiting = new ArrayDeque<>();
+    private final PriorityQueue<Connect> deadlines =
+        new PriorityQueue<>((a, b) -> Long.compare(a.deadlineNanos - b.deadlineNanos, 0));
+    private volatile int inFlight;
+    private volatile boolean closed = false;
+    /** Why the selector thread stopped, if it broke rather than being shut down. */
+    private volatile IOException failure;
+    
+    TcpProbeEngine(Executor callbacks, Consumer<String> log) throws IOException {
+        this(DEFAULT_MAX_IN_FLIGHT, callbacks, log);
+    }
+    
+    TcpProbeEngine(int maxInFlight, Executor callbacks, Consumer<String> log) throws IOException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.maxInFlight = maxInFlight;
+        this.callbacks = callbacks;
+        this.log = log;
+        this.selector = Selector.open();
+        this.thread = Thread.ofPlatform().daemon().name("panic-tcp-probe").start(this::run);
+    }
+    
+    int getInFlight() {
+        return inFlight;
+    }
+    
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+    
+    /**
+     * Queues a connect probe of the given TCP service. As with
+     * {@link ProbeEngine#probe}, the future completes normally unless the
+     * engine is shut down; failures are reported through the result.
+     */
+    CompletableFuture<ProbeEngine.ProbeResult> probe(Main.Service service) {
+        return probe(service, service.getTimeout());
+    }
+    
+    /** Probes with the given connect deadline instead of the configured one. */
+    CompletableFuture<ProbeEngine.ProbeResult> probe(Main.Service service, Duration timeout) {
+        CompletableFuture<ProbeEngine.ProbeResult> result = new CompletableFuture<>();
+        if (closed) {
+            fail(result, failure);
+            return result;
+        }
+        InetSocketAddress address;
+        try {
+            // Name lookups block, so they happen on the caller rather than the selector thread
+            address = new InetSocketAddress(service.getHost(), service.getPort());
+            if (address.isUnresolved()) {
+                throw new UnknownHostException(service.getHost());
+            }
+        } catch (IOException | RuntimeException e) {
+            result.complete(ProbeEngine.ProbeResult.failure(e, 0));
+            return result;
+        }
+        Connect connect = new Connect(address, timeout.toNanos(), result);
+        submitted.add(connect);
+        selector.wakeup();
+        if (closed && submitted.remove(connect)) {
+            fail(result, failure); // the selector thread stopped after the check above
+        }
+        return result;
+    }
+    
+    private void run() {
+        try {
+            while (!closed) {
+                try {
+                    // Expire first so slots freed by timeouts go to queued probes straight away
+                    expireDeadlines();
+                    startSubmitted();
+                    selector.select(selectTimeoutMillis());
+                } catch (IOException | ClosedSelectorException e) {
+                    failure = e instanceof IOException ? (IOException) e : new IOException("TCP probe selector closed", e);
+                    closed = true;
+                    log.accept("TCP probe selector failed: " + e + " (TCP services will report errors)");
+                    break;
+                } catch (RuntimeException e) {
+                    // A bug in one pass must not stop TCP probing for good
+                    log.accept("Error in TCP probe loop: " + e);
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    finishConnect(key);
+                }
+                selector.selectedKeys().clear();
+            }
+        } finally {
+            cancelAll();
+        }
+    }
+    
+    private void startSubmitted() {
+        Connect next;
+        while ((next = submitted.poll()) != null) {
+            waiting.add(next);
+        }
+        while (inFlight < maxInFlight && (next = waiting.poll()) != null) {
+            start(next);
+        }
+    }
+    
+    private void start(Connect connect) {
+        connect.startNanos = System.nanoTime();
+        connect.deadlineNanos = connect.startNanos + connect.timeoutNanos;
+        try {
+            connect.channel = openChannel();
+        } catch (IOException | RuntimeException e) {
+            // Typically out of file descriptors; fail this probe and keep going
+            connect.done = true;
+            deliver(connect, e);
+            return;
+        }
+        inFlight++;
+        try {
+            connect.channel.configureBlocking(false);
+            if (connect.channel.connect(connect.address)) {
+                finish(connect, null);
+                return;
+            }
+            connect.channel.register(selector, SelectionKey.OP_CONNECT, connect);
+            deadlines.add(connect);
+        } catch (IOException | RuntimeException e) {
+            finish(connect, e);
+        }
+    }
+    
+    /** Opens the socket for one probe; a seam for tests. */
+    SocketChannel openChannel() throws IOException {
+        return SocketChannel.open();
+    }
+    
+    private void finishConnect(SelectionKey key) {
+        Connect connect = (Connect) key.attachment();
+        if (connect.done) {
+            return;
+        }
+        try {
+            if (((SocketChannel) key.channel()).finishConnect()) {
+                finish(connect, null);
+            }
+        } catch (IOException | RuntimeException e) {
+            finish(connect, e);
+        }
+    }
+    
+    /** Fails every connect past its deadline. Completed connects are dropped from the heap lazily. */
+    private void expireDeadlines() {
+        long now = System.nanoTime();
+        Connect head;
+        while ((head = deadlines.peek()) != null && (head.done || head.deadlineNanos - now <= 0)) {
+            deadlines.poll();
+            if (!head.done) {
+                finish(head, new SocketTimeoutException("connect timed out"));
+            }
+        }
+    }
+    
+    /** Time until the earliest deadline, or 0 (wait for a wakeup) if nothing is pending. */
+    private long selectTimeoutMillis() {
+        Connect head = deadlines.peek();
+        if (head == null) {
+            return 0;
+        }
+        // select(0) blocks indefinitely, so round up to at least one millisecond
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(head.deadlineNanos - System.nanoTime() + 999_999));
+    }
+    
+    private void finish(Connect connect, Throwable error) {
+        connect.done = true;
+        inFlight--;
+        try {
+            connect.channel.close(); // also cancels the key
+        } catch (IOException e) {
+            // nothing to recover; the probe result stands
+        }
+        deliver(connect, error);
+    }
+    
+    private void deliver(Connect connect, Throwable error) {
+        long latencyNanos = System.nanoTime() - connect.startNanos;
+        ProbeEngine.ProbeResult result = error == null
+            ? ProbeEngine.ProbeResult.connected(latencyNanos)
+            : ProbeEngine.ProbeResult.failure(error, latencyNanos);
+        try {
+            callbacks.execute(() -> connect.result.complete(result));
+        } catch (RuntimeException e) {
+            connect.result.cancel(false); // callback executor already shut down
+        }
+    }
+    
+    /** Ends every outstanding probe: cancelled on shutdown, failed if the selector broke. */
+    private void cancelAll() {
+        for (Connect connect : deadlines) {
+            if (!connect.done) {
+                connect.done = true;
+                fail(connect.result, failure);
+                try {
+                    connect.channel.close();
+                } catch (IOException e) {
+                    // closing anyway
+                }
+            }
+        }
+        Connect queued;
+        while ((queued = waiting.poll()) != null) {
+            fail(queued.result, failure);
+        }
+        while ((queued = submitted.poll()) != null) {
+            fail(queued.result, failure);
+        }
+        deadlines.clear();
+        inFlight = 0;
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // shutting down
+        }
+    }
+    
+    private void fail(CompletableFuture<ProbeEngine.ProbeResult> result, IOException error) {
+        if (error == null) {
+            result.cancel(false);
+            return;
+        }
+        try {
+            callbacks.execute(() -> result.complete(ProbeEngine.ProbeResult.failure(error, 0)));
+        } catch (RuntimeException e) {
+            result.cancel(false);
+        }
+    }
+    
+    /**
+     * Cancels queued and in-flight probes, closes their sockets and stops the
+     * selector thread.
+     */
+    void shutdown() {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything submitted while the thread was exiting
+        Connect late;
+        while ((late = submitted.poll()) != null) {
+            fail(late.result, failure);
+        }
+    }
+    
+    private static final class Connect {
+        final InetSocketAddress address;
+        final long timeoutNanos;
+        final CompletableFuture<ProbeEngine.ProbeResult> result;
+        SocketChannel channel;
+        long startNanos;
+        long deadlineNanos;
+        boolean done;
+        
+        Connect(InetSocketAddress address, long timeoutNanos, CompletableFuture<ProbeEngine.ProbeResult> result) {
+            this.address = address;
+            this.timeoutNanos = timeoutNanos;
+            this.result = result;
+        }
+    }
+}
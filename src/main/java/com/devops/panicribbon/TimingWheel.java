@@ -0,0 +1,266 @@
+package com.devops.panicribbon;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel: one timer entry per scheduled task, driven by a single
+ * ticker thread.
+ * <p>
+ * The wheel is a ring of {@code wheelSize} buckets, each a doubly linked list
+ * of entries due within that tick (plus whole rotations, counted down in
+ * {@code rounds}). {@link #schedule} and {@link Timeout#cancel} only enqueue
+ * onto lock-free queues, so both are O(1) and never contend with the ticker;
+ * the ticker links new entries into their bucket and unlinks cancelled ones in
+ * O(1) before each tick. A tick then walks only its own bucket, so its cost
+ * depends on how many timers share that bucket rather than on the total
+ * number of timers.
+ * <p>
+ * Expired tasks are handed to the dispatch executor; the ticker itself never
+ * runs them.
+ */
+class TimingWheel {
+    static final long DEFAULT_TICK_MILLIS = Long.getLong("panicribbon.timer.tickMillis", 10L);
+    static final int DEFAULT_WHEEL_SIZE = 4096;
+    
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final Executor dispatcher;
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Timeout> additions = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancellations = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong expired = new AtomicLong();
+    private final Thread ticker;
+    private volatile boolean running = true;
+    private volatile long ticks;
+    private volatile long tickWorkNanos;
+    
+    TimingWheel(Executor dispatcher, String threadName) {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE, dispatcher, threadName);
+    }
+    
+    TimingWheel(long tickDuration, TimeUnit unit, int wheelSize, Executor dispatcher, String threadName) {
+        this.tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), unit.toNanos(tickDuration));
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.dispatcher = dispatcher;
+        this.ticker = new Thread(this::run, threadName);
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+    
+    /** Schedules a task; O(1), callable from any thread including tasks themselves. */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new RejectedExecutionException("Timing wheel stopped");
+        }
+        long deadline = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        additions.add(timeout);
+        return timeout;
+    }
+    
+    /** Timers scheduled but neither expired nor cancelled. */
+    int getPending() {
+        return pending.get();
+    }
+    
+    long getExpiredCount() {
+        return expired.get();
+    }
+    
+    long getTicks() {
+        return ticks;
+    }
+    
+    /** Total time the ticker spent processing ticks (queues plus bucket walk). */
+    long getTickWorkNanos() {
+        return tickWorkNanos;
+    }
+    
+    long getTickNanos() {
+        return tickNanos;
+    }
+    
+    /** Stops the ticker; pending timers never fire. */
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+    
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long wakeAt = (tick + 1) * tickNanos;
+            long sleep;
+            while (running && (sleep = wakeAt - (System.nanoTime() - startNanos)) > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            if (!running) {
+                break;
+            }
+            long begin = System.nanoTime();
+            processCancellations();
+            transferAdditions(tick);
+            expireBucket(wheel[(int) (tick & mask)], begin - startNanos);
+            tick++;
+            ticks = tick;
+            tickWorkNanos += System.nanoTime() - begin;
+        }
+    }
+    
+    private void processCancellations() {
+        Timeout timeout;
+        while ((timeout = cancellations.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+    
+    private void transferAdditions(long currentTick) {
+        // Bounded so a producer flood cannot starve the tick
+        for (int i = 0; i < 100_000; i++) {
+            Timeout timeout = additions.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long due = timeout.deadlineNanos / tickNanos;
+            timeout.rounds = (due - currentTick) / wheel.length;
+            // Anything already overdue goes into the current bucket
+            long slot = Math.max(due, currentTick);
+            wheel[(int) (slot & mask)].add(timeout);
+        }
+    }
+    
+    private void expireBucket(Bucket bucket, long nowNanos) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds <= 0 && timeout.deadlineNanos <= nowNanos) {
+                bucket.remove(timeout);
+                timeout.expire();
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+    
+    /** Handle for one scheduled task. */
+    static final class Timeout {
+        private static final VarHandle STATE;
+        static {
+            try {
+                STATE = MethodHandles.lookup().findVarHandle(Timeout.class, "state", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+        
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadlineNanos;
+        private volatile int state = PENDING;
+        // Owned by the ticker thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+        
+        private Timeout(TimingWheel wheel, Runnable task, long deadlineNanos) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+        
+        /** Cancels the task if it has not fired yet. O(1); returns false if too late. */
+        boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.pending.decrementAndGet();
+            wheel.cancellations.add(this);
+            return true;
+        }
+        
+        boolean isCancelled() {
+            return state == CANCELLED;
+        }
+        
+        boolean isExpired() {
+            return state == EXPIRED;
+        }
+        
+        private void expire() {
+            if (!STATE.compareAndSet(this, PENDING, EXPIRED)) {
+                return;
+            }
+            wheel.pending.decrementAndGet();
+            wheel.expired.incrementAndGet();
+            try {
+                wheel.dispatcher.execute(task);
+            } catch (RejectedExecutionException e) {
+                // dispatcher shut down
+            }
+        }
+    }
+    
+    /** Intrusive doubly linked list; ticker thread only. */
+    private static final class Bucket {
+        Timeout head;
+        Timeout tail;
+        
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+        
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.devops.panicribbon;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Frame;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.Window;
+import java.util.function.Supplier;
+
+/**
+ * Single tooltip window reused for the lifetime of the ribbon.
+ * <p>
+ * The native window is created once and only hidden, moved and shown
+ * afterwards. Text is keyed by the hovered bucket: it is rebuilt only when the
+ * key changes, so sweeping the mouse inside one segment just relocates the
+ * window. Event thread only.
+ */
+class TooltipWindow {
+    private static final int OFFSET_X = 15;
+    private static final int OFFSET_Y = -10;
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 11);
+    private static final Color BACKGROUND = new Color(255, 255, 200);
+    
+    private final Window window;
+    private final Content content = new Content();
+    private final Canvas canvas = new Canvas() {
+        @Override
+        public void paint(Graphics g) {
+            content.paint(g);
+        }
+    };
+    
+    TooltipWindow(Frame owner) {
+        window = new Window(owner);
+        window.setAlwaysOnTop(true);
+        window.setFocusableWindowState(false);
+        canvas.setFont(FONT);
+        canvas.setBackground(BACKGROUND);
+        canvas.setForeground(Color.BLACK);
+        window.add(canvas);
+    }
+    
+    /**
+     * Shows the tooltip for {@code key} near the given screen position. The
+     * text supplier is only called when the key differs from the one shown.
+     */
+    void show(int key, Supplier<String> text, int screenX, int screenY) {
+        if (content.set(key, text)) {
+            Dimension size = content.size(canvas.getFontMetrics(FONT));
+            window.setSize(size);
+            canvas.repaint();
+        }
+        Rectangle screen = window.getOwner().getGraphicsConfiguration().getBounds();
+        int x = screenX + OFFSET_X;
+        if (x + window.getWidth() > screen.x + screen.width) {
+            // The ribbon sits on the right edge; flip to the left of the cursor
+            x = screenX - OFFSET_X - window.getWidth();
+        }
+        int y = Math.max(screen.y, Math.min(screenY + OFFSET_Y, screen.y + screen.height - window.getHeight()));
+        if (window.getX() != x || window.getY() != y) {
+            window.setLocation(x, y);
+        }
+        if (!window.isVisible()) {
+            window.setVisible(true);
+        }
+    }
+    
+    /** Key of the content currently shown, or -1 when hidden. */
+    int getKey() {
+        return content.getKey();
+    }
+    
+    void hide() {
+        content.clear();
+        if (window.isVisible()) {
+            window.setVisible(false);
+        }
+    }
+    
+    void dispose() {
+        content.clear();
+        window.dispose();
+    }
+    
+    /** Text state and layout, kept apart from the native window. */
+    static final class Content {
+        static final int PADDING = 3;
+        
+        private int key = -1;
+        private String[] lines = new String[0];
+        
+        /** Replaces the text if the key changed. Returns true if it did. */
+        boolean set(int key, Supplier<String> text) {
+            if (key == this.key && key >= 0) {
+                return false;
+            }
+            this.key = key;
+            this.lines = text.get().split("\n");
+            return true;
+        }
+        
+        void clear() {
+            key = -1;
+            lines = new String[0];
+        }
+        
+        int getKey() {
+            return key;
+        }
+        
+        String[] getLines() {
+            return lines;
+        }
+        
+        Dimension size(FontMetrics metrics) {
+            int width = 0;
+            for (String line : lines) {
+                width = Math.max(width, metrics.stringWidth(line));
+            }
+            return new Dimension(width + 2 * PADDING, lines.length * metrics.getHeight() + 2 * PADDING);
+        }
+        
+        void paint(Graphics g) {
+            FontMetrics metrics = g.getFontMetrics();
+            int y = PADDING + metrics.getAscent();
+            for (String line : lines) {
+                g.drawString(line, PADDING, y);
+                y += metrics.getHeight();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.devops.panicribbon;
+
+/**
+ * A service moving from one state to another, such as UP to DOWN, DOWN to
+ * UP, into SLOW or into RESTARTING, as detected when a result is published
+ * with {@link Main.ServiceStatus#update(StatusTable.State, int, long, Throwable, TransitionStream)}.
+ * Results that leave the state as it was are not transitions. Immutable.
+ */
+final class Transition {
+    final Main.ServiceStatus status;
+    final StatusTable.State from;
+    final StatusTable.State to;
+    /** HTTP status of the result that caused it; 0 for a TCP connect, -1 if there was no answer. */
+    final int statusCode;
+    /** Latency of that result; -1 if there was none. */
+    final long latencyMicros;
+    /** Why the probe failed, if it did. */
+    final Throwable cause;
+    final long timeMillis;
+    
+    Transition(Main.ServiceStatus status, StatusTable.State from, StatusTable.State to, int statusCode,
+               long latencyMicros, Throwable cause, long timeMillis) {
+        this.status = status;
+        this.from = from;
+        this.to = to;
+        this.statusCode = statusCode;
+        this.latencyMicros = latencyMicros;
+        this.cause = cause;
+        this.timeMillis = timeMillis;
+    }
+    
+    /** E.g. {@code api UP -> DOWN (503) - 12ms}, the form written to the log. */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(status.getService().getName())
+            .append(' ').append(from).append(" -> ").append(to);
+        if (cause != null) {
+            text.append(" - ").append(cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+        } else if (latencyMicros >= 0) {
+            text.append(" (").append(statusCode == 0 ? "connected" : Integer.toString(statusCode)).append(") - ")
+                .append(latencyMicros / 1_000L).append("ms");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,218 @@
+package com.devops.panicribbon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Fans {@link Transition}s out to every subscribed listener.
+ * <p>
+ * Transitions go into one bounded ring, without locks, that all subscribers
+ * read: a publisher claims a position with one atomic increment and never
+ * waits for the listeners, whatever they are doing. It only yields, briefly,
+ * to a publisher a whole ring earlier that is still writing the same slot.
+ * Each subscription has its own cursor and thread, and hands its listener
+ * everything published since its last call as one batch, in publication
+ * order. A listener that falls a whole ring behind loses the oldest
+ * transitions it has not read, is told how many, and carries on from the
+ * oldest one still in the ring. That is its backpressure: a slow listener
+ * only ever costs itself, never the probes or the other listeners.
+ */
+class TransitionStream {
+    static final int DEFAULT_CAPACITY = Integer.getInteger("panicribbon.transitions.capacity", 4096);
+    static final int MAX_BATCH = 256;
+    
+    private static final long WRITING = -1;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long CLOSE_WAIT_MILLIS = 1_000;
+    
+    interface Listener {
+        /**
+         * Transitions published since the last call, oldest first. Called on the
+         * subscription's own thread; the list is only valid during the call.
+         */
+        void transitions(List<Transition> batch);
+        
+        /** This listener fell a whole ring behind and lost {@code count} transitions. */
+        default void missed(long count) {
+        }
+    }
+    
+    private final int mask;
+    /** Position + 1 once the slot holds that position's transition, {@link #WRITING} while it is replaced. */
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<Transition> slots;
+    private final AtomicLong tail = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Consumer<String> log;
+    private volatile boolean closed;
+    
+    TransitionStream(int requestedCapacity, Consumer<String> log) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.log = log;
+    }
+    
+    int capacity() {
+        return mask + 1;
+    }
+    
+    /** Transitions published so far. */
+    long getPublished() {
+        return tail.get();
+    }
+    
+    List<Subscription> getSubscriptions() {
+        return subscriptions;
+    }
+    
+    void publish(Transition transition) {
+        if (closed) {
+            return;
+        }
+        long position = tail.getAndIncrement();
+        int index = (int) (position & mask);
+        // Take the slot over from the previous lap only once that lap's transition is in; otherwise
+        // a reader could match that lap's sequence against this transition. Readers that see the
+        // slot mid-replacement retry rather than take the wrong transition.
+        long previousLap = position < capacity() ? 0 : position - capacity() + 1;
+        while (!sequences.compareAndSet(index, previousLap, WRITING)) {
+            Thread.yield(); // let that publisher run if it shares our core
+        }
+        slots.set(index, transition);
+        sequences.set(index, position + 1);
+        for (Subscription subscription : subscriptions) {
+            if (subscription.waiting) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+    
+    /** Delivers transitions published from now on to {@code listener}, on a thread of its own. */
+    Subscription subscribe(String name, Listener listener) {
+        Subscription subscription = new Subscription(name, listener, tail.get());
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+    
+    /** Stops accepting transitions and waits briefly for each listener to receive the ones already published. */
+    void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+    
+    /** One listener's cursor into the ring. */
+    final class Subscription {
+        final String name;
+        private final Listener listener;
+        private final Thread thread;
+        private long next;
+        private volatile boolean waiting;
+        private volatile boolean stopped;
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong missed = new AtomicLong();
+        
+        private Subscription(String name, Listener listener, long next) {
+            this.name = name;
+            this.listener = listener;
+            this.next = next;
+            this.thread = Thread.ofVirtual().name("panic-transitions-" + name).unstarted(this::run);
+        }
+        
+        long getDelivered() {
+            return delivered.get();
+        }
+        
+        long getMissed() {
+            return missed.get();
+        }
+        
+        /** Delivers what was published before this call, then stops. */
+        void close() {
+            stopped = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(CLOSE_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            subscriptions.remove(this);
+        }
+        
+        private void run() {
+            List<Transition> batch = new ArrayList<>(MAX_BATCH);
+            List<Transition> view = Collections.unmodifiableList(batch);
+            while (true) {
+                batch.clear();
+                long lost = drain(batch);
+                try {
+                    if (lost > 0) {
+                        missed.addAndGet(lost);
+                        listener.missed(lost);
+                    }
+                    if (!batch.isEmpty()) {
+                        listener.transitions(view);
+                        delivered.addAndGet(batch.size());
+                    }
+                } catch (RuntimeException e) {
+                    log.accept("Error in transition listener " + name + ": " + e);
+                }
+                if (!batch.isEmpty() || lost > 0) {
+                    continue;
+                }
+                if (stopped) {
+                    break;
+                }
+                waiting = true;
+                if (!hasNext() && !stopped) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                waiting = false;
+            }
+        }
+        
+        /** Moves up to a batch of published transitions into {@code batch}; returns how many were lost to lapping. */
+        private long drain(List<Transition> batch) {
+            long lost = 0;
+            while (batch.size() < MAX_BATCH) {
+                long position = next;
+                int index = (int) (position & mask);
+                long sequence = sequences.get(index);
+                if (sequence == position + 1) {
+                    Transition transition = slots.get(index);
+                    if (sequences.get(index) == sequence) {
+                        batch.add(transition);
+                        next = position + 1;
+                    }
+                    continue; // replaced while reading: the next pass sees it was lapped
+                }
+                long oldest = tail.get() - capacity();
+                if (sequence > position + 1 || position < oldest) {
+                    // Lapped: resume at the oldest position not yet reused
+                    long resume = Math.max(position + 1, oldest);
+                    lost += resume - position;
+                    next = resume;
+                    continue;
+                }
+                break; // not published yet
+            }
+            return lost;
+        }
+        
+        private boolean hasNext() {
+            return sequences.get((int) (next & mask)) == next + 1 || next < tail.get() - capacity();
+        }
+    }
+}
@@ -1,10 +1,43 @@
 package com.devops.panicribbon;
 
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Panel;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Comprehensive test suite for DevOps Panic Ribbon application
@@ -26,6 +59,29 @@ public class ApplicationTest {
             testLogging();
             testDefaultServicesJsonCreation();
             testHealthCheckUrlValidation();
+            testProbeEngine();
+            testProbeTransport();
+            testTcpProbe();
+            testAsyncLogger();
+            testLogRotation();
+            testHistoryStore();
+            testLatencyHistogram();
+            testStatusTable();
+            testRibbonLayout();
+            testRibbonRenderer();
+            testTooltipContent();
+            testTimingWheel();
+            testPollScheduler();
+            testSingleFlight();
+            testProbeDeadlines();
+            testServiceReload();
+            testMetrics();
+            testRestartOrchestrator();
+            testDaemonSubscription();
+            testShardedProbing();
+            testStatusSnapshot();
+            testLogIndex();
+            testTransitionStream();
             
             System.out.println("\n========================================");
             System.out.println("Test Results:");
@@ -106,6 +162,97 @@ public class ApplicationTest {
             fail("Empty services array parsing failed: " + e.getMessage());
         }
         
+        // Test 4: Numeric per-service interval
+        String intervalJson = "{\"services\": [" +
+            "{\"name\": \"Fast\", \"healthCheckUrl\": \"http://localhost/health\", \"intervalSeconds\": 2.5}," +
+            "{\"name\": \"Default\", \"healthCheckUrl\": \"http://localhost/health\"}]}";
+        try {
+            Main.SimpleJsonParser parser = new Main.SimpleJsonParser(intervalJson);
+            List<Main.ServiceConfig> services = parser.parseServices();
+            assertTrue(services.size() == 2, "Should parse 2 services with numeric values");
+            assertTrue(services.get(0).intervalSeconds == 2.5, "Interval should be parsed as a number");
+            assertTrue(services.get(1).intervalSeconds == 0, "Missing interval should default to 0");
+            System.out.println("  ✓ Numeric interval parsing");
+        } catch (Exception e) {
+            fail("Numeric interval parsing failed: " + e.getMessage());
+        }
+        
+        try {
+            new Main.SimpleJsonParser("{\"services\": [{\"name\": \"Bad\", \"intervalSeconds\": fast}]}").parseServices();
+            fail("Non-numeric interval should be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("intervalSeconds"), "Error should name the bad key");
+        }
+        
+        // Test 5: Escapes and unknown fields of any type
+        String richJson = "{\"version\": 3, \"owner\": {\"team\": \"ops\", \"tags\": [1, [2, {}], null]},\n" +
+            "  \"services\": [{\"name\": \"Q \\\"A\\\" \\u00e9\\n\", \"labels\": {\"tier\": [\"a\", \"b\"]},\n" +
+            "    \"enabled\": true, \"restartScriptPath\": \"C:\\\\scripts\\\\restart.bat\", \"notes\": null}],\n" +
+            "  \"trailer\": false}";
+        try {
+            List<Main.ServiceConfig> services = new Main.SimpleJsonParser(richJson).parseServices();
+            assertTrue(services.size() == 1 && "Q \"A\" \u00e9\n".equals(services.get(0).name), "Escapes should be decoded");
+            assertTrue("C:\\scripts\\restart.bat".equals(services.get(0).restartScriptPath),
+                      "Escaped backslashes should be decoded");
+            System.out.println("  ✓ Escapes and unknown fields skipped");
+        } catch (Exception e) {
+            fail("Escape and unknown field parsing failed: " + e.getMessage());
+        }
+        
+        // Test 6: Tokens split across reads and longer than the buffer
+        StringBuilder large = new StringBuilder("{\"services\": [");
+        String longUrl = "http://localhost/" + "x".repeat(20_000);
+        for (int i = 0; i < 50; i++) {
+            large.append(i == 0 ? "" : ",").append("{\"name\": \"svc\\u0041").append(i)
+                 .append("\", \"healthCheckUrl\": \"").append(i == 25 ? longUrl : "http://h/" + i).append("\"}");
+        }
+        large.append("]}");
+        try {
+            java.io.Reader trickle = new java.io.FilterReader(new java.io.StringReader(large.toString())) {
+                @Override
+                public int read(char[] cbuf, int off, int len) throws IOException {
+                    return super.read(cbuf, off, Math.min(len, 7));
+                }
+            };
+            List<Main.ServiceConfig> services = new Main.SimpleJsonParser(trickle).parseServices();
+            assertTrue(services.size() == 50 && "svcA49".equals(services.get(49).name), "Split tokens should parse");
+            assertTrue(longUrl.equals(services.get(25).healthCheckUrl), "Values longer than the buffer should parse");
+            System.out.println("  ✓ Streaming across buffer boundaries");
+        } catch (Exception e) {
+            fail("Streaming parse failed: " + e.getMessage());
+        }
+        
+        // Test 7: Position-accurate errors
+        String[][] broken = {
+            {"{\"services\": [\n  {\"name\": \"A\"}\n  {\"name\": \"B\"}]}", "line 3, column 3"},
+            {"{\"services\": [{\"name\": \"A\\q\"}]}", "line 1, column 26"},
+            {"{\"services\": [{\"name\": \"A\",,}]}", "line 1, column 28"},
+            {"{\"services\":\n [{\"intervalSeconds\": -1}]}", "line 2, column 23"},
+            {"{\"services\": [{\"name\": \"A", "Unterminated string"},
+            {"{\"other\": []}", "services"}
+        };
+        for (String[] c : broken) {
+            try {
+                new Main.SimpleJsonParser(c[0]).parseServices();
+                fail("Malformed JSON should be rejected: " + c[0]);
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage().contains(c[1]), "Error should mention " + c[1] + ": " + e.getMessage());
+            }
+        }
+        System.out.println("  ✓ Position-accurate errors");
+        
+        // Test 8: Trailing commas, which the original parser accepted
+        try {
+            List<Main.ServiceConfig> services = new Main.SimpleJsonParser(
+                "{\"services\": [{\"name\": \"A\", \"healthCheckUrl\": \"http://a/health\",}, " +
+                "{\"name\": \"B\", \"healthCheckUrl\": \"http://b/health\"},],}").parseServices();
+            assertTrue(services.size() == 2 && "http://a/health".equals(services.get(0).healthCheckUrl) &&
+                       "B".equals(services.get(1).name), "Trailing commas should be accepted");
+            System.out.println("  ✓ Trailing commas");
+        } catch (Exception e) {
+            fail("Trailing comma parsing failed: " + e.getMessage());
+        }
+        
         System.out.println();
     }
     
@@ -273,7 +420,2256 @@ public class ApplicationTest {
         System.out.println();
     }
     
+    private static void testProbeTransport() {
+        System.out.println("Testing Probe Transport...");
+        
+        // Option parsing
+        assertTrue(ProbeOptions.of(null, null, 0, 0) == ProbeOptions.DEFAULT, "Unset options should share the defaults");
+        ProbeOptions head = ProbeOptions.of("head", "HTTP/1.1", 1.5, 2);
+        assertTrue(head.getMethod().equals("HEAD") && head.getVersion() == HttpClient.Version.HTTP_1_1,
+                  "Method and version should be normalised");
+        assertTrue(head.getConnectTimeout().toMillis() == 1_500 && head.getTimeout().toMillis() == 2_000,
+                  "Timeouts should be converted from seconds");
+        assertTrue(ProbeOptions.parseVersion("2") == HttpClient.Version.HTTP_2, "Short version names should parse");
+        try {
+            ProbeOptions.of("POST", null, 0, 0);
+            fail("Unsupported methods should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("POST"), "Error should name the bad method");
+        }
+        System.out.println("  ✓ Option parsing");
+        
+        HttpServer server = null;
+        ProbeEngine engine = new ProbeEngine(4);
+        try {
+            byte[] big = new byte[1 << 20];
+            Set<Integer> remotePorts = ConcurrentHashMap.newKeySet();
+            AtomicInteger heads = new AtomicInteger();
+            server = startStubServer(exchange -> {
+                remotePorts.add(exchange.getRemoteAddress().getPort());
+                if (exchange.getRequestMethod().equals("HEAD")) {
+                    heads.incrementAndGet();
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, big.length);
+                    exchange.getResponseBody().write(big);
+                }
+                exchange.close();
+            });
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            
+            // Large bodies are discarded and sequential probes reuse one connection
+            Main.Service get = new Main.Service("Big", base + "/big", "", 0,
+                new ProbeOptions("GET", HttpClient.Version.HTTP_1_1, null, null));
+            boolean allHealthy = true;
+            for (int i = 0; i < 20; i++) {
+                allHealthy &= engine.probe(get).get(5, TimeUnit.SECONDS).isHealthy();
+            }
+            assertTrue(allHealthy, "GET probes with large bodies should succeed");
+            assertTrue(remotePorts.size() == 1, "Sequential probes should reuse one connection (" + remotePorts.size() + ")");
+            System.out.println("  ✓ Body discarded, connection reused");
+            
+            // HEAD probes and per-service connect timeouts
+            Main.Service headService = new Main.Service("Head", base + "/health", "", 0, ProbeOptions.of("HEAD", "1.1", 1, 0));
+            assertTrue(engine.probe(headService).get(5, TimeUnit.SECONDS).isHealthy() && heads.get() == 1,
+                      "HEAD probe should be sent as HEAD");
+            engine.probe(new Main.Service("Head2", base + "/health", "", 0, ProbeOptions.of("HEAD", null, 1, 0)))
+                .get(5, TimeUnit.SECONDS);
+            assertTrue(engine.getClientCount() == 2, "Services sharing a connect timeout should share a client");
+            System.out.println("  ✓ HEAD probes and per-service connect timeout");
+            
+            // A reload that stops using a connect timeout closes its client
+            for (int i = 2; i <= 4; i++) {
+                engine.probe(new Main.Service("Changing", base + "/health", "", 0, ProbeOptions.of("HEAD", null, i, 0)))
+                    .get(5, TimeUnit.SECONDS);
+            }
+            assertTrue(engine.getClientCount() == 5, "Each new connect timeout should get a client");
+            engine.retainClients(List.of(headService, get));
+            assertTrue(engine.getClientCount() == 2, "Clients of unused connect timeouts should be closed");
+            assertTrue(engine.probe(headService).get(5, TimeUnit.SECONDS).isHealthy(),
+                      "Services still using a timeout should keep probing");
+            System.out.println("  ✓ Unused clients closed on reload");
+        } catch (Exception e) {
+            fail("Probe transport test failed: " + e);
+        } finally {
+            engine.shutdown();
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testTcpProbe() {
+        System.out.println("Testing TCP Probe...");
+        
+        // Configuration
+        String json = "{\"services\": [{\"name\": \"Redis\", \"type\": \"tcp\", \"host\": \"127.0.0.1\", \"port\": 6379}]}";
+        Main.ServiceConfig config = new Main.SimpleJsonParser(json).parseServices().get(0);
+        assertTrue("tcp".equals(config.type) && "127.0.0.1".equals(config.host) && config.port == 6379,
+                  "TCP type, host and port should parse");
+        Main.Service redis = Main.Service.tcp("Redis", "::1", 6379, "", 0, ProbeOptions.DEFAULT);
+        assertTrue(redis.getType() == Main.Service.Type.TCP && redis.getHealthCheckUrl().equals("tcp://[::1]:6379"),
+                  "TCP services should describe themselves as tcp:// URLs");
+        System.out.println("  ✓ TCP service configuration");
+        
+        TcpProbeEngine engine = null;
+        List<Socket> backlog = new ArrayList<>();
+        try (ServerSocket listening = new ServerSocket(0, 1024);
+             ServerSocket full = new ServerSocket(0, 1)) {
+            engine = new TcpProbeEngine(64, Runnable::run, System.out::println);
+            Thread.ofVirtual().start(() -> {
+                while (!listening.isClosed()) {
+                    try {
+                        listening.accept().close();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            
+            // Open and closed ports
+            ProbeEngine.ProbeResult up = engine.probe(tcpService("Up", listening.getLocalPort(), 0)).get(5, TimeUnit.SECONDS);
+            assertTrue(up.isHealthy() && up.getStatusCode() == 0 && up.getLatencyNanos() > 0,
+                      "Listening port should be healthy with a connect latency");
+            int closedPort;
+            try (ServerSocket closed = new ServerSocket(0)) {
+                closedPort = closed.getLocalPort();
+            }
+            ProbeEngine.ProbeResult refused = engine.probe(tcpService("Refused", closedPort, 0)).get(5, TimeUnit.SECONDS);
+            assertTrue(!refused.isHealthy() && refused.getError() != null && !refused.isTimeout(),
+                      "Closed port should report a connect error");
+            System.out.println("  ✓ Connect results");
+            
+            // Many concurrent connects on the one selector thread, queued beyond the in-flight limit
+            List<CompletableFuture<ProbeEngine.ProbeResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                futures.add(engine.probe(tcpService("Svc" + i, listening.getLocalPort(), 0)));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(20, TimeUnit.SECONDS);
+            assertTrue(futures.stream().allMatch(f -> f.join().isHealthy()), "All multiplexed connects should succeed");
+            assertTrue(engine.getInFlight() == 0, "No connects should remain in flight");
+            System.out.println("  ✓ 1000 connects multiplexed");
+            
+            // A listener whose accept queue is full drops the SYN, so the probe hits its own deadline
+            for (int i = 0; i < 4; i++) {
+                Socket socket = new Socket();
+                backlog.add(socket);
+                try {
+                    socket.connect(full.getLocalSocketAddress(), 200);
+                } catch (IOException e) {
+                    break; // queue is full
+                }
+            }
+            long begin = System.nanoTime();
+            ProbeEngine.ProbeResult late = engine.probe(tcpService("Late", full.getLocalPort(), 0.3)).get(5, TimeUnit.SECONDS);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+            assertTrue(late.isTimeout() && elapsedMillis >= 250 && elapsedMillis < 2_000,
+                      "Unanswered connect should time out at its deadline (" + elapsedMillis + "ms)");
+            System.out.println("  ✓ Per-probe connect deadline");
+            
+            // A connect that fails unexpectedly fails only its own probe; the selector keeps serving later ones
+            AtomicInteger opened = new AtomicInteger();
+            TcpProbeEngine flaky = new TcpProbeEngine(64, Runnable::run, System.out::println) {
+                @Override
+                SocketChannel openChannel() throws IOException {
+                    if (opened.getAndIncrement() == 0) {
+                        throw new IllegalStateException("injected");
+                    }
+                    return super.openChannel();
+                }
+            };
+            try {
+                ProbeEngine.ProbeResult broken = flaky.probe(tcpService("Broken", listening.getLocalPort(), 0)).get(5, TimeUnit.SECONDS);
+                ProbeEngine.ProbeResult after = flaky.probe(tcpService("After", listening.getLocalPort(), 0)).get(5, TimeUnit.SECONDS);
+                assertTrue(!broken.isHealthy() && broken.getError() instanceof IllegalStateException && after.isHealthy(),
+                          "A failed connect should not stop later probes");
+            } finally {
+                flaky.shutdown();
+            }
+            System.out.println("  ✓ Connect errors are contained");
+            
+            // Shutdown cancels outstanding connects
+            CompletableFuture<ProbeEngine.ProbeResult> hanging = engine.probe(tcpService("Hang", full.getLocalPort(), 5));
+            sleepQuietly(100);
+            engine.shutdown();
+            assertTrue(hanging.isCancelled(), "Shutdown should cancel in-flight connects");
+            assertTrue(engine.probe(tcpService("After", listening.getLocalPort(), 0)).isCancelled(),
+                      "Probes after shutdown should be cancelled");
+            System.out.println("  ✓ Shutdown cancellation");
+        } catch (Exception e) {
+            fail("TCP probe test failed: " + e);
+        } finally {
+            if (engine != null) {
+                engine.shutdown();
+            }
+            for (Socket socket : backlog) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        
+        System.out.println();
+    }
+    
+    private static Main.Service tcpService(String name, int port, double connectTimeoutSeconds) {
+        return Main.Service.tcp(name, "127.0.0.1", port, "", 0, ProbeOptions.of(null, null, connectTimeoutSeconds, 0));
+    }
+    
+    private static void testProbeEngine() {
+        System.out.println("Testing Probe Engine...");
+        
+        HttpServer server = null;
+        ProbeEngine engine = new ProbeEngine(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            AtomicInteger concurrent = new AtomicInteger();
+            AtomicInteger maxConcurrent = new AtomicInteger();
+            server = startStubServer(exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                if (path.equals("/slow")) {
+                    int now = concurrent.incrementAndGet();
+                    maxConcurrent.accumulateAndGet(now, Math::max);
+                    sleepQuietly(50);
+                    concurrent.decrementAndGet();
+                } else if (path.equals("/hang")) {
+                    awaitQuietly(release);
+                }
+                int code = path.equals("/down") ? 503 : 200;
+                exchange.sendResponseHeaders(code, -1);
+                exchange.close();
+            });
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            
+            // Status codes and errors are reported through the result
+            ProbeEngine.ProbeResult up = engine.probe(new Main.Service("Up", base + "/health", "")).get(5, TimeUnit.SECONDS);
+            ProbeEngine.ProbeResult down = engine.probe(new Main.Service("Down", base + "/down", "")).get(5, TimeUnit.SECONDS);
+            ProbeEngine.ProbeResult bad = engine.probe(new Main.Service("Bad", "not a url", "")).get(5, TimeUnit.SECONDS);
+            assertTrue(up.isHealthy() && up.getStatusCode() == 200, "Healthy endpoint should report 200");
+            assertTrue(!down.isHealthy() && down.getStatusCode() == 503, "Failing endpoint should report 503");
+            assertTrue(!bad.isHealthy() && bad.getError() != null, "Malformed URL should report an error");
+            System.out.println("  ✓ Probe results");
+            
+            // In-flight limit is honoured without blocking the caller
+            List<CompletableFuture<ProbeEngine.ProbeResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(engine.probe(new Main.Service("Slow" + i, base + "/slow", "")));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+            assertTrue(maxConcurrent.get() <= 2, "In-flight probes should not exceed the limit");
+            assertTrue(futures.stream().allMatch(f -> f.join().isHealthy()), "All queued probes should complete");
+            System.out.println("  ✓ Global in-flight limit");
+            
+            // Shutdown cancels outstanding probes
+            CompletableFuture<ProbeEngine.ProbeResult> hanging = engine.probe(new Main.Service("Hang", base + "/hang", ""));
+            sleepQuietly(100);
+            engine.shutdown();
+            assertTrue(hanging.isCancelled(), "Shutdown should cancel in-flight probes");
+            assertTrue(engine.probe(new Main.Service("Late", base + "/health", "")).isCancelled(),
+                      "Probes after shutdown should be cancelled");
+            System.out.println("  ✓ Shutdown cancellation");
+        } catch (Exception e) {
+            fail("Probe engine test failed: " + e);
+        } finally {
+            release.countDown();
+            engine.shutdown();
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testAsyncLogger() {
+        System.out.println("Testing Async Logger...");
+        
+        Path logPath = Paths.get("test-async-panic.log");
+        try {
+            Files.deleteIfExists(logPath);
+            
+            // Lines from many threads land in the file after a flush
+            AsyncLogger logger = new AsyncLogger(logPath, 1024, AsyncLogger.OverflowPolicy.BLOCK,
+                AsyncLogger.FsyncPolicy.BATCH, 1000, null);
+            Thread[] writers = new Thread[4];
+            for (int t = 0; t < writers.length; t++) {
+                int id = t;
+                writers[t] = Thread.ofVirtual().start(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        logger.log("writer " + id + " line " + i);
+                    }
+                });
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            logger.flush();
+            List<String> lines = Files.readAllLines(logPath);
+            assertTrue(lines.size() == 2000, "All blocked lines should be written (got " + lines.size() + ")");
+            assertTrue(lines.get(0).matches("\\[\\d{4}-\\d{2}-\\d{2}T[^\\]]+\\] writer \\d line \\d+"),
+                      "Lines should carry an ISO timestamp");
+            System.out.println("  ✓ Concurrent logging with flush");
+            
+            // Close drains whatever is still queued
+            logger.log("last line");
+            logger.close();
+            assertTrue(Files.readString(logPath).contains("last line"), "Close should flush queued lines");
+            assertTrue(!logger.log("after close"), "Logging after close should be rejected");
+            System.out.println("  ✓ Close flushes the queue");
+            
+            // Ring buffer rejects offers when full and recycles slots
+            AsyncLogger.RingBuffer ring = new AsyncLogger.RingBuffer(4);
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.offer("m" + i, i), "Ring should accept up to capacity");
+            }
+            assertTrue(!ring.offer("overflow", 0), "Full ring should reject offers");
+            assertTrue(ring.poll(null), "Ring should hand out published entries");
+            assertTrue(ring.offer("m4", 4), "Freed slot should be reusable");
+            assertTrue(ring.size() == 4, "Ring size should track occupancy");
+            System.out.println("  ✓ Ring buffer overflow detection");
+            
+            // Policy settings ignore case, and a typo falls back to the default rather than failing startup
+            assertTrue(AsyncLogger.parsePolicy("panicribbon.log.overflow", "block", AsyncLogger.OverflowPolicy.DROP) ==
+                           AsyncLogger.OverflowPolicy.BLOCK &&
+                       AsyncLogger.parsePolicy("panicribbon.log.overflow", "drpo", AsyncLogger.OverflowPolicy.DROP) ==
+                           AsyncLogger.OverflowPolicy.DROP &&
+                       AsyncLogger.parsePolicy("panicribbon.log.fsync", null, AsyncLogger.FsyncPolicy.INTERVAL) ==
+                           AsyncLogger.FsyncPolicy.INTERVAL &&
+                       AsyncLogger.parsePolicy("panicribbon.log.fsync", " Batch ", AsyncLogger.FsyncPolicy.INTERVAL) ==
+                           AsyncLogger.FsyncPolicy.BATCH,
+                      "Logger policies should parse leniently");
+            System.out.println("  ✓ Lenient policy settings");
+        } catch (Exception e) {
+            fail("Async logger test failed: " + e);
+        } finally {
+            try {
+                Files.deleteIfExists(logPath);
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testLogRotation() {
+        System.out.println("Testing Log Rotation...");
+        
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("panic-rotation");
+            Path logPath = dir.resolve("panic.log");
+            LogRotator rotator = new LogRotator(logPath, 2048, 0, 3);
+            AsyncLogger logger = new AsyncLogger(logPath, 64, AsyncLogger.OverflowPolicy.BLOCK,
+                AsyncLogger.FsyncPolicy.NEVER, 1000, null, rotator);
+            for (int i = 0; i < 400; i++) {
+                logger.log("rotation line " + i + " padding padding padding padding");
+            }
+            logger.close();
+            rotator.close();
+            
+            List<Path> archives = rotator.listSegments(true);
+            assertTrue(archives.size() == 3, "Retention should keep 3 archives (got " + archives.size() + ")");
+            assertTrue(rotator.listSegments(false).isEmpty(), "Closed segments should all be compressed");
+            assertTrue(Files.size(logPath) < 2048 + 256, "Active file should stay near the size limit (got " + Files.size(logPath) + ")");
+            
+            String newest;
+            try (java.io.InputStream in = new java.util.zip.GZIPInputStream(
+                    Files.newInputStream(archives.get(archives.size() - 1)))) {
+                newest = new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+            }
+            assertTrue(newest.contains("rotation line"), "Archives should hold gzip-compressed log lines");
+            assertTrue(Files.readString(logPath).contains("rotation line 399"), "Newest line should be in the active file");
+            System.out.println("  ✓ Size-based rotation, compression and retention");
+            
+            LogRotator aged = new LogRotator(logPath, 0, 1000, 3);
+            assertTrue(aged.shouldRotate(10, 0, 1000), "Segments past max age should rotate");
+            assertTrue(!aged.shouldRotate(0, 0, 1000), "Empty segments should not rotate");
+            assertTrue(!aged.shouldRotate(10, 500, 1000), "Young segments should not rotate");
+            aged.close();
+            System.out.println("  ✓ Time-based rotation policy");
+        } catch (Exception e) {
+            fail("Log rotation test failed: " + e);
+        } finally {
+            deleteRecursively(dir);
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testHistoryStore() {
+        System.out.println("Testing History Store...");
+        
+        Path file = Paths.get("test-history.dat");
+        try {
+            Files.deleteIfExists(file);
+            HistoryStore store = HistoryStore.open(file, 8);
+            for (int i = 0; i < 6; i++) {
+                store.append(1000 + i, i % 2, 200, 1500 + i, HistoryStore.Outcome.UP);
+            }
+            store.append(2000, 1, 503, 900, HistoryStore.Outcome.DOWN);
+            
+            List<Long> times = new ArrayList<>();
+            store.scan(1, 1002, 2000, (ts, svc, code, latency, outcome) -> times.add(ts));
+            assertTrue(times.equals(List.of(1003L, 1005L, 2000L)), "Scan should filter by service and window");
+            
+            List<HistoryStore.Outcome> recent = new ArrayList<>();
+            store.scanRecent(1, 2, (ts, svc, code, latency, outcome) -> recent.add(outcome));
+            assertTrue(recent.equals(List.of(HistoryStore.Outcome.DOWN, HistoryStore.Outcome.UP)),
+                      "Recent scan should return newest first");
+            System.out.println("  ✓ Range and recent scans");
+            
+            // Records survive a reopen and appends continue after the newest sequence
+            store.close();
+            store = HistoryStore.open(file, 1024);
+            assertTrue(store.getCapacity() == 8, "Reopen should keep the file's capacity");
+            assertTrue(store.getAppendedCount() == 7, "Reopen should recover the append sequence");
+            store.append(3000, 1, 200, 100, HistoryStore.Outcome.UP);
+            store.append(3001, 0, -1, -1, HistoryStore.Outcome.TIMEOUT);
+            
+            // Capacity 8 with 9 appends: the oldest record has been overwritten
+            int[] count = {0};
+            long[] oldest = {Long.MAX_VALUE};
+            store.scan(HistoryStore.ALL_SERVICES, Long.MIN_VALUE, Long.MAX_VALUE, (ts, svc, code, latency, outcome) -> {
+                count[0]++;
+                oldest[0] = Math.min(oldest[0], ts);
+            });
+            assertTrue(count[0] == 8 && oldest[0] == 1001, "Ring should overwrite the oldest record");
+            store.close();
+            System.out.println("  ✓ Persistence and wraparound");
+            
+            // A service reordered in services.json keeps its history across a restart, though its slot changes
+            Files.deleteIfExists(file);
+            Main.Service api = new Main.Service("api", "http://localhost/api", "");
+            Main.Service db = new Main.Service("db", "http://localhost/db", "");
+            ServiceRegistry before = new ServiceRegistry(new StatusTable(2));
+            before.update(List.of(api, db));
+            store = HistoryStore.open(file, 8);
+            for (Main.ServiceStatus status : before.getStatuses()) {
+                store.append(4000, status.getHistoryId(), 200, 100,
+                             status.getService() == api ? HistoryStore.Outcome.UP : HistoryStore.Outcome.DOWN);
+            }
+            store.close();
+            ServiceRegistry after = new ServiceRegistry(new StatusTable(2));
+            after.update(List.of(db, api));
+            store = HistoryStore.open(file, 8);
+            Main.ServiceStatus reopened = after.getStatuses().get(1);
+            List<HistoryStore.Outcome> apiHistory = new ArrayList<>();
+            store.scanRecent(reopened.getHistoryId(), 8, (ts, svc, code, latency, outcome) -> apiHistory.add(outcome));
+            assertTrue(reopened.getIndex() != before.getStatuses().get(0).getIndex() &&
+                      apiHistory.equals(List.of(HistoryStore.Outcome.UP)),
+                      "History should follow the service key, not its slot");
+            store.close();
+            System.out.println("  ✓ Attribution survives reordering");
+            
+            // Recent scans follow the per-service index: services sharing a bucket, wraparound and a reopen
+            Files.deleteIfExists(file);
+            store = HistoryStore.open(file, 64);
+            long hot = 7;
+            long sharing = 7 + (1 << 12);
+            for (int i = 0; i < 100; i++) {
+                store.append(i, i % 10 == 0 ? hot : i % 10 == 1 ? sharing : 100 + i, 200, 100, HistoryStore.Outcome.UP);
+            }
+            List<Long> hotTimes = new ArrayList<>();
+            store.scanRecent(hot, 10, (ts, svc, code, latency, outcome) -> hotTimes.add(ts));
+            List<Long> sharingTimes = new ArrayList<>();
+            store.scanRecent(sharing, 3, (ts, svc, code, latency, outcome) -> sharingTimes.add(ts));
+            assertTrue(hotTimes.equals(List.of(90L, 80L, 70L, 60L, 50L, 40L)) && sharingTimes.equals(List.of(91L, 81L, 71L)),
+                      "Indexed scans should return a service's surviving records newest first: " + hotTimes + " " + sharingTimes);
+            store.close();
+            store = HistoryStore.open(file, 64);
+            List<Long> reopenedTimes = new ArrayList<>();
+            store.scanRecent(hot, 10, (ts, svc, code, latency, outcome) -> reopenedTimes.add(ts));
+            assertTrue(reopenedTimes.equals(hotTimes), "Reopen should rebuild the index");
+            assertTrue(store.scanRecent(12345, 10, (ts, svc, code, latency, outcome) -> { }) == 0,
+                      "A service with no records should find none");
+            store.close();
+            System.out.println("  ✓ Indexed recent scans");
+            
+            // Only the current format is accepted
+            Files.deleteIfExists(file);
+            store = HistoryStore.open(file, 8);
+            store.close();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 1), 4);
+            }
+            try {
+                HistoryStore.open(file, 8).close();
+                fail("A file with another version should be rejected");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("Not a history store"), "Error should say the file is not a history store");
+            }
+            System.out.println("  ✓ Unknown versions rejected");
+        } catch (Exception e) {
+            fail("History store test failed: " + e);
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testLatencyHistogram() {
+        System.out.println("Testing Latency Histogram...");
+        
+        // Bucket bounds are contiguous and cover every value
+        boolean contiguous = true;
+        for (long v = 0; v < 100_000; v++) {
+            int index = LatencyHistogram.bucketIndex(v);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            if (upper < v || (index > 0 && LatencyHistogram.bucketUpperBound(index - 1) >= v)) {
+                contiguous = false;
+                break;
+            }
+        }
+        assertTrue(contiguous, "Buckets should be contiguous");
+        assertTrue(LatencyHistogram.bucketIndex(Long.MAX_VALUE) == LatencyHistogram.BUCKETS - 1,
+                  "Oversized values should land in the last bucket");
+        System.out.println("  ✓ Log-bucket layout");
+        
+        // Percentiles within bucket precision: 1..1000 ms
+        LatencyHistogram histogram = new LatencyHistogram(5, TimeUnit.MINUTES, 5);
+        long now = 10 * 60_000L;
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.record(ms * 1000L, now);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(now);
+        assertTrue(snapshot.getCount() == 1000, "Snapshot should count every sample");
+        assertTrue(within(snapshot.percentile(50), 500_000, 0.13), "p50 should be about 500ms");
+        assertTrue(within(snapshot.percentile(99), 990_000, 0.13), "p99 should be about 990ms");
+        assertTrue(snapshot.getMax() == 1_000_000, "Max should be exact");
+        assertTrue(snapshot.percentile(100) == 1_000_000, "p100 should be capped at max");
+        System.out.println("  ✓ Percentile readout");
+        
+        // Samples age out of the rolling window
+        histogram.record(5_000, now + 60_000);
+        assertTrue(histogram.snapshot(now + 4 * 60_000).getCount() == 1001, "Window should still hold all samples");
+        assertTrue(histogram.snapshot(now + 5 * 60_000).getCount() == 1, "Oldest slot should expire");
+        assertTrue(histogram.snapshot(now + 60 * 60_000).getCount() == 0, "Stale slots should not be reported");
+        histogram.record(7_000, now + 60 * 60_000);
+        assertTrue(histogram.snapshot(now + 60 * 60_000).getMax() == 7_000, "Recycled slot should be cleared");
+        System.out.println("  ✓ Rolling window expiry");
+        
+        // Counts share an int with their neighbor bucket and saturate rather than spill into it
+        LatencyHistogram packed = new LatencyHistogram(1, TimeUnit.MINUTES, 1);
+        for (int i = 0; i < LatencyHistogram.MAX_COUNT + 10; i++) {
+            packed.record(2, now);
+        }
+        packed.record(3, now);
+        LatencyHistogram.Snapshot counted = packed.snapshot(now);
+        assertTrue(counted.getBucketCount(2) == LatencyHistogram.MAX_COUNT && counted.getBucketCount(3) == 1 &&
+                   counted.getBucketCount(1) == 0, "Packed counts should saturate independently");
+        System.out.println("  ✓ Packed counters");
+        
+        // A histogram shared by many services keeps counting past the 16-bit limit
+        LatencyHistogram wide = LatencyHistogram.wide(1, TimeUnit.MINUTES, 1);
+        for (int i = 0; i < 300_000; i++) {
+            wide.record(2, now);
+        }
+        wide.record(3, now);
+        LatencyHistogram.Snapshot wideCounted = wide.snapshot(now);
+        assertTrue(wideCounted.getBucketCount(2) == 300_000 && wideCounted.getBucketCount(3) == 1 &&
+                   wideCounted.getCount() == 300_001, "Wide counts should not saturate at " + LatencyHistogram.MAX_COUNT);
+        System.out.println("  ✓ Wide counters");
+        
+        System.out.println();
+    }
+    
+    private static void testStatusTable() {
+        System.out.println("Testing Status Table...");
+        
+        StatusTable table = new StatusTable(4);
+        long initial = table.get(2);
+        assertTrue(StatusTable.state(initial) == StatusTable.State.UNKNOWN, "Slots should start UNKNOWN");
+        assertTrue(StatusTable.latencyMicros(initial) == -1, "Initial latency should be unknown");
+        
+        long version = table.version();
+        table.update(2, StatusTable.State.UP, 200, 1234);
+        long packed = table.get(2);
+        assertTrue(StatusTable.isHealthy(packed), "Packed state should round-trip");
+        assertTrue(StatusTable.statusCode(packed) == 200, "Packed status code should round-trip");
+        assertTrue(StatusTable.latencyMicros(packed) == 1234, "Packed latency should round-trip");
+        assertTrue(table.version() == version + 1, "State change should bump the version");
+        table.update(2, StatusTable.State.UP, 200, 999);
+        assertTrue(table.version() == version + 1, "Latency-only change should not bump the version");
+        assertTrue(StatusTable.counter(table.get(2)) == 2, "Slot counter should count updates");
+        System.out.println("  ✓ Packing and versioning");
+        
+        // Writers publish pairs with latency == code * 1000; readers must never see a torn pair
+        Thread[] writers = new Thread[4];
+        AtomicInteger torn = new AtomicInteger();
+        for (int t = 0; t < writers.length; t++) {
+            int seed = t;
+            writers[t] = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    int code = 100 + (i + seed) % 500;
+                    table.update(0, code == 200 ? StatusTable.State.UP : StatusTable.State.DOWN, code, code * 1000L);
+                }
+            });
+        }
+        Thread reader = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                long value = table.get(0);
+                int code = StatusTable.statusCode(value);
+                if (code != 0 && StatusTable.latencyMicros(value) != code * 1000L) {
+                    torn.incrementAndGet();
+                }
+            }
+        });
+        try {
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertTrue(torn.get() == 0, "Readers should never observe a torn slot");
+        assertTrue(StatusTable.counter(table.get(0)) == 200_000 % (1 << 18), "Every CAS update should be counted");
+        
+        long[] snapshot = table.snapshot(null);
+        assertTrue(snapshot.length == 4 && snapshot[2] == table.get(2), "Snapshot should copy every slot");
+        table.reset(2);
+        assertTrue(table.get(2) == StatusTable.INITIAL, "Reset should restore the initial value");
+        System.out.println("  ✓ Single-CAS updates under contention");
+        
+        // Growing keeps existing slots and starts new ones (across pages) as INITIAL
+        table.update(1, StatusTable.State.DOWN, 503, 10);
+        table.ensureCapacity(10_000);
+        assertTrue(table.capacity() == 10_000 && StatusTable.statusCode(table.get(1)) == 503,
+                  "Growing should keep existing slots");
+        assertTrue(table.get(9_999) == StatusTable.INITIAL && table.snapshot(null).length == 10_000,
+                  "New slots should start UNKNOWN");
+        System.out.println("  ✓ Growth in place");
+        
+        System.out.println();
+    }
+    
+    private static void testRibbonLayout() {
+        System.out.println("Testing Ribbon Layout...");
+        
+        // Fewer services than rows: one service per bucket, heights differ by at most one pixel
+        RibbonModel.Layout small = new RibbonModel.Layout(0, 7, 100);
+        boolean covered = true;
+        int minRows = Integer.MAX_VALUE;
+        int maxRows = 0;
+        for (int y = 0; y < 100; y++) {
+            covered &= small.bucketAtRow(y) >= 0;
+        }
+        for (int b = 0; b < small.buckets; b++) {
+            int rows = small.bucketBottom(b) - small.bucketTop(b);
+            minRows = Math.min(minRows, rows);
+            maxRows = Math.max(maxRows, rows);
+            covered &= small.size(b) == 1;
+        }
+        assertTrue(small.buckets == 7 && covered, "Every row should map to exactly one service");
+        assertTrue(maxRows - minRows <= 1, "Segment heights should differ by at most one pixel");
+        assertTrue(small.bucketAtRow(-1) == -1 && small.bucketAtRow(100) == -1, "Rows outside the ribbon should miss");
+        System.out.println("  ✓ Non-uniform segment layout");
+        
+        // More services than rows: every row aggregates a contiguous range
+        RibbonModel.Layout big = new RibbonModel.Layout(0, 10_000, 768);
+        boolean consistent = big.buckets == 768 && big.first(0) == 0 && big.end(767) == 10_000;
+        for (int b = 0; b < big.buckets && consistent; b++) {
+            consistent = big.bucketBottom(b) - big.bucketTop(b) == 1 && (b == 0 || big.first(b) == big.end(b - 1));
+        }
+        for (int p = 0; p < 10_000 && consistent; p++) {
+            int b = big.bucketOfPosition(p);
+            consistent = p >= big.first(b) && p < big.end(b);
+        }
+        assertTrue(consistent, "Aggregated buckets should partition the services");
+        System.out.println("  ✓ Aggregated layout");
+        
+        // Worst status wins, recomputed only for flagged buckets
+        int count = 1000;
+        StatusTable table = new StatusTable(count);
+        List<Main.ServiceStatus> statuses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Main.ServiceStatus status = new Main.ServiceStatus(new Main.Service("svc-" + i, "http://localhost/" + i, ""), table, i);
+            status.update(StatusTable.State.UP, 200, 1000);
+            statuses.add(status);
+        }
+        RibbonModel model = new RibbonModel();
+        model.setStatuses(statuses, 100);
+        int[] changed = new int[8];
+        assertTrue(model.refresh(changed) == 0, "Nothing should be dirty after a rebuild");
+        statuses.get(523).update(StatusTable.State.DOWN, 503, 1000);
+        model.markChanged(523);
+        int bucket = model.getLayout().bucketOfPosition(523);
+        assertTrue(model.refresh(changed) == 1 && changed[0] == bucket, "Only the affected bucket should change");
+        statuses.get(524).update(StatusTable.State.UP, 200, 1000);
+        model.markChanged(524);
+        assertTrue(model.refresh(changed) == 0, "A healthy neighbour should not clear the worst state");
+        System.out.println("  ✓ Worst-status-wins aggregation");
+        
+        // Zoom narrows the range around the bucket and can be undone
+        assertTrue(model.zoomInto(bucket), "Zoom into an aggregated bucket");
+        RibbonModel.Layout zoomed = model.getLayout();
+        assertTrue(zoomed.count == count / RibbonModel.ZOOM_FACTOR, "Zoom should narrow the range");
+        assertTrue(zoomed.bucketOfPosition(523) >= 0, "Zoomed range should contain the drilled-into service");
+        assertTrue(model.servicesIn(zoomed.bucketOfPosition(523)).size() == 1, "Zoomed buckets should be single services");
+        assertTrue(model.zoomOut() && model.getLayout().count == count && !model.isZoomed(), "Zoom out should restore the range");
+        System.out.println("  ✓ Zoom in and out");
+        
+        System.out.println();
+    }
+    
+    private static void testRibbonRenderer() {
+        System.out.println("Testing Ribbon Renderer...");
+        
+        int count = 1000;
+        StatusTable table = new StatusTable(count);
+        List<Main.ServiceStatus> statuses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Main.ServiceStatus status = new Main.ServiceStatus(new Main.Service("svc-" + i, "http://localhost/" + i, ""), table, i);
+            status.update(StatusTable.State.UP, 200, 1000);
+            statuses.add(status);
+        }
+        RibbonModel model = new RibbonModel();
+        model.setStatuses(statuses, 100);
+        RibbonRenderer renderer = new RibbonRenderer(model, new Panel(), 12, 30);
+        try {
+            // First frame draws everything, later frames only what changed
+            assertTrue(renderer.renderFrame() == 100, "First frame should draw every bucket");
+            assertTrue(renderer.getImage().getRGB(5, 50) == Color.GREEN.getRGB(), "Healthy rows should be green");
+            assertTrue(renderer.renderFrame() == 0, "Idle frame should draw nothing");
+            
+            statuses.get(505).update(StatusTable.State.DOWN, 503, 1000);
+            model.markChanged(505);
+            int row = model.getLayout().bucketTop(model.getLayout().bucketOfPosition(505));
+            assertTrue(renderer.renderFrame() == 1, "Only the changed bucket should be redrawn");
+            assertTrue(renderer.getImage().getRGB(5, row) == Color.RED.getRGB(), "Changed row should turn red");
+            assertTrue(renderer.getImage().getRGB(5, row + 10) == Color.GREEN.getRGB(), "Other rows should be untouched");
+            System.out.println("  ✓ Dirty-region rendering");
+            
+            // A burst of requests collapses into a handful of frames
+            long before = renderer.getFramesRendered();
+            for (int i = 0; i < 10_000; i++) {
+                model.markChanged(i % count);
+                renderer.requestFrame();
+            }
+            sleepQuietly(300);
+            long frames = renderer.getFramesRendered() - before;
+            assertTrue(frames >= 1 && frames <= 15, "Requests should be coalesced (frames: " + frames + ")");
+            System.out.println("  ✓ Frame coalescing: 10000 requests -> " + frames + " frame(s)");
+            
+            renderer.invalidate();
+            sleepQuietly(100);
+            assertTrue(renderer.getImage().getRGB(5, row) == Color.RED.getRGB(), "Full redraw should keep the worst state");
+            System.out.println("  ✓ Full redraw after invalidate");
+        } finally {
+            renderer.close();
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testTooltipContent() {
+        System.out.println("Testing Tooltip Content...");
+        
+        TooltipWindow.Content content = new TooltipWindow.Content();
+        AtomicInteger builds = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            content.set(7, () -> "svc-" + builds.incrementAndGet() + "\nLatency (5m): N/A");
+        }
+        assertTrue(builds.get() == 1, "Text should only be built when the hovered bucket changes");
+        assertTrue(content.getLines().length == 2 && content.getLines()[0].equals("svc-1"), "Text should be split into lines");
+        assertTrue(content.set(8, () -> "other"), "A new bucket should replace the text");
+        content.clear();
+        assertTrue(content.getKey() == -1 && content.set(8, () -> "again"), "Hiding should forget the key");
+        System.out.println("  ✓ Text rebuilt only on bucket change");
+        
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        Graphics graphics = image.getGraphics();
+        FontMetrics metrics = graphics.getFontMetrics(new Font(Font.SANS_SERIF, Font.PLAIN, 11));
+        content.set(9, () -> "a\nlonger line\nc");
+        Dimension size = content.size(metrics);
+        assertTrue(size.height == 3 * metrics.getHeight() + 2 * TooltipWindow.Content.PADDING, "Height should fit every line");
+        assertTrue(size.width == metrics.stringWidth("longer line") + 2 * TooltipWindow.Content.PADDING, "Width should fit the longest line");
+        graphics.dispose();
+        System.out.println("  ✓ Multi-line sizing");
+        
+        System.out.println();
+    }
+    
+    private static void testTimingWheel() {
+        System.out.println("Testing Timing Wheel...");
+        
+        // Small wheel so deadlines span several rotations
+        TimingWheel wheel = new TimingWheel(2, TimeUnit.MILLISECONDS, 16, Runnable::run, "test-wheel");
+        try {
+            int timers = 2_000;
+            CountDownLatch fired = new CountDownLatch(timers / 2);
+            AtomicInteger early = new AtomicInteger();
+            AtomicInteger cancelledRan = new AtomicInteger();
+            List<TimingWheel.Timeout> toCancel = new ArrayList<>();
+            long begin = System.nanoTime();
+            for (int i = 0; i < timers; i++) {
+                long delayMillis = 100 + (i * 7L) % 200;
+                long dueNanos = begin + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+                if (i % 2 == 0) {
+                    wheel.schedule(() -> {
+                        if (System.nanoTime() < dueNanos) {
+                            early.incrementAndGet();
+                        }
+                        fired.countDown();
+                    }, delayMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    toCancel.add(wheel.schedule(cancelledRan::incrementAndGet, delayMillis, TimeUnit.MILLISECONDS));
+                }
+            }
+            int cancelled = 0;
+            for (TimingWheel.Timeout timeout : toCancel) {
+                cancelled += timeout.cancel() ? 1 : 0;
+            }
+            assertTrue(cancelled == timers / 2, "Pending timers should be cancellable");
+            awaitQuietly(fired);
+            assertTrue(fired.getCount() == 0, "Every timer should fire");
+            sleepQuietly(50);
+            assertTrue(early.get() == 0, "No timer should fire before its deadline");
+            assertTrue(cancelledRan.get() == 0, "Cancelled timers should never run");
+            assertTrue(wheel.getPending() == 0 && wheel.getExpiredCount() == timers / 2, "Counters should balance");
+            assertTrue(!toCancel.get(0).cancel(), "Cancelling twice should report false");
+            System.out.println("  ✓ Fire and cancel across rotations");
+            
+            // Tasks can reschedule themselves from the dispatcher
+            CountDownLatch chain = new CountDownLatch(5);
+            Runnable[] step = new Runnable[1];
+            step[0] = () -> {
+                chain.countDown();
+                if (chain.getCount() > 0) {
+                    wheel.schedule(step[0], 3, TimeUnit.MILLISECONDS);
+                }
+            };
+            wheel.schedule(step[0], 0, TimeUnit.MILLISECONDS);
+            awaitQuietly(chain);
+            assertTrue(chain.getCount() == 0, "Self-rescheduling timers should keep firing");
+            System.out.println("  ✓ Rescheduling from a task");
+        } finally {
+            wheel.shutdown();
+        }
+        try {
+            wheel.schedule(() -> { }, 1, TimeUnit.MILLISECONDS);
+            fail("Schedule after shutdown should be rejected");
+        } catch (RejectedExecutionException e) {
+            System.out.println("  ✓ Rejects after shutdown");
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testServiceReload() {
+        System.out.println("Testing Service Reload...");
+        
+        ServiceRegistry registry = new ServiceRegistry(new StatusTable(1));
+        ServiceRegistry.Changes first = registry.update(List.of(
+            new Main.Service("A", "http://a/health", ""),
+            new Main.Service("B", "http://b/health", ""),
+            new Main.Service("C", "http://c/health", "")));
+        assertTrue(first.added.size() == 3 && first.unchanged == 0, "Initial load should add every service");
+        List<Main.ServiceStatus> before = registry.getStatuses();
+        before.get(0).update(StatusTable.State.UP, 200, 1000);
+        before.get(0).recordLatency(1_000_000);
+        before.get(1).update(StatusTable.State.DOWN, 503, 1000);
+        
+        // B redefined, C removed, D added, A untouched and moved to the end
+        ServiceRegistry.Changes changes = registry.update(List.of(
+            new Main.Service("B", "http://b/ready", ""),
+            new Main.Service("D", "http://d/health", ""),
+            new Main.Service("A", "http://a/health", "")));
+        List<Main.ServiceStatus> after = registry.getStatuses();
+        assertTrue(changes.added.size() == 1 && changes.removed.size() == 1 && changes.updated.size() == 1 &&
+                   changes.unchanged == 1, "Diff should be 1 added, 1 removed, 1 changed, 1 unchanged: " + changes);
+        assertTrue(after.get(2) == before.get(0) && !before.get(0).isRetired() && before.get(0).isHealthy(),
+                  "Unchanged services should keep their status object and state");
+        Main.ServiceStatus b = after.get(0);
+        assertTrue(b != before.get(1) && b.getIndex() == before.get(1).getIndex() && before.get(1).isRetired(),
+                  "Changed services should get a new status on the same slot");
+        assertTrue(StatusTable.state(b.snapshot()) == StatusTable.State.DOWN, "Changed services should keep their state");
+        assertTrue(before.get(2).isRetired() && StatusTable.state(before.get(2).snapshot()) == StatusTable.State.UNKNOWN,
+                  "Removed services should be retired and their slot cleared");
+        assertTrue(after.get(1).getIndex() == 3, "Added services should get a fresh slot");
+        assertTrue(before.get(0).getRecentLatency().snapshot().getCount() == 1, "Latency history should be kept");
+        
+        ServiceRegistry.Changes none = registry.update(List.of(
+            new Main.Service("B", "http://b/ready", ""),
+            new Main.Service("D", "http://d/health", ""),
+            new Main.Service("A", "http://a/health", "")));
+        assertTrue(none.isEmpty() && none.unchanged == 3 && registry.getStatuses().equals(after),
+                  "Reloading the same config should change nothing");
+        
+        List<Main.Service> withC = new ArrayList<>(List.of(new Main.Service("C", "http://c/health", "")));
+        for (int i = 0; i < 5_000; i++) {
+            withC.add(new Main.Service("svc", "http://s/" + i, ""));
+        }
+        registry.update(withC);
+        assertTrue(registry.getStatuses().get(0).getIndex() == before.get(2).getIndex(),
+                  "A re-added service should get its old slot back");
+        assertTrue(registry.getStatuses().get(5_000).getIndex() == 5_003 && registry.getTable().capacity() >= 5_004,
+                  "Repeated names should be distinct services and the table should grow");
+        System.out.println("  ✓ Incremental diff preserves live state");
+        
+        // File watching, debounced
+        Path dir = null;
+        ConfigWatcher watcher = null;
+        try {
+            dir = Files.createTempDirectory("panic-reload");
+            Path file = dir.resolve("services.json");
+            Files.writeString(file, "{\"services\": []}");
+            AtomicInteger reloads = new AtomicInteger();
+            CountDownLatch reloaded = new CountDownLatch(1);
+            List<String> watchLog = new java.util.concurrent.CopyOnWriteArrayList<>();
+            watcher = new ConfigWatcher(file, 200, () -> {
+                if (reloads.incrementAndGet() == 3) {
+                    throw new IllegalStateException("injected");
+                }
+                reloaded.countDown();
+            }, watchLog::add);
+            Files.writeString(dir.resolve("other.txt"), "ignored");
+            for (int i = 0; i < 3; i++) {
+                Files.writeString(file, "{\"services\": [{\"name\": \"N" + i + "\"}]}");
+                sleepQuietly(20);
+            }
+            awaitQuietly(reloaded);
+            sleepQuietly(500);
+            assertTrue(reloads.get() == 1, "A burst of writes should trigger one reload (" + reloads.get() + ")");
+            
+            // A busy sibling, like panic.log next to services.json, must not hold the reload back
+            Path sibling = dir.resolve("panic.log");
+            AtomicBoolean writing = new AtomicBoolean(true);
+            Thread writer = Thread.ofPlatform().daemon().start(() -> {
+                while (writing.get()) {
+                    try {
+                        Files.writeString(sibling, "line\n", StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    } catch (IOException e) {
+                        return;
+                    }
+                    sleepQuietly(50);
+                }
+            });
+            try {
+                sleepQuietly(300);
+                Files.writeString(file, "{\"services\": [{\"name\": \"M\"}]}");
+                assertTrue(awaitCondition(() -> reloads.get() == 2, 3_000),
+                          "An edit should reload while other files in the directory keep changing");
+            } finally {
+                writing.set(false);
+                writer.join();
+            }
+            
+            // A reload that throws is logged, and later edits still reload
+            Files.writeString(file, "{\"services\": [{\"name\": \"X\"}]}");
+            assertTrue(awaitCondition(() -> reloads.get() == 3, 3_000) &&
+                       awaitCondition(() -> watchLog.stream().anyMatch(line -> line.contains("injected")), 3_000),
+                      "A failing reload should be logged: " + watchLog);
+            Files.writeString(file, "{\"services\": [{\"name\": \"Y\"}]}");
+            assertTrue(awaitCondition(() -> reloads.get() == 4, 3_000), "Watching should carry on after a failing reload");
+            System.out.println("  ✓ Debounced file watching");
+        } catch (IOException e) {
+            fail("Config watcher test failed: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (watcher != null) {
+                watcher.close();
+            }
+            if (dir != null) {
+                deleteRecursively(dir);
+            }
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testMetrics() {
+        System.out.println("Testing Metrics...");
+        
+        ServiceMetrics metrics = new ServiceMetrics();
+        metrics.recordLatency(800);
+        metrics.recordLatency(1_000);
+        metrics.recordLatency(30_000);
+        metrics.recordLatency(60_000_000);
+        metrics.recordError(new java.net.ConnectException("refused"));
+        metrics.recordError(new java.net.ConnectException("refused"));
+        metrics.recordError(new java.net.http.HttpTimeoutException("timed out"));
+        assertTrue(metrics.getLatencyBucket(0) == 2 && metrics.getLatencyBucket(5) == 1 &&
+                   metrics.getLatencyBucket(ServiceMetrics.LATENCY_BOUNDS_MICROS.length) == 1 &&
+                   metrics.getLatencyCount() == 4 && metrics.getLatencySumMicros() == 60_031_800,
+                  "Latencies should land in their upper-bound buckets");
+        assertTrue(metrics.getErrors().equals(java.util.Map.of("ConnectException", 2L, "HttpTimeoutException", 1L)),
+                  "Errors should be counted by exception type: " + metrics.getErrors());
+        System.out.println("  ✓ Cumulative per-service counters");
+        
+        Main.ServiceStatus up = new Main.ServiceStatus(new Main.Service("api \"edge\"", "http://a/health", ""));
+        up.update(StatusTable.State.UP, 200, 2_000);
+        up.recordLatency(2_000_000);
+        up.getMetrics().recordRestart();
+        up.getMetrics().recordRestartExit(0);
+        Main.ServiceStatus fresh = new Main.ServiceStatus(new Main.Service("api \"edge\"", "http://b/health", ""));
+        StringBuilder text = new StringBuilder();
+        ServiceMetrics.writeTo(new MetricsServer.Writer(text), List.of(up, fresh));
+        String body = text.toString();
+        assertTrue(body.contains("panicribbon_service_up{service=\"api \\\"edge\\\"\"} 1\n") &&
+                   body.contains("panicribbon_service_up{service=\"api \\\"edge\\\"#1\"} NaN\n"),
+                  "Label values should be escaped and repeated names told apart");
+        assertTrue(body.contains("panicribbon_service_state{service=\"api \\\"edge\\\"\",state=\"UP\"} 1\n"),
+                  "Current state should be 1");
+        assertTrue(body.contains("panicribbon_probe_duration_seconds_bucket{service=\"api \\\"edge\\\"\",le=\"0.001\"} 0\n") &&
+                   body.contains("panicribbon_probe_duration_seconds_bucket{service=\"api \\\"edge\\\"\",le=\"0.0025\"} 1\n") &&
+                   body.contains("panicribbon_probe_duration_seconds_bucket{service=\"api \\\"edge\\\"\",le=\"+Inf\"} 1\n") &&
+                   body.contains("panicribbon_probe_duration_seconds_sum{service=\"api \\\"edge\\\"\"} 0.002\n"),
+                  "Histogram buckets should be cumulative");
+        assertTrue(body.contains("panicribbon_restarts_total{service=\"api \\\"edge\\\"\"} 1\n") &&
+                   body.contains("panicribbon_restart_exits_total{service=\"api \\\"edge\\\"\",code=\"0\"} 1\n"),
+                  "Restarts and exit codes should be exported");
+        // Every family's samples must directly follow its TYPE line
+        Set<String> families = new java.util.HashSet<>();
+        String family = null;
+        for (String line : body.split("\n")) {
+            if (line.startsWith("# TYPE ")) {
+                family = line.split(" ")[2];
+                assertTrue(families.add(family), "Family written twice: " + family);
+            } else if (!line.startsWith("#")) {
+                assertTrue(family != null && line.startsWith(family), "Sample outside its family: " + line);
+            }
+        }
+        System.out.println("  ✓ Exposition format");
+        
+        MetricsServer server = null;
+        try {
+            AtomicInteger scrapes = new AtomicInteger();
+            server = new MetricsServer(new InetSocketAddress("127.0.0.1", 0), out -> {
+                scrapes.incrementAndGet();
+                ServiceMetrics.writeTo(out, List.of(up));
+            });
+            HttpClient client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://127.0.0.1:" + server.getPort() + "/metrics");
+            HttpResponse<String> plain = client.send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertTrue(plain.statusCode() == 200 &&
+                       plain.headers().firstValue("Content-Type").orElse("").equals(MetricsServer.CONTENT_TYPE) &&
+                       plain.body().contains("panicribbon_services 1\n"), "GET /metrics should serve the text format");
+            HttpResponse<java.io.InputStream> gzipped = client.send(
+                HttpRequest.newBuilder(uri).header("Accept-Encoding", "gzip").build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+            String unzipped;
+            try (java.io.InputStream in = new GZIPInputStream(gzipped.body())) {
+                unzipped = new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+            }
+            assertTrue(gzipped.headers().firstValue("Content-Encoding").orElse("").equals("gzip") &&
+                       unzipped.equals(plain.body()), "Scrapes accepting gzip should get the same body compressed");
+            HttpResponse<String> post = client.send(
+                HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString("x")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertTrue(post.statusCode() == 405 && scrapes.get() == 2, "Other methods should be rejected unscraped");
+            System.out.println("  ✓ HTTP endpoint");
+        } catch (IOException | InterruptedException e) {
+            fail("Metrics endpoint test failed: " + e);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testRestartOrchestrator() {
+        System.out.println("Testing Restart Orchestrator...");
+        
+        if (System.getProperty("os.name").toLowerCase().contains("win")) {
+            System.out.println("  - Skipped (scripts use sh)");
+            System.out.println();
+            return;
+        }
+        List<String> lines = java.util.Collections.synchronizedList(new ArrayList<>());
+        Map<Integer, Integer> exits = new ConcurrentHashMap<>();
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger peakRunning = new AtomicInteger();
+        CountDownLatch[] finished = {new CountDownLatch(1)};
+        RestartOrchestrator[] holder = new RestartOrchestrator[1];
+        RestartOrchestrator.Listener listener = new RestartOrchestrator.Listener() {
+            @Override
+            public void restartStarted(Main.ServiceStatus status) {
+                started.incrementAndGet();
+            }
+            
+            @Override
+            public void restartFinished(Main.ServiceStatus status, int exitCode) {
+                exits.put(status.getIndex(), exitCode);
+                finished[0].countDown();
+            }
+        };
+        Path dir = Paths.get(System.getProperty("user.dir"));
+        RestartOrchestrator restarts = new RestartOrchestrator(1, 400, 10_000, dir, line -> {
+            lines.add(line);
+            peakRunning.accumulateAndGet(holder[0].getRunning(), Math::max);
+        }, listener);
+        holder[0] = restarts;
+        
+        StatusTable table = new StatusTable(4);
+        Main.ServiceStatus a = new Main.ServiceStatus(
+            new Main.Service("A", "http://a/health", "echo out-a; echo err-a >&2; sleep 0.3; exit 3"), table, 0);
+        Main.ServiceStatus b = new Main.ServiceStatus(
+            new Main.Service("B", "http://b/health", "seq 1 100000; sleep 0.2"), table, 1);
+        
+        // Dedup, then the global cap: B waits for A's slot
+        finished[0] = new CountDownLatch(2);
+        long start = System.nanoTime();
+        assertTrue(restarts.restart(a) == RestartOrchestrator.Request.STARTED, "First restart should start");
+        assertTrue(restarts.restart(a) == RestartOrchestrator.Request.ALREADY_RUNNING && restarts.isRestarting(a),
+                  "A second click while running should be refused");
+        assertTrue(restarts.restart(b) == RestartOrchestrator.Request.STARTED && restarts.getInFlight() == 2,
+                  "Another service should be accepted");
+        awaitQuietly(finished[0]);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(started.get() == 2 && peakRunning.get() == 1 && elapsedMillis >= 500,
+                  "Only one script should run at a time (" + peakRunning.get() + " running, " + elapsedMillis + "ms)");
+        assertTrue(exits.get(0) == 3 && exits.get(1) == 0 && !restarts.isRestarting(a), "Exit codes should be reported");
+        assertTrue(lines.contains("Restart A [out]: out-a") && lines.contains("Restart A [err]: err-a"),
+                  "stdout and stderr should be logged: " + lines);
+        assertTrue(lines.contains("Restart B [out]: 1") && lines.contains("Restart B [out]: 99800 more line(s) not logged"),
+                  "Long output should be drained and capped");
+        System.out.println("  ✓ One restart per service, global cap, streamed output");
+        
+        assertTrue(restarts.restart(a) == RestartOrchestrator.Request.COOLING_DOWN &&
+                   restarts.cooldownRemainingMillis(a) > 0, "A restart right after the last should be refused");
+        sleepQuietly(450);
+        finished[0] = new CountDownLatch(1);
+        assertTrue(restarts.restart(a) == RestartOrchestrator.Request.STARTED, "The cooldown should expire");
+        awaitQuietly(finished[0]);
+        System.out.println("  ✓ Cooldown");
+        
+        // A script that outlives its timeout is killed along with its children
+        lines.clear();
+        RestartOrchestrator strict = new RestartOrchestrator(2, 0, 300, dir, lines::add, listener);
+        Main.ServiceStatus hung = new Main.ServiceStatus(
+            new Main.Service("Hung", "http://h/health", "sleep 30 & echo $!; wait"), table, 2);
+        finished[0] = new CountDownLatch(1);
+        start = System.nanoTime();
+        strict.restart(hung);
+        awaitQuietly(finished[0]);
+        elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(exits.get(2) == ServiceMetrics.EXIT_TIMED_OUT && elapsedMillis < 5_000,
+                  "Timed-out restarts should be reported (" + elapsedMillis + "ms)");
+        long child = -1;
+        for (String line : new ArrayList<>(lines)) {
+            if (line.startsWith("Restart Hung [out]: ")) {
+                child = Long.parseLong(line.substring("Restart Hung [out]: ".length()).trim());
+            }
+        }
+        assertTrue(child > 0 && ProcessHandle.of(child).map(ProcessHandle::isAlive).orElse(false) == false,
+                  "The script's children should be killed too");
+        System.out.println("  ✓ Timeout kills the process tree");
+        
+        restarts.shutdown();
+        assertTrue(restarts.restart(b) == RestartOrchestrator.Request.SHUT_DOWN, "No restarts after shutdown");
+        
+        // The ribbon shows restarting segments distinctly, below DOWN in severity
+        assertTrue(!RibbonModel.colorOf(StatusTable.State.RESTARTING).equals(RibbonModel.colorOf(StatusTable.State.DOWN)) &&
+                   RibbonModel.severity(StatusTable.State.RESTARTING) > RibbonModel.severity(StatusTable.State.UNKNOWN) &&
+                   RibbonModel.severity(StatusTable.State.RESTARTING) < RibbonModel.severity(StatusTable.State.DOWN),
+                  "Restarting should have its own color and rank between unknown and down");
+        a.update(StatusTable.State.RESTARTING, 0, -1);
+        assertTrue(!a.isHealthy() && Main.bucketTooltipText(List.of(a, b)).contains("Restarting: 1"),
+                  "Aggregated tooltips should count restarting services");
+        System.out.println("  ✓ Restarting state");
+        
+        // Script output lines are cut while read, whatever their length or line ending
+        try {
+            String output = "a".repeat(RestartOrchestrator.MAX_LINE_CHARS * 50) + "\r\nshort\rlast";
+            java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.StringReader(output));
+            StringBuilder line = new StringBuilder();
+            List<String> read = new ArrayList<>();
+            while (RestartOrchestrator.readLine(reader, line)) {
+                read.add(line.toString());
+            }
+            assertTrue(read.size() == 3 && read.get(0).length() == RestartOrchestrator.MAX_LINE_CHARS + 3 &&
+                       read.get(0).endsWith("...") && read.get(1).equals("short") && read.get(2).equals("last"),
+                      "Long output lines should be capped: " + read.size() + " line(s)");
+        } catch (IOException e) {
+            fail("Line reading failed: " + e);
+        }
+        System.out.println("  ✓ Bounded output lines");
+        
+        System.out.println();
+    }
+    
+    private static void testPollScheduler() {
+        System.out.println("Testing Poll Scheduler...");
+        
+        // Backoff: quick recheck, then doubling from the interval, capped
+        assertTrue(PollScheduler.backoffMillis(10_000, 0, 2_000, 300_000) == 10_000, "Healthy services use their interval");
+        assertTrue(PollScheduler.backoffMillis(10_000, 1, 2_000, 300_000) == 2_000, "First failure should recheck quickly");
+        assertTrue(PollScheduler.backoffMillis(1_000, 1, 2_000, 300_000) == 1_000, "Recheck should never be slower than the interval");
+        assertTrue(PollScheduler.backoffMillis(10_000, 2, 2_000, 300_000) == 10_000, "Second failure returns to the interval");
+        assertTrue(PollScheduler.backoffMillis(10_000, 4, 2_000, 300_000) == 40_000, "Further failures back off exponentially");
+        assertTrue(PollScheduler.backoffMillis(10_000, 100, 2_000, 300_000) == 300_000, "Backoff should be capped");
+        assertTrue(PollScheduler.backoffMillis(600_000, 5, 2_000, 300_000) == 600_000, "Cap should not undercut a long interval");
+        System.out.println("  ✓ Backoff policy");
+        
+        // Phasing and jitter spread probes across the interval
+        assertTrue(PollScheduler.phaseMillis(0, 4, 10_000) == 0 && PollScheduler.phaseMillis(3, 4, 10_000) == 7_500,
+                  "Start times should be spread evenly");
+        PollScheduler jittery = new PollScheduler(null, status -> null, 10_000, 2_000, 300_000, 0.1);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long delay = jittery.jittered(10_000);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        assertTrue(min >= 9_000 && max <= 11_000 && max > min, "Jitter should stay within +/-10%");
+        System.out.println("  ✓ Phasing and jitter");
+        
+        // A malformed number falls back to the default rather than failing startup
+        assertTrue(PollScheduler.parseDouble("panicribbon.poll.jitter", " 0.2 ", 0.1) == 0.2 &&
+                   PollScheduler.parseDouble("panicribbon.poll.jitter", "10%", 0.1) == 0.1 &&
+                   PollScheduler.parseDouble("panicribbon.poll.jitter", "NaN", 0.1) == 0.1 &&
+                   PollScheduler.parseDouble("panicribbon.poll.jitter", null, 0.1) == 0.1,
+                  "Numeric settings should parse leniently");
+        System.out.println("  ✓ Lenient jitter setting");
+        
+        // Live: a dead service is probed far less often than a healthy one
+        TimingWheel timer = new TimingWheel(5, TimeUnit.MILLISECONDS, 64, Runnable::run, "test-poll-timer");
+        Main.ServiceStatus healthy = new Main.ServiceStatus(new Main.Service("up", "http://localhost/up", "", 50));
+        Main.ServiceStatus dead = new Main.ServiceStatus(new Main.Service("down", "http://localhost/down", "", 50));
+        AtomicInteger healthyProbes = new AtomicInteger();
+        AtomicInteger deadProbes = new AtomicInteger();
+        PollScheduler scheduler = new PollScheduler(timer, status -> {
+            boolean up = status == healthy;
+            (up ? healthyProbes : deadProbes).incrementAndGet();
+            return CompletableFuture.completedFuture(up);
+        }, 1_000, 20, 60_000, 0.1);
+        try {
+            scheduler.start(List.of(healthy, dead));
+            sleepQuietly(1_200);
+            assertTrue(healthyProbes.get() >= 10, "Healthy service should be polled on its own interval (" + healthyProbes.get() + ")");
+            assertTrue(deadProbes.get() >= 3 && deadProbes.get() * 2 < healthyProbes.get(),
+                      "Failing service should back off (" + deadProbes.get() + " vs " + healthyProbes.get() + ")");
+            assertTrue(scheduler.getProbesStarted() == healthyProbes.get() + deadProbes.get(), "Every probe should be counted");
+            assertTrue(scheduler.getDrift().getCount() == scheduler.getProbesStarted() && scheduler.getProbeRate() > 0,
+                      "Drift and rate should be tracked");
+            System.out.println("  ✓ Adaptive polling: " + healthyProbes.get() + " vs " + deadProbes.get() + " probes, " +
+                               scheduler.describeMetrics());
+            
+            assertTrue(scheduler.remove(dead), "Removing a service should succeed");
+            int before = deadProbes.get();
+            sleepQuietly(300);
+            assertTrue(deadProbes.get() <= before + 1 && scheduler.getTargetCount() == 1, "Removed service should stop polling");
+            System.out.println("  ✓ Remove stops polling");
+        } finally {
+            scheduler.shutdown();
+            timer.shutdown();
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testSingleFlight() {
+        System.out.println("Testing Single-Flight Probes...");
+        
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        CompletableFuture<Integer> first = flights.run("a", () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<Integer> second = flights.run("a", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(-1);
+        });
+        CompletableFuture<Integer> other = flights.run("b", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(7);
+        });
+        assertTrue(calls.get() == 2 && flights.isInFlight("a") && !flights.isInFlight("b") && other.join() == 7,
+                  "Only the first request per key should start a call");
+        second.cancel(false);
+        pending.complete(42);
+        assertTrue(first.join() == 42 && second.isCancelled() && !flights.isInFlight("a"),
+                  "Joined requests share the result; cancelling one copy affects no one else");
+        
+        // A request made when the result arrives starts a fresh call
+        AtomicInteger chained = new AtomicInteger();
+        CompletableFuture<Integer> next = new CompletableFuture<>();
+        flights.run("a", () -> next).thenRun(() -> flights.run("a", () -> {
+            chained.incrementAndGet();
+            return CompletableFuture.completedFuture(0);
+        }));
+        next.complete(1);
+        assertTrue(chained.get() == 1, "A completed call should release its key before delivering the result");
+        
+        CompletableFuture<Integer> failed = flights.run("c", () -> {
+            throw new IllegalStateException("boom");
+        });
+        assertTrue(failed.isCompletedExceptionally() && !flights.isInFlight("c"), "Failures should propagate and release the key");
+        assertTrue(flights.getStarted() == 5 && flights.getJoined() == 1, "Started and joined requests should be counted");
+        System.out.println("  ✓ Concurrent requests share one call");
+        
+        // A slow backend sees one probe at a time however often it is refreshed
+        HttpServer server = null;
+        ProbeEngine engine = new ProbeEngine();
+        try {
+            AtomicInteger concurrent = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            AtomicInteger requests = new AtomicInteger();
+            server = startStubServer(exchange -> {
+                peak.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                requests.incrementAndGet();
+                sleepQuietly(300);
+                concurrent.decrementAndGet();
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            });
+            Main.ServiceStatus status = new Main.ServiceStatus(new Main.Service("slow",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/health", ""));
+            SingleFlight<Main.ServiceStatus, ProbeEngine.ProbeResult> probes = new SingleFlight<>();
+            List<CompletableFuture<ProbeEngine.ProbeResult>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                results.add(probes.run(status, () -> engine.probe(status.getService())));
+                sleepQuietly(10);
+            }
+            for (CompletableFuture<ProbeEngine.ProbeResult> result : results) {
+                assertTrue(result.join().getStatusCode() == 200, "Every request should get the shared result");
+            }
+            assertTrue(requests.get() == 1 && peak.get() == 1,
+                      "Overlapping requests should reach the backend once (" + requests.get() + ")");
+            System.out.println("  ✓ One probe per slow backend");
+        } catch (IOException e) {
+            fail("Single-flight probe test failed: " + e);
+        } finally {
+            engine.shutdown();
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testProbeDeadlines() {
+        System.out.println("Testing Probe Deadlines...");
+        
+        java.time.Duration configured = java.time.Duration.ofSeconds(5);
+        DeadlineEstimator estimator = new DeadlineEstimator(4, 100, 5, 50);
+        assertTrue(estimator.deadline(configured).equals(configured), "Without samples the configured timeout applies");
+        for (int i = 0; i < 50; i++) {
+            assertTrue(!estimator.record(3_000 + (i % 3) * 500), "Steady latency should not be slow");
+        }
+        long deadline = estimator.deadline(configured).toMillis();
+        assertTrue(deadline == 100, "A fast service should get the floor deadline (" + deadline + "ms)");
+        
+        DeadlineEstimator jittery = new DeadlineEstimator(4, 100, 5, 50);
+        for (int i = 0; i < 50; i++) {
+            jittery.record(i % 2 == 0 ? 40_000 : 120_000);
+        }
+        deadline = jittery.deadline(configured).toMillis();
+        assertTrue(deadline > 480 && deadline < 2_000, "Deadlines should follow latency and its spread (" + deadline + "ms)");
+        System.out.println("  ✓ Deadline from recent latency");
+        
+        assertTrue(estimator.record(2_000_000), "A 3ms service answering in 2s should be slow");
+        assertTrue(!estimator.isSlow(40_000), "Small absolute slowdowns should not count");
+        for (int i = 0; i < 400; i++) {
+            estimator.record(2_000_000);
+        }
+        assertTrue(!estimator.isSlow(2_000_000), "A lasting slowdown should become the new normal");
+        System.out.println("  ✓ Slow detection against a baseline");
+        
+        DeadlineEstimator backoff = new DeadlineEstimator(4, 100, 5, 50);
+        for (int i = 0; i < 10; i++) {
+            backoff.record(3_000);
+        }
+        backoff.recordTimeout();
+        backoff.recordTimeout();
+        assertTrue(backoff.deadline(configured).toMillis() == 400, "Consecutive timeouts should double the deadline");
+        for (int i = 0; i < 10; i++) {
+            backoff.recordTimeout();
+        }
+        assertTrue(backoff.deadline(configured).equals(configured), "Backoff should stop at the configured timeout");
+        backoff.record(3_000);
+        assertTrue(backoff.deadline(configured).toMillis() == 100 && backoff.getConsecutiveTimeouts() == 0,
+                  "An answer should reset the backoff");
+        System.out.println("  ✓ Backoff after timeouts");
+        
+        // The engine applies the per-probe deadline instead of the configured timeout
+        HttpServer server = null;
+        ProbeEngine engine = new ProbeEngine();
+        try {
+            server = startStubServer(exchange -> {
+                sleepQuietly(2_000);
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            });
+            Main.Service hung = new Main.Service("hung", "http://127.0.0.1:" + server.getAddress().getPort() + "/health", "");
+            long start = System.nanoTime();
+            ProbeEngine.ProbeResult result = engine.probe(hung, java.time.Duration.ofMillis(200)).join();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(result.isTimeout() && elapsed < 1_500, "A hung service should be cut off at the deadline (" + elapsed + "ms)");
+            System.out.println("  ✓ Per-probe deadline");
+        } catch (IOException e) {
+            fail("Probe deadline test failed: " + e);
+        } finally {
+            engine.shutdown();
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+        
+        StatusTable table = new StatusTable(1);
+        Main.ServiceStatus slow = new Main.ServiceStatus(new Main.Service("s", "http://s/health", ""), table, 0);
+        slow.update(StatusTable.State.SLOW, 200, 2_000_000);
+        assertTrue(slow.isHealthy() && Main.bucketTooltipText(List.of(slow, slow)).contains("Up: 2 (slow: 2)"),
+                  "Slow services answer, so they count as up");
+        assertTrue(RibbonModel.colorOf(StatusTable.State.SLOW).equals(Color.YELLOW) &&
+                   RibbonModel.severity(StatusTable.State.SLOW) > RibbonModel.severity(StatusTable.State.UP) &&
+                   RibbonModel.severity(StatusTable.State.SLOW) < RibbonModel.severity(StatusTable.State.DOWN),
+                  "Slow should have its own color and rank between up and down");
+        System.out.println("  ✓ Slow state");
+        
+        System.out.println();
+    }
+    
+    private static void testDaemonSubscription() {
+        System.out.println("Testing Daemon Subscription...");
+        
+        // Frames: only changed slots go out, 12 bytes each
+        long up = StatusTable.pack(StatusTable.State.UP, 200, 1_500, 1);
+        long[] before = {StatusTable.INITIAL, StatusTable.INITIAL, StatusTable.INITIAL};
+        long[] after = {StatusTable.INITIAL, up, StatusTable.INITIAL};
+        assertTrue(StatusProtocol.delta(before, 3, before.clone(), 3) == null, "No change should mean no frame");
+        java.nio.ByteBuffer delta = StatusProtocol.delta(before, 3, after, 3);
+        assertTrue(delta.remaining() == 4 + 1 + 4 + 12 && delta.get(4) == StatusProtocol.STATES && delta.getInt(5) == 1 &&
+                   delta.getInt(9) == 1 && delta.getLong(13) == up, "A delta should carry just the changed slot");
+        assertTrue(StatusProtocol.delta(before, 2, after, 3).getInt(5) == 2, "Slots added since the last frame are always sent");
+        assertTrue(StatusProtocol.parseAddress("[::1]:9465") instanceof InetSocketAddress &&
+                   StatusProtocol.parseAddress("unix:/tmp/panic.sock") instanceof java.net.UnixDomainSocketAddress,
+                  "TCP and Unix socket addresses should parse");
+        System.out.println("  ✓ Delta frames");
+        
+        FakeSource daemon = new FakeSource(List.of(
+            new Main.Service("A", "http://a/health", ""),
+            new Main.Service("B", "http://b/health", ""),
+            new Main.Service("C", "tcp://c:5432", "")));
+        StatusServer server = null;
+        StatusClient client = null;
+        try {
+            server = new StatusServer(new InetSocketAddress("127.0.0.1", 0), daemon, daemon.registry.getTable(), 20);
+            client = new StatusClient(server.getAddress());
+            AtomicInteger servicesChanged = new AtomicInteger();
+            AtomicInteger stateChanges = new AtomicInteger();
+            client.start(new StatusSource.Listener() {
+                @Override
+                public void servicesChanged() {
+                    servicesChanged.incrementAndGet();
+                }
+                
+                @Override
+                public void stateChanged(Main.ServiceStatus status) {
+                    stateChanges.incrementAndGet();
+                }
+            });
+            StatusClient subscriber = client;
+            assertTrue(awaitCondition(() -> subscriber.getStatuses().size() == 3, 5_000) &&
+                       subscriber.getStatuses().get(2).getService().getHealthCheckUrl().equals("tcp://c:5432") &&
+                       servicesChanged.get() == 1, "The subscriber should receive the service list");
+            
+            Main.ServiceStatus b = daemon.registry.getStatuses().get(1);
+            b.update(StatusTable.State.UP, 200, 1_500);
+            Main.ServiceStatus remoteB = client.getStatuses().get(1);
+            assertTrue(awaitCondition(() -> remoteB.snapshot() == b.snapshot(), 5_000) && stateChanges.get() == 1,
+                      "A state change should reach the subscriber as it was published");
+            b.update(StatusTable.State.UP, 200, 2_500);
+            assertTrue(awaitCondition(() -> remoteB.getRecentLatency().snapshot().getCount() == 2, 5_000) &&
+                       stateChanges.get() == 1 && remoteB.getLatency() == 2,
+                      "New probe results should feed the subscriber's latency histograms");
+            System.out.println("  ✓ Snapshot and deltas");
+            
+            client.refresh(List.of(remoteB));
+            client.restart(client.getStatuses().get(0));
+            assertTrue(awaitCondition(() -> daemon.refreshed.contains("B") && daemon.restarted.contains("A"), 5_000),
+                      "Refresh and restart requests should reach the daemon");
+            InetSocketAddress lan = new InetSocketAddress(java.net.InetAddress.getByAddress(new byte[] {10, 0, 0, 5}), 40000);
+            assertTrue(StatusServer.allowsControl(new InetSocketAddress("::1", 40000), false) &&
+                       StatusServer.allowsControl(java.net.UnixDomainSocketAddress.of("/tmp/panic.sock"), false) &&
+                       !StatusServer.allowsControl(lan, false) && StatusServer.allowsControl(lan, true),
+                      "Only local subscribers should control the daemon unless remote control is enabled");
+            System.out.println("  ✓ Commands");
+            
+            daemon.registry.update(List.of(
+                new Main.Service("B", "http://b/health", ""),
+                new Main.Service("D", "http://d/health", "")));
+            server.servicesChanged();
+            assertTrue(awaitCondition(() -> subscriber.getStatuses().size() == 2, 5_000) &&
+                       subscriber.getStatuses().get(0) == remoteB && StatusTable.state(remoteB.snapshot()) == StatusTable.State.UP &&
+                       subscriber.getStatuses().get(1).getService().getName().equals("D"),
+                      "A reload should replace the list and keep unchanged services");
+            
+            // A second subscriber joining late gets the current state in its first snapshot
+            StatusClient late = new StatusClient(server.getAddress());
+            late.start(new StatusSource.Listener() {
+                @Override
+                public void servicesChanged() {
+                }
+                
+                @Override
+                public void stateChanged(Main.ServiceStatus status) {
+                }
+            });
+            assertTrue(awaitCondition(() -> late.getStatuses().size() == 2 &&
+                                            StatusTable.isHealthy(late.getStatuses().get(0).snapshot()), 5_000),
+                      "A late subscriber should start from a full snapshot");
+            StatusServer publishing = server;
+            assertTrue(awaitCondition(() -> publishing.getSubscribers() == 2, 5_000), "Both subscribers should be counted");
+            late.shutdown();
+            System.out.println("  ✓ Reload and late join");
+            
+            server.close();
+            server = null;
+            assertTrue(awaitCondition(() -> !subscriber.isConnected() &&
+                                            StatusTable.state(remoteB.snapshot()) == StatusTable.State.UNKNOWN, 5_000),
+                      "Without a daemon the subscriber should show states as unknown");
+            System.out.println("  ✓ Daemon loss");
+        } catch (IOException e) {
+            fail("Daemon subscription test failed: " + e);
+        } finally {
+            if (client != null) {
+                client.shutdown();
+            }
+            if (server != null) {
+                server.close();
+            }
+        }
+        
+        // The daemon must run on a machine without a display: no AWT class may load
+        Path dir = null;
+        Process process = null;
+        try {
+            dir = Files.createTempDirectory("panic-daemon");
+            Files.writeString(dir.resolve("services.json"),
+                "{\"services\": [{\"name\": \"A\", \"type\": \"tcp\", \"host\": \"127.0.0.1\", \"port\": 1}]}");
+            String java = ProcessHandle.current().info().command().orElse("java");
+            // A short metrics period so the periodic log lines run before the classes are checked
+            process = new ProcessBuilder(java, "-Xlog:class+load:file=classes.txt", "-Dpanicribbon.daemon.listen=127.0.0.1:0",
+                                         "-Dpanicribbon.log.metricsSeconds=1",
+                                         "-cp", daemonClassPath(), "com.devops.panicribbon.Daemon")
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            Path log = dir.resolve("panic.log");
+            assertTrue(awaitCondition(() -> readQuietly(log).contains("Health check"), 10_000),
+                      "The daemon should start probing");
+            assertTrue(awaitCondition(() -> readQuietly(log).contains("Scheduler: "), 10_000),
+                      "The daemon should log its scheduler metrics");
+            process.destroy();
+            process.waitFor(10, TimeUnit.SECONDS);
+            String classes = readQuietly(dir.resolve("classes.txt"));
+            assertTrue(classes.contains("com.devops.panicribbon.Monitor ") && !classes.contains("java.awt.") &&
+                       !classes.contains("com.devops.panicribbon.Main "),
+                      "The daemon should not load AWT or the ribbon");
+            assertTrue(readQuietly(log).contains("Shutting down daemon"), "SIGTERM should shut the daemon down cleanly");
+            System.out.println("  ✓ Headless daemon loads no AWT classes");
+        } catch (IOException e) {
+            fail("Daemon process test failed: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (process != null) {
+                process.destroyForcibly();
+            }
+            deleteRecursively(dir);
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testShardedProbing() {
+        System.out.println("Testing Sharded Probing...");
+        
+        // The ring: balanced, deterministic, and a change of members only moves that member's keys
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            keys.add("service-" + i);
+        }
+        HashRing three = new HashRing(List.of("b:2", "a:1", "c:3"), ShardCoordinator.VIRTUAL_NODES);
+        HashRing two = new HashRing(List.of("a:1", "c:3"), ShardCoordinator.VIRTUAL_NODES);
+        HashRing four = new HashRing(List.of("a:1", "b:2", "c:3", "d:4"), ShardCoordinator.VIRTUAL_NODES);
+        Map<String, Integer> shares = new java.util.HashMap<>();
+        boolean leaveMovesOnlyItsKeys = true;
+        boolean joinMovesOnlyToNewcomer = true;
+        int movedOnJoin = 0;
+        for (String key : keys) {
+            String owner = three.owner(key);
+            shares.merge(owner, 1, Integer::sum);
+            leaveMovesOnlyItsKeys &= owner.equals("b:2") || two.owner(key).equals(owner);
+            if (!four.owner(key).equals(owner)) {
+                movedOnJoin++;
+                joinMovesOnlyToNewcomer &= four.owner(key).equals("d:4");
+            }
+        }
+        assertTrue(three.members().equals(List.of("a:1", "b:2", "c:3")) &&
+                   new HashRing(List.of("c:3", "a:1", "b:2"), ShardCoordinator.VIRTUAL_NODES).owner("x").equals(three.owner("x")),
+                  "Members should build the same ring whatever order they are listed in");
+        assertTrue(shares.values().stream().allMatch(share -> within(share, keys.size() / 3, 0.25)),
+                  "Keys should spread evenly across members: " + shares);
+        assertTrue(leaveMovesOnlyItsKeys, "A member leaving should only move its own keys");
+        assertTrue(joinMovesOnlyToNewcomer && within(movedOnJoin, keys.size() / 4, 0.25),
+                  "A member joining should only take about its share, and only for itself: " + movedOnJoin);
+        System.out.println("  ✓ Consistent hash ring");
+        
+        // Three daemons on loopback, each probing its share and serving the merged table
+        List<Main.Service> services = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            services.add(new Main.Service("svc-" + i, "http://svc-" + i + "/health", ""));
+        }
+        ShardNode[] nodes = new ShardNode[3];
+        try {
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = new ShardNode(services, 0, i + 1);
+            }
+            List<String> ids = List.of(nodes[0].id, nodes[1].id, nodes[2].id);
+            for (ShardNode node : nodes) {
+                node.start(ids);
+            }
+            assertTrue(awaitCondition(() -> Arrays.stream(nodes).allMatch(node -> node.shard.getMembers().size() == 3), 10_000),
+                      "Every daemon should see the other two as members");
+            for (ShardNode node : nodes) {
+                node.probeOwned();
+            }
+            HashRing ring = new HashRing(ids, ShardCoordinator.VIRTUAL_NODES);
+            assertTrue(awaitCondition(() -> Arrays.stream(nodes).allMatch(node -> node.showsOwners(ring, nodes)), 10_000),
+                      "Every daemon should show each service as probed by its owner");
+            int owned = 0;
+            for (ShardNode node : nodes) {
+                owned += node.shard.getOwned();
+            }
+            assertTrue(owned == services.size() && Arrays.stream(nodes).allMatch(node -> node.acquired.isEmpty()),
+                      "Each service should be probed by exactly one daemon: " + owned);
+            System.out.println("  ✓ Shards merge into the full fleet");
+            
+            // One daemon leaves: the others take over exactly its services
+            Set<String> leaving = nodes[2].ownedNames();
+            nodes[2].close();
+            assertTrue(awaitCondition(() -> nodes[0].shard.getMembers().size() == 2 && nodes[1].shard.getMembers().size() == 2, 10_000),
+                      "The survivors should drop the daemon that left");
+            Set<String> takenOver = new java.util.HashSet<>(nodes[0].acquired);
+            takenOver.addAll(nodes[1].acquired);
+            assertTrue(takenOver.equals(leaving) && nodes[0].acquired.size() + nodes[1].acquired.size() == leaving.size(),
+                      "Only the leaving daemon's services should move: " + takenOver.size() + " of " + leaving.size());
+            HashRing survivors = new HashRing(ids.subList(0, 2), ShardCoordinator.VIRTUAL_NODES);
+            assertTrue(awaitCondition(() -> nodes[0].showsOwners(survivors, nodes) && nodes[1].showsOwners(survivors, nodes), 10_000),
+                      "The services taken over should be probed by their new owners");
+            System.out.println("  ✓ Rebalance on leave");
+            
+            // It comes back on the same address and gets the same services back
+            nodes[0].acquired.clear();
+            nodes[1].acquired.clear();
+            nodes[2] = new ShardNode(services, nodes[2].port, 3);
+            nodes[2].start(ids);
+            assertTrue(awaitCondition(() -> Arrays.stream(nodes).allMatch(node -> node.shard.getMembers().size() == 3), 10_000),
+                      "The returning daemon should rejoin");
+            assertTrue(nodes[2].ownedNames().equals(leaving) && nodes[0].acquired.isEmpty() && nodes[1].acquired.isEmpty(),
+                      "The returning daemon should get back its own services and nothing else");
+            nodes[2].probeOwned();
+            assertTrue(awaitCondition(() -> Arrays.stream(nodes).allMatch(node -> node.showsOwners(ring, nodes)), 10_000),
+                      "After the rejoin every daemon should again show the owners' results");
+            System.out.println("  ✓ Rebalance on join");
+        } catch (IOException e) {
+            fail("Sharding test failed: " + e);
+        } finally {
+            for (ShardNode node : nodes) {
+                if (node != null) {
+                    node.close();
+                }
+            }
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testStatusSnapshot() {
+        System.out.println("Testing Status Snapshot...");
+        
+        // Stale: a restored value until the first probe result, which is a visible change even in the same state
+        StatusTable table = new StatusTable(8);
+        Main.ServiceStatus probed = new Main.ServiceStatus(new Main.Service("A", "http://a/health", ""), table, 0);
+        long saved = StatusTable.pack(StatusTable.State.UP, 200, 1_000, 42);
+        table.set(0, StatusTable.stale(saved));
+        assertTrue(StatusTable.isStale(probed.snapshot()) && StatusTable.state(probed.snapshot()) == StatusTable.State.UP &&
+                   StatusTable.latencyMicros(probed.snapshot()) == 1_000 && !StatusTable.isStale(StatusTable.INITIAL),
+                  "A restored value should keep its state and latency but be stale");
+        assertTrue(probed.update(StatusTable.State.UP, 200, 900) && !StatusTable.isStale(probed.snapshot()) &&
+                   !probed.update(StatusTable.State.UP, 200, 800),
+                  "Confirming a stale state should count as a change, later identical results should not");
+        table.set(1, StatusTable.pack(StatusTable.State.UP, 200, 1, (1 << 18) - 1));
+        table.update(1, StatusTable.State.UP, 200, 1);
+        assertTrue(StatusTable.counter(table.get(1)) == 1 && !StatusTable.isStale(table.get(1)),
+                  "The update counter should skip 0 when it wraps, so a live slot never looks stale");
+        System.out.println("  ✓ Stale slots");
+        
+        int staleUp = StatusTable.State.UP.ordinal() | StatusTable.STALE_APPEARANCE;
+        assertTrue(RibbonModel.colorOf(StatusTable.State.UNKNOWN).equals(RibbonModel.UNKNOWN_COLOR) &&
+                   !RibbonModel.colorOf(StatusTable.State.UNKNOWN).equals(Color.RED),
+                  "Services never probed should not look down");
+        assertTrue(!RibbonModel.colorOf(staleUp).equals(Color.GREEN) && !RibbonModel.colorOf(staleUp).equals(RibbonModel.UNKNOWN_COLOR) &&
+                   RibbonModel.colorOf(staleUp).getGreen() > RibbonModel.colorOf(staleUp).getRed(),
+                  "A stale state should be a dimmed version of its color");
+        List<Main.ServiceStatus> pair = List.of(probed, new Main.ServiceStatus(new Main.Service("B", "http://b/health", ""), table, 2));
+        table.set(2, StatusTable.stale(saved));
+        assertTrue(Main.bucketTooltipText(pair).contains("Not yet probed (last run's state shown): 1"),
+                  "Aggregated tooltips should count services still showing last-known state");
+        System.out.println("  ✓ Stale rendering");
+        
+        // Round trip by key: reordered, added and removed services each find their own state
+        Path dir = null;
+        Process process = null;
+        try {
+            dir = Files.createTempDirectory("panic-snapshot");
+            Path file = dir.resolve("status.dat");
+            assertTrue(StatusSnapshot.read(file) == null, "No snapshot yet should read as none");
+            ServiceRegistry before = new ServiceRegistry(new StatusTable(1));
+            before.update(List.of(
+                new Main.Service("A", "http://a/health", ""),
+                new Main.Service("B", "http://b/health", ""),
+                new Main.Service("C", "http://c/health", ""),
+                new Main.Service("D", "http://d/health", "")));
+            before.getStatuses().get(0).update(StatusTable.State.UP, 200, 1_500);
+            before.getStatuses().get(1).update(StatusTable.State.DOWN, 503, 2_500);
+            before.getStatuses().get(2).update(StatusTable.State.RESTARTING, -1, -1);
+            StatusSnapshot.save(file, before.getStatuses(), 1_000L);
+            
+            ServiceRegistry after = new ServiceRegistry(new StatusTable(1));
+            after.update(List.of(
+                new Main.Service("E", "http://e/health", ""),
+                new Main.Service("C", "http://c/health", ""),
+                new Main.Service("B", "http://b/health", ""),
+                new Main.Service("A", "http://a/health", "")));
+            StatusSnapshot snapshot = StatusSnapshot.read(file);
+            List<Main.ServiceStatus> restored = snapshot.restore(after.getStatuses(), after.getTable());
+            List<Main.ServiceStatus> statuses = after.getStatuses();
+            assertTrue(snapshot.savedAtMillis == 1_000L && restored.size() == 2, "Only services with a saved state should be restored");
+            assertTrue(StatusTable.isStale(statuses.get(3).snapshot()) && StatusTable.state(statuses.get(3).snapshot()) == StatusTable.State.UP &&
+                       StatusTable.state(statuses.get(2).snapshot()) == StatusTable.State.DOWN &&
+                       StatusTable.statusCode(statuses.get(2).snapshot()) == 503,
+                      "Services should get their own saved state back, whatever their new position");
+            assertTrue(statuses.get(1).snapshot() == StatusTable.INITIAL && statuses.get(0).snapshot() == StatusTable.INITIAL,
+                      "A restart that was running and a new service should start unknown");
+            
+            Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+            try {
+                StatusSnapshot.read(file);
+                fail("A foreign file should be rejected");
+            } catch (IOException e) {
+                testsPassed++;
+            }
+            Files.delete(file);
+            System.out.println("  ✓ Save and restore by service key");
+            
+            // A real restart: the daemon saves on SIGTERM and the next run starts from it
+            Files.writeString(dir.resolve("services.json"),
+                "{\"services\": [{\"name\": \"A\", \"type\": \"tcp\", \"host\": \"127.0.0.1\", \"port\": 1}]}");
+            Path log = dir.resolve("panic.log");
+            for (int run = 0; run < 2; run++) {
+                String java = ProcessHandle.current().info().command().orElse("java");
+                process = new ProcessBuilder(java, "-Dpanicribbon.daemon.listen=127.0.0.1:0",
+                                             "-cp", daemonClassPath(), "com.devops.panicribbon.Daemon")
+                    .directory(dir.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+                String marker = run == 0 ? "Health check" : "Restored last-known state of 1 of 1";
+                assertTrue(awaitCondition(() -> readQuietly(log).contains(marker), 10_000),
+                          run == 0 ? "The daemon should start probing" : "The next run should restore the saved state");
+                process.destroy();
+                process.waitFor(10, TimeUnit.SECONDS);
+                if (run == 0) {
+                    assertTrue(Files.exists(file), "Shutdown should save the last-known states");
+                }
+            }
+            System.out.println("  ✓ Restored across a daemon restart");
+        } catch (IOException e) {
+            fail("Status snapshot test failed: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (process != null) {
+                process.destroyForcibly();
+            }
+            deleteRecursively(dir);
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testLogIndex() {
+        System.out.println("Testing Log Index...");
+        
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("panic-logindex");
+            Path file = dir.resolve("panic.log");
+            LogIndex index = new LogIndex(file);
+            assertTrue(!index.refresh() && index.lineCount() == 0, "A missing log should index as empty");
+            
+            StringBuilder log = new StringBuilder();
+            for (int i = 0; i < 50; i++) {
+                log.append("[t").append(i).append("] Health check: api - ").append(i % 10 == 0 ? "DOWN" : "HEALTHY").append('\n');
+                log.append("[t").append(i).append("] Health check: api-v2 - HEALTHY\n");
+                log.append("[t").append(i).append("] Restart script completed for db with exit code 0\n");
+            }
+            Files.writeString(file, log.toString());
+            assertTrue(index.refresh() && index.lineCount() == 150, "Every complete line should be indexed");
+            
+            LogIndex.Page page = index.lines("api", null, -1, Integer.MAX_VALUE, 20);
+            assertTrue(page.lines.size() == 20 && page.more && page.lines.get(19).text.equals("[t49] Health check: api - HEALTHY") &&
+                       page.lines.get(0).text.startsWith("[t30] "),
+                      "A service should open on its newest lines, oldest first");
+            assertTrue(page.lines.stream().allMatch(line -> line.text.contains("api - ")),
+                      "A service's lines should not include services whose names merely contain its name");
+            LogIndex.Page older = index.lines("api", null, -1, page.lines.get(0).number, 20);
+            assertTrue(older.lines.get(19).text.startsWith("[t29] ") && older.more,
+                      "Paging back should continue right before the oldest line shown");
+            assertTrue(index.lines("db", null, -1, Integer.MAX_VALUE, 100).lines.size() == 50 &&
+                       !index.lines("db", null, -1, Integer.MAX_VALUE, 100).more,
+                      "Names should be found wherever they appear in a line");
+            LogIndex.Page down = index.lines("api", "down", -1, Integer.MAX_VALUE, 100);
+            assertTrue(down.lines.size() == 5 && !down.more && down.lines.get(0).text.startsWith("[t0] "),
+                      "Filtering should keep only matching lines, ignoring case");
+            System.out.println("  ✓ Per-service pages and filtering");
+            
+            // Appends are indexed from where the last refresh stopped; a partial line waits for its newline
+            int before = index.lineCount();
+            Files.writeString(file, "[t50] Health check: api - HEALTHY\n[t51] Health check: api", StandardOpenOption.APPEND);
+            index.refresh();
+            assertTrue(index.lineCount() == before + 1, "A partial last line should not be indexed yet");
+            Files.writeString(file, " - DOWN\n", StandardOpenOption.APPEND);
+            index.refresh();
+            LogIndex.Page newer = index.lines("api", null, before - 1, Integer.MAX_VALUE, 20);
+            assertTrue(index.lineCount() == before + 2 && newer.lines.size() == 2 &&
+                       newer.lines.get(1).text.equals("[t51] Health check: api - DOWN"),
+                      "Lines after the last one seen should be the appended ones, complete");
+            
+            // Lines crossing mapping windows read the same as with one window
+            LogIndex small = new LogIndex(file, 64);
+            small.refresh();
+            assertTrue(small.lineCount() == index.lineCount() &&
+                       small.lines("api", "health", -1, Integer.MAX_VALUE, 1000).lines.stream().map(line -> line.text).toList()
+                           .equals(index.lines("api", "health", -1, Integer.MAX_VALUE, 1000).lines.stream().map(line -> line.text).toList()),
+                      "Small mapping windows should index and read the same lines");
+            System.out.println("  ✓ Incremental growth");
+            
+            // Rotation: the active segment is replaced by a new, shorter file
+            int segment = index.getSegment();
+            Files.move(file, dir.resolve("panic-old.log"));
+            Files.writeString(file, "[u0] Health check: api - HEALTHY\n");
+            index.refresh();
+            assertTrue(index.getSegment() != segment && index.lineCount() == 1 && index.lines("api", null, -1, Integer.MAX_VALUE, 20).lines.size() == 1,
+                      "A rotated log should be indexed from scratch");
+            System.out.println("  ✓ Rotation");
+        } catch (IOException e) {
+            fail("Log index test failed: " + e);
+        } finally {
+            deleteRecursively(dir);
+        }
+        
+        System.out.println();
+    }
+    
+    private static void testTransitionStream() {
+        System.out.println("Testing Transition Stream...");
+        
+        // Detection: only results that change the state are transitions
+        List<String> logged = new java.util.concurrent.CopyOnWriteArrayList<>();
+        TransitionStream stream = new TransitionStream(64, logged::add);
+        List<String> seen = new java.util.concurrent.CopyOnWriteArrayList<>();
+        stream.subscribe("test", batch -> batch.forEach(transition -> seen.add(transition.toString())));
+        StatusTable table = new StatusTable(4);
+        Main.ServiceStatus status = new Main.ServiceStatus(new Main.Service("A", "http://a/health", ""), table, 0);
+        status.update(StatusTable.State.UP, 200, 1_000, null, stream);
+        status.update(StatusTable.State.UP, 200, 2_000, null, stream);
+        status.update(StatusTable.State.DOWN, -1, -1, new IOException("Connection refused"), stream);
+        status.update(StatusTable.State.DOWN, -1, -1, new IOException("Connection refused"), stream);
+        status.update(StatusTable.State.UP, 200, 3_000, null, stream);
+        status.update(StatusTable.State.SLOW, 200, 90_000, null, stream);
+        status.update(StatusTable.State.RESTARTING, -1, -1, null, stream);
+        table.set(0, StatusTable.stale(StatusTable.pack(StatusTable.State.UP, 200, 1_000, 7)));
+        assertTrue(status.update(StatusTable.State.UP, 200, 1_000, null, stream), "Confirming a stale state is still a visible change");
+        assertTrue(awaitCondition(() -> seen.size() == 5, 5_000) && seen.equals(List.of(
+                       "A UNKNOWN -> UP (200) - 1ms",
+                       "A UP -> DOWN - Connection refused",
+                       "A DOWN -> UP (200) - 3ms",
+                       "A UP -> SLOW (200) - 90ms",
+                       "A SLOW -> RESTARTING")),
+                  "Every state change, and nothing else, should reach listeners in order: " + seen);
+        System.out.println("  ✓ Transitions detected at update");
+        
+        // Fan-out: every listener sees every producer's transitions, each producer's in order
+        TransitionStream wide = new TransitionStream(8192, logged::add);
+        int producers = 4;
+        int perProducer = 1_000;
+        List<List<Transition>> received = List.of(new ArrayList<>(), new ArrayList<>());
+        for (List<Transition> list : received) {
+            wide.subscribe("fan-out", batch -> list.addAll(batch));
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    wide.publish(new Transition(status, StatusTable.State.UP, StatusTable.State.DOWN, i, producer, null, 0));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        wide.close();
+        for (List<Transition> list : received) {
+            int[] last = new int[producers];
+            Arrays.fill(last, -1);
+            boolean ordered = true;
+            for (Transition transition : list) {
+                int producer = (int) transition.latencyMicros;
+                ordered &= transition.statusCode == last[producer] + 1;
+                last[producer] = transition.statusCode;
+            }
+            assertTrue(list.size() == producers * perProducer && ordered,
+                      "Each listener should get all " + producers * perProducer + " transitions in publication order, got " + list.size());
+        }
+        assertTrue(wide.getSubscriptions().isEmpty(), "Closing should deliver what was published and end the subscriptions");
+        System.out.println("  ✓ Fan-out from concurrent producers");
+        
+        // Publishers a lap apart on a tiny ring: a listener may miss transitions but never gets one twice or out of order
+        TransitionStream tiny = new TransitionStream(2, logged::add);
+        List<Transition> lapped = new ArrayList<>();
+        tiny.subscribe("lapped", batch -> lapped.addAll(batch));
+        threads.clear();
+        for (int p = 0; p < producers * 2; p++) {
+            int producer = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    tiny.publish(new Transition(status, StatusTable.State.UP, StatusTable.State.DOWN, i, producer, null, 0));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        tiny.close();
+        int[] lastSeen = new int[producers * 2];
+        Arrays.fill(lastSeen, -1);
+        boolean increasing = true;
+        for (Transition transition : lapped) {
+            int producer = (int) transition.latencyMicros;
+            increasing &= transition.statusCode > lastSeen[producer];
+            lastSeen[producer] = transition.statusCode;
+        }
+        assertTrue(tiny.getPublished() == producers * 2 * 20_000L && increasing,
+                  "Lapping publishers should never hand a listener the wrong transition");
+        System.out.println("  ✓ Slot reuse across laps");
+        
+        // Backpressure: a stuck listener loses its oldest transitions; publishers and other listeners carry on
+        TransitionStream small = new TransitionStream(16, logged::add);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fast = new AtomicInteger();
+        AtomicInteger slowDelivered = new AtomicInteger();
+        AtomicInteger slowMissed = new AtomicInteger();
+        small.subscribe("fast", batch -> fast.addAndGet(batch.size()));
+        TransitionStream.Subscription slow = small.subscribe("slow", new TransitionStream.Listener() {
+            @Override
+            public void transitions(List<Transition> batch) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                slowDelivered.addAndGet(batch.size());
+            }
+            
+            @Override
+            public void missed(long count) {
+                slowMissed.addAndGet((int) count);
+            }
+        });
+        long start = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            small.publish(new Transition(status, StatusTable.State.UP, StatusTable.State.DOWN, i, 0, null, 0));
+            if (i % 8 == 7) {
+                sleepQuietly(1); // let the fast listener keep up with a ring this small
+            }
+        }
+        long publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(awaitCondition(() -> fast.get() == 1_000, 5_000), "A fast listener should get everything despite a stuck one");
+        release.countDown();
+        assertTrue(awaitCondition(() -> slowDelivered.get() + slowMissed.get() == 1_000, 5_000) && slowMissed.get() > 0 &&
+                   slow.getMissed() == slowMissed.get() && slow.getDelivered() == slowDelivered.get(),
+                  "A stuck listener should be told what it missed and resume on what is left: delivered " +
+                  slowDelivered.get() + ", missed " + slowMissed.get());
+        assertTrue(publishMillis < 5_000, "Publishing should never wait for a listener");
+        small.close();
+        stream.close();
+        assertTrue(logged.isEmpty(), "No listener errors expected: " + logged);
+        System.out.println("  ✓ Per-listener backpressure");
+        
+        // The logging mode ignores case, and a typo falls back to logging every probe rather than failing startup
+        assertTrue(Monitor.parseProbeLogging(" transitions ") == Monitor.ProbeLogging.TRANSITIONS &&
+                  Monitor.parseProbeLogging(null) == Monitor.ProbeLogging.ALL &&
+                  Monitor.parseProbeLogging("transitoins") == Monitor.ProbeLogging.ALL,
+                  "Probe logging mode should parse leniently");
+        System.out.println("  ✓ Lenient logging mode");
+        
+        // Transitions-only logging in a real daemon: one line for the change, none for each probe
+        Path dir = null;
+        Process process = null;
+        try {
+            dir = Files.createTempDirectory("panic-transitions");
+            Files.writeString(dir.resolve("services.json"),
+                "{\"services\": [{\"name\": \"A\", \"type\": \"tcp\", \"host\": \"127.0.0.1\", \"port\": 1, \"intervalSeconds\": 0.2}]}");
+            Path log = dir.resolve("panic.log");
+            String java = ProcessHandle.current().info().command().orElse("java");
+            process = new ProcessBuilder(java, "-Dpanicribbon.daemon.listen=127.0.0.1:0", "-Dpanicribbon.log.probes=TRANSITIONS",
+                                         "-Dpanicribbon.poll.recheckMillis=100", "-Dpanicribbon.poll.maxBackoffSeconds=1",
+                                         "-cp", daemonClassPath(), "com.devops.panicribbon.Daemon")
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            assertTrue(awaitCondition(() -> readQuietly(log).contains("Transition: A UNKNOWN -> DOWN"), 10_000),
+                      "The first result should be logged as a transition");
+            sleepQuietly(1_500);
+            String text = readQuietly(log);
+            assertTrue(!text.contains("Health check") && text.split("Transition: ", -1).length == 2,
+                      "Repeated results in the same state should not be logged");
+            System.out.println("  ✓ Transitions-only logging");
+        } catch (IOException e) {
+            fail("Transition logging test failed: " + e);
+        } finally {
+            if (process != null) {
+                process.destroyForcibly();
+            }
+            deleteRecursively(dir);
+        }
+        
+        System.out.println();
+    }
+    
+    /** A daemon stand-in: a registry the test updates by hand, recording the commands it receives. */
+    private static final class FakeSource implements StatusSource {
+        final ServiceRegistry registry = new ServiceRegistry(new StatusTable(1));
+        final Set<String> refreshed = ConcurrentHashMap.newKeySet();
+        final Set<String> restarted = ConcurrentHashMap.newKeySet();
+        
+        FakeSource(List<Main.Service> services) {
+            registry.update(services);
+        }
+        
+        @Override
+        public void start(Listener listener) {
+        }
+        
+        @Override
+        public List<Main.ServiceStatus> getStatuses() {
+            return registry.getStatuses();
+        }
+        
+        @Override
+        public void refresh(List<Main.ServiceStatus> statuses) {
+            for (Main.ServiceStatus status : statuses) {
+                refreshed.add(status.getService().getName());
+            }
+        }
+        
+        @Override
+        public void restart(Main.ServiceStatus status) {
+            restarted.add(status.getService().getName());
+        }
+        
+        @Override
+        public HistoryStore getHistory() {
+            return null;
+        }
+        
+        @Override
+        public void log(String message) {
+        }
+        
+        @Override
+        public void shutdown() {
+        }
+    }
+    
+    
+    /**
+     * A sharded daemon stand-in on loopback. "Probing" stamps a service with
+     * this node's marker as its latency, so any table shows who probed what.
+     */
+    private static final class ShardNode {
+        final FakeSource source;
+        final StatusServer server;
+        final String id;
+        final int port;
+        final int marker;
+        final Set<String> acquired = ConcurrentHashMap.newKeySet();
+        ShardCoordinator shard;
+        
+        ShardNode(List<Main.Service> services, int port, int marker) throws IOException {
+            this.source = new FakeSource(services);
+            this.server = new StatusServer(new InetSocketAddress("127.0.0.1", port), source, source.registry.getTable(), 20);
+            this.port = ((InetSocketAddress) server.getAddress()).getPort();
+            this.id = "127.0.0.1:" + this.port;
+            this.marker = marker;
+        }
+        
+        void start(List<String> ids) {
+            shard = new ShardCoordinator(id, ids, source.registry::getStatuses, new ShardCoordinator.Listener() {
+                @Override
+                public void acquired(List<Main.ServiceStatus> statuses) {
+                    for (Main.ServiceStatus status : statuses) {
+                        acquired.add(status.getService().getName());
+                        probe(status);
+                    }
+                }
+                
+                @Override
+                public void peerUpdated(Main.ServiceStatus status, long packed) {
+                    source.registry.getTable().set(status.getIndex(), packed);
+                }
+            }, message -> { }, 50);
+            shard.start();
+        }
+        
+        void probeOwned() {
+            for (Main.ServiceStatus status : source.getStatuses()) {
+                if (shard.owns(status)) {
+                    probe(status);
+                }
+            }
+        }
+        
+        private void probe(Main.ServiceStatus status) {
+            status.update(StatusTable.State.UP, 200, marker);
+        }
+        
+        Set<String> ownedNames() {
+            Set<String> names = new java.util.HashSet<>();
+            for (Main.ServiceStatus status : source.getStatuses()) {
+                if (shard.owns(status)) {
+                    names.add(status.getService().getName());
+                }
+            }
+            return names;
+        }
+        
+        /** True if every service carries the marker of its owner under {@code ring}. */
+        boolean showsOwners(HashRing ring, ShardNode[] nodes) {
+            for (Main.ServiceStatus status : source.getStatuses()) {
+                String owner = ring.owner(status.getService().getName());
+                int expected = Arrays.stream(nodes).filter(node -> node.id.equals(owner)).findFirst().orElseThrow().marker;
+                if (StatusTable.latencyMicros(status.snapshot()) != expected) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        void close() {
+            if (shard != null) {
+                shard.close();
+            }
+            server.close();
+        }
+    }
+    
+    private static boolean within(long actual, long expected, double tolerance) {
+        return Math.abs(actual - expected) <= expected * tolerance;
+    }
+    
     // Helper methods
+    static void deleteRecursively(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (java.util.stream.Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(java.util.Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+    
+    static HttpServer startStubServer(com.sun.net.httpserver.HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", handler);
+        server.setExecutor(java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return server;
+    }
+    
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /** Polls until {@code condition} holds; false if it still does not after {@code timeoutMillis}. */
+    private static boolean awaitCondition(java.util.function.BooleanSupplier condition, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            sleepQuietly(10);
+        }
+        return true;
+    }
+    
+    /** This run's class path with absolute entries, for a daemon started in another directory. */
+    private static String daemonClassPath() {
+        StringBuilder classPath = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(java.io.File.pathSeparator)) {
+            if (classPath.length() > 0) {
+                classPath.append(java.io.File.pathSeparator);
+            }
+            classPath.append(Paths.get(entry).toAbsolutePath());
+        }
+        return classPath.toString();
+    }
+    
+    private static String readQuietly(Path file) {
+        try {
+            return Files.exists(file) ? Files.readString(file) : "";
+        } catch (IOException e) {
+            return "";
+        }
+    }
+    
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
     private static void assertTrue(boolean condition, String message) {
         if (condition) {
             testsPassed++;
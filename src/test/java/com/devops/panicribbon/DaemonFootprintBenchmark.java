@@ -0,0 +1,212 @@
+package com.devops.panicribbon;
+
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time and resident memory of the headless {@link Daemon}, measured in
+ * a child JVM per run and on its own, without the ribbon. Services are TCP
+ * probes of a local listener, so the numbers reflect the daemon rather than
+ * the network. Reports the time from launch until the status socket accepts
+ * connections, until a subscriber has the service list and until every
+ * service has been probed once; RSS and peak RSS after settling; and how
+ * many classes (and AWT classes) were loaded. When a
+ * display is available the ribbon is measured the same way, in-process and
+ * as a subscriber of the daemon, for comparison.
+ * Run with: bench-runner.sh DaemonFootprintBenchmark [services...]
+ */
+public class DaemonFootprintBenchmark {
+    private static final long SETTLE_MILLIS = 3_000;
+    private static final long TIMEOUT_MILLIS = 120_000;
+    
+    public static void main(String[] args) throws Exception {
+        int[] counts = args.length > 0
+            ? java.util.Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+            : new int[] {100, 10_000};
+        
+        try (ServerSocket target = new ServerSocket(0, 4096, java.net.InetAddress.getLoopbackAddress())) {
+            Thread.ofVirtual().start(() -> acceptForever(target));
+            
+            System.out.printf("%-16s %8s %13s %14s %14s %10s %12s %9s %6s%n",
+                "process", "services", "listening ms", "subscribed ms", "all probed ms", "RSS MB", "peak RSS MB", "classes", "AWT");
+            for (int count : counts) {
+                Path dir = Files.createTempDirectory("panic-footprint");
+                try {
+                    writeServices(dir, count, target.getLocalPort());
+                    int statusPort = freePort();
+                    Process daemon = measureDaemon(dir, count, statusPort);
+                    try {
+                        if (GraphicsEnvironment.isHeadless()) {
+                            System.out.printf("%-16s %8d %s%n", "ribbon", count, "skipped (no display)");
+                        } else {
+                            measureRibbon("ribbon (local)", dir, count, List.of());
+                            measureRibbon("ribbon (thin)", dir, count,
+                                List.of("-Dpanicribbon.daemon.connect=127.0.0.1:" + statusPort));
+                        }
+                    } finally {
+                        stop(daemon);
+                    }
+                } finally {
+                    ApplicationTest.deleteRecursively(dir);
+                }
+            }
+        }
+    }
+    
+    private static Process measureDaemon(Path dir, int count, int statusPort) throws Exception {
+        long start = System.nanoTime();
+        Process daemon = launch(dir, "daemon", "com.devops.panicribbon.Daemon",
+            List.of("-Dpanicribbon.daemon.listen=127.0.0.1:" + statusPort));
+        // Subscribe only once the socket is up, so the client's reconnect backoff does not count
+        long listening = await(start, () -> canConnect(statusPort));
+        
+        StatusClient client = new StatusClient(new InetSocketAddress("127.0.0.1", statusPort));
+        client.start(new StatusSource.Listener() {
+            @Override
+            public void servicesChanged() {
+            }
+            
+            @Override
+            public void stateChanged(Main.ServiceStatus status) {
+            }
+        });
+        try {
+            long subscribed = await(start, () -> client.getStatuses().size() == count);
+            long probed = await(start, () -> allKnown(client.getStatuses()));
+            Thread.sleep(SETTLE_MILLIS);
+            report("daemon", count, listening, subscribed, probed, daemon, dir.resolve("daemon-classes.txt"));
+        } finally {
+            client.shutdown();
+        }
+        return daemon;
+    }
+    
+    private static void measureRibbon(String label, Path dir, int count, List<String> options) throws Exception {
+        Process ribbon = launch(dir, "ribbon", "com.devops.panicribbon.Main", options);
+        try {
+            // Startup of the window is not observable from outside; only memory and classes are compared
+            Thread.sleep(SETTLE_MILLIS * 2);
+            report(label, count, -1, -1, -1, ribbon, dir.resolve("ribbon-classes.txt"));
+        } finally {
+            stop(ribbon);
+        }
+    }
+    
+    private static Process launch(Path dir, String name, String mainClass, List<String> options) throws IOException {
+        List<String> command = new java.util.ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-Xlog:class+load:file=" + name + "-classes.txt");
+        command.addAll(options);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass);
+        return new ProcessBuilder(command)
+            .directory(dir.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+    }
+    
+    private static void report(String label, int count, long listeningNanos, long subscribedNanos, long probedNanos,
+                               Process process, Path classLog) throws IOException {
+        List<String> classes = Files.readAllLines(classLog);
+        long awt = classes.stream().filter(line -> line.contains(" java.awt.") || line.contains(" sun.awt.")).count();
+        System.out.printf("%-16s %8d %13s %14s %14s %10s %12s %9d %6d%n",
+            label, count, millis(listeningNanos), millis(subscribedNanos), millis(probedNanos),
+            megabytes(procStatus(process, "VmRSS")), megabytes(procStatus(process, "VmHWM")), classes.size(), awt);
+    }
+    
+    private static boolean allKnown(List<Main.ServiceStatus> statuses) {
+        if (statuses.isEmpty()) {
+            return false;
+        }
+        for (Main.ServiceStatus status : statuses) {
+            if (StatusTable.state(status.snapshot()) == StatusTable.State.UNKNOWN) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static long await(long start, java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                return -1;
+            }
+            Thread.sleep(5);
+        }
+        return System.nanoTime() - start;
+    }
+    
+    /** A field of /proc/PID/status in kB, or -1 where there is no procfs. */
+    private static long procStatus(Process process, String field) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/" + process.pid() + "/status"))) {
+                if (line.startsWith(field + ":")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // not Linux
+        }
+        return -1;
+    }
+    
+    private static String millis(long nanos) {
+        return nanos < 0 ? "n/a" : Long.toString(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+    
+    private static String megabytes(long kilobytes) {
+        return kilobytes < 0 ? "n/a" : String.format("%.1f", kilobytes / 1024.0);
+    }
+    
+    private static void writeServices(Path dir, int count, int port) throws IOException {
+        StringBuilder json = new StringBuilder("{\"services\": [\n");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",\n")
+                .append("{\"name\": \"svc-").append(i).append("\", \"type\": \"tcp\", \"host\": \"127.0.0.1\", ")
+                .append("\"port\": ").append(port).append(", \"intervalSeconds\": 5}");
+        }
+        Files.writeString(dir.resolve("services.json"), json.append("\n]}").toString());
+    }
+    
+    private static boolean canConnect(int port) {
+        try (Socket socket = new Socket(java.net.InetAddress.getLoopbackAddress(), port)) {
+            return socket.isConnected();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+    
+    private static void acceptForever(ServerSocket server) {
+        while (!server.isClosed()) {
+            try {
+                // connect probes only need the handshake
+                server.accept().close();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+    
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
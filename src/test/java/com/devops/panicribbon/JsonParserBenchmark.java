@@ -0,0 +1,289 @@
+package com.devops.panicribbon;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parse time and allocation of {@code services.json} at 10,000 and 100,000
+ * services: the previous parser (whole file read into a String, a substring
+ * per token) against the streaming {@link Main.SimpleJsonParser} reading the
+ * file through a {@link JsonReader}. The generated file only uses fields the
+ * previous parser understands.
+ * Run with: bench-runner.sh JsonParserBenchmark [iterations] [services...]
+ */
+public class JsonParserBenchmark {
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int[] counts = {10_000, 100_000};
+        if (args.length > 1) {
+            counts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                counts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        
+        Path dir = Files.createTempDirectory("panic-json-bench");
+        try {
+            // Warm up both parsers so the first row is not dominated by JIT
+            Path warmup = generate(dir, 10_000);
+            for (int i = 0; i < 5; i++) {
+                parseLegacy(warmup);
+                parseStreaming(warmup);
+            }
+            
+            System.out.printf("%-10s %9s %9s %10s %10s %14s%n",
+                "mode", "services", "file MB", "best ms", "MB/s", "alloc MB/parse");
+            for (int count : counts) {
+                Path file = generate(dir, count);
+                run("legacy", file, count, iterations, true);
+                run("streaming", file, count, iterations, false);
+            }
+        } finally {
+            ApplicationTest.deleteRecursively(dir);
+        }
+    }
+    
+    private static void run(String mode, Path file, int count, int iterations, boolean legacy) throws Exception {
+        long bestNanos = Long.MAX_VALUE;
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            System.gc();
+            long allocBefore = threadAllocated();
+            long begin = System.nanoTime();
+            List<Main.ServiceConfig> services = legacy ? parseLegacy(file) : parseStreaming(file);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - begin);
+            allocated += threadAllocated() - allocBefore;
+            if (services.size() != count) {
+                throw new IllegalStateException(mode + " parsed " + services.size() + " of " + count + " services");
+            }
+        }
+        double megabytes = Files.size(file) / (1024.0 * 1024.0);
+        System.out.printf("%-10s %9d %9.1f %10.1f %10.1f %14.1f%n",
+            mode, count, megabytes, bestNanos / 1e6, megabytes / (bestNanos / 1e9),
+            allocated / (double) iterations / (1024.0 * 1024.0));
+    }
+    
+    private static List<Main.ServiceConfig> parseLegacy(Path file) throws Exception {
+        return new LegacyParser(Files.readString(file)).parseServices();
+    }
+    
+    private static List<Main.ServiceConfig> parseStreaming(Path file) throws Exception {
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            return new Main.SimpleJsonParser(reader).parseServices();
+        }
+    }
+    
+    /** Writes an inventory-style services.json with the given number of services. */
+    private static Path generate(Path dir, int count) throws Exception {
+        Path file = dir.resolve("services-" + count + ".json");
+        try (Writer out = Files.newBufferedWriter(file)) {
+            out.write("{\n  \"services\": [\n");
+            for (int i = 0; i < count; i++) {
+                out.write("    {\n");
+                out.write("      \"name\": \"inventory-service-" + i + "\",\n");
+                out.write("      \"healthCheckUrl\": \"http://host-" + (i % 997) + ".prod.internal:" + (8000 + i % 100) + "/health\",\n");
+                out.write("      \"restartScriptPath\": \"/opt/restart/service-" + i + ".sh\",\n");
+                out.write("      \"intervalSeconds\": " + (5 + i % 20) + ",\n");
+                out.write("      \"method\": \"HEAD\"\n");
+                out.write(i == count - 1 ? "    }\n" : "    },\n");
+            }
+            out.write("  ]\n}\n");
+        }
+        return file;
+    }
+    
+    private static long threadAllocated() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+    
+    /** The parser Main used before this change, kept verbatim for comparison. */
+    static final class LegacyParser {
+        private String json;
+        private int pos = 0;
+        
+        LegacyParser(String json) {
+            this.json = json;
+        }
+        
+        public List<Main.ServiceConfig> parseServices() {
+            List<Main.ServiceConfig> services = new ArrayList<>();
+            skipWhitespace();
+            
+            if (pos >= json.length() || json.charAt(pos) != '{') {
+                throw new RuntimeException("Expected '{' at start of JSON");
+            }
+            pos++;
+            
+            skipWhitespace();
+            if (!consume("\"services\"")) {
+                throw new RuntimeException("Expected 'services' key");
+            }
+            skipWhitespace();
+            if (pos >= json.length() || json.charAt(pos) != ':') {
+                throw new RuntimeException("Expected ':' after 'services'");
+            }
+            pos++;
+            skipWhitespace();
+            
+            if (pos >= json.length() || json.charAt(pos) != '[') {
+                throw new RuntimeException("Expected '[' for services array");
+            }
+            pos++;
+            skipWhitespace();
+            
+            while (pos < json.length() && json.charAt(pos) != ']') {
+                if (json.charAt(pos) == '{') {
+                    Main.ServiceConfig config = parseServiceObject();
+                    services.add(config);
+                }
+                skipWhitespace();
+                if (pos < json.length() && json.charAt(pos) == ',') {
+                    pos++;
+                    skipWhitespace();
+                }
+            }
+            
+            return services;
+        }
+        
+        private Main.ServiceConfig parseServiceObject() {
+            Main.ServiceConfig config = new Main.ServiceConfig();
+            pos++; // skip '{'
+            skipWhitespace();
+            
+            while (pos < json.length() && json.charAt(pos) != '}') {
+                String key = parseString();
+                skipWhitespace();
+                if (pos >= json.length() || json.charAt(pos) != ':') {
+                    throw new RuntimeException("Expected ':' after key");
+                }
+                pos++;
+                skipWhitespace();
+                String value = parseValue();
+                
+                switch (key) {
+                    case "name":
+                        config.name = value;
+                        break;
+                    case "healthCheckUrl":
+                        config.healthCheckUrl = value;
+                        break;
+                    case "restartScriptPath":
+                        config.restartScriptPath = value;
+                        break;
+                    case "intervalSeconds":
+                        config.intervalSeconds = parseNumber(key, value);
+                        break;
+                    case "method":
+                        config.method = value;
+                        break;
+                    case "httpVersion":
+                        config.httpVersion = value;
+                        break;
+                    case "connectTimeoutSeconds":
+                        config.connectTimeoutSeconds = parseNumber(key, value);
+                        break;
+                    case "timeoutSeconds":
+                        config.timeoutSeconds = parseNumber(key, value);
+                        break;
+                    case "type":
+                        config.type = value;
+                        break;
+                    case "host":
+                        config.host = value;
+                        break;
+                    case "port":
+                        config.port = (int) Math.min(Integer.MAX_VALUE, parseNumber(key, value));
+                        break;
+                }
+                
+                skipWhitespace();
+                if (pos < json.length() && json.charAt(pos) == ',') {
+                    pos++;
+                    skipWhitespace();
+                }
+            }
+            if (pos < json.length()) {
+                pos++; // skip '}'
+            }
+            skipWhitespace();
+            
+            return config;
+        }
+        
+        private String parseString() {
+            if (pos >= json.length() || json.charAt(pos) != '"') {
+                throw new RuntimeException("Expected '\"' at start of string");
+            }
+            pos++;
+            int start = pos;
+            while (pos < json.length() && json.charAt(pos) != '"') {
+                if (json.charAt(pos) == '\\' && pos + 1 < json.length()) {
+                    pos++; // skip escaped character
+                }
+                pos++;
+            }
+            if (pos >= json.length()) {
+                throw new RuntimeException("Unterminated string");
+            }
+            String value = json.substring(start, pos);
+            pos++; // skip closing '"'
+            skipWhitespace();
+            return value;
+        }
+        
+        /** A string, or the literal text of a number, boolean or null. */
+        private String parseValue() {
+            if (pos < json.length() && json.charAt(pos) == '"') {
+                return parseString();
+            }
+            int start = pos;
+            while (pos < json.length() && json.charAt(pos) != ',' && json.charAt(pos) != '}' &&
+                   json.charAt(pos) != ']' && !Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start) {
+                throw new RuntimeException("Expected value at position " + start);
+            }
+            String value = json.substring(start, pos);
+            skipWhitespace();
+            return value;
+        }
+        
+        private static double parseNumber(String key, String value) {
+            try {
+                double number = Double.parseDouble(value);
+                if (number < 0 || Double.isNaN(number) || Double.isInfinite(number)) {
+                    throw new RuntimeException("Invalid value for '" + key + "': " + value);
+                }
+                return number;
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Expected a number for '" + key + "': " + value);
+            }
+        }
+        
+        private boolean consume(String str) {
+            if (pos + str.length() <= json.length() && 
+                json.substring(pos, pos + str.length()).equals(str)) {
+                pos += str.length();
+                return true;
+            }
+            return false;
+        }
+        
+        private void skipWhitespace() {
+            while (pos < json.length() && 
+                   (json.charAt(pos) == ' ' || json.charAt(pos) == '\n' || 
+                    json.charAt(pos) == '\r' || json.charAt(pos) == '\t')) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.devops.panicribbon;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and heap benchmark for {@link ProbeEngine} against local stub servers.
+ * Compares the engine with the previous executor-per-service, blocking-send loop.
+ * Run with: bench-runner.sh ProbeEngineBenchmark [rounds]
+ */
+public class ProbeEngineBenchmark {
+    private static final int[] SERVICE_COUNTS = {100, 1_000, 10_000};
+    private static final int STUB_SERVERS = 4;
+    
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        
+        List<HttpServer> servers = new ArrayList<>();
+        for (int i = 0; i < STUB_SERVERS; i++) {
+            servers.add(ApplicationTest.startStubServer(exchange -> {
+                exchange.sendResponseHeaders(200, 2);
+                exchange.getResponseBody().write("OK".getBytes());
+                exchange.close();
+            }));
+        }
+        
+        try {
+            // Warm up both paths so the first row is not dominated by JIT and connection setup
+            List<Main.Service> warmup = services(servers, 100);
+            runEngine(warmup, 1, false);
+            runLegacy(warmup, 1, false);
+            
+            System.out.printf("%-8s %8s %10s %12s %14s %8s%n",
+                "mode", "services", "rounds", "probes/s", "peak heap MB", "errors");
+            for (int count : SERVICE_COUNTS) {
+                List<Main.Service> services = services(servers, count);
+                runEngine(services, rounds, true);
+                runLegacy(services, rounds, true);
+            }
+        } finally {
+            for (HttpServer server : servers) {
+                server.stop(0);
+            }
+        }
+    }
+    
+    private static List<Main.Service> services(List<HttpServer> servers, int count) {
+        List<Main.Service> services = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int port = servers.get(i % STUB_SERVERS).getAddress().getPort();
+            services.add(new Main.Service("svc-" + i, "http://127.0.0.1:" + port + "/health/" + i, ""));
+        }
+        return services;
+    }
+    
+    private static void runEngine(List<Main.Service> services, int rounds, boolean print) throws Exception {
+        ProbeEngine engine = new ProbeEngine();
+        AtomicInteger errors = new AtomicInteger();
+        HeapSampler sampler = HeapSampler.start();
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            List<CompletableFuture<ProbeEngine.ProbeResult>> round = new ArrayList<>(services.size());
+            for (Main.Service service : services) {
+                round.add(engine.probe(service));
+            }
+            for (CompletableFuture<ProbeEngine.ProbeResult> f : round) {
+                if (!f.get(60, TimeUnit.SECONDS).isHealthy()) {
+                    errors.incrementAndGet();
+                }
+            }
+        }
+        long peak = sampler.stop();
+        if (print) {
+            report("engine", services.size(), rounds, start, peak, errors.get());
+        }
+        engine.shutdown();
+    }
+    
+    /** The loop Main used before ProbeEngine: a new executor per service and a blocking send. */
+    @SuppressWarnings("resource")
+    private static void runLegacy(List<Main.Service> services, int rounds, boolean print) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        AtomicInteger errors = new AtomicInteger();
+        HeapSampler sampler = HeapSampler.start();
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            CountDownLatch done = new CountDownLatch(services.size());
+            for (Main.Service service : services) {
+                Executors.newVirtualThreadPerTaskExecutor().submit(() -> {
+                    try {
+                        HttpRequest request = HttpRequest.newBuilder()
+                            .uri(URI.create(service.getHealthCheckUrl()))
+                            .timeout(Duration.ofSeconds(5))
+                            .GET()
+                            .build();
+                        if (client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            done.await(60, TimeUnit.SECONDS);
+        }
+        long peak = sampler.stop();
+        if (print) {
+            report("legacy", services.size(), rounds, start, peak, errors.get());
+        }
+        client.shutdownNow();
+    }
+    
+    private static void report(String mode, int services, int rounds, long startNanos, long peakHeap, int errors) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%-8s %8d %10d %12.0f %14.1f %8d%n",
+            mode, services, rounds, services * (double) rounds / seconds, peakHeap / (1024.0 * 1024.0), errors);
+    }
+    
+    /** Samples used heap every few milliseconds and reports the peak. */
+    static final class HeapSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+        private volatile boolean running = true;
+        private Thread thread;
+        
+        static HeapSampler start() {
+            System.gc();
+            HeapSampler sampler = new HeapSampler();
+            sampler.thread = Thread.ofPlatform().daemon().start(() -> {
+                while (sampler.running) {
+                    sampler.peak.accumulateAndGet(sampler.memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            return sampler;
+        }
+        
+        long stop() throws InterruptedException {
+            running = false;
+            thread.join();
+            return peak.get();
+        }
+    }
+}
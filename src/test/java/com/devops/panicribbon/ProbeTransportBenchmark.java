@@ -0,0 +1,128 @@
+package com.devops.panicribbon;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-probe allocation, throughput and connection count of the probe
+ * transport against a local stub server. The endpoint returns a diagnostic
+ * body of the given size. The previous transport (GET, body read into a
+ * String, default client) is compared with GET probes that discard the body
+ * and with HEAD probes.
+ * Run with: bench-runner.sh ProbeTransportBenchmark [probes] [bodyBytes...]
+ */
+public class ProbeTransportBenchmark {
+    private static final int IN_FLIGHT = 32;
+    
+    public static void main(String[] args) throws Exception {
+        // Without TCP_NODELAY the stub server's small writes hit delayed ACKs and dominate the timings
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        int probes = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int[] bodySizes = {2, 64 * 1024};
+        if (args.length > 1) {
+            bodySizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                bodySizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        
+        System.out.printf("%-14s %10s %10s %12s %14s %12s%n",
+            "mode", "body", "probes", "probes/s", "KB/probe", "connections");
+        for (int bodySize : bodySizes) {
+            byte[] body = new byte[bodySize];
+            Set<Integer> remotePorts = ConcurrentHashMap.newKeySet();
+            HttpServer server = ApplicationTest.startStubServer(exchange -> {
+                remotePorts.add(exchange.getRemoteAddress().getPort());
+                if (exchange.getRequestMethod().equals("HEAD")) {
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, body.length);
+                    exchange.getResponseBody().write(body);
+                }
+                exchange.close();
+            });
+            try {
+                String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/health";
+                // Warm up every path before measuring
+                runLegacy(url, probes / 10, bodySize, remotePorts, false);
+                runEngine("GET", url, probes / 10, bodySize, remotePorts, false);
+                runEngine("HEAD", url, probes / 10, bodySize, remotePorts, false);
+                
+                runLegacy(url, probes, bodySize, remotePorts, true);
+                runEngine("GET", url, probes, bodySize, remotePorts, true);
+                runEngine("HEAD", url, probes, bodySize, remotePorts, true);
+            } finally {
+                server.stop(0);
+            }
+        }
+    }
+    
+    /** The transport before this change: GET, body read into a String, client defaults. */
+    private static void runLegacy(String url, int probes, int bodySize, Set<Integer> remotePorts, boolean print)
+            throws Exception {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient client = HttpClient.newBuilder().executor(executor).build();
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).timeout(ProbeEngine.DEFAULT_TIMEOUT).GET().build();
+        Semaphore permits = new Semaphore(IN_FLIGHT);
+        remotePorts.clear();
+        long allocBefore = totalAllocated();
+        long begin = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[probes];
+        for (int i = 0; i < probes; i++) {
+            permits.acquire();
+            futures[i] = client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> permits.release());
+        }
+        CompletableFuture.allOf(futures).exceptionally(e -> null).get(5, TimeUnit.MINUTES);
+        report(print, "GET+String", bodySize, probes, begin, allocBefore, remotePorts.size());
+        client.shutdownNow();
+        executor.shutdownNow();
+    }
+    
+    private static void runEngine(String method, String url, int probes, int bodySize, Set<Integer> remotePorts,
+                                  boolean print) throws Exception {
+        ProbeEngine engine = new ProbeEngine(IN_FLIGHT);
+        Main.Service service = new Main.Service("bench", url, "", 0, ProbeOptions.of(method, null, 0, 0));
+        Semaphore permits = new Semaphore(IN_FLIGHT);
+        remotePorts.clear();
+        long allocBefore = totalAllocated();
+        long begin = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[probes];
+        for (int i = 0; i < probes; i++) {
+            // Throttle the producer the same way as the legacy loop rather than queueing everything
+            permits.acquire();
+            futures[i] = engine.probe(service).whenComplete((result, error) -> permits.release());
+        }
+        CompletableFuture.allOf(futures).get(5, TimeUnit.MINUTES);
+        report(print, method + "+discard", bodySize, probes, begin, allocBefore, remotePorts.size());
+        engine.shutdown();
+    }
+    
+    private static void report(boolean print, String mode, int bodySize, int probes, long begin, long allocBefore,
+                               int connections) {
+        if (!print) {
+            return;
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        double kbPerProbe = (totalAllocated() - allocBefore) / 1024.0 / probes;
+        System.out.printf("%-14s %10d %10d %12.0f %14.1f %12d%n",
+            mode, bodySize, probes, probes / seconds, kbPerProbe, connections);
+    }
+    
+    /** Bytes allocated by all threads; includes the in-process stub server. */
+    private static long totalAllocated() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getTotalThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,180 @@
+package com.devops.panicribbon;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compares {@link StatusTable} with the previous boxed {@code AtomicReference}
+ * status holder: retained heap at 100k services, allocation per update, and
+ * update/read throughput with concurrent writers and a renderer-style reader.
+ * Run with: bench-runner.sh StatusTableBenchmark [services] [writers]
+ */
+public class StatusTableBenchmark {
+    private static final int OPERATIONS_PER_WRITER = 2_000_000;
+    
+    public static void main(String[] args) throws Exception {
+        int services = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        
+        System.out.printf("%-8s %10s %14s %16s %16s %14s%n",
+            "mode", "services", "heap MB", "bytes/update", "updates/s", "full reads/s");
+        
+        // Warm up both paths before measuring
+        run("legacy", new LegacyTarget(1_000), 1_000, writers, false);
+        run("table", new TableTarget(1_000), 1_000, writers, false);
+        
+        long before = usedHeap();
+        LegacyTarget legacy = new LegacyTarget(services);
+        long legacyHeap = usedHeap() - before;
+        run("legacy", legacy, services, writers, true, legacyHeap);
+        legacy = null;
+        
+        before = usedHeap();
+        TableTarget table = new TableTarget(services);
+        long tableHeap = usedHeap() - before;
+        run("table", table, services, writers, true, tableHeap);
+    }
+    
+    private static void run(String mode, Target target, int services, int writers, boolean print) throws Exception {
+        run(mode, target, services, writers, print, 0);
+    }
+    
+    private static void run(String mode, Target target, int services, int writers, boolean print, long heap)
+            throws Exception {
+        // Allocation per update on the calling thread (latency values outside the Long cache)
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocBefore = threads.getCurrentThreadAllocatedBytes();
+        int samples = 100_000;
+        for (int i = 0; i < samples; i++) {
+            target.update(i % services, (i & 1) == 0, 1_000 + i);
+        }
+        double bytesPerUpdate = (threads.getCurrentThreadAllocatedBytes() - allocBefore) / (double) samples;
+        
+        // Throughput: writers update random slots while one reader sweeps the whole table
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            int seed = w * 7919;
+            workers[w] = Thread.ofPlatform().start(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < OPERATIONS_PER_WRITER; i++) {
+                    target.update((i * 31 + seed) % services, (i & 3) != 0, 1_000 + i);
+                }
+            });
+        }
+        long[] sweeps = {0};
+        long[] sink = {0};
+        Thread reader = Thread.ofPlatform().start(() -> {
+            awaitQuietly(start);
+            while (anyAlive(workers)) {
+                sink[0] += target.sweep();
+                sweeps[0]++;
+            }
+        });
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        reader.join();
+        
+        if (print) {
+            System.out.printf("%-8s %10d %14.1f %16.1f %16.0f %14.1f%n",
+                mode, services, heap / (1024.0 * 1024.0), bytesPerUpdate,
+                writers * (double) OPERATIONS_PER_WRITER / seconds, sweeps[0] / seconds);
+        }
+        if (sink[0] == 42) {
+            System.out.println(); // keep the reader's work observable
+        }
+    }
+    
+    private static boolean anyAlive(Thread[] threads) {
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    interface Target {
+        void update(int index, boolean healthy, long latency);
+        
+        /** Reads every service the way the renderer does and returns a checksum. */
+        long sweep();
+    }
+    
+    /** The ServiceStatus layout before StatusTable: two boxed atomic references per service. */
+    static final class LegacyStatus {
+        final AtomicReference<Boolean> healthy = new AtomicReference<>(false);
+        final AtomicReference<Long> latency = new AtomicReference<>(-1L);
+    }
+    
+    static final class LegacyTarget implements Target {
+        private final LegacyStatus[] statuses;
+        
+        LegacyTarget(int services) {
+            statuses = new LegacyStatus[services];
+            for (int i = 0; i < services; i++) {
+                statuses[i] = new LegacyStatus();
+            }
+        }
+        
+        public void update(int index, boolean healthy, long latency) {
+            statuses[index].healthy.set(healthy);
+            statuses[index].latency.set(latency);
+        }
+        
+        public long sweep() {
+            long sum = 0;
+            for (LegacyStatus status : statuses) {
+                if (status.healthy.get()) {
+                    sum += status.latency.get();
+                }
+            }
+            return sum;
+        }
+    }
+    
+    static final class TableTarget implements Target {
+        private final StatusTable table;
+        
+        TableTarget(int services) {
+            table = new StatusTable(services);
+        }
+        
+        public void update(int index, boolean healthy, long latency) {
+            table.update(index, healthy ? StatusTable.State.UP : StatusTable.State.DOWN, 200, latency);
+        }
+        
+        public long sweep() {
+            long sum = 0;
+            for (int i = 0; i < table.capacity(); i++) {
+                long packed = table.get(i);
+                if (StatusTable.isHealthy(packed)) {
+                    sum += StatusTable.latencyMicros(packed);
+                }
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.devops.panicribbon;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares three ways of keeping one periodic deadline per service:
+ * a single ticking task that scans every deadline (the original polling
+ * loop), one {@code ScheduledExecutorService} task per service, and the
+ * {@link TimingWheel}. Reports tick-processing cost, deadline accuracy
+ * (how late each timer fired) and process CPU time, after a short settle
+ * period.
+ * <p>
+ * By default it runs a busy case (every timer fires every 2 s) and a mostly
+ * idle one (60 s, like services in backoff), since the scanning loop pays for
+ * every timer on every tick while the wheel only pays for the timers that fire.
+ * Run with: bench-runner.sh TimingWheelBenchmark [timers] [intervalMillis] [seconds]
+ */
+public class TimingWheelBenchmark {
+    private static final long TICK_MILLIS = TimingWheel.DEFAULT_TICK_MILLIS;
+    private static final long SETTLE_MILLIS = 2_000;
+    
+    // Only steady state is measured: JIT warm-up and the initial bulk insert are excluded
+    private static volatile boolean recording;
+    
+    public static void main(String[] args) throws Exception {
+        int timers = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        long[] intervals = args.length > 1 ? new long[] {Long.parseLong(args[1])} : new long[] {2_000, 60_000};
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+        
+        // Short warm-up of every path
+        runLoop(timers / 10, 1_000, 1, false);
+        runExecutor(timers / 10, 1_000, 1, false);
+        runWheel(timers / 10, 1_000, 1, false);
+        
+        for (long intervalMillis : intervals) {
+            System.out.printf("%d timers, %d ms interval, %d ms tick, %d s per run%n", timers, intervalMillis, TICK_MILLIS, seconds);
+            System.out.printf("%-9s %10s %14s %12s %12s %12s %10s%n",
+                "mode", "fired", "us/tick", "late p50", "late p99", "late max", "cpu ms");
+            runLoop(timers, intervalMillis, seconds, true);
+            runExecutor(timers, intervalMillis, seconds, true);
+            runWheel(timers, intervalMillis, seconds, true);
+            System.out.println();
+        }
+    }
+    
+    /** One task per tick walks every deadline, as the original fixed-rate loop did. */
+    private static void runLoop(int timers, long intervalMillis, int seconds, boolean print) throws Exception {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        long[] due = initialDeadlines(timers, intervalNanos);
+        LatencyHistogram lateness = newHistogram();
+        AtomicLong fired = new AtomicLong();
+        AtomicLong tickNanos = new AtomicLong();
+        AtomicLong ticks = new AtomicLong();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(() -> {
+            long begin = System.nanoTime();
+            long nowMillis = System.currentTimeMillis();
+            for (int i = 0; i < due.length; i++) {
+                if (due[i] <= begin) {
+                    fire(lateness, fired, begin - due[i], nowMillis);
+                    due[i] += intervalNanos;
+                }
+            }
+            if (recording) {
+                tickNanos.addAndGet(System.nanoTime() - begin);
+                ticks.incrementAndGet();
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        long cpuBefore = settle();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        long cpu = processCpuNanos() - cpuBefore;
+        recording = false;
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        report(print, "loop", fired.get(), tickNanos.get() / 1_000.0 / Math.max(1, ticks.get()), lateness, cpu);
+    }
+    
+    /** One delayed task per service in a scheduled thread pool. */
+    private static void runExecutor(int timers, long intervalMillis, int seconds, boolean print) throws Exception {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        long[] due = initialDeadlines(timers, intervalNanos);
+        LatencyHistogram lateness = newHistogram();
+        AtomicLong fired = new AtomicLong();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        for (int i = 0; i < timers; i++) {
+            scheduleExecutor(scheduler, due, i, intervalNanos, lateness, fired);
+        }
+        long cpuBefore = settle();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        long cpu = processCpuNanos() - cpuBefore;
+        recording = false;
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        report(print, "executor", fired.get(), -1, lateness, cpu);
+    }
+    
+    private static void scheduleExecutor(ScheduledExecutorService scheduler, long[] due, int i, long intervalNanos,
+                                         LatencyHistogram lateness, AtomicLong fired) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            fire(lateness, fired, System.nanoTime() - due[i], System.currentTimeMillis());
+            due[i] += intervalNanos;
+            scheduleExecutor(scheduler, due, i, intervalNanos, lateness, fired);
+        }, due[i] - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+    
+    private static void runWheel(int timers, long intervalMillis, int seconds, boolean print) throws Exception {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        long[] due = initialDeadlines(timers, intervalNanos);
+        LatencyHistogram lateness = newHistogram();
+        AtomicLong fired = new AtomicLong();
+        TimingWheel wheel = new TimingWheel(Runnable::run, "bench-wheel");
+        for (int i = 0; i < timers; i++) {
+            scheduleWheel(wheel, due, i, intervalNanos, lateness, fired);
+        }
+        long cpuBefore = settle();
+        long workBefore = wheel.getTickWorkNanos();
+        long ticksBefore = wheel.getTicks();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        long cpu = processCpuNanos() - cpuBefore;
+        recording = false;
+        double microsPerTick = (wheel.getTickWorkNanos() - workBefore) / 1_000.0 / Math.max(1, wheel.getTicks() - ticksBefore);
+        wheel.shutdown();
+        report(print, "wheel", fired.get(), microsPerTick, lateness, cpu);
+    }
+    
+    private static void scheduleWheel(TimingWheel wheel, long[] due, int i, long intervalNanos,
+                                      LatencyHistogram lateness, AtomicLong fired) {
+        try {
+            wheel.schedule(() -> {
+                fire(lateness, fired, System.nanoTime() - due[i], System.currentTimeMillis());
+                due[i] += intervalNanos;
+                scheduleWheel(wheel, due, i, intervalNanos, lateness, fired);
+            }, due[i] - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopped
+        }
+    }
+    
+    private static void fire(LatencyHistogram lateness, AtomicLong fired, long lateNanos, long nowMillis) {
+        if (recording) {
+            lateness.record(Math.max(0, lateNanos) / 1_000L, nowMillis);
+            fired.incrementAndGet();
+        }
+    }
+    
+    /** Waits out the settle period, starts recording and returns the CPU baseline. */
+    private static long settle() throws InterruptedException {
+        Thread.sleep(SETTLE_MILLIS);
+        recording = true;
+        return processCpuNanos();
+    }
+    
+    private static long[] initialDeadlines(int timers, long intervalNanos) {
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long[] due = new long[timers];
+        for (int i = 0; i < timers; i++) {
+            due[i] = start + ThreadLocalRandom.current().nextLong(intervalNanos);
+        }
+        return due;
+    }
+    
+    private static LatencyHistogram newHistogram() {
+        return new LatencyHistogram(1, TimeUnit.HOURS, 1);
+    }
+    
+    private static void report(boolean print, String mode, long fired, double microsPerTick,
+                               LatencyHistogram lateness, long cpuNanos) {
+        if (!print) {
+            return;
+        }
+        LatencyHistogram.Snapshot snapshot = lateness.snapshot();
+        System.out.printf("%-9s %10d %14s %10.2fms %10.2fms %10.2fms %10d%n",
+            mode, fired, microsPerTick < 0 ? "n/a" : String.format("%.1f", microsPerTick),
+            snapshot.percentile(50) / 1000.0, snapshot.percentile(99) / 1000.0, snapshot.getMax() / 1000.0,
+            cpuNanos / 1_000_000);
+    }
+    
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+}
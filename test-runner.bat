@@ -6,7 +6,7 @@ echo.
 
 REM Compile test class
 echo Compiling test class...
-javac -d build\classes -sourcepath src\main\java;src\test\java -cp build\classes src\test\java\com\devops\panicribbon\ApplicationTest.java
+javac -d build\classes -sourcepath src\main\java;src\test\java -cp build\classes src\test\java\com\devops\panicribbon\ApplicationTest.java src\main\java\com\devops\panicribbon\Daemon.java
 
 if %ERRORLEVEL% NEQ 0 (
     echo Compilation failed!
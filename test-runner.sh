@@ -7,7 +7,7 @@ echo
 
 # Compile test class
 echo "Compiling test class..."
-javac -d build/classes -sourcepath "src/main/java:src/test/java" -cp build/classes src/test/java/com/devops/panicribbon/ApplicationTest.java
+javac -d build/classes -sourcepath "src/main/java:src/test/java" -cp build/classes src/test/java/com/devops/panicribbon/ApplicationTest.java src/main/java/com/devops/panicribbon/Daemon.java
 
 if [ $? -ne 0 ]; then
     echo "Compilation failed!"